@@ -146,6 +146,23 @@ public class VarintTest {
     assertWriteBytes(Hex.dehex("25"), 37);
   }
 
+  @Test
+  public void roundtripBoundaries() {
+    final long[] values = {0, 63, 64, 16383, 16384, 1073741823, 1073741824, Varint.MAX};
+    final int[] lengths = {1, 1, 2, 2, 4, 4, 8, 8};
+
+    for (int i = 0; i < values.length; i++) {
+      final ByteBuf bb = Unpooled.buffer();
+      Varint.write(values[i], bb);
+
+      assertEquals(lengths[i], Varint.getLength(values[i]));
+      assertEquals(lengths[i], bb.readableBytes());
+      assertArrayEquals(Bytes.peekToArray(bb), Varint.write(values[i]));
+      assertEquals(values[i], Varint.readAsLong(Varint.write(values[i])));
+      assertEquals(values[i], Varint.readAsLong(bb));
+    }
+  }
+
   private void assertWrite(final byte[] expected, final long vi) {
     final ByteBuf bb = Unpooled.buffer();
     Varint.write(vi, bb);
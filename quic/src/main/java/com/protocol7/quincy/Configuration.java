@@ -1,7 +1,14 @@
 package com.protocol7.quincy;
 
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.KeyExchangePool;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
+import java.util.List;
 
 public class Configuration {
 
@@ -17,6 +24,14 @@ public class Configuration {
   private final int initialMaxStreamDataBidiRemote;
   private final int initialMaxStreamDataUni;
   private final int maxAckDelay;
+  private final List<CipherSuite> cipherSuites;
+  private final long keyUpdatePacketLimit;
+  private final long keyUpdateByteLimit;
+  // shared by all connections of a server
+  private final KeyExchangePool keyExchangePool;
+  private final TicketKeys ticketKeys;
+  private final AntiReplayFilter antiReplayFilter;
+  private final TransportParameters transportParameters;
 
   public Configuration(
       final Version version,
@@ -30,7 +45,13 @@ public class Configuration {
       final boolean disableMigration,
       final int initialMaxStreamDataBidiRemote,
       final int initialMaxStreamDataUni,
-      final int maxAckDelay) {
+      final int maxAckDelay,
+      final List<CipherSuite> cipherSuites,
+      final long keyUpdatePacketLimit,
+      final long keyUpdateByteLimit,
+      final KeyExchangePool keyExchangePool,
+      final TicketKeys ticketKeys,
+      final AntiReplayFilter antiReplayFilter) {
     this.version = version;
     this.initialMaxStreamDataBidiLocal = initialMaxStreamDataBidiLocal;
     this.initialMaxData = initialMaxData;
@@ -43,6 +64,13 @@ public class Configuration {
     this.initialMaxStreamDataBidiRemote = initialMaxStreamDataBidiRemote;
     this.initialMaxStreamDataUni = initialMaxStreamDataUni;
     this.maxAckDelay = maxAckDelay;
+    this.cipherSuites = CipherSuite.validateSupported(cipherSuites);
+    this.keyUpdatePacketLimit = keyUpdatePacketLimit;
+    this.keyUpdateByteLimit = keyUpdateByteLimit;
+    this.keyExchangePool = requireNonNull(keyExchangePool);
+    this.ticketKeys = requireNonNull(ticketKeys);
+    this.antiReplayFilter = requireNonNull(antiReplayFilter);
+    this.transportParameters = buildTransportParameters();
   }
 
   public Version getVersion() {
@@ -93,7 +121,35 @@ public class Configuration {
     return maxAckDelay;
   }
 
+  public List<CipherSuite> getCipherSuites() {
+    return cipherSuites;
+  }
+
+  public long getKeyUpdatePacketLimit() {
+    return keyUpdatePacketLimit;
+  }
+
+  public long getKeyUpdateByteLimit() {
+    return keyUpdateByteLimit;
+  }
+
+  public KeyExchangePool getKeyExchangePool() {
+    return keyExchangePool;
+  }
+
+  public TicketKeys getTicketKeys() {
+    return ticketKeys;
+  }
+
+  public AntiReplayFilter getAntiReplayFilter() {
+    return antiReplayFilter;
+  }
+
   public TransportParameters toTransportParameters() {
+    return transportParameters;
+  }
+
+  private TransportParameters buildTransportParameters() {
     return TransportParameters.newBuilder()
         .withInitialMaxStreamDataBidiLocal(initialMaxStreamDataBidiLocal)
         .withInitialMaxData(initialMaxData)
@@ -4,5 +4,10 @@ import com.protocol7.quincy.protocol.packets.Packet;
 
 public interface InboundHandler {
 
+  // handlers are skipped for packets they do not accept, as if they passed them on directly
+  default boolean acceptsInbound(final Packet packet) {
+    return true;
+  }
+
   void onReceivePacket(final Packet packet, final PipelineContext ctx);
 }
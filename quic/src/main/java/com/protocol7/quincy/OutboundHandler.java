@@ -4,5 +4,10 @@ import com.protocol7.quincy.protocol.packets.Packet;
 
 public interface OutboundHandler {
 
+  // handlers are skipped for packets they do not accept, as if they passed them on directly
+  default boolean acceptsOutbound(final Packet packet) {
+    return true;
+  }
+
   void beforeSendPacket(final Packet packet, final PipelineContext ctx);
 }
@@ -10,135 +10,175 @@ import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import java.net.InetSocketAddress;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class Pipeline {
 
-  private final List<InboundHandler> inboundHandlers;
-  private final List<OutboundHandler> outboundHandlers;
+  // contexts are reused between packets. Handlers may send packets while handling a packet, which
+  // re-enters the pipeline, each level of nesting gets its own context
+  private final InboundContext inboundContext;
+  private final OutboundContext outboundContext;
 
   public Pipeline(
       final List<InboundHandler> inboundHandlers, final List<OutboundHandler> outboundHandlers) {
-    this.inboundHandlers = inboundHandlers;
-    this.outboundHandlers = outboundHandlers;
+    // the handlers are compiled into arrays, walked by index
+    this.inboundContext = new InboundContext(inboundHandlers.toArray(new InboundHandler[0]));
+    this.outboundContext = new OutboundContext(outboundHandlers.toArray(new OutboundHandler[0]));
   }
 
   public void onPacket(final Connection connection, final Packet packet) {
-    final Iterator<InboundHandler> iter = inboundHandlers.iterator();
-
-    final PipelineContext ctx =
-        new PipelineContext() {
-          @Override
-          public void next(final Packet newPacket) {
-            if (iter.hasNext()) {
-              final InboundHandler handler = iter.next();
-              handler.onReceivePacket(newPacket, this);
-            }
-          }
-
-          @Override
-          public Version getVersion() {
-            return connection.getVersion();
-          }
-
-          @Override
-          public InetSocketAddress getPeerAddress() {
-            return connection.getPeerAddress();
-          }
-
-          @Override
-          public State getState() {
-            return connection.getState();
-          }
-
-          @Override
-          public void setState(final State state) {
-            ((InternalConnection) connection).setState(state);
-          }
-
-          @Override
-          public Packet sendPacket(final Packet p) {
-            return connection.sendPacket(p);
-          }
-
-          @Override
-          public FullPacket send(final Frame... frames) {
-            return connection.send(frames);
-          }
-
-          @Override
-          public void closeConnection(
-              final TransportError error, final FrameType frameType, final String msg) {
-            connection.close(error, frameType, msg);
-          }
-        };
-
-    if (iter.hasNext()) {
-      final InboundHandler handler = iter.next();
-      handler.onReceivePacket(packet, ctx);
+    final InboundContext ctx = inboundContext.acquire(connection);
+    try {
+      ctx.next(packet);
+    } finally {
+      ctx.release();
     }
   }
 
   public Packet send(final Connection connection, final Packet packet) {
-    final Iterator<OutboundHandler> iter = outboundHandlers.iterator();
-    final AtomicReference<Packet> processedPacket = new AtomicReference<>();
-
-    final PipelineContext ctx =
-        new PipelineContext() {
-          @Override
-          public void next(final Packet newPacket) {
-            if (iter.hasNext()) {
-              final OutboundHandler handler = iter.next();
-              handler.beforeSendPacket(newPacket, this);
-            } else {
-              processedPacket.set(newPacket);
-            }
-          }
-
-          @Override
-          public Version getVersion() {
-            return connection.getVersion();
-          }
-
-          @Override
-          public InetSocketAddress getPeerAddress() {
-            return connection.getPeerAddress();
-          }
-
-          @Override
-          public State getState() {
-            return connection.getState();
-          }
-
-          @Override
-          public void setState(final State state) {
-            ((InternalConnection) connection).setState(state);
-          }
-
-          @Override
-          public Packet sendPacket(final Packet p) {
-            return connection.sendPacket(p);
-          }
-
-          @Override
-          public FullPacket send(final Frame... frames) {
-            return connection.send(frames);
-          }
-
-          @Override
-          public void closeConnection(
-              final TransportError error, final FrameType frameType, final String msg) {
-            connection.close(error, frameType, msg);
-          }
-        };
-
-    if (iter.hasNext()) {
-      final OutboundHandler handler = iter.next();
-      handler.beforeSendPacket(packet, ctx);
-    }
-
-    return processedPacket.get();
+    final OutboundContext ctx = outboundContext.acquire(connection);
+    try {
+      ctx.next(packet);
+      return ctx.processedPacket;
+    } finally {
+      ctx.release();
+    }
+  }
+
+  private abstract static class AbstractContext<T extends AbstractContext<T>>
+      implements PipelineContext {
+
+    // index of the next handler to consider
+    protected int index;
+    protected Connection connection;
+    private boolean inUse;
+    private T nested;
+
+    protected abstract T newNested();
+
+    @SuppressWarnings("unchecked")
+    T acquire(final Connection connection) {
+      AbstractContext<T> ctx = this;
+      while (ctx.inUse) {
+        ctx = ctx.nested();
+      }
+      ctx.inUse = true;
+      ctx.connection = connection;
+      ctx.index = 0;
+      return (T) ctx;
+    }
+
+    private T nested() {
+      if (nested == null) {
+        nested = newNested();
+      }
+      return nested;
+    }
+
+    void release() {
+      connection = null;
+      inUse = false;
+    }
+
+    @Override
+    public Version getVersion() {
+      return connection.getVersion();
+    }
+
+    @Override
+    public InetSocketAddress getPeerAddress() {
+      return connection.getPeerAddress();
+    }
+
+    @Override
+    public State getState() {
+      return connection.getState();
+    }
+
+    @Override
+    public void setState(final State state) {
+      ((InternalConnection) connection).setState(state);
+    }
+
+    @Override
+    public InternalConnection getConnection() {
+      return (InternalConnection) connection;
+    }
+
+    @Override
+    public Packet sendPacket(final Packet p) {
+      return connection.sendPacket(p);
+    }
+
+    @Override
+    public FullPacket send(final Frame... frames) {
+      return connection.send(frames);
+    }
+
+    @Override
+    public void closeConnection(
+        final TransportError error, final FrameType frameType, final String msg) {
+      connection.close(error, frameType, msg);
+    }
+  }
+
+  private static class InboundContext extends AbstractContext<InboundContext> {
+
+    private final InboundHandler[] handlers;
+
+    private InboundContext(final InboundHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    @Override
+    protected InboundContext newNested() {
+      return new InboundContext(handlers);
+    }
+
+    @Override
+    public void next(final Packet packet) {
+      // handlers not accepting the packet are skipped
+      while (index < handlers.length) {
+        final InboundHandler handler = handlers[index++];
+        if (handler.acceptsInbound(packet)) {
+          handler.onReceivePacket(packet, this);
+          return;
+        }
+      }
+    }
+  }
+
+  private static class OutboundContext extends AbstractContext<OutboundContext> {
+
+    private final OutboundHandler[] handlers;
+    private Packet processedPacket;
+
+    private OutboundContext(final OutboundHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    @Override
+    protected OutboundContext newNested() {
+      return new OutboundContext(handlers);
+    }
+
+    @Override
+    void release() {
+      processedPacket = null;
+      super.release();
+    }
+
+    @Override
+    public void next(final Packet packet) {
+      // handlers not accepting the packet are skipped
+      while (index < handlers.length) {
+        final OutboundHandler handler = handlers[index++];
+        if (handler.acceptsOutbound(packet)) {
+          handler.beforeSendPacket(packet, this);
+          return;
+        }
+      }
+      processedPacket = packet;
+    }
   }
 }
@@ -1,5 +1,6 @@
 package com.protocol7.quincy;
 
+import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.Version;
@@ -20,4 +21,8 @@ public interface PipelineContext extends FrameSender {
   State getState();
 
   void setState(final State state);
+
+  // contexts are reused once the handler returns, handlers continuing asynchronously must keep the
+  // connection rather than the context
+  InternalConnection getConnection();
 }
@@ -23,6 +23,12 @@ public class ServerRetryHandler implements InboundHandler {
     this.ttlMs = timeUnit.toMillis(ttl);
   }
 
+  // only initial packets are checked for retry tokens
+  @Override
+  public boolean acceptsInbound(final Packet packet) {
+    return packet instanceof InitialPacket;
+  }
+
   @Override
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     requireNonNull(packet);
@@ -7,6 +7,9 @@ import static java.util.Optional.of;
 
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.Pipeline;
+import com.protocol7.quincy.connection.ConfinedStream;
+import com.protocol7.quincy.connection.ConfinedTimer;
+import com.protocol7.quincy.connection.Confinement;
 import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.connection.State;
@@ -19,31 +22,40 @@ import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.ConnectionCloseFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.FrameType;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.protocol.packets.StatelessResetPacket;
+import com.protocol7.quincy.protocol.packets.ZeroRttPacket;
 import com.protocol7.quincy.reliability.AckDelay;
 import com.protocol7.quincy.reliability.PacketBufferManager;
 import com.protocol7.quincy.streams.DefaultStreamManager;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamListener;
 import com.protocol7.quincy.streams.StreamManager;
+import com.protocol7.quincy.streams.UrgencyStreamScheduler;
 import com.protocol7.quincy.termination.TerminationManager;
 import com.protocol7.quincy.tls.CertificateValidator;
 import com.protocol7.quincy.tls.ClientTlsManager;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
+import com.protocol7.quincy.tls.aead.KeyPhases.KeyPhaseExpiredException;
+import com.protocol7.quincy.tls.aead.KeyPhases.KeysExhaustedException;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.MDC;
 
 public class ClientConnection implements InternalConnection {
@@ -54,7 +66,8 @@ public class ClientConnection implements InternalConnection {
   private final PacketSender packetSender;
 
   private final Version version;
-  private final AtomicReference<Long> sendPacketNumber = new AtomicReference<>(0L);
+  private long sendPacketNumber = 0;
+  private long largestReceivedPacketNumber = PacketNumber.NONE;
   private final PacketBufferManager packetBuffer;
   private final ClientStateMachine stateMachine;
   private Optional<byte[]> token = Optional.empty();
@@ -64,7 +77,10 @@ public class ClientConnection implements InternalConnection {
   private final Pipeline pipeline;
   private final InetSocketAddress peerAddress;
   private final Timer timer;
+  private final Executor connectionExecutor;
 
+  // the connection is confined to the connection executor. Internal calls are expected on that
+  // executor, while opening streams and closing hand off to it, as do timer tasks
   public ClientConnection(
       final Configuration configuration,
       final ConnectionId initialRemoteConnectionId,
@@ -73,26 +89,41 @@ public class ClientConnection implements InternalConnection {
       final FlowControlHandler flowControlHandler,
       final InetSocketAddress peerAddress,
       final CertificateValidator certificateValidator,
-      final Timer timer) {
+      final SessionTicketCache ticketCache,
+      final Timer timer,
+      final Executor connectionExecutor) {
     this.version = configuration.getVersion();
     this.remoteConnectionId = initialRemoteConnectionId;
     this.packetSender = packetSender;
+    this.connectionExecutor = connectionExecutor;
     this.peerAddress = peerAddress;
-    this.streamManager = new DefaultStreamManager(this, streamListener);
+    this.streamManager =
+        new DefaultStreamManager(
+            this,
+            flowControlHandler,
+            flowControlHandler,
+            new UrgencyStreamScheduler(),
+            streamListener);
 
     final Ticker ticker = Ticker.systemTicker();
+    final Timer confinedTimer = new ConfinedTimer(timer, connectionExecutor);
 
     this.packetBuffer =
         new PacketBufferManager(
-            new AckDelay(configuration.getAckDelayExponent(), ticker), this, timer, ticker);
+            new AckDelay(configuration.getAckDelayExponent(), ticker), this, confinedTimer, ticker);
     this.tlsManager =
         new ClientTlsManager(
-            remoteConnectionId, configuration.toTransportParameters(), certificateValidator);
+            remoteConnectionId,
+            configuration,
+            certificateValidator,
+            ticketCache,
+            peerAddress.getHostString() + ":" + peerAddress.getPort());
 
     final LoggingHandler logger = new LoggingHandler(true);
 
     final TerminationManager terminationManager =
-        new TerminationManager(this, timer, configuration.getIdleTimeout(), TimeUnit.SECONDS);
+        new TerminationManager(
+            this, confinedTimer, configuration.getIdleTimeout(), TimeUnit.SECONDS);
 
     this.pipeline =
         new Pipeline(
@@ -103,7 +134,7 @@ public class ClientConnection implements InternalConnection {
                 streamManager,
                 flowControlHandler,
                 terminationManager),
-            List.of(packetBuffer, logger));
+            List.of(flowControlHandler, packetBuffer, logger));
 
     this.stateMachine = new ClientStateMachine(this);
     this.timer = timer;
@@ -114,11 +145,13 @@ public class ClientConnection implements InternalConnection {
   }
 
   public void handshake(final Promise promise) {
+    Confinement.check(connectionExecutor);
     MDC.put("actor", "client");
     tlsManager.handshake(getState(), this, stateMachine::setState, promise);
   }
 
   public Packet sendPacket(final Packet p) {
+    Confinement.check(connectionExecutor);
     if (stateMachine.getState() == Closed) {
       throw new IllegalStateException("Connection not open");
     }
@@ -137,7 +170,13 @@ public class ClientConnection implements InternalConnection {
   public FullPacket send(final Frame... frames) {
     final Packet packet;
     if (tlsManager.available(EncryptionLevel.OneRtt)) {
-      packet = ShortPacket.create(false, getRemoteConnectionId(), nextSendPacketNumber(), frames);
+      packet =
+          ShortPacket.create(
+              tlsManager.getKeyPhase(), getRemoteConnectionId(), nextSendPacketNumber(), frames);
+    } else if (isEarlyData(frames) && tlsManager.available(EncryptionLevel.ZeroRtt)) {
+      packet =
+          ZeroRttPacket.create(
+              of(remoteConnectionId), localConnectionId, nextSendPacketNumber(), version, frames);
     } else if (tlsManager.available(EncryptionLevel.Handshake)) {
       packet =
           HandshakePacket.create(
@@ -156,6 +195,20 @@ public class ClientConnection implements InternalConnection {
     return (FullPacket) sendPacket(packet);
   }
 
+  // stream data can be sent as early data when resuming a connection
+  private boolean isEarlyData(final Frame... frames) {
+    for (final Frame frame : frames) {
+      if (frame instanceof StreamFrame) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isEarlyDataAccepted() {
+    return tlsManager.isEarlyDataAccepted();
+  }
+
   @Override
   public Optional<ConnectionId> getLocalConnectionId() {
     return localConnectionId;
@@ -187,12 +240,32 @@ public class ClientConnection implements InternalConnection {
   }
 
   private void sendPacketUnbuffered(final Packet packet) {
-    packetSender
-        .send(packet, getAEAD(getEncryptionLevel(packet)))
-        .awaitUninterruptibly(); // TODO fix
+    final AEAD aead;
+    try {
+      aead = tlsManager.getSendAEAD(packet);
+    } catch (final KeyPhaseExpiredException e) {
+      // dropped, buffered frames are retransmitted in a new packet
+      return;
+    } catch (final KeysExhaustedException e) {
+      // nothing more can be sent with these keys, not even a connection close
+      setState(State.Closing);
+      closeInternal();
+      setState(State.Closed);
+      return;
+    }
+
+    // not awaited, the connection executor must not block
+    packetSender.send(packet, aead);
   }
 
   public void onPacket(final Packet packet) {
+    Confinement.check(connectionExecutor);
+
+    if (packet instanceof FullPacket) {
+      largestReceivedPacketNumber =
+          Math.max(largestReceivedPacketNumber, ((FullPacket) packet).getPacketNumber());
+    }
+
     if (packet.getDestinationConnectionId().isPresent()) {
       lastDestConnectionIdLength = packet.getDestinationConnectionId().get().getLength();
     } else {
@@ -215,27 +288,43 @@ public class ClientConnection implements InternalConnection {
     return tlsManager.getAEAD(level);
   }
 
+  // truncated packet numbers are decoded relative to this
+  public long getLargestReceivedPacketNumber() {
+    return largestReceivedPacketNumber;
+  }
+
+  public AEADProvider getAEADProvider() {
+    return tlsManager.getAEADProvider();
+  }
+
   public Version getVersion() {
     return version;
   }
 
   private long nextSendPacketNumber() {
-    return sendPacketNumber.updateAndGet(packetNumber -> PacketNumber.next(packetNumber));
+    sendPacketNumber = PacketNumber.next(sendPacketNumber);
+    return sendPacketNumber;
   }
 
   public void resetSendPacketNumber() {
-    sendPacketNumber.set(0L);
+    sendPacketNumber = 0;
   }
 
-  public Stream openStream() {
-    return streamManager.openStream(true, true);
+  public Future<Stream> openStream() {
+    return Confinement.submit(
+        connectionExecutor,
+        () -> new ConfinedStream(streamManager.openStream(true, true), connectionExecutor));
   }
 
   public Future<Void> close(
       final TransportError error, final FrameType frameType, final String msg) {
-    stateMachine.closeImmediate(new ConnectionCloseFrame(error.getValue(), frameType, msg));
+    return Confinement.chain(
+        connectionExecutor,
+        () -> {
+          stateMachine.closeImmediate(new ConnectionCloseFrame(error.getValue(), frameType, msg));
 
-    return closeInternal();
+          return closeInternal();
+        });
   }
 
   @Override
@@ -244,16 +333,37 @@ public class ClientConnection implements InternalConnection {
   }
 
   public Future<Void> close() {
-    stateMachine.closeImmediate();
+    return Confinement.chain(
+        connectionExecutor,
+        () -> {
+          stateMachine.closeImmediate();
 
-    return closeInternal();
+          return closeInternal();
+        });
+  }
+
+  public boolean isStatelessReset(final ByteBuf bb) {
+    return tlsManager
+        .getPeerTransportParameters()
+        .map(tps -> StatelessResetPacket.isStatelessReset(bb, tps.getStatelessResetToken()))
+        .orElse(false);
   }
 
-  public void closeByPeer() {
-    closeInternal().awaitUninterruptibly(); // TODO fis
+  public Future<Void> onStatelessReset() {
+    Confinement.check(connectionExecutor);
+    // the peer has lost the connection state, close without sending anything further
+    setState(State.Closing);
+    final Future<Void> closed = closeInternal();
+    setState(State.Closed);
+    return closed;
+  }
+
+  public Future<Void> closeByPeer() {
+    return closeInternal();
   }
 
   private Future<Void> closeInternal() {
+    packetBuffer.close();
     timer.stop();
 
     return packetSender.destroy();
@@ -22,24 +22,22 @@ public class ClientStateMachine {
   public void handlePacket(final Packet packet) {
     log.info("Client got {} in state {}: {}", packet.getClass().getCanonicalName(), state, packet);
 
-    synchronized (this) { // TODO refactor to make non-synchronized
-      // TODO validate connection ID
-      if (state == State.BeforeHello) {
-        if (packet instanceof InitialPacket) {
-          connection.setRemoteConnectionId(packet.getSourceConnectionId().get(), false);
-        } else if (packet instanceof RetryPacket) {
-          final RetryPacket retryPacket = (RetryPacket) packet;
-          connection.setRemoteConnectionId(packet.getSourceConnectionId().get(), true);
-          connection.resetSendPacketNumber();
-          connection.setToken(retryPacket.getRetryToken());
-        } else if (packet instanceof VersionNegotiationPacket) {
-          // we only support a single version, so nothing more to do
-          log.debug("Incompatible versions, closing connection");
-          state = State.Closing;
-          connection.closeByPeer();
-          log.debug("Connection closed");
-          state = State.Closed;
-        }
+    // TODO validate connection ID
+    if (state == State.BeforeHello) {
+      if (packet instanceof InitialPacket) {
+        connection.setRemoteConnectionId(packet.getSourceConnectionId().get(), false);
+      } else if (packet instanceof RetryPacket) {
+        final RetryPacket retryPacket = (RetryPacket) packet;
+        connection.setRemoteConnectionId(packet.getSourceConnectionId().get(), true);
+        connection.resetSendPacketNumber();
+        connection.setToken(retryPacket.getRetryToken());
+      } else if (packet instanceof VersionNegotiationPacket) {
+        // we only support a single version, so nothing more to do
+        log.debug("Incompatible versions, closing connection");
+        state = State.Closing;
+        connection.closeByPeer();
+        log.debug("Connection closed");
+        state = State.Closed;
       }
     }
   }
@@ -0,0 +1,75 @@
+package com.protocol7.quincy.connection;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.streams.Stream;
+import com.protocol7.quincy.streams.StreamType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// streams opened by the application might be used from any thread, while the stream belongs to
+// the connection and is confined to its executor. Changes to the stream are handed off to the
+// executor, reads of the stream state might be slightly stale
+public class ConfinedStream implements Stream {
+
+  private final Stream stream;
+  private final Executor executor;
+
+  public ConfinedStream(final Stream stream, final Executor executor) {
+    this.stream = requireNonNull(stream);
+    this.executor = requireNonNull(executor);
+  }
+
+  @Override
+  public long getId() {
+    return stream.getId();
+  }
+
+  @Override
+  public StreamType getStreamType() {
+    return stream.getStreamType();
+  }
+
+  @Override
+  public Future<Void> write(final byte[] b, final boolean finish) {
+    return write(Unpooled.wrappedBuffer(b), finish);
+  }
+
+  @Override
+  public Future<Void> write(final ByteBuf b, final boolean finish) {
+    final Future<Void> future = Confinement.chain(executor, () -> stream.write(b, finish));
+    if (future.cause() instanceof RejectedExecutionException) {
+      // the stream never took ownership of the data
+      b.release();
+    }
+    return future;
+  }
+
+  @Override
+  public boolean isWritable() {
+    return stream.isWritable();
+  }
+
+  @Override
+  public void setUrgency(final int urgency) {
+    Confinement.execute(executor, () -> stream.setUrgency(urgency));
+  }
+
+  @Override
+  public void setWeight(final int weight) {
+    Confinement.execute(executor, () -> stream.setWeight(weight));
+  }
+
+  @Override
+  public void reset(final int applicationErrorCode) {
+    Confinement.execute(executor, () -> stream.reset(applicationErrorCode));
+  }
+
+  @Override
+  public boolean isFinished() {
+    return stream.isFinished();
+  }
+}
@@ -0,0 +1,112 @@
+package com.protocol7.quincy.connection;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// connections are confined to a single thread, their executor. Timer tasks are handed off to the
+// executor rather than run on the timer thread, so that they never race with packet handling
+public class ConfinedTimer implements Timer {
+
+  private final Timer timer;
+  private final Executor executor;
+  // the timeouts created through this timer, not yet run or cancelled
+  private final Set<ConfinedTimeout> pending = ConcurrentHashMap.newKeySet();
+  private volatile boolean stopped = false;
+
+  public ConfinedTimer(final Timer timer, final Executor executor) {
+    this.timer = requireNonNull(timer);
+    this.executor = requireNonNull(executor);
+  }
+
+  @Override
+  public Timeout newTimeout(final TimerTask task, final long delay, final TimeUnit unit) {
+    requireNonNull(task);
+
+    final ConfinedTimeout confined = new ConfinedTimeout(task);
+    pending.add(confined);
+    confined.timeout = timer.newTimeout(confined, delay, unit);
+    if (stopped) {
+      // tasks rescheduling themselves while stopping never run
+      confined.cancel();
+    }
+    return confined;
+  }
+
+  // cancels and returns the timeouts created through this timer. The shared timer keeps running,
+  // stopping it is up to its owner
+  @Override
+  public Set<Timeout> stop() {
+    stopped = true;
+
+    final Set<Timeout> cancelled = new HashSet<>();
+    for (final ConfinedTimeout timeout : pending) {
+      if (timeout.cancel()) {
+        cancelled.add(timeout);
+      }
+    }
+    pending.clear();
+    return cancelled;
+  }
+
+  private class ConfinedTimeout implements Timeout, TimerTask {
+
+    private final TimerTask task;
+    private Timeout timeout;
+
+    private ConfinedTimeout(final TimerTask task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run(final Timeout ignored) {
+      pending.remove(this);
+      executor.execute(
+          () -> {
+            // the task might have been cancelled, or the timer stopped, while waiting for the
+            // executor
+            if (!timeout.isCancelled() && !stopped) {
+              try {
+                task.run(this);
+              } catch (final Exception e) {
+                throw new RuntimeException(e);
+              }
+            }
+          });
+    }
+
+    // tasks rescheduling themselves through the timeout stay confined
+    @Override
+    public Timer timer() {
+      return ConfinedTimer.this;
+    }
+
+    @Override
+    public TimerTask task() {
+      return task;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return timeout.isExpired();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return timeout.isCancelled();
+    }
+
+    @Override
+    public boolean cancel() {
+      pending.remove(this);
+      return timeout.cancel();
+    }
+  }
+}
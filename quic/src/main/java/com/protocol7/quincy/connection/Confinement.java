@@ -0,0 +1,81 @@
+package com.protocol7.quincy.connection;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// connections are not thread safe, but confined to their executor. The internal entry points, such
+// as received packets, must be called on the executor, while the application facing ones hand calls
+// from other threads over to it. Executors not telling their thread, such as the direct executor,
+// are trusted to be used correctly
+public final class Confinement {
+
+  private Confinement() {}
+
+  public static void check(final Executor executor) {
+    if (!inExecutor(executor)) {
+      throw new IllegalStateException("Connection used outside of its executor");
+    }
+  }
+
+  private static boolean inExecutor(final Executor executor) {
+    return !(executor instanceof EventExecutor) || ((EventExecutor) executor).inEventLoop();
+  }
+
+  // runs the work on the executor, directly if already on it
+  public static void execute(final Executor executor, final Runnable work) {
+    if (inExecutor(executor)) {
+      work.run();
+    } else {
+      executor.execute(work);
+    }
+  }
+
+  // runs the work on the executor, directly if already on it. The returned future completes with
+  // the result of the work, or fails with what it throws
+  public static <T> Future<T> submit(final Executor executor, final Supplier<T> work) {
+    return chain(executor, () -> ImmediateEventExecutor.INSTANCE.newSucceededFuture(work.get()));
+  }
+
+  // as submit, for work completing asynchronously. The returned future completes with the future
+  // returned by the work
+  public static <T> Future<T> chain(final Executor executor, final Supplier<Future<T>> work) {
+    if (inExecutor(executor)) {
+      try {
+        return work.get();
+      } catch (final RuntimeException e) {
+        return ImmediateEventExecutor.INSTANCE.newFailedFuture(e);
+      }
+    }
+
+    final EventExecutor eventExecutor = (EventExecutor) executor;
+    final Promise<T> promise = eventExecutor.newPromise();
+    try {
+      eventExecutor.execute(
+          () -> {
+            try {
+              work.get()
+                  .addListener(
+                      (FutureListener<T>)
+                          future -> {
+                            if (future.isSuccess()) {
+                              promise.trySuccess(future.getNow());
+                            } else {
+                              promise.tryFailure(future.cause());
+                            }
+                          });
+            } catch (final RuntimeException e) {
+              promise.tryFailure(e);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      promise.tryFailure(e);
+    }
+    return promise;
+  }
+}
@@ -33,7 +33,8 @@ public interface Connection extends FrameSender {
 
   InetSocketAddress getPeerAddress();
 
-  Stream openStream();
+  // may be called from any thread, the stream hands its writes off to the connection executor
+  Future<Stream> openStream();
 
   State getState();
 }
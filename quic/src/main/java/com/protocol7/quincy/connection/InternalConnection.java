@@ -1,6 +1,7 @@
 package com.protocol7.quincy.connection;
 
 import com.protocol7.quincy.protocol.packets.Packet;
+import io.netty.util.concurrent.Future;
 
 public interface InternalConnection extends Connection {
 
@@ -8,5 +9,5 @@ public interface InternalConnection extends Connection {
 
   void setState(State state);
 
-  void closeByPeer();
+  Future<Void> closeByPeer();
 }
@@ -3,7 +3,6 @@ package com.protocol7.quincy.connection;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.tls.aead.AEAD;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.util.concurrent.Future;
@@ -21,7 +20,8 @@ public class NettyPacketSender implements PacketSender {
 
   @Override
   public Future<Void> send(final Packet packet, final AEAD aead) {
-    final ByteBuf bb = Unpooled.buffer();
+    // pooled, and encrypted in place before being handed to the channel which releases it
+    final ByteBuf bb = channel.alloc().directBuffer();
     packet.write(bb, aead);
 
     return channel.writeAndFlush(new DatagramPacket(bb, peerAddress));
@@ -1,7 +1,11 @@
 package com.protocol7.quincy.flowcontrol;
 
+import static java.util.Objects.requireNonNull;
+
 import com.google.common.annotations.VisibleForTesting;
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.protocol.Payload;
 import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.frames.DataBlockedFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
@@ -16,29 +20,35 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DefaultFlowControlHandler implements FlowControlHandler {
 
   private final FlowControlCounter receiveCounter;
   private final FlowControlCounter sendCounter;
-  private final AtomicBoolean connectionBlocked = new AtomicBoolean(false);
+  private boolean connectionBlocked = false;
   private final Set<Long> blockedStreams = new HashSet<>();
+  private final List<Runnable> creditListeners = new ArrayList<>();
 
   public DefaultFlowControlHandler(final long connectionMaxBytes, final long streamMaxBytes) {
     receiveCounter = new FlowControlCounter(connectionMaxBytes, streamMaxBytes);
     sendCounter = new FlowControlCounter(connectionMaxBytes, streamMaxBytes);
   }
 
+  @Override
+  public boolean acceptsOutbound(final Packet packet) {
+    return packet instanceof FullPacket
+        && ((FullPacket) packet).getPayload().contains(FrameType.STREAM);
+  }
+
   @Override
   public void beforeSendPacket(final Packet packet, final PipelineContext ctx) {
-    if (packet instanceof FullPacket) {
+    if (acceptsOutbound(packet)) {
       final FullPacket fullPacket = (FullPacket) packet;
       for (final Frame frame : fullPacket.getPayload().getFrames()) {
         if (frame.getType() == FrameType.STREAM) {
           final StreamFrame sf = (StreamFrame) frame;
 
-          if (!tryConsume(sf.getStreamId(), sf.getOffset() + sf.getData().length, ctx)) {
+          if (!tryConsume(sf.getStreamId(), sf.getOffset() + sf.getLength(), ctx)) {
             throw new IllegalStateException("Stream or connection blocked");
           }
         }
@@ -48,6 +58,37 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
     ctx.next(packet);
   }
 
+  @Override
+  public long getSendCredit(final long sid) {
+    return sendCounter.getCredit(sid);
+  }
+
+  @Override
+  public void onBlocked(final long sid, final FrameSender sender) {
+    final List<Frame> frames = new ArrayList<>();
+    if (sendCounter.getConnectionCredit() <= 0 && !connectionBlocked) {
+      frames.add(new DataBlockedFrame(sendCounter.getConnectionMaxBytes()));
+      connectionBlocked = true;
+    }
+    if (sendCounter.getStreamCredit(sid) <= 0 && !blockedStreams.contains(sid)) {
+      frames.add(new StreamDataBlockedFrame(sid, sendCounter.getStreamMaxBytes(sid)));
+      blockedStreams.add(sid);
+    }
+    if (!frames.isEmpty()) {
+      sender.send(frames.toArray(new Frame[0]));
+    }
+  }
+
+  @Override
+  public void addCreditListener(final Runnable listener) {
+    creditListeners.add(requireNonNull(listener));
+  }
+
+  @Override
+  public long getReceiveMaxOffset(final long sid) {
+    return receiveCounter.getStreamMaxBytes(sid);
+  }
+
   @VisibleForTesting
   protected boolean tryConsume(final long sid, final long offset, final PipelineContext ctx) {
     final TryConsumeResult result = sendCounter.tryConsume(sid, offset);
@@ -56,9 +97,9 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
       return true;
     } else {
       final List<Frame> frames = new ArrayList<>();
-      if (result.getConnectionOffset() > result.getConnectionMax() && !connectionBlocked.get()) {
+      if (result.getConnectionOffset() > result.getConnectionMax() && !connectionBlocked) {
         frames.add(new DataBlockedFrame(result.getConnectionMax()));
-        connectionBlocked.set(true);
+        connectionBlocked = true;
       }
       if (result.getStreamOffset() > result.getStreamMax() && !blockedStreams.contains(sid)) {
         frames.add(new StreamDataBlockedFrame(sid, result.getStreamMax()));
@@ -71,24 +112,32 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
     }
   }
 
+  @Override
+  public boolean acceptsInbound(final Packet packet) {
+    return packet instanceof FullPacket && isFlowControlled(((FullPacket) packet).getPayload());
+  }
+
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
-    if (packet instanceof FullPacket) {
+    if (acceptsInbound(packet)) {
       final FullPacket fp = (FullPacket) packet;
+      boolean creditIncreased = false;
       // listen for flow control frames
       for (final Frame frame : fp.getPayload().getFrames()) {
         if (frame.getType() == FrameType.MAX_STREAM_DATA) {
           final MaxStreamDataFrame msd = (MaxStreamDataFrame) frame;
           sendCounter.setStreamMaxBytes(msd.getStreamId(), msd.getMaxStreamData());
           blockedStreams.remove(msd.getStreamId());
+          creditIncreased = true;
         } else if (frame.getType() == FrameType.MAX_DATA) {
           final MaxDataFrame mdf = (MaxDataFrame) frame;
           sendCounter.setConnectionMaxBytes(mdf.getMaxData());
-          connectionBlocked.set(false);
+          connectionBlocked = false;
+          creditIncreased = true;
         } else if (frame.getType() == FrameType.STREAM) {
           final StreamFrame sf = (StreamFrame) frame;
           final long sid = sf.getStreamId();
           final TryConsumeResult result =
-              receiveCounter.tryConsume(sid, sf.getOffset() + sf.getData().length);
+              receiveCounter.tryConsume(sid, sf.getOffset() + sf.getLength());
 
           if (result.isSuccess()) {
             final List<Frame> frames = new ArrayList<>();
@@ -110,8 +159,21 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
           }
         }
       }
+
+      // streams waiting for credit can continue sending
+      if (creditIncreased) {
+        for (final Runnable listener : creditListeners) {
+          listener.run();
+        }
+      }
     }
 
     ctx.next(packet);
   }
+
+  private static boolean isFlowControlled(final Payload payload) {
+    return payload.contains(FrameType.STREAM)
+        || payload.contains(FrameType.MAX_DATA)
+        || payload.contains(FrameType.MAX_STREAM_DATA);
+  }
 }
@@ -2,48 +2,61 @@ package com.protocol7.quincy.flowcontrol;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
 
 public class FlowControlCounter {
 
   // TODO make sure max bytes does not grow forever
 
-  private final AtomicLong connectionMaxBytes;
+  private long connectionMaxBytes;
   private final long defaultStreamMaxBytes;
 
   private class StreamCounter {
     public boolean finished = false;
-    public final AtomicLong maxOffset = new AtomicLong(defaultStreamMaxBytes);
-    public final AtomicLong offset = new AtomicLong(0);
+    public long maxOffset = defaultStreamMaxBytes;
+    public long offset = 0;
   }
 
   // TODO this will grow forever. Consider how we can garbage collect finished streams while not
   // recreating them on out-of-order packets
-  private final Map<Long, StreamCounter> streams = new ConcurrentHashMap<>();
+  private final LongObjectMap<StreamCounter> streams = new LongObjectHashMap<>();
+  // the sum of the stream offsets
+  private long connectionOffset = 0;
 
   public FlowControlCounter(final long connectionMaxBytes, final long streamMaxBytes) {
-    this.connectionMaxBytes = new AtomicLong(connectionMaxBytes);
+    this.connectionMaxBytes = connectionMaxBytes;
     this.defaultStreamMaxBytes = streamMaxBytes;
   }
 
-  private long calculateConnectionOffset() {
-    return streams.values().stream().mapToLong(c -> c.offset.get()).sum();
+  private StreamCounter getOrCreate(final long sid) {
+    StreamCounter stream = streams.get(sid);
+    if (stream == null) {
+      stream = new StreamCounter();
+      streams.put(sid, stream);
+    }
+    return stream;
+  }
+
+  // moves the stream offset forward, keeping the connection offset in sync
+  private void consume(final StreamCounter stream, final long offset) {
+    if (offset > stream.offset) {
+      connectionOffset += offset - stream.offset;
+      stream.offset = offset;
+    }
   }
 
-  // remove need to syncronize
-  public synchronized TryConsumeResult tryConsume(final long sid, final long offset) {
+  public TryConsumeResult tryConsume(final long sid, final long offset) {
     checkArgument(offset > 0);
 
     // first check if we can successfully consume
-    final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
-    final long streamMax = stream.maxOffset.get();
-    final AtomicLong streamConsumed = stream.offset;
-    final long connOffset = calculateConnectionOffset();
+    final StreamCounter stream = getOrCreate(sid);
+    final long streamMax = stream.maxOffset;
+    final long connOffset = connectionOffset;
 
-    final long streamDelta = offset - streamConsumed.get();
+    final long streamDelta = offset - stream.offset;
 
     final long resultingConnOffset;
     final long resultingStreamOffset;
@@ -52,56 +65,83 @@ public class FlowControlCounter {
       // out of order, always successful
       success = true;
       resultingConnOffset = connOffset;
-      resultingStreamOffset = streamConsumed.get();
+      resultingStreamOffset = stream.offset;
     } else if (streamDelta > 0 && stream.finished) {
       // trying to increase offset for finished stream, bail
       throw new IllegalStateException("Stream finished");
-    } else if (offset > streamMax || connOffset + streamDelta > connectionMaxBytes.get()) {
+    } else if (offset > streamMax || connOffset + streamDelta > connectionMaxBytes) {
       success = false;
       resultingConnOffset = connOffset + streamDelta;
       resultingStreamOffset = offset;
     } else {
       success = true;
-      streamConsumed.updateAndGet(current -> max(current, offset));
+      consume(stream, offset);
       resultingConnOffset = connOffset + streamDelta;
-      resultingStreamOffset = streamConsumed.get();
+      resultingStreamOffset = stream.offset;
     }
 
     return new TryConsumeResult(
-        success, resultingConnOffset, connectionMaxBytes.get(), resultingStreamOffset, streamMax);
+        success, resultingConnOffset, connectionMaxBytes, resultingStreamOffset, streamMax);
+  }
+
+  // the number of bytes that can be consumed on the stream without exceeding the stream or
+  // connection max
+  public long getCredit(final long sid) {
+    return max(0, min(getStreamCredit(sid), getConnectionCredit()));
+  }
+
+  public long getStreamCredit(final long sid) {
+    // not creating the stream, it might never be written to
+    final StreamCounter stream = streams.get(sid);
+    if (stream == null) {
+      return defaultStreamMaxBytes;
+    }
+    return stream.maxOffset - stream.offset;
+  }
+
+  public long getConnectionCredit() {
+    return connectionMaxBytes - connectionOffset;
+  }
+
+  public long getStreamMaxBytes(final long sid) {
+    final StreamCounter stream = streams.get(sid);
+    return stream != null ? stream.maxOffset : defaultStreamMaxBytes;
+  }
+
+  public long getConnectionMaxBytes() {
+    return connectionMaxBytes;
   }
 
   public void resetStream(final long sid, final long finalOffset) {
-    final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
-    stream.offset.updateAndGet(current -> max(current, finalOffset));
+    final StreamCounter stream = getOrCreate(sid);
+    consume(stream, finalOffset);
     stream.finished = true;
   }
 
   public void setConnectionMaxBytes(final long connectionMaxBytes) {
     checkArgument(connectionMaxBytes > 0);
 
-    this.connectionMaxBytes.updateAndGet(current -> max(connectionMaxBytes, current));
+    this.connectionMaxBytes = max(connectionMaxBytes, this.connectionMaxBytes);
   }
 
   public long increaseStreamMax(final long sid) {
-    final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
-    final AtomicLong streamMax = stream.maxOffset;
+    final StreamCounter stream = getOrCreate(sid);
 
     // double
-    return streamMax.addAndGet(streamMax.get());
+    stream.maxOffset *= 2;
+    return stream.maxOffset;
   }
 
   public long increaseConnectionMax() {
     // double
-    return connectionMaxBytes.addAndGet(connectionMaxBytes.get());
+    connectionMaxBytes *= 2;
+    return connectionMaxBytes;
   }
 
   public void setStreamMaxBytes(final long sid, final long streamMaxBytes) {
     checkArgument(streamMaxBytes > 0);
 
-    final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
-    final AtomicLong streamMax = stream.maxOffset;
-
-    streamMax.updateAndGet(current -> max(streamMaxBytes, current));
+    final StreamCounter stream = getOrCreate(sid);
+    stream.maxOffset = max(streamMaxBytes, stream.maxOffset);
   }
 }
@@ -3,4 +3,5 @@ package com.protocol7.quincy.flowcontrol;
 import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.OutboundHandler;
 
-public interface FlowControlHandler extends InboundHandler, OutboundHandler {}
+public interface FlowControlHandler
+    extends InboundHandler, OutboundHandler, SendCredit, ReceiveWindow {}
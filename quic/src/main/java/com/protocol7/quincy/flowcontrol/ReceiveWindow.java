@@ -0,0 +1,12 @@
+package com.protocol7.quincy.flowcontrol;
+
+// the receiving side of flow control, as seen by streams. Streams never buffer data beyond what
+// the peer has been allowed to send
+public interface ReceiveWindow {
+
+  // no flow control, any offset can be received
+  ReceiveWindow UNLIMITED = sid -> Long.MAX_VALUE;
+
+  // the largest offset the peer has been allowed to send on the stream
+  long getReceiveMaxOffset(long sid);
+}
@@ -0,0 +1,33 @@
+package com.protocol7.quincy.flowcontrol;
+
+import com.protocol7.quincy.FrameSender;
+
+// the sending side of flow control, as seen by streams. Streams only send as much data as the peer
+// has given credit for and hold on to the rest until more credit arrives
+public interface SendCredit {
+
+  // no flow control, everything can be sent right away
+  SendCredit UNLIMITED =
+      new SendCredit() {
+        @Override
+        public long getSendCredit(final long sid) {
+          return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void onBlocked(final long sid, final FrameSender sender) {}
+
+        @Override
+        public void addCreditListener(final Runnable listener) {}
+      };
+
+  // the number of bytes that can currently be sent on the stream, limited by both the stream and
+  // the connection
+  long getSendCredit(long sid);
+
+  // the stream has data waiting for credit, lets the peer know
+  void onBlocked(long sid, FrameSender sender);
+
+  // listeners are notified when the peer gives more credit
+  void addCreditListener(Runnable listener);
+}
@@ -2,13 +2,24 @@ package com.protocol7.quincy.netty;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.tls.CertificateChain;
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.KeyExchangePool;
+import com.protocol7.quincy.tls.aead.KeyPhases;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.DatagramChannel;
+import io.netty.util.concurrent.EventExecutorGroup;
 import java.security.PrivateKey;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 
 public class QuicBuilder {
 
@@ -27,6 +38,16 @@ public class QuicBuilder {
 
   private List<byte[]> certificates;
   private PrivateKey privateKey;
+  private boolean certificateCompression = false;
+  private Executor handshakeExecutor = MoreExecutors.directExecutor();
+  private Optional<EventExecutorGroup> workers = Optional.empty();
+  private SessionTicketCache sessionTicketCache = SessionTicketCache.shared();
+  private List<CipherSuite> cipherSuites = CipherSuite.SUPPORTED;
+  private long keyUpdatePacketLimit = KeyPhases.NO_LIMIT;
+  private long keyUpdateByteLimit = KeyPhases.NO_LIMIT;
+  private KeyExchangePool keyExchangePool = KeyExchangePool.shared();
+  private TicketKeys ticketKeys = TicketKeys.shared();
+  private AntiReplayFilter antiReplayFilter = AntiReplayFilter.shared();
 
   public QuicBuilder withVersion(final Version version) {
     this.version = version;
@@ -98,6 +119,63 @@ public class QuicBuilder {
     return this;
   }
 
+  public QuicBuilder withCertificateCompression(final boolean certificateCompression) {
+    this.certificateCompression = certificateCompression;
+    return this;
+  }
+
+  public QuicBuilder withHandshakeExecutor(final Executor handshakeExecutor) {
+    this.handshakeExecutor = requireNonNull(handshakeExecutor);
+    return this;
+  }
+
+  // server connections are spread across the workers by connection ID, rather than all running on
+  // the event loop of the channel
+  public QuicBuilder withWorkers(final EventExecutorGroup workers) {
+    this.workers = Optional.of(workers);
+    return this;
+  }
+
+  public QuicBuilder withSessionTicketCache(final SessionTicketCache sessionTicketCache) {
+    this.sessionTicketCache = requireNonNull(sessionTicketCache);
+    return this;
+  }
+
+  // in order of preference
+  public QuicBuilder withCipherSuites(final CipherSuite... cipherSuites) {
+    this.cipherSuites = List.of(cipherSuites);
+    return this;
+  }
+
+  // initiate a key update after sending this many packets using the same keys. Never exceeds the
+  // confidentiality limit of the cipher suite
+  public QuicBuilder withKeyUpdatePacketLimit(final long keyUpdatePacketLimit) {
+    this.keyUpdatePacketLimit = keyUpdatePacketLimit;
+    return this;
+  }
+
+  // initiate a key update after sending this many bytes using the same keys
+  public QuicBuilder withKeyUpdateByteLimit(final long keyUpdateByteLimit) {
+    this.keyUpdateByteLimit = keyUpdateByteLimit;
+    return this;
+  }
+
+  public QuicBuilder withKeyExchangePool(final KeyExchangePool keyExchangePool) {
+    this.keyExchangePool = requireNonNull(keyExchangePool);
+    return this;
+  }
+
+  // servers sharing the ticket keys can resume each other's sessions
+  public QuicBuilder withTicketKeys(final TicketKeys ticketKeys) {
+    this.ticketKeys = requireNonNull(ticketKeys);
+    return this;
+  }
+
+  public QuicBuilder withAntiReplayFilter(final AntiReplayFilter antiReplayFilter) {
+    this.antiReplayFilter = requireNonNull(antiReplayFilter);
+    return this;
+  }
+
   public Configuration configuration() {
     return new Configuration(
         version,
@@ -111,18 +189,30 @@ public class QuicBuilder {
         disableMigration,
         initialMaxStreamDataBidiRemote,
         initialMaxStreamDataUni,
-        maxAckDelay);
+        maxAckDelay,
+        cipherSuites,
+        keyUpdatePacketLimit,
+        keyUpdateByteLimit,
+        keyExchangePool,
+        ticketKeys,
+        antiReplayFilter);
   }
 
   public ChannelHandler serverChannelInitializer(final ChannelHandler handler) {
     requireNonNull(certificates);
     requireNonNull(privateKey);
 
-    return new QuicServerInitializer(configuration(), handler, certificates, privateKey);
+    return new QuicServerInitializer(
+        configuration(),
+        handler,
+        new CertificateChain(certificates, certificateCompression),
+        privateKey,
+        handshakeExecutor,
+        workers);
   }
 
   public ChannelInitializer<DatagramChannel> clientChannelInitializer(
       final ChannelHandler handler) {
-    return new QuicClientInitializer(configuration(), handler);
+    return new QuicClientInitializer(configuration(), handler, sessionTicketCache);
   }
 }
@@ -11,7 +11,7 @@ import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamListener;
 import com.protocol7.quincy.tls.NoopCertificateValidator;
-import com.protocol7.quincy.utils.Bytes;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -19,7 +19,10 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
 import java.net.InetSocketAddress;
 import org.slf4j.MDC;
 
@@ -28,23 +31,27 @@ public class QuicClientHandler extends ChannelDuplexHandler {
   private ChannelHandlerContext ctx;
   private ClientConnection connection;
   private final Configuration configuration;
+  private final SessionTicketCache ticketCache;
   private final Timer timer = new HashedWheelTimer();
 
   private final StreamListener streamListener =
       new StreamListener() {
         @Override
-        public void onData(final Stream stream, final byte[] data, final boolean finished) {
+        public void onData(final Stream stream, final ByteBuf data, final boolean finished) {
+          // the packet is handed down the pipeline, which is responsible for releasing it
           ctx.fireChannelRead(
               QuicPacket.of(
                   connection.getLocalConnectionId().get(),
                   stream.getId(),
-                  data,
+                  data.retain(),
                   connection.getPeerAddress()));
         }
       };
 
-  public QuicClientHandler(final Configuration configuration) {
+  public QuicClientHandler(
+      final Configuration configuration, final SessionTicketCache ticketCache) {
     this.configuration = configuration;
+    this.ticketCache = ticketCache;
   }
 
   @Override
@@ -64,7 +71,9 @@ public class QuicClientHandler extends ChannelDuplexHandler {
                 configuration.getInitialMaxData(), configuration.getInitialMaxStreamDataUni()),
             (InetSocketAddress) ctx.channel().remoteAddress(),
             new NoopCertificateValidator(), // cert validation disabled
-            timer);
+            ticketCache,
+            timer,
+            ctx.executor());
 
     final Promise<Void> handshakePromise = ctx.newPromise();
 
@@ -88,21 +97,45 @@ public class QuicClientHandler extends ChannelDuplexHandler {
 
       final ByteBuf bb = dg.content();
 
-      while (bb.isReadable()) {
-        final HalfParsedPacket<?> halfParsed =
-            Packet.parse(bb, connection.getLastDestConnectionIdLength());
-
-        final Packet packet = halfParsed.complete(connection::getAEAD);
-
-        MDC.put("actor", "client");
-        if (packet instanceof FullPacket) {
-          MDC.put("packetnumber", Long.toString(((FullPacket) packet).getPacketNumber()));
+      final int datagramOffset = bb.readerIndex();
+
+      try {
+        while (bb.isReadable()) {
+          final Packet packet;
+          try {
+            final HalfParsedPacket<?> halfParsed =
+                Packet.parse(bb, connection.getLastDestConnectionIdLength());
+
+            packet =
+                halfParsed.complete(
+                    connection.getAEADProvider(), connection.getLargestReceivedPacketNumber());
+          } catch (final RuntimeException e) {
+            // only a datagram that can not be parsed or decrypted might be a stateless reset
+            bb.readerIndex(datagramOffset);
+            if (connection.isStatelessReset(bb)) {
+              connection.onStatelessReset();
+              return;
+            }
+            throw e;
+          }
+
+          MDC.put("actor", "client");
+          if (packet instanceof FullPacket) {
+            MDC.put("packetnumber", Long.toString(((FullPacket) packet).getPacketNumber()));
+          }
+          packet
+              .getDestinationConnectionId()
+              .ifPresent(connId -> MDC.put("connectionid", connId.toString()));
+
+          try {
+            connection.onPacket(packet);
+          } finally {
+            Packet.release(packet);
+          }
         }
-        packet
-            .getDestinationConnectionId()
-            .ifPresent(connId -> MDC.put("connectionid", connId.toString()));
-
-        connection.onPacket(packet);
+      } finally {
+        // frames hold their own references to the data they need
+        dg.release();
       }
     } else {
       ctx.fireChannelRead(msg);
@@ -114,9 +147,22 @@ public class QuicClientHandler extends ChannelDuplexHandler {
       final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
     if (msg instanceof QuicPacket) {
       final QuicPacket qp = (QuicPacket) msg;
-      final byte[] data = Bytes.drainToArray(qp.content());
-
-      connection.openStream().write(data, true);
+      connection
+          .openStream()
+          .addListener(
+              (FutureListener<Stream>)
+                  opened -> {
+                    if (opened.isSuccess()) {
+                      // the stream takes ownership of the data
+                      opened
+                          .getNow()
+                          .write(qp.content(), true)
+                          .addListener(new PromiseNotifier<Void, Future<Void>>(promise));
+                    } else {
+                      qp.release();
+                      promise.setFailure(opened.cause());
+                    }
+                  });
     } else {
       ctx.write(msg, promise);
     }
@@ -1,6 +1,7 @@
 package com.protocol7.quincy.netty;
 
 import com.protocol7.quincy.Configuration;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
@@ -10,16 +11,21 @@ public class QuicClientInitializer extends ChannelInitializer<DatagramChannel> {
 
   private final Configuration configuration;
   private final ChannelHandler handler;
+  private final SessionTicketCache ticketCache;
 
-  public QuicClientInitializer(final Configuration configuration, final ChannelHandler handler) {
+  public QuicClientInitializer(
+      final Configuration configuration,
+      final ChannelHandler handler,
+      final SessionTicketCache ticketCache) {
     this.configuration = configuration;
     this.handler = handler;
+    this.ticketCache = ticketCache;
   }
 
   @Override
   protected void initChannel(final DatagramChannel ch) {
     final ChannelPipeline pipeline = ch.pipeline();
-    pipeline.addLast(new QuicClientHandler(configuration));
+    pipeline.addLast(new QuicClientHandler(configuration, ticketCache));
     pipeline.addLast(handler);
   }
 }
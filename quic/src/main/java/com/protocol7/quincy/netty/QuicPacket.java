@@ -19,6 +19,14 @@ public class QuicPacket
     return new QuicPacket(localConnectionId, streamId, bb, recipient);
   }
 
+  public static QuicPacket of(
+      final ConnectionId localConnectionId,
+      final long streamId,
+      final ByteBuf message,
+      final InetSocketAddress recipient) {
+    return new QuicPacket(localConnectionId, streamId, message, recipient);
+  }
+
   public static QuicPacket of(
       final long streamId, final byte[] message, final InetSocketAddress recipient) {
     final ByteBuf bb = Unpooled.wrappedBuffer(message);
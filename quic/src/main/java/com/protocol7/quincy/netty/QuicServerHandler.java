@@ -1,31 +1,54 @@
 package com.protocol7.quincy.netty;
 
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.connection.Connection;
 import com.protocol7.quincy.connection.NettyPacketSender;
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.server.ConnectionScheduler;
 import com.protocol7.quincy.server.Connections;
 import com.protocol7.quincy.server.PacketRouter;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamListener;
-import com.protocol7.quincy.utils.Bytes;
+import com.protocol7.quincy.termination.StatelessResetToken;
+import com.protocol7.quincy.tls.CertificateChain;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCounted;
 import io.netty.util.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.PromiseNotifier;
 import java.security.PrivateKey;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class QuicServerHandler extends ChannelDuplexHandler {
 
+  private final Logger log = LoggerFactory.getLogger(QuicServerHandler.class);
   private final Timer timer = new HashedWheelTimer();
   private final StreamListener streamListener =
       new StreamListener() {
         @Override
-        public void onData(final Stream stream, final byte[] data, final boolean finished) {
-          System.out.println("onData " + new String(data));
+        public void onData(final Stream stream, final ByteBuf data, final boolean finished) {
+          log.debug(
+              "Received {} bytes on stream {}, finished {}",
+              data.readableBytes(),
+              stream.getId(),
+              finished);
 
           //              ctx.fireChannelRead(
           //                      new QuicPacket(
@@ -34,26 +57,132 @@ public class QuicServerHandler extends ChannelDuplexHandler {
         }
       };
 
-  private final Connections connections;
-  private final PacketRouter router;
+  private final Configuration configuration;
+  private final CertificateChain certificates;
+  private final PrivateKey privateKey;
+  private final Executor handshakeExecutor;
+  private final Optional<EventExecutorGroup> workers;
+
+  // connections are sharded across the workers by the hash of their connection ID. Each shard
+  // owns its connections, which are confined to the shard executor
+  private Shard[] shards;
 
   public QuicServerHandler(
       final Configuration configuration,
-      final List<byte[]> certificates,
-      final PrivateKey privateKey) {
-    this.connections = new Connections(configuration, certificates, privateKey, timer);
-    this.router = new PacketRouter(configuration.getVersion(), connections, streamListener);
+      final CertificateChain certificates,
+      final PrivateKey privateKey,
+      final Executor handshakeExecutor,
+      final Optional<EventExecutorGroup> workers) {
+    this.configuration = configuration;
+    this.certificates = certificates;
+    this.privateKey = privateKey;
+    this.handshakeExecutor = handshakeExecutor;
+    this.workers = requireNonNull(workers);
+  }
+
+  private static class Shard {
+    private final EventExecutor executor;
+    private final Connections connections;
+    private final PacketRouter router;
+    private final ConnectionScheduler scheduler;
+
+    private Shard(
+        final EventExecutor executor, final Connections connections, final PacketRouter router) {
+      this.executor = executor;
+      this.connections = connections;
+      this.router = router;
+      this.scheduler =
+          new ConnectionScheduler(
+              executor,
+              ConnectionScheduler.DEFAULT_QUANTUM,
+              ConnectionScheduler.DEFAULT_BUDGET,
+              ConnectionScheduler.DEFAULT_MAX_QUEUED);
+    }
+
+    // work for a connection is handed to the shard executor, and then scheduled fairly between
+    // the connections of the shard. The message is released if the task is rejected or dropped
+    private void schedule(
+        final int connectionIdHash, final Runnable task, final ReferenceCounted msg) {
+      if (executor.inEventLoop()) {
+        scheduler.schedule(connectionIdHash, task, msg);
+      } else {
+        try {
+          executor.execute(() -> scheduler.schedule(connectionIdHash, task, msg));
+        } catch (final RejectedExecutionException e) {
+          msg.release();
+          throw e;
+        }
+      }
+    }
+
+    // writes are never dropped for a connection not keeping up, only failed if rejected
+    private void scheduleWrite(
+        final int connectionIdHash, final Runnable task, final Runnable rejected) {
+      if (executor.inEventLoop()) {
+        scheduler.scheduleUnbounded(connectionIdHash, task, rejected);
+      } else {
+        try {
+          executor.execute(() -> scheduler.scheduleUnbounded(connectionIdHash, task, rejected));
+        } catch (final RejectedExecutionException e) {
+          rejected.run();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void handlerAdded(final ChannelHandlerContext ctx) {
+    // without workers, all connections run on the event loop of the channel
+    final List<EventExecutor> executors = new ArrayList<>();
+    if (workers.isPresent()) {
+      workers.get().forEach(executors::add);
+    } else {
+      executors.add(ctx.executor());
+    }
+
+    shards = new Shard[executors.size()];
+    for (int i = 0; i < shards.length; i++) {
+      final EventExecutor executor = executors.get(i);
+      // handshake results are handed back to the executor of the shard
+      final Connections connections =
+          new Connections(
+              configuration, certificates, privateKey, timer, handshakeExecutor, executor);
+      final PacketRouter router =
+          new PacketRouter(
+              configuration.getVersion(),
+              connections,
+              streamListener,
+              new StatelessResetToken(privateKey));
+      shards[i] = new Shard(executor, connections, router);
+    }
+  }
+
+  private Shard shard(final int connectionIdHash) {
+    return shards[Math.floorMod(connectionIdHash, shards.length)];
   }
 
   @Override
   public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
     if (msg instanceof DatagramPacket) {
       final DatagramPacket datagram = (DatagramPacket) msg;
-      router.route(
-          datagram.content(),
-          new NettyPacketSender(ctx.channel(), datagram.sender()),
-          datagram.sender());
+      // all packets in a datagram belong to the same connection
+      final int connectionIdHash =
+          Packet.destinationConnectionIdHash(datagram.content(), ConnectionId.LENGTH);
+      final Shard shard = shard(connectionIdHash);
+      // outbound packets from all shards go through the shared channel
+      final NettyPacketSender sender = new NettyPacketSender(ctx.channel(), datagram.sender());
 
+      shard.schedule(
+          connectionIdHash,
+          () -> {
+            try {
+              shard.router.route(datagram.content(), sender, datagram.sender());
+            } finally {
+              // frames hold their own references to the data they need
+              datagram.release();
+            }
+          },
+          datagram);
     } else {
       ctx.fireChannelRead(msg);
     }
@@ -64,13 +193,42 @@ public class QuicServerHandler extends ChannelDuplexHandler {
       final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
     if (msg instanceof QuicPacket) {
       final QuicPacket qp = (QuicPacket) msg;
-      final byte[] data = Bytes.drainToArray(qp.content());
+      final int connectionIdHash = qp.getLocalConnectionId().hashCode();
+      final Shard shard = shard(connectionIdHash);
 
-      final Optional<Connection> connection = connections.get(qp.getLocalConnectionId());
+      shard.scheduleWrite(
+          connectionIdHash,
+          () -> {
+            final Optional<Connection> connection =
+                shard.connections.get(qp.getLocalConnectionId());
 
-      if (connection.isPresent()) {
-        connection.get().openStream().write(data, true);
-      }
+            if (connection.isPresent()) {
+              connection
+                  .get()
+                  .openStream()
+                  .addListener(
+                      (FutureListener<Stream>)
+                          opened -> {
+                            if (opened.isSuccess()) {
+                              // the stream takes ownership of the data
+                              opened
+                                  .getNow()
+                                  .write(qp.content(), true)
+                                  .addListener(new PromiseNotifier<Void, Future<Void>>(promise));
+                            } else {
+                              qp.release();
+                              promise.setFailure(opened.cause());
+                            }
+                          });
+            } else {
+              qp.release();
+              promise.setFailure(new IllegalStateException("Unknown connection"));
+            }
+          },
+          () -> {
+            qp.release();
+            promise.setFailure(new RejectedExecutionException("Connection executor shut down"));
+          });
     } else {
       ctx.write(msg, promise);
     }
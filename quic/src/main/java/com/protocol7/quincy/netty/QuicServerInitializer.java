@@ -1,35 +1,45 @@
 package com.protocol7.quincy.netty;
 
 import com.protocol7.quincy.Configuration;
+import com.protocol7.quincy.tls.CertificateChain;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.DatagramChannel;
+import io.netty.util.concurrent.EventExecutorGroup;
 import java.security.PrivateKey;
-import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 
 public class QuicServerInitializer extends ChannelInitializer<DatagramChannel> {
 
   private final Configuration configuration;
   private final ChannelHandler handler;
-  private final List<byte[]> certificates;
+  private final CertificateChain certificates;
   private final PrivateKey privateKey;
+  private final Executor handshakeExecutor;
+  private final Optional<EventExecutorGroup> workers;
 
   public QuicServerInitializer(
       final Configuration configuration,
       final ChannelHandler handler,
-      final List<byte[]> certificates,
-      final PrivateKey privateKey) {
+      final CertificateChain certificates,
+      final PrivateKey privateKey,
+      final Executor handshakeExecutor,
+      final Optional<EventExecutorGroup> workers) {
     this.configuration = configuration;
     this.handler = handler;
     this.certificates = certificates;
     this.privateKey = privateKey;
+    this.handshakeExecutor = handshakeExecutor;
+    this.workers = workers;
   }
 
   @Override
   protected void initChannel(final DatagramChannel ch) {
     final ChannelPipeline pipeline = ch.pipeline();
-    pipeline.addLast(new QuicServerHandler(configuration, certificates, privateKey));
+    pipeline.addLast(
+        new QuicServerHandler(configuration, certificates, privateKey, handshakeExecutor, workers));
     pipeline.addLast(handler);
   }
 }
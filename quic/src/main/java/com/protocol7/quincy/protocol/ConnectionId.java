@@ -43,7 +43,7 @@ public class ConnectionId {
     return Pair.of(readOptional(dcil, bb), readOptional(scil, bb));
   }
 
-  private static int firstLength(final int cil) {
+  public static int firstLength(final int cil) {
     final int l = ((cil & 0b11110000) >> 4);
     if (l > 0) {
       return l + 3;
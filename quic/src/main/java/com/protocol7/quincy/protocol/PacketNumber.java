@@ -1,17 +1,17 @@
 package com.protocol7.quincy.protocol;
 
 import com.google.common.base.Preconditions;
-import com.google.common.primitives.Ints;
 import com.protocol7.quincy.Varint;
-import com.protocol7.quincy.utils.Bytes;
+import io.netty.buffer.ByteBuf;
 
 public class PacketNumber {
 
-  public static long parse(final byte[] b) {
-    final byte[] pad = new byte[4 - b.length];
-    final byte[] bs = Bytes.concat(pad, b);
-
-    return Ints.fromByteArray(bs);
+  public static long read(final ByteBuf bb, final int length) {
+    long pn = 0;
+    for (int i = 0; i < length; i++) {
+      pn = (pn << 8) | bb.readUnsignedByte();
+    }
+    return pn;
   }
 
   public static final long MIN = 0;
@@ -26,8 +26,42 @@ public class PacketNumber {
     return number + 1;
   }
 
-  public static int getLength(final long number) {
-    return 4; // TODO
+  // no packet number acknowledged or received
+  public static final long NONE = -1;
+
+  public static final int MAX_LENGTH = 4;
+
+  // the shortest length covering twice the range of unacknowledged packet numbers, so that the
+  // peer can decode it relative to the largest packet number it has received
+  public static int getLength(final long number, final long largestAcked) {
+    final long range = 2 * (number - largestAcked);
+    if (range < 1L << 8) {
+      return 1;
+    } else if (range < 1L << 16) {
+      return 2;
+    } else if (range < 1L << 24) {
+      return 3;
+    } else {
+      return MAX_LENGTH;
+    }
+  }
+
+  // reconstructs the full packet number from a truncated one, as the number closest to the next
+  // expected packet number
+  public static long decode(final long truncated, final int length, final long largestReceived) {
+    final long expected = largestReceived + 1;
+    final long window = 1L << (length * 8);
+    final long halfWindow = window / 2;
+    final long mask = window - 1;
+
+    final long candidate = (expected & ~mask) | truncated;
+    if (candidate <= expected - halfWindow && candidate < (1L << 62) - window) {
+      return candidate + window;
+    } else if (candidate > expected + halfWindow && candidate >= window) {
+      return candidate - window;
+    } else {
+      return candidate;
+    }
   }
 
   public static byte[] write(final long number, final int length) {
@@ -38,5 +72,11 @@ public class PacketNumber {
     return b;
   }
 
+  public static void write(final long number, final int length, final ByteBuf bb) {
+    for (int j = length; j > 0; j--) {
+      bb.writeByte((int) ((number >> (8 * (j - 1))) & 0xFF));
+    }
+  }
+
   private PacketNumber() {}
 }
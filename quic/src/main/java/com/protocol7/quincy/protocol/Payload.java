@@ -4,45 +4,89 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.tls.aead.AEAD;
-import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class Payload {
 
+  // the payload is decrypted in place, with the AAD being the header between aadOffset and the
+  // reader index
   public static Payload parse(
-      final ByteBuf bb, final int length, final AEAD aead, final long pn, final byte[] aad) {
-    final byte[] cipherText = new byte[length];
-    bb.readBytes(cipherText);
+      final ByteBuf bb, final int length, final AEAD aead, final long pn, final int aadOffset) {
+    final int offset = bb.readerIndex();
 
-    final byte[] raw;
+    final int rawLength;
     try {
-      raw = aead.open(cipherText, pn, aad);
+      rawLength = aead.open(bb, aadOffset, offset, length, pn);
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
+    bb.skipBytes(length);
 
+    // frames are decoded in a single pass, recording which frame types are present so that
+    // handlers can skip packets without frames they care about
     final List<Frame> frames = new ArrayList<>();
-    final ByteBuf frameBuf = Unpooled.wrappedBuffer(raw);
+    final ByteBuf frameBuf = bb.slice(offset, rawLength);
+    int types = 0;
 
     while (frameBuf.isReadable()) {
       final Frame frame = Frame.parse(frameBuf);
       frames.add(frame);
+      types |= bit(frame.getType());
     }
-    return new Payload(frames);
+    checkArgument(!frames.isEmpty());
+
+    return new Payload(Collections.unmodifiableList(frames), types);
+  }
+
+  private static int bit(final FrameType type) {
+    return 1 << type.ordinal();
+  }
+
+  // the header protection sample is taken 4 bytes after the start of the packet number, the
+  // packet number and the frames must together be at least that long
+  public static int minLength(final int packetNumberLength) {
+    return Math.max(0, 4 - packetNumberLength);
   }
 
   private final List<Frame> frames;
+  private final int types;
 
   public Payload(final List<Frame> frames) {
     requireNonNull(frames);
     checkArgument(!frames.isEmpty());
 
     this.frames = List.copyOf(frames);
+
+    int types = 0;
+    for (final Frame frame : this.frames) {
+      types |= bit(frame.getType());
+    }
+    this.types = types;
+  }
+
+  // takes over the list without copying it, the list must not be modified afterwards
+  public static Payload wrap(final List<Frame> frames) {
+    requireNonNull(frames);
+    checkArgument(!frames.isEmpty());
+
+    int types = 0;
+    for (final Frame frame : frames) {
+      types |= bit(frame.getType());
+    }
+    return new Payload(Collections.unmodifiableList(frames), types);
+  }
+
+  private Payload(final List<Frame> frames, final int types) {
+    this.frames = frames;
+    this.types = types;
   }
 
   public Payload(final Frame... frames) {
@@ -53,26 +97,59 @@ public class Payload {
     return frames;
   }
 
+  // releases the data of frames parsed from a packet
+  public void release() {
+    for (final Frame frame : frames) {
+      ReferenceCountUtil.release(frame);
+    }
+  }
+
+  public boolean contains(final FrameType type) {
+    return (types & bit(type)) != 0;
+  }
+
+  // whether all frames are of the type
+  public boolean containsOnly(final FrameType type) {
+    return types == bit(type);
+  }
+
   public Payload addFrame(final Frame frame) {
-    final List<Frame> newFrames = new ArrayList<>(frames);
-    newFrames.add(frame);
-    return new Payload(newFrames);
+    requireNonNull(frame);
+
+    // copy the frames once, the existing types are kept
+    final Frame[] newFrames = frames.toArray(new Frame[frames.size() + 1]);
+    newFrames[frames.size()] = frame;
+    return new Payload(
+        Collections.unmodifiableList(Arrays.asList(newFrames)), types | bit(frame.getType()));
   }
 
   public int calculateLength() {
     return frames.stream().mapToInt(f -> f.calculateLength()).sum() + AEAD.OVERHEAD;
   }
 
-  public void write(final ByteBuf bb, final AEAD aead, final long pn, final byte[] aad) {
-    final ByteBuf raw = Unpooled.buffer();
+  // the frames are written and encrypted in place, with the AAD being the header between
+  // aadOffset and the writer index
+  public void write(final ByteBuf bb, final AEAD aead, final long pn, final int aadOffset) {
+    write(bb, aead, pn, aadOffset, 0);
+  }
+
+  // the frames are padded with PADDING frames up to the minimum length
+  public void write(
+      final ByteBuf bb, final AEAD aead, final long pn, final int aadOffset, final int minLength) {
+    final int offset = bb.writerIndex();
     for (final Frame frame : frames) {
-      frame.write(raw);
+      frame.write(bb);
+    }
+    final int padding = minLength - (bb.writerIndex() - offset);
+    if (padding > 0) {
+      bb.writeZero(padding);
     }
-    final byte[] b = Bytes.drainToArray(raw);
+    final int rawLength = bb.writerIndex() - offset;
 
+    bb.ensureWritable(AEAD.OVERHEAD);
     try {
-      final byte[] sealed = aead.seal(b, pn, aad);
-      bb.writeBytes(sealed);
+      final int sealedLength = aead.seal(bb, aadOffset, offset, rawLength, pn);
+      bb.writerIndex(offset + sealedLength);
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
@@ -1,10 +1,14 @@
 package com.protocol7.quincy.protocol.frames;
 
 import com.protocol7.quincy.Varint;
-import com.protocol7.quincy.utils.Hex;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
 
-public class CryptoFrame extends Frame {
+// the data of parsed frames is a retained slice of the decrypted packet, and must be released once
+// processed
+public class CryptoFrame extends Frame implements ReferenceCounted {
 
   public static CryptoFrame parse(final ByteBuf bb) {
     final byte type = bb.readByte();
@@ -14,15 +18,18 @@ public class CryptoFrame extends Frame {
 
     final long offset = Varint.readAsLong(bb);
     final int length = Varint.readAsInt(bb);
-    final byte[] cryptoData = new byte[length];
-    bb.readBytes(cryptoData);
+    final ByteBuf cryptoData = bb.readRetainedSlice(length);
     return new CryptoFrame(offset, cryptoData);
   }
 
   private final long offset;
-  private final byte[] cryptoData;
+  private final ByteBuf cryptoData;
 
   public CryptoFrame(final long offset, final byte[] cryptoData) {
+    this(offset, Unpooled.wrappedBuffer(cryptoData));
+  }
+
+  public CryptoFrame(final long offset, final ByteBuf cryptoData) {
     super(FrameType.CRYPTO);
     this.offset = offset;
     this.cryptoData = cryptoData;
@@ -32,20 +39,65 @@ public class CryptoFrame extends Frame {
     return offset;
   }
 
+  // a copy of the data, as handed to the TLS session
   public byte[] getCryptoData() {
-    return cryptoData;
+    return ByteBufUtil.getBytes(cryptoData);
+  }
+
+  @Override
+  public int refCnt() {
+    return cryptoData.refCnt();
+  }
+
+  @Override
+  public CryptoFrame retain() {
+    cryptoData.retain();
+    return this;
+  }
+
+  @Override
+  public CryptoFrame retain(final int increment) {
+    cryptoData.retain(increment);
+    return this;
+  }
+
+  @Override
+  public CryptoFrame touch() {
+    cryptoData.touch();
+    return this;
+  }
+
+  @Override
+  public CryptoFrame touch(final Object hint) {
+    cryptoData.touch(hint);
+    return this;
+  }
+
+  @Override
+  public boolean release() {
+    return cryptoData.release();
+  }
+
+  @Override
+  public boolean release(final int decrement) {
+    return cryptoData.release(decrement);
   }
 
   @Override
   public void write(final ByteBuf bb) {
     bb.writeByte(getType().getType());
     Varint.write(offset, bb);
-    Varint.write(cryptoData.length, bb);
-    bb.writeBytes(cryptoData);
+    Varint.write(cryptoData.readableBytes(), bb);
+    bb.writeBytes(cryptoData, cryptoData.readerIndex(), cryptoData.readableBytes());
   }
 
   @Override
   public String toString() {
-    return "CryptoFrame{" + "offset=" + offset + ", cryptoData=" + Hex.hex(cryptoData) + '}';
+    return "CryptoFrame{"
+        + "offset="
+        + offset
+        + ", cryptoData="
+        + ByteBufUtil.hexDump(cryptoData)
+        + '}';
   }
 }
@@ -3,48 +3,44 @@ package com.protocol7.quincy.protocol.frames;
 import com.protocol7.quincy.Writeable;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
 
 public abstract class Frame implements Writeable {
 
+  // parsers by frame type, frame types without a parser are not supported
+  private static final Map<FrameType, Function<ByteBuf, Frame>> PARSERS =
+      new EnumMap<>(FrameType.class);
+
+  static {
+    PARSERS.put(FrameType.PADDING, PaddingFrame::parse);
+    PARSERS.put(FrameType.PING, PingFrame::parse);
+    PARSERS.put(FrameType.ACK, AckFrame::parse);
+    PARSERS.put(FrameType.RESET_STREAM, ResetStreamFrame::parse);
+    PARSERS.put(FrameType.CRYPTO, CryptoFrame::parse);
+    PARSERS.put(FrameType.NEW_TOKEN, NewToken::parse);
+    PARSERS.put(FrameType.STREAM, StreamFrame::parse);
+    PARSERS.put(FrameType.MAX_DATA, MaxDataFrame::parse);
+    PARSERS.put(FrameType.MAX_STREAM_DATA, MaxStreamDataFrame::parse);
+    PARSERS.put(FrameType.MAX_STREAMS, MaxStreamsFrame::parse);
+    PARSERS.put(FrameType.DATA_BLOCKED, DataBlockedFrame::parse);
+    PARSERS.put(FrameType.STREAM_DATA_BLOCKED, StreamDataBlockedFrame::parse);
+    PARSERS.put(FrameType.STREAMS_BLOCKED, StreamsBlockedFrame::parse);
+    PARSERS.put(FrameType.RETIRE_CONNECTION_ID, RetireConnectionIdFrame::parse);
+    PARSERS.put(FrameType.CONNECTION_CLOSE, ConnectionCloseFrame::parse);
+    PARSERS.put(FrameType.APPLICATION_CLOSE, ApplicationCloseFrame::parse);
+  }
+
   public static Frame parse(final ByteBuf bb) {
     final byte typeByte = bb.getByte(bb.readerIndex());
     final FrameType type = FrameType.fromByte(typeByte);
 
-    if (type == FrameType.STREAM) {
-      return StreamFrame.parse(bb);
-    } else if (type == FrameType.PADDING) {
-      return PaddingFrame.parse(bb);
-    } else if (type == FrameType.CRYPTO) {
-      return CryptoFrame.parse(bb);
-    } else if (type == FrameType.ACK) {
-      return AckFrame.parse(bb);
-    } else if (type == FrameType.PING) {
-      return PingFrame.parse(bb);
-    } else if (type == FrameType.RETIRE_CONNECTION_ID) {
-      return RetireConnectionIdFrame.parse(bb);
-    } else if (type == FrameType.RESET_STREAM) {
-      return ResetStreamFrame.parse(bb);
-    } else if (type == FrameType.CONNECTION_CLOSE) {
-      return ConnectionCloseFrame.parse(bb);
-    } else if (type == FrameType.APPLICATION_CLOSE) {
-      return ApplicationCloseFrame.parse(bb);
-    } else if (type == FrameType.MAX_STREAM_DATA) {
-      return MaxStreamDataFrame.parse(bb);
-    } else if (type == FrameType.MAX_DATA) {
-      return MaxDataFrame.parse(bb);
-    } else if (type == FrameType.MAX_STREAMS) {
-      return MaxStreamsFrame.parse(bb);
-    } else if (type == FrameType.STREAM_DATA_BLOCKED) {
-      return StreamDataBlockedFrame.parse(bb);
-    } else if (type == FrameType.DATA_BLOCKED) {
-      return DataBlockedFrame.parse(bb);
-    } else if (type == FrameType.STREAMS_BLOCKED) {
-      return StreamsBlockedFrame.parse(bb);
-    } else if (type == FrameType.NEW_TOKEN) {
-      return NewToken.parse(bb);
-    } else {
+    final Function<ByteBuf, Frame> parser = PARSERS.get(type);
+    if (parser == null) {
       throw new RuntimeException("Unknown frame type " + type);
     }
+    return parser.apply(bb);
   }
 
   private final FrameType type;
@@ -25,47 +25,24 @@ public enum FrameType {
   CONNECTION_CLOSE(0x1c),
   APPLICATION_CLOSE(0x1d);
 
+  // frame types indexed by their type byte, including the variants with flag bits set
+  private static final FrameType[] BY_TYPE = new FrameType[APPLICATION_CLOSE.type + 1];
+
+  static {
+    for (final FrameType type : values()) {
+      BY_TYPE[type.type] = type;
+    }
+    BY_TYPE[0x03] = ACK;
+    for (int b = 0x09; b <= 0x0f; b++) {
+      BY_TYPE[b] = STREAM;
+    }
+    BY_TYPE[0x13] = MAX_STREAMS;
+    BY_TYPE[0x17] = STREAMS_BLOCKED;
+  }
+
   public static FrameType fromByte(final byte b) {
-    if (b == PADDING.type) {
-      return PADDING;
-    } else if (b == RESET_STREAM.type) {
-      return RESET_STREAM;
-    } else if (b == 0x1c) {
-      return CONNECTION_CLOSE;
-    } else if (b == 0x1d) {
-      return APPLICATION_CLOSE;
-    } else if (b == MAX_DATA.type) {
-      return MAX_DATA;
-    } else if (b == MAX_STREAM_DATA.type) {
-      return MAX_STREAM_DATA;
-    } else if (b == 0x12 || b == 0x13) {
-      return MAX_STREAMS;
-    } else if (b == PING.type) {
-      return PING;
-    } else if (b == DATA_BLOCKED.type) {
-      return DATA_BLOCKED;
-    } else if (b == RETIRE_CONNECTION_ID.type) {
-      return RETIRE_CONNECTION_ID;
-    } else if (b == STREAM_DATA_BLOCKED.type) {
-      return STREAM_DATA_BLOCKED;
-    } else if (b == 0x16 || b == 0x17) {
-      return STREAMS_BLOCKED;
-    } else if (b == NEW_CONNECTION_ID.type) {
-      return NEW_CONNECTION_ID;
-    } else if (b == STOP_SENDING.type) {
-      return STOP_SENDING;
-    } else if (b == 0x02 || b == 0x03) {
-      return ACK;
-    } else if (b == PATH_CHALLENGE.type) {
-      return PATH_CHALLENGE;
-    } else if (b == PATH_RESPONSE.type) {
-      return PATH_RESPONSE;
-    } else if (b == NEW_TOKEN.type) {
-      return NEW_TOKEN;
-    } else if (b >= 0x08 && b <= 0x0f) {
-      return STREAM;
-    } else if (b == CRYPTO.type) {
-      return CRYPTO;
+    if (b >= 0 && b < BY_TYPE.length) {
+      return BY_TYPE[b];
     } else {
       throw new RuntimeException("Unknown frame type " + Hex.hex(b));
     }
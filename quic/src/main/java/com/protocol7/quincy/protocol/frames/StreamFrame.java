@@ -3,9 +3,13 @@ package com.protocol7.quincy.protocol.frames;
 import com.protocol7.quincy.Varint;
 import com.protocol7.quincy.protocol.StreamId;
 import io.netty.buffer.ByteBuf;
-import java.util.Arrays;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
 
-public class StreamFrame extends Frame {
+// the data of parsed frames is a retained slice of the decrypted packet, and must be released once
+// processed
+public class StreamFrame extends Frame implements ReferenceCounted {
 
   public static StreamFrame parse(final ByteBuf bb) {
     final byte firstByte = bb.readByte();
@@ -29,8 +33,7 @@ public class StreamFrame extends Frame {
       length = bb.readableBytes();
     }
 
-    final byte[] data = new byte[length];
-    bb.readBytes(data);
+    final ByteBuf data = bb.readRetainedSlice(length);
 
     return new StreamFrame(streamId, offset, fin, data);
   }
@@ -38,9 +41,14 @@ public class StreamFrame extends Frame {
   private final long streamId;
   private final long offset;
   private final boolean fin;
-  private final byte[] data;
+  private final ByteBuf data;
 
   public StreamFrame(final long streamId, final long offset, final boolean fin, final byte[] data) {
+    this(streamId, offset, fin, Unpooled.wrappedBuffer(data));
+  }
+
+  public StreamFrame(
+      final long streamId, final long offset, final boolean fin, final ByteBuf data) {
     super(FrameType.STREAM);
     this.streamId = StreamId.validate(streamId);
     this.offset = offset;
@@ -60,10 +68,53 @@ public class StreamFrame extends Frame {
     return fin;
   }
 
-  public byte[] getData() {
+  public ByteBuf getData() {
     return data;
   }
 
+  public int getLength() {
+    return data.readableBytes();
+  }
+
+  @Override
+  public int refCnt() {
+    return data.refCnt();
+  }
+
+  @Override
+  public StreamFrame retain() {
+    data.retain();
+    return this;
+  }
+
+  @Override
+  public StreamFrame retain(final int increment) {
+    data.retain(increment);
+    return this;
+  }
+
+  @Override
+  public StreamFrame touch() {
+    data.touch();
+    return this;
+  }
+
+  @Override
+  public StreamFrame touch(final Object hint) {
+    data.touch(hint);
+    return this;
+  }
+
+  @Override
+  public boolean release() {
+    return data.release();
+  }
+
+  @Override
+  public boolean release(final int decrement) {
+    return data.release(decrement);
+  }
+
   @Override
   public void write(final ByteBuf bb) {
     byte type = getType().getType();
@@ -82,9 +133,9 @@ public class StreamFrame extends Frame {
       Varint.write(offset, bb);
     }
 
-    Varint.write(data.length, bb);
+    Varint.write(data.readableBytes(), bb);
 
-    bb.writeBytes(data);
+    bb.writeBytes(data, data.readerIndex(), data.readableBytes());
   }
 
   @Override
@@ -97,7 +148,7 @@ public class StreamFrame extends Frame {
     if (offset != that.offset) return false;
     if (fin != that.fin) return false;
     if (streamId != that.streamId) return false;
-    return Arrays.equals(data, that.data);
+    return data.equals(that.data);
   }
 
   @Override
@@ -105,7 +156,7 @@ public class StreamFrame extends Frame {
     int result = Long.hashCode(streamId);
     result = 31 * result + (int) (offset ^ (offset >>> 32));
     result = 31 * result + (fin ? 1 : 0);
-    result = 31 * result + Arrays.hashCode(data);
+    result = 31 * result + data.hashCode();
     return result;
   }
 
@@ -119,7 +170,7 @@ public class StreamFrame extends Frame {
         + ", fin="
         + fin
         + ", data="
-        + Arrays.toString(data)
+        + ByteBufUtil.hexDump(data)
         + '}';
   }
 }
@@ -11,5 +11,13 @@ public interface FullPacket extends Packet {
 
   long getPacketNumber();
 
+  // the number of bytes the packet number is encoded with
+  int getPacketNumberLength();
+
+  FullPacket withPacketNumberLength(int packetNumberLength);
+
+  // adds the frame and changes the packet number length, rebuilding the packet once
+  FullPacket addFrame(Frame frame, int packetNumberLength);
+
   Payload getPayload();
 }
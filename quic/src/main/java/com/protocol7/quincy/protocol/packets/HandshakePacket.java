@@ -6,7 +6,6 @@ import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.AEADProvider;
-import com.protocol7.quincy.utils.Bytes;
 import com.protocol7.quincy.utils.Pair;
 import io.netty.buffer.ByteBuf;
 import java.security.GeneralSecurityException;
@@ -32,7 +31,8 @@ public class HandshakePacket extends LongHeaderPacket {
       final Version version,
       final List<Frame> frames) {
     final Payload payload = new Payload(frames);
-    return new HandshakePacket(destConnectionId, srcConnectionId, version, packetNumber, payload);
+    return new HandshakePacket(
+        destConnectionId, srcConnectionId, version, packetNumber, payload, PacketNumber.MAX_LENGTH);
   }
 
   public static HalfParsedPacket<HandshakePacket> parse(final ByteBuf bb) {
@@ -67,50 +67,24 @@ public class HandshakePacket extends LongHeaderPacket {
       }
 
       @Override
-      public HandshakePacket complete(final AEADProvider aeadProvider) {
+      public HandshakePacket complete(final AEADProvider aeadProvider, final long largestReceived) {
         final int length = Varint.readAsInt(bb);
 
         final AEAD aead = aeadProvider.get(EncryptionLevel.Handshake);
 
         final int pnOffset = bb.readerIndex();
-        final int sampleOffset = pnOffset + 4;
-
-        final byte[] sample = new byte[aead.getSampleLength()];
-
-        bb.getBytes(sampleOffset, sample);
 
-        // get 4 bytes for PN. Might be too long, but we'll handle that below
-        final byte[] pn = new byte[4];
-        bb.getBytes(pnOffset, pn);
-
-        // decrypt the protected header parts
         try {
-          final byte[] decryptedHeader =
-              aead.decryptHeader(sample, Bytes.concat(new byte[] {firstByte}, pn), false);
-
-          final byte decryptedFirstByte = decryptedHeader[0];
-          final int pnLen = (decryptedFirstByte & 0x3) + 1;
-
-          final byte[] pnBytes = Arrays.copyOfRange(decryptedHeader, 1, 1 + pnLen);
-
-          final long packetNumber = PacketNumber.parse(pnBytes);
-
-          // move reader ahead by what the PN length actually was
-          bb.readerIndex(bb.readerIndex() + pnLen);
+          // remove the header protection in place, the header is then used as the AAD
+          final int pnLen = aead.decryptHeader(bb, bbOffset, pnOffset, false);
+          final long packetNumber =
+              PacketNumber.decode(PacketNumber.read(bb, pnLen), pnLen, largestReceived);
           final int payloadLength = length - pnLen; // subtract parsed pn length
 
-          final byte[] aad = new byte[bb.readerIndex() - bbOffset];
-          bb.getBytes(bbOffset, aad);
-
-          // restore the AAD with the now removed header protected
-          aad[0] = decryptedFirstByte;
-          for (int i = 0; i < pnBytes.length; i++) {
-            aad[pnOffset - bbOffset + i] = pnBytes[i];
-          }
+          final Payload payload = Payload.parse(bb, payloadLength, aead, packetNumber, bbOffset);
 
-          final Payload payload = Payload.parse(bb, payloadLength, aead, packetNumber, aad);
-
-          return new HandshakePacket(destConnId, srcConnId, version, packetNumber, payload);
+          return new HandshakePacket(
+              destConnId, srcConnId, version, packetNumber, payload, PacketNumber.MAX_LENGTH);
         } catch (final GeneralSecurityException e) {
           throw new RuntimeException(e);
         }
@@ -123,24 +97,43 @@ public class HandshakePacket extends LongHeaderPacket {
       final Optional<ConnectionId> sourceConnectionId,
       final Version version,
       final long packetNumber,
-      final Payload payload) {
+      final Payload payload,
+      final int packetNumberLength) {
     super(
         PacketType.Handshake,
         destinationConnectionId,
         sourceConnectionId,
         version,
         packetNumber,
-        validateFrames(payload));
+        validateFrames(payload),
+        packetNumberLength);
   }
 
   @Override
   public HandshakePacket addFrame(final Frame frame) {
+    return addFrame(frame, getPacketNumberLength());
+  }
+
+  @Override
+  public HandshakePacket addFrame(final Frame frame, final int packetNumberLength) {
+    return new HandshakePacket(
+        getDestinationConnectionId(),
+        getSourceConnectionId(),
+        getVersion(),
+        getPacketNumber(),
+        getPayload().addFrame(frame),
+        packetNumberLength);
+  }
+
+  @Override
+  public HandshakePacket withPacketNumberLength(final int packetNumberLength) {
     return new HandshakePacket(
         getDestinationConnectionId(),
         getSourceConnectionId(),
         getVersion(),
         getPacketNumber(),
-        getPayload().addFrame(frame));
+        getPayload(),
+        packetNumberLength);
   }
 
   @Override
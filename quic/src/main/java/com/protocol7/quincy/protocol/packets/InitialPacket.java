@@ -6,12 +6,10 @@ import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.AEADProvider;
-import com.protocol7.quincy.utils.Bytes;
 import com.protocol7.quincy.utils.Opt;
 import com.protocol7.quincy.utils.Pair;
 import io.netty.buffer.ByteBuf;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -37,7 +35,13 @@ public class InitialPacket extends LongHeaderPacket {
       final Optional<byte[]> token,
       final List<Frame> frames) {
     return new InitialPacket(
-        destConnectionId, srcConnectionId, version, packetNumber, new Payload(frames), token);
+        destConnectionId,
+        srcConnectionId,
+        version,
+        packetNumber,
+        new Payload(frames),
+        token,
+        PacketNumber.MAX_LENGTH);
   }
 
   public static HalfParsedPacket<InitialPacket> parse(final ByteBuf bb) {
@@ -75,48 +79,21 @@ public class InitialPacket extends LongHeaderPacket {
       }
 
       @Override
-      public InitialPacket complete(final AEADProvider aeadProvider) {
+      public InitialPacket complete(final AEADProvider aeadProvider, final long largestReceived) {
         final int length = Varint.readAsInt(bb);
 
         final AEAD aead = aeadProvider.get(EncryptionLevel.Initial);
 
         final int pnOffset = bb.readerIndex();
-        final int sampleOffset = pnOffset + 4;
-
-        final byte[] sample = new byte[aead.getSampleLength()];
 
-        bb.getBytes(sampleOffset, sample);
-
-        // get 4 bytes for PN. Might be too long, but we'll handle that below
-        final byte[] pn = new byte[4];
-        bb.getBytes(pnOffset, pn);
-
-        // decrypt the protected header parts
         try {
-          final byte[] decryptedHeader =
-              aead.decryptHeader(sample, Bytes.concat(new byte[] {firstByte}, pn), false);
-
-          final byte decryptedFirstByte = decryptedHeader[0];
-          final int pnLen = (decryptedFirstByte & 0x3) + 1;
-
-          final byte[] pnBytes = Arrays.copyOfRange(decryptedHeader, 1, 1 + pnLen);
-
-          final long packetNumber = PacketNumber.parse(pnBytes);
-
-          // move reader ahead by what the PN length actually was
-          bb.readerIndex(bb.readerIndex() + pnLen);
+          // remove the header protection in place, the header is then used as the AAD
+          final int pnLen = aead.decryptHeader(bb, bbOffset, pnOffset, false);
+          final long packetNumber =
+              PacketNumber.decode(PacketNumber.read(bb, pnLen), pnLen, largestReceived);
           final int payloadLength = length - pnLen; // subtract parsed pn length
 
-          final byte[] aad = new byte[bb.readerIndex() - bbOffset];
-          bb.getBytes(bbOffset, aad);
-
-          // restore the AAD with the now removed header protected
-          aad[0] = decryptedFirstByte;
-          for (int i = 0; i < pnBytes.length; i++) {
-            aad[pnOffset - bbOffset + i] = pnBytes[i];
-          }
-
-          final Payload payload = Payload.parse(bb, payloadLength, aead, packetNumber, aad);
+          final Payload payload = Payload.parse(bb, payloadLength, aead, packetNumber, bbOffset);
 
           return InitialPacket.create(
               destConnId, srcConnId, packetNumber, version, token, payload.getFrames());
@@ -136,26 +113,46 @@ public class InitialPacket extends LongHeaderPacket {
       final Version version,
       final long packetNumber,
       final Payload payload,
-      final Optional<byte[]> token) {
+      final Optional<byte[]> token,
+      final int packetNumberLength) {
     super(
         PacketType.Initial,
         destinationConnectionId,
         sourceConnectionId,
         version,
         packetNumber,
-        validateFrames(payload));
+        validateFrames(payload),
+        packetNumberLength);
     this.token = token;
   }
 
   @Override
   public InitialPacket addFrame(final Frame frame) {
+    return addFrame(frame, getPacketNumberLength());
+  }
+
+  @Override
+  public InitialPacket addFrame(final Frame frame, final int packetNumberLength) {
     return new InitialPacket(
         getDestinationConnectionId(),
         getSourceConnectionId(),
         getVersion(),
         getPacketNumber(),
         getPayload().addFrame(frame),
-        token);
+        token,
+        packetNumberLength);
+  }
+
+  @Override
+  public InitialPacket withPacketNumberLength(final int packetNumberLength) {
+    return new InitialPacket(
+        getDestinationConnectionId(),
+        getSourceConnectionId(),
+        getVersion(),
+        getPacketNumber(),
+        getPayload(),
+        token,
+        packetNumberLength);
   }
 
   @Override
@@ -1,5 +1,7 @@
 package com.protocol7.quincy.protocol.packets;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.protocol7.quincy.Varint;
 import com.protocol7.quincy.protocol.*;
 import com.protocol7.quincy.protocol.frames.AckFrame;
@@ -9,7 +11,6 @@ import com.protocol7.quincy.protocol.frames.CryptoFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.tls.aead.AEAD;
-import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import java.security.GeneralSecurityException;
 import java.util.Objects;
@@ -40,6 +41,7 @@ public abstract class LongHeaderPacket implements FullPacket {
   private final Version version;
   private final long packetNumber;
   private final Payload payload;
+  private final int packetNumberLength;
 
   public LongHeaderPacket(
       final PacketType packetType,
@@ -47,7 +49,11 @@ public abstract class LongHeaderPacket implements FullPacket {
       final Optional<ConnectionId> sourceConnectionId,
       final Version version,
       final long packetNumber,
-      final Payload payload) {
+      final Payload payload,
+      final int packetNumberLength) {
+    checkArgument(packetNumberLength >= 1 && packetNumberLength <= PacketNumber.MAX_LENGTH);
+
+    this.packetNumberLength = packetNumberLength;
     this.packetType = packetType;
     this.destinationConnectionId = destinationConnectionId;
     this.sourceConnectionId = sourceConnectionId;
@@ -85,6 +91,11 @@ public abstract class LongHeaderPacket implements FullPacket {
     return payload;
   }
 
+  @Override
+  public int getPacketNumberLength() {
+    return packetNumberLength;
+  }
+
   protected void writeInternal(
       final ByteBuf bb, final AEAD aead, final Consumer<ByteBuf> tokenWriter) {
     final int bbOffset = bb.writerIndex();
@@ -92,7 +103,7 @@ public abstract class LongHeaderPacket implements FullPacket {
     int b = (PACKET_TYPE_MASK | packetType.getType() << 4) & 0xFF;
     b = b | 0x40; // fixed
 
-    final int pnLen = PacketNumber.getLength(packetNumber);
+    final int pnLen = packetNumberLength;
     b = (byte) (b | (pnLen - 1)); // pn length
     bb.writeByte(b);
 
@@ -102,29 +113,19 @@ public abstract class LongHeaderPacket implements FullPacket {
 
     tokenWriter.accept(bb);
 
-    final byte[] pn = PacketNumber.write(packetNumber, PacketNumber.getLength(packetNumber));
-
-    Varint.write(payload.calculateLength() + pn.length, bb);
+    // short packet numbers are padded for the header protection sample
+    final int minLength = Payload.minLength(pnLen);
+    final int payloadLength =
+        Math.max(payload.calculateLength(), minLength + AEAD.OVERHEAD) + pnLen;
+    Varint.write(payloadLength, bb);
 
     final int pnOffset = bb.writerIndex();
-    final int sampleOffset = pnOffset + 4;
-
-    bb.writeBytes(pn);
-
-    final byte[] aad = new byte[bb.writerIndex() - bbOffset];
-    bb.getBytes(bbOffset, aad);
-
-    payload.write(bb, aead, packetNumber, aad);
+    PacketNumber.write(packetNumber, pnLen, bb);
 
-    final byte[] sample = new byte[aead.getSampleLength()];
-    bb.getBytes(sampleOffset, sample);
+    payload.write(bb, aead, packetNumber, bbOffset, minLength);
 
-    final byte firstBýte = bb.getByte(bbOffset);
-    final byte[] header = Bytes.concat(new byte[] {firstBýte}, pn);
     try {
-      final byte[] encryptedHeader = aead.encryptHeader(sample, header, false);
-      bb.setByte(bbOffset, encryptedHeader[0]);
-      bb.setBytes(pnOffset, encryptedHeader, 1, encryptedHeader.length - 1);
+      aead.encryptHeader(bb, bbOffset, pnOffset, false);
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
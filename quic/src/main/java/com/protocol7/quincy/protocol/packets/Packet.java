@@ -3,6 +3,7 @@ package com.protocol7.quincy.protocol.packets;
 import static com.protocol7.quincy.tls.EncryptionLevel.Handshake;
 import static com.protocol7.quincy.tls.EncryptionLevel.Initial;
 import static com.protocol7.quincy.tls.EncryptionLevel.OneRtt;
+import static com.protocol7.quincy.tls.EncryptionLevel.ZeroRtt;
 
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.Version;
@@ -19,6 +20,40 @@ public interface Packet {
     return (PACKET_TYPE_MASK & b) == PACKET_TYPE_MASK;
   }
 
+  // the hash of the destination connection ID, equal to ConnectionId.hashCode(), read without
+  // parsing the packet or moving the reader index. Used for picking the thread handling the
+  // connection before doing any costly work
+  static int destinationConnectionIdHash(final ByteBuf bb, final int connidLength) {
+    final int start = bb.readerIndex();
+    if (!bb.isReadable()) {
+      return 0;
+    }
+
+    final int offset;
+    final int length;
+    if (isLongHeader(bb.getUnsignedByte(start))) {
+      // first byte, version and the connection ID lengths
+      if (bb.readableBytes() < 6) {
+        return 0;
+      }
+      offset = start + 6;
+      length = ConnectionId.firstLength(bb.getUnsignedByte(start + 5));
+    } else {
+      offset = start + 1;
+      length = connidLength;
+    }
+
+    if (offset + length > bb.writerIndex()) {
+      return 0;
+    }
+
+    int hash = 1;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + bb.getByte(i);
+    }
+    return hash;
+  }
+
   static HalfParsedPacket parse(final ByteBuf bb, final int connidLength) {
     bb.markReaderIndex();
     final int firstByte = bb.readByte() & 0xFF;
@@ -38,6 +73,8 @@ public interface Packet {
         return InitialPacket.parse(bb);
       } else if (packetType == PacketType.Handshake.getType()) {
         return HandshakePacket.parse(bb);
+      } else if (packetType == PacketType.Zero_RTT_Protected.getType()) {
+        return ZeroRttPacket.parse(bb);
       } else if (packetType == PacketType.Retry.getType()) {
         return RetryPacket.parse(bb);
       } else {
@@ -55,6 +92,8 @@ public interface Packet {
         || packet instanceof RetryPacket
         || packet instanceof VersionNegotiationPacket) {
       return Initial;
+    } else if (packet instanceof ZeroRttPacket) {
+      return ZeroRtt;
     } else if (packet instanceof HandshakePacket) {
       return Handshake;
     } else {
@@ -62,6 +101,13 @@ public interface Packet {
     }
   }
 
+  // releases the frame data of a received packet once it has been processed
+  static void release(final Packet packet) {
+    if (packet instanceof FullPacket) {
+      ((FullPacket) packet).getPayload().release();
+    }
+  }
+
   void write(ByteBuf bb, AEAD aead);
 
   Optional<ConnectionId> getSourceConnectionId();
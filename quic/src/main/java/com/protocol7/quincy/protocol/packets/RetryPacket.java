@@ -43,7 +43,7 @@ public class RetryPacket implements Packet {
       }
 
       @Override
-      public RetryPacket complete(final AEADProvider aeadProvider) {
+      public RetryPacket complete(final AEADProvider aeadProvider, final long largestReceived) {
         return new RetryPacket(version, destConnId, srcConnId, orgConnId, retryToken);
       }
     };
@@ -1,14 +1,18 @@
 package com.protocol7.quincy.protocol.packets;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.protocol.*;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.AEADProvider;
-import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public class ShortPacket implements FullPacket {
@@ -28,8 +32,6 @@ public class ShortPacket implements FullPacket {
       throw new IllegalArgumentException("Reserved bit must be 1");
     }
 
-    final boolean keyPhase = (firstByte & 0x4) == 0x4;
-
     final Optional<ConnectionId> connId;
     if (connIdLength > 0) {
       connId = Optional.of(ConnectionId.read(connIdLength, bb));
@@ -49,47 +51,29 @@ public class ShortPacket implements FullPacket {
       }
 
       @Override
-      public ShortPacket complete(final AEADProvider aeadProvider) {
+      public ShortPacket complete(final AEADProvider aeadProvider, final long largestReceived) {
 
         final AEAD aead = aeadProvider.get(EncryptionLevel.OneRtt);
 
         final int pnOffset = bb.readerIndex();
-        final int sampleOffset = pnOffset + 4;
-
-        final byte[] sample = new byte[aead.getSampleLength()];
-        bb.getBytes(sampleOffset, sample);
 
-        // get 4 bytes for PN. Might be too long, but we'll handle that below
-        final byte[] pn = new byte[4];
-        bb.getBytes(pnOffset, pn);
-
-        // decrypt the protected header parts
         try {
-          final byte[] decryptedHeader =
-              aead.decryptHeader(sample, Bytes.concat(new byte[] {firstByte}, pn), true);
-
-          final byte decryptedFirstByte = decryptedHeader[0];
-          final int pnLen = (decryptedFirstByte & 0x3) + 1;
+          // remove the header protection in place, the header is then used as the AAD
+          final int pnLen = aead.decryptHeader(bb, bbOffset, pnOffset, true);
+          final long packetNumber =
+              PacketNumber.decode(PacketNumber.read(bb, pnLen), pnLen, largestReceived);
 
-          final byte[] pnBytes = Arrays.copyOfRange(decryptedHeader, 1, 1 + pnLen);
+          // the key phase bit is header protected
+          final boolean keyPhase = (bb.getByte(bbOffset) & 0x4) == 0x4;
 
-          final long packetNumber = PacketNumber.parse(pnBytes);
+          // the header protection keys are the same for all key phases, but the packet
+          // protection keys depend on the key phase
+          final AEAD phaseAead = aeadProvider.getOneRtt(keyPhase, packetNumber);
 
-          // move reader ahead by what the PN length actually was
-          bb.readerIndex(bb.readerIndex() + pnLen);
+          final Payload payload =
+              Payload.parse(bb, bb.readableBytes(), phaseAead, packetNumber, bbOffset);
 
-          final byte[] aad = new byte[bb.readerIndex() - bbOffset];
-          bb.getBytes(bbOffset, aad);
-
-          // restore the AAD with the now removed header protected
-          aad[0] = decryptedFirstByte;
-          for (int i = 0; i < pnBytes.length; i++) {
-            aad[pnOffset - bbOffset + i] = pnBytes[i];
-          }
-
-          final Payload payload = Payload.parse(bb, bb.readableBytes(), aead, packetNumber, aad);
-
-          return new ShortPacket(keyPhase, connId, packetNumber, payload);
+          return new ShortPacket(keyPhase, connId, packetNumber, payload, pnLen);
         } catch (final GeneralSecurityException e) {
           throw new RuntimeException(e);
         }
@@ -102,19 +86,29 @@ public class ShortPacket implements FullPacket {
       final Optional<ConnectionId> connectionId,
       final long packetNumber,
       final Frame... frames) {
-    return new ShortPacket(keyPhase, connectionId, packetNumber, new Payload(frames));
+    return new ShortPacket(
+        keyPhase, connectionId, packetNumber, new Payload(frames), PacketNumber.MAX_LENGTH);
+  }
+
+  public static Builder builder(final ShortPacket packet) {
+    return new Builder(packet);
   }
 
   private final boolean keyPhase;
   private final Optional<ConnectionId> connectionId;
   private final long packetNumber;
   private final Payload payload;
+  private final int packetNumberLength;
 
   public ShortPacket(
       final boolean keyPhase,
       final Optional<ConnectionId> connectionId,
       final long packetNumber,
-      final Payload payload) {
+      final Payload payload,
+      final int packetNumberLength) {
+    checkArgument(packetNumberLength >= 1 && packetNumberLength <= PacketNumber.MAX_LENGTH);
+
+    this.packetNumberLength = packetNumberLength;
     this.keyPhase = keyPhase;
     this.connectionId = connectionId;
     this.packetNumber = PacketNumber.validate(packetNumber);
@@ -127,8 +121,19 @@ public class ShortPacket implements FullPacket {
   }
 
   @Override
-  public FullPacket addFrame(final Frame frame) {
-    return new ShortPacket(keyPhase, connectionId, packetNumber, payload.addFrame(frame));
+  public ShortPacket addFrame(final Frame frame) {
+    return addFrame(frame, packetNumberLength);
+  }
+
+  @Override
+  public ShortPacket addFrame(final Frame frame, final int packetNumberLength) {
+    return new ShortPacket(
+        keyPhase, connectionId, packetNumber, payload.addFrame(frame), packetNumberLength);
+  }
+
+  @Override
+  public ShortPacket withPacketNumberLength(final int packetNumberLength) {
+    return new ShortPacket(keyPhase, connectionId, packetNumber, payload, packetNumberLength);
   }
 
   @Override
@@ -143,7 +148,7 @@ public class ShortPacket implements FullPacket {
     // TODO spin bit
     // TODO reserved bits
 
-    final int pnLen = PacketNumber.getLength(packetNumber);
+    final int pnLen = packetNumberLength;
 
     b = (byte) (b | (pnLen - 1)); // pn length
 
@@ -152,30 +157,22 @@ public class ShortPacket implements FullPacket {
     connectionId.get().write(bb);
 
     final int pnOffset = bb.writerIndex();
-    final int sampleOffset = pnOffset + 4;
-
-    final byte[] pn = PacketNumber.write(packetNumber, pnLen);
-    bb.writeBytes(pn);
-
-    final byte[] aad = new byte[bb.writerIndex() - bbOffset];
-    bb.getBytes(bbOffset, aad);
-
-    payload.write(bb, aead, packetNumber, aad);
+    PacketNumber.write(packetNumber, pnLen, bb);
 
-    final byte[] sample = new byte[aead.getSampleLength()];
-    bb.getBytes(sampleOffset, sample);
+    // short packet numbers are padded for the header protection sample
+    payload.write(bb, aead, packetNumber, bbOffset, Payload.minLength(pnLen));
 
-    final byte firstBýte = bb.getByte(bbOffset);
-    final byte[] header = Bytes.concat(new byte[] {firstBýte}, pn);
     try {
-      final byte[] encryptedHeader = aead.encryptHeader(sample, header, true);
-      bb.setByte(bbOffset, encryptedHeader[0]);
-      bb.setBytes(pnOffset, encryptedHeader, 1, encryptedHeader.length - 1);
+      aead.encryptHeader(bb, bbOffset, pnOffset, true);
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
   }
 
+  public boolean getKeyPhase() {
+    return keyPhase;
+  }
+
   @Override
   public long getPacketNumber() {
     return packetNumber;
@@ -196,6 +193,28 @@ public class ShortPacket implements FullPacket {
     return payload;
   }
 
+  @Override
+  public int getPacketNumberLength() {
+    return packetNumberLength;
+  }
+
+  // the packet number length is an encoding detail, and not part of the packet identity
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    final ShortPacket that = (ShortPacket) o;
+    return keyPhase == that.keyPhase
+        && packetNumber == that.packetNumber
+        && Objects.equals(connectionId, that.connectionId)
+        && Objects.equals(payload, that.payload);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(keyPhase, connectionId, packetNumber, payload);
+  }
+
   @Override
   public String toString() {
     return "ShortPacket{"
@@ -209,4 +228,42 @@ public class ShortPacket implements FullPacket {
         + payload
         + '}';
   }
+
+  // a mutable packet builder for the 1-RTT send path, letting handlers add frames and change the
+  // encoding without rebuilding the packet for every change. The frame list is handed over to the
+  // payload of the built packet, so the builder must not be used after build()
+  public static class Builder {
+
+    private final boolean keyPhase;
+    private final Optional<ConnectionId> connectionId;
+    private final long packetNumber;
+    private final List<Frame> frames;
+    private int packetNumberLength;
+
+    private Builder(final ShortPacket packet) {
+      this.keyPhase = packet.keyPhase;
+      this.connectionId = packet.connectionId;
+      this.packetNumber = packet.packetNumber;
+      this.packetNumberLength = packet.packetNumberLength;
+      // room for one more frame
+      final List<Frame> frames = packet.payload.getFrames();
+      this.frames = new ArrayList<>(frames.size() + 1);
+      this.frames.addAll(frames);
+    }
+
+    public Builder addFrame(final Frame frame) {
+      frames.add(requireNonNull(frame));
+      return this;
+    }
+
+    public Builder withPacketNumberLength(final int packetNumberLength) {
+      this.packetNumberLength = packetNumberLength;
+      return this;
+    }
+
+    public ShortPacket build() {
+      return new ShortPacket(
+          keyPhase, connectionId, packetNumber, Payload.wrap(frames), packetNumberLength);
+    }
+  }
 }
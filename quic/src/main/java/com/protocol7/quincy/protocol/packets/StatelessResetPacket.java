@@ -0,0 +1,76 @@
+package com.protocol7.quincy.protocol.packets;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import java.util.Optional;
+
+public class StatelessResetPacket implements Packet {
+
+  public static final int TOKEN_LENGTH = 16;
+
+  // one byte header, at least four unpredictable bytes and the token
+  public static final int MIN_LENGTH = 1 + 4 + TOKEN_LENGTH;
+
+  // looks like a short header packet
+  private static final int FIXED = 0b01000000;
+
+  public static boolean isStatelessReset(final ByteBuf bb, final byte[] token) {
+    if (token.length != TOKEN_LENGTH || bb.readableBytes() < MIN_LENGTH) {
+      return false;
+    }
+
+    if (Packet.isLongHeader(bb.getByte(bb.readerIndex()) & 0xFF)) {
+      return false;
+    }
+
+    // compared in place and in constant time, as this is checked for undecryptable datagrams
+    final int offset = bb.writerIndex() - TOKEN_LENGTH;
+    int diff = 0;
+    for (int i = 0; i < TOKEN_LENGTH; i++) {
+      diff |= token[i] ^ bb.getByte(offset + i);
+    }
+    return diff == 0;
+  }
+
+  private final int length;
+  private final byte[] token;
+
+  public StatelessResetPacket(final int length, final byte[] token) {
+    if (length < MIN_LENGTH) {
+      throw new IllegalArgumentException("Length must be at least " + MIN_LENGTH);
+    }
+    if (token.length != TOKEN_LENGTH) {
+      throw new IllegalArgumentException("Token must be " + TOKEN_LENGTH + " bytes");
+    }
+
+    this.length = length;
+    this.token = token;
+  }
+
+  @Override
+  public void write(final ByteBuf bb, final AEAD notUsed) {
+    bb.writeByte((Rnd.rndInt() & 0b00111111) | FIXED);
+    bb.writeBytes(Rnd.rndBytes(length - 1 - TOKEN_LENGTH));
+    bb.writeBytes(token);
+  }
+
+  @Override
+  public Optional<ConnectionId> getSourceConnectionId() {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<ConnectionId> getDestinationConnectionId() {
+    return Optional.empty();
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public byte[] getToken() {
+    return token;
+  }
+}
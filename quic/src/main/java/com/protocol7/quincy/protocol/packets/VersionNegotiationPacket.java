@@ -54,7 +54,8 @@ public class VersionNegotiationPacket implements Packet {
       }
 
       @Override
-      public VersionNegotiationPacket complete(final AEADProvider aeadProvider) {
+      public VersionNegotiationPacket complete(
+          final AEADProvider aeadProvider, final long largestReceived) {
         return new VersionNegotiationPacket(destConnId, srcConnId, supported);
       }
     };
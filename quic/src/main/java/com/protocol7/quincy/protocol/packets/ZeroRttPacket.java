@@ -0,0 +1,177 @@
+package com.protocol7.quincy.protocol.packets;
+
+import com.protocol7.quincy.Varint;
+import com.protocol7.quincy.protocol.*;
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
+import com.protocol7.quincy.utils.Pair;
+import io.netty.buffer.ByteBuf;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// carries early data sent by the client before the handshake is completed
+public class ZeroRttPacket extends LongHeaderPacket {
+
+  public static boolean isZeroRtt(final ByteBuf bb) {
+    final int firstByte = bb.getByte(bb.readerIndex()) & 0xFF;
+    return Packet.isLongHeader(firstByte)
+        && (firstByte & 0x30) >> 4 == PacketType.Zero_RTT_Protected.getType();
+  }
+
+  /** Validate frame types for 0-RTT packets */
+  private static Payload validateEarlyFrames(final Payload payload) {
+    for (final Frame frame : payload.getFrames()) {
+      if (frame instanceof CryptoFrame || frame instanceof AckFrame) {
+        throw new IllegalArgumentException("Illegal frame type for packet type");
+      }
+    }
+    return payload;
+  }
+
+  public static ZeroRttPacket create(
+      final Optional<ConnectionId> destConnectionId,
+      final Optional<ConnectionId> srcConnectionId,
+      final long packetNumber,
+      final Version version,
+      final Frame... frames) {
+    return create(destConnectionId, srcConnectionId, packetNumber, version, Arrays.asList(frames));
+  }
+
+  public static ZeroRttPacket create(
+      final Optional<ConnectionId> destConnectionId,
+      final Optional<ConnectionId> srcConnectionId,
+      final long packetNumber,
+      final Version version,
+      final List<Frame> frames) {
+    final Payload payload = new Payload(frames);
+    return new ZeroRttPacket(
+        destConnectionId, srcConnectionId, version, packetNumber, payload, PacketNumber.MAX_LENGTH);
+  }
+
+  public static HalfParsedPacket<ZeroRttPacket> parse(final ByteBuf bb) {
+    final int bbOffset = bb.readerIndex();
+
+    final byte firstByte = bb.readByte();
+    final byte ptByte = (byte) ((firstByte & 0x30) >> 4);
+    final PacketType packetType = PacketType.fromByte(ptByte);
+    if (packetType != PacketType.Zero_RTT_Protected) {
+      throw new IllegalArgumentException("Invalid packet type");
+    }
+
+    final Version version = Version.read(bb);
+
+    final Pair<Optional<ConnectionId>, Optional<ConnectionId>> cids = ConnectionId.readPair(bb);
+
+    final Optional<ConnectionId> destConnId = cids.getFirst();
+    final Optional<ConnectionId> srcConnId = cids.getSecond();
+
+    return new HalfParsedPacket<>() {
+      @Override
+      public Optional<Version> getVersion() {
+        return Optional.of(version);
+      }
+
+      @Override
+      public Optional<ConnectionId> getConnectionId() {
+        return destConnId;
+      }
+
+      @Override
+      public ZeroRttPacket complete(final AEADProvider aeadProvider, final long largestReceived) {
+        final int length = Varint.readAsInt(bb);
+
+        final AEAD aead = aeadProvider.get(EncryptionLevel.ZeroRtt);
+
+        final int pnOffset = bb.readerIndex();
+
+        try {
+          // remove the header protection in place, the header is then used as the AAD
+          final int pnLen = aead.decryptHeader(bb, bbOffset, pnOffset, false);
+          final long packetNumber =
+              PacketNumber.decode(PacketNumber.read(bb, pnLen), pnLen, largestReceived);
+          final int payloadLength = length - pnLen; // subtract parsed pn length
+
+          final Payload payload = Payload.parse(bb, payloadLength, aead, packetNumber, bbOffset);
+
+          return new ZeroRttPacket(
+              destConnId, srcConnId, version, packetNumber, payload, PacketNumber.MAX_LENGTH);
+        } catch (final GeneralSecurityException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+
+  private ZeroRttPacket(
+      final Optional<ConnectionId> destinationConnectionId,
+      final Optional<ConnectionId> sourceConnectionId,
+      final Version version,
+      final long packetNumber,
+      final Payload payload,
+      final int packetNumberLength) {
+    super(
+        PacketType.Zero_RTT_Protected,
+        destinationConnectionId,
+        sourceConnectionId,
+        version,
+        packetNumber,
+        validateEarlyFrames(payload),
+        packetNumberLength);
+  }
+
+  @Override
+  public ZeroRttPacket addFrame(final Frame frame) {
+    return addFrame(frame, getPacketNumberLength());
+  }
+
+  @Override
+  public ZeroRttPacket addFrame(final Frame frame, final int packetNumberLength) {
+    return new ZeroRttPacket(
+        getDestinationConnectionId(),
+        getSourceConnectionId(),
+        getVersion(),
+        getPacketNumber(),
+        getPayload().addFrame(frame),
+        packetNumberLength);
+  }
+
+  @Override
+  public ZeroRttPacket withPacketNumberLength(final int packetNumberLength) {
+    return new ZeroRttPacket(
+        getDestinationConnectionId(),
+        getSourceConnectionId(),
+        getVersion(),
+        getPacketNumber(),
+        getPayload(),
+        packetNumberLength);
+  }
+
+  @Override
+  public void write(final ByteBuf bb, final AEAD aead) {
+    writeInternal(bb, aead, byteBuf -> {});
+  }
+
+  @Override
+  public String toString() {
+    return "ZeroRttPacket{"
+        + "packetType="
+        + getType()
+        + ", destinationConnectionId="
+        + getDestinationConnectionId()
+        + ", sourceConnectionId="
+        + getSourceConnectionId()
+        + ", version="
+        + getVersion()
+        + ", packetNumber="
+        + getPacketNumber()
+        + ", payload="
+        + getPayload()
+        + '}';
+  }
+}
@@ -7,17 +7,18 @@ import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.utils.Pair;
 import com.protocol7.quincy.utils.Ticker;
-import java.util.Collection;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 public class PacketBuffer {
 
-  private final ConcurrentMap<Long, Pair<List<Frame>, Long>> buffer = new ConcurrentHashMap<>();
+  private final LongObjectMap<Pair<List<Frame>, Long>> buffer = new LongObjectHashMap<>();
   private final Ticker ticker;
 
   public PacketBuffer(final Ticker ticker) {
@@ -29,12 +30,22 @@ public class PacketBuffer {
     buffer.put(packet.getPacketNumber(), of(packet.getPayload().getFrames(), ticker.nanoTime()));
   }
 
+  // buffered frames hold on to stream data, which is released once acknowledged
   public void clear() {
+    for (final LongObjectMap.PrimitiveEntry<Pair<List<Frame>, Long>> entry : buffer.entries()) {
+      entry.value().getFirst().forEach(ReferenceCountUtil::release);
+    }
     buffer.clear();
   }
 
   public boolean remove(final long packetNumber) {
-    return buffer.remove(packetNumber) != null;
+    final Pair<List<Frame>, Long> removed = buffer.remove(packetNumber);
+    if (removed != null) {
+      removed.getFirst().forEach(ReferenceCountUtil::release);
+      return true;
+    } else {
+      return false;
+    }
   }
 
   public boolean contains(final long packetNumber) {
@@ -45,22 +56,21 @@ public class PacketBuffer {
     return buffer.isEmpty();
   }
 
-  public Collection<Frame> drainSince(final long ttl, final TimeUnit unit) {
+  public List<Frame> drainSince(final long ttl, final TimeUnit unit) {
     final long since = ticker.nanoTime() - unit.toNanos(ttl);
 
-    final List<Entry<Long, Pair<List<Frame>, Long>>> toDrain =
-        buffer
-            .entrySet()
-            .stream()
-            .filter(entry -> entry.getValue().getSecond() < since)
-            .collect(Collectors.toUnmodifiableList());
-
-    toDrain.forEach(entry -> remove(entry.getKey()));
-
-    return toDrain
-        .stream()
-        .flatMap(entry -> entry.getValue().getFirst().stream())
-        .collect(Collectors.toUnmodifiableList());
+    // ownership of the drained frames is handed to the caller
+    final List<Frame> drained = new ArrayList<>();
+    final Iterator<LongObjectMap.PrimitiveEntry<Pair<List<Frame>, Long>>> iter =
+        buffer.entries().iterator();
+    while (iter.hasNext()) {
+      final Pair<List<Frame>, Long> entry = iter.next().value();
+      if (entry.getSecond() < since) {
+        drained.addAll(entry.getFirst());
+        iter.remove();
+      }
+    }
+    return Collections.unmodifiableList(drained);
   }
 
   @Override
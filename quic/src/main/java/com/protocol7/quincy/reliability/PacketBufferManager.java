@@ -1,5 +1,6 @@
 package com.protocol7.quincy.reliability;
 
+import static com.protocol7.quincy.protocol.frames.FrameType.ACK;
 import static com.protocol7.quincy.protocol.packets.Packet.getEncryptionLevel;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -10,6 +11,7 @@ import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.OutboundHandler;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.frames.AckBlock;
 import com.protocol7.quincy.protocol.frames.AckFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
@@ -18,6 +20,7 @@ import com.protocol7.quincy.reliability.AckQueue.Entry;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.utils.Pair;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
@@ -26,7 +29,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +43,10 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
   private final PacketBuffer handshakeBuffer;
   private final PacketBuffer buffer;
   private final AckQueue ackQueue = new AckQueue();
-  private final AtomicReference<Long> largestAcked = new AtomicReference<>(0L);
+  private long largestAcked = PacketNumber.NONE;
   private final AckDelay ackDelay;
   private final FrameSender frameSender;
+  private Timeout resendTimeout;
 
   public PacketBufferManager(
       final AckDelay ackDelay,
@@ -62,18 +65,40 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
           @Override
           public void run(final Timeout timeout) {
             resend();
-            timeout.timer().newTimeout(this, RESEND_DELAY, MILLISECONDS);
+            resendTimeout = timeout.timer().newTimeout(this, RESEND_DELAY, MILLISECONDS);
           }
         };
 
-    timer.newTimeout(task, RESEND_DELAY, MILLISECONDS);
-
-    // TODO cancel timeout when connection closes
+    resendTimeout = timer.newTimeout(task, RESEND_DELAY, MILLISECONDS);
   }
 
   public void resend() {
-    final Collection<Frame> toResend = buffer.drainSince(1000, MILLISECONDS);
-    toResend.stream().forEach(frameSender::send);
+    final List<Frame> toResend = buffer.drainSince(1000, MILLISECONDS);
+    for (int i = 0; i < toResend.size(); i++) {
+      try {
+        frameSender.send(toResend.get(i));
+      } catch (final RuntimeException e) {
+        // the frames not sent are still owned here
+        for (int j = i; j < toResend.size(); j++) {
+          ReferenceCountUtil.release(toResend.get(j));
+        }
+        throw e;
+      }
+    }
+  }
+
+  // nothing is retransmitted once the connection is closed, the buffered frames are released
+  public void close() {
+    resendTimeout.cancel();
+
+    initialBuffer.clear();
+    handshakeBuffer.clear();
+    buffer.clear();
+  }
+
+  @Override
+  public boolean acceptsOutbound(final Packet packet) {
+    return packet instanceof FullPacket;
   }
 
   @Override
@@ -82,19 +107,50 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
     requireNonNull(ctx);
 
     if (packet instanceof FullPacket) {
-      FullPacket fp = (FullPacket) packet;
-      buffer(fp);
+      final FullPacket original = (FullPacket) packet;
+      FullPacket fp = original;
+
+      // the packet number is truncated relative to the largest acknowledged by the peer
+      final int pnLength = PacketNumber.getLength(fp.getPacketNumber(), largestAcked);
 
-      final Pair<List<AckBlock>, Long> drained = drainAcks(getEncryptionLevel(fp));
+      // acks can not be sent in 0-RTT packets, leave them for the next 1-RTT packet
+      final Pair<List<AckBlock>, Long> drained;
+      if (fp instanceof ZeroRttPacket) {
+        drained = Pair.of(Collections.emptyList(), 0L);
+      } else {
+        drained = drainAcks(getEncryptionLevel(fp));
+      }
       final List<AckBlock> ackBlocks = drained.getFirst();
+      final AckFrame ackFrame;
       if (!ackBlocks.isEmpty()) {
-        // add to packet
         final long delay = ackDelay.calculate(drained.getSecond(), NANOSECONDS);
-        final AckFrame ackFrame = new AckFrame(delay, ackBlocks);
-        fp = fp.addFrame(ackFrame);
+        ackFrame = new AckFrame(delay, ackBlocks);
+      } else {
+        ackFrame = null;
+      }
+
+      if (fp instanceof ShortPacket) {
+        // 1-RTT packets are rebuilt at most once, through a builder
+        if (ackFrame != null || pnLength != fp.getPacketNumberLength()) {
+          final ShortPacket.Builder builder =
+              ShortPacket.builder((ShortPacket) fp).withPacketNumberLength(pnLength);
+          if (ackFrame != null) {
+            builder.addFrame(ackFrame);
+          }
+          fp = builder.build();
+        }
+      } else if (ackFrame != null) {
+        // rebuilt once, with both the ack and the packet number length
+        fp = fp.addFrame(ackFrame, pnLength);
+      } else if (pnLength != fp.getPacketNumberLength()) {
+        fp = fp.withPacketNumberLength(pnLength);
       }
 
       ctx.next(fp);
+
+      // buffered once the rest of the pipeline accepted the packet. Until then, the sender owns
+      // the frames and releases them if sending fails
+      buffer(original);
     } else {
       ctx.next(packet);
     }
@@ -111,6 +167,11 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
     }
   }
 
+  @Override
+  public boolean acceptsInbound(final Packet packet) {
+    return packet instanceof FullPacket;
+  }
+
   @Override
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     requireNonNull(packet);
@@ -152,7 +213,7 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
   }
 
   private void handleAcks(final Packet packet) {
-    if (packet instanceof FullPacket) {
+    if (packet instanceof FullPacket && ((FullPacket) packet).getPayload().contains(ACK)) {
       final EncryptionLevel level = getEncryptionLevel(packet);
 
       ((FullPacket) packet)
@@ -175,7 +236,7 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
     for (long pn = smallest; pn <= largest; pn++) {
       if (ack(pn, level)) {
         log.debug("Acked packet {} at level {}", pn, level);
-        largestAcked.getAndAccumulate(pn, Math::max);
+        largestAcked = Math.max(largestAcked, pn);
       }
     }
   }
@@ -238,7 +299,7 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
   }
 
   private static boolean acksOnly(final FullPacket packet) {
-    return packet.getPayload().getFrames().stream().allMatch(frame -> frame instanceof AckFrame);
+    return packet.getPayload().containsOnly(ACK);
   }
 
   @VisibleForTesting
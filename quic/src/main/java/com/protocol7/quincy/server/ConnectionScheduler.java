@@ -0,0 +1,163 @@
+package com.protocol7.quincy.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import io.netty.util.ReferenceCounted;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Schedules work for the connections sharing an executor. Work is queued per connection and run
+// round-robin between connections with queued work, at most a quantum per connection per round,
+// so that a busy connection can not starve the others. After running the budget, the executor is
+// yielded to other tasks, e.g. reading more datagrams, before continuing. The received datagrams
+// queued per connection are limited, datagrams beyond it are dropped.
+// Must only be used from the executor.
+public class ConnectionScheduler {
+
+  public static final int DEFAULT_QUANTUM = 4;
+  public static final int DEFAULT_BUDGET = 64;
+  public static final int DEFAULT_MAX_QUEUED = 256;
+
+  private final Logger log = LoggerFactory.getLogger(ConnectionScheduler.class);
+
+  private static class ConnectionQueue {
+    private final int key;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    // run if the queued tasks never run, e.g. releasing the messages they own
+    private final Queue<Runnable> drops = new ArrayDeque<>();
+
+    private ConnectionQueue(final int key) {
+      this.key = key;
+    }
+  }
+
+  private final Executor executor;
+  private final int quantum;
+  private final int budget;
+  private final int maxQueued;
+  private final IntObjectMap<ConnectionQueue> queues = new IntObjectHashMap<>();
+  private final Queue<ConnectionQueue> ready = new ArrayDeque<>();
+  private boolean drainScheduled = false;
+
+  public ConnectionScheduler(
+      final Executor executor, final int quantum, final int budget, final int maxQueued) {
+    checkArgument(quantum > 0);
+    checkArgument(budget >= quantum);
+    checkArgument(maxQueued > 0);
+
+    this.executor = requireNonNull(executor);
+    this.quantum = quantum;
+    this.budget = budget;
+    this.maxQueued = maxQueued;
+  }
+
+  // the key identifies the connection, e.g. the hash of the connection ID. Work for the same key
+  // is run in order. The task owns the received message, which is released if the task is dropped
+  public void schedule(final int key, final Runnable task, final ReferenceCounted msg) {
+    requireNonNull(task);
+    requireNonNull(msg);
+
+    final ConnectionQueue existing = queues.get(key);
+    if (existing != null && existing.tasks.size() >= maxQueued) {
+      // the connection is not keeping up, e.g. flooded by a peer
+      log.debug("Connection queue full, dropping task");
+      msg.release();
+      return;
+    }
+    enqueue(key, task, msg::release);
+  }
+
+  // for work that must not be dropped when the connection is not keeping up, e.g. application
+  // writes. The dropped callback is only run if the executor rejects the work
+  public void scheduleUnbounded(final int key, final Runnable task, final Runnable dropped) {
+    requireNonNull(task);
+    requireNonNull(dropped);
+
+    enqueue(key, task, dropped);
+  }
+
+  private void enqueue(final int key, final Runnable task, final Runnable dropped) {
+    ConnectionQueue queue = queues.get(key);
+    if (queue == null) {
+      queue = new ConnectionQueue(key);
+      queues.put(key, queue);
+      ready.add(queue);
+    }
+    queue.tasks.add(task);
+    queue.drops.add(dropped);
+
+    scheduleDrain();
+  }
+
+  private void scheduleDrain() {
+    if (!drainScheduled) {
+      drainScheduled = true;
+      try {
+        executor.execute(this::drain);
+      } catch (final RejectedExecutionException e) {
+        // the executor is shutting down, the queued work will never run
+        log.debug("Executor rejected drain, dropping queued tasks", e);
+        drainScheduled = false;
+        clear();
+      }
+    }
+  }
+
+  private void clear() {
+    // also the queue being drained, if scheduling from a running task
+    for (final ConnectionQueue queue : queues.values()) {
+      queue.drops.forEach(this::run);
+      queue.drops.clear();
+      queue.tasks.clear();
+    }
+    ready.clear();
+    queues.clear();
+  }
+
+  private void drain() {
+    drainScheduled = false;
+
+    int remaining = budget;
+    while (remaining > 0 && !ready.isEmpty()) {
+      final ConnectionQueue queue = ready.poll();
+
+      final int limit = Math.min(quantum, remaining);
+      for (int i = 0; i < limit && !queue.tasks.isEmpty(); i++) {
+        queue.drops.poll();
+        run(queue.tasks.poll());
+        remaining--;
+      }
+
+      if (queue.tasks.isEmpty()) {
+        queues.remove(queue.key);
+      } else {
+        // back of the line
+        ready.add(queue);
+      }
+    }
+
+    if (!ready.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  // a failing task must not stop the work for other connections
+  private void run(final Runnable task) {
+    try {
+      task.run();
+    } catch (final RuntimeException e) {
+      log.warn("Failed to run connection task", e);
+    }
+  }
+
+  public boolean isIdle() {
+    return ready.isEmpty();
+  }
+}
@@ -6,13 +6,14 @@ import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.flowcontrol.DefaultFlowControlHandler;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.tls.CertificateChain;
 import io.netty.util.Timer;
 import java.net.InetSocketAddress;
 import java.security.PrivateKey;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,20 +22,26 @@ public class Connections {
   private final Logger log = LoggerFactory.getLogger(Connections.class);
 
   private final Configuration configuration;
-  private final List<byte[]> certificates;
+  private final CertificateChain certificates;
   private final PrivateKey privateKey;
   private final Map<ConnectionId, ServerConnection> connections = new ConcurrentHashMap<>();
   private final Timer timer;
+  private final Executor handshakeExecutor;
+  private final Executor connectionExecutor;
 
   public Connections(
       final Configuration configuration,
-      final List<byte[]> certificates,
+      final CertificateChain certificates,
       final PrivateKey privateKey,
-      final Timer timer) {
+      final Timer timer,
+      final Executor handshakeExecutor,
+      final Executor connectionExecutor) {
     this.configuration = configuration;
     this.certificates = certificates;
     this.privateKey = privateKey;
     this.timer = timer;
+    this.handshakeExecutor = handshakeExecutor;
+    this.connectionExecutor = connectionExecutor;
   }
 
   public ServerConnection get(
@@ -59,7 +66,9 @@ public class Connections {
               new DefaultFlowControlHandler(
                   configuration.getInitialMaxData(), configuration.getInitialMaxStreamDataUni()),
               peerAddress,
-              timer);
+              timer,
+              handshakeExecutor,
+              connectionExecutor);
       final ServerConnection existingConn = connections.putIfAbsent(connId, conn);
       if (existingConn != null) {
         conn = existingConn;
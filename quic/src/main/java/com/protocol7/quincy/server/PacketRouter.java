@@ -1,13 +1,18 @@
 package com.protocol7.quincy.server;
 
+import com.protocol7.quincy.Varint;
 import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.HalfParsedPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.protocol.packets.StatelessResetPacket;
 import com.protocol7.quincy.protocol.packets.VersionNegotiationPacket;
+import com.protocol7.quincy.protocol.packets.ZeroRttPacket;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.termination.StatelessResetToken;
+import com.protocol7.quincy.tls.EncryptionLevel;
 import io.netty.buffer.ByteBuf;
 import java.net.InetSocketAddress;
 import java.util.Optional;
@@ -18,12 +23,17 @@ public class PacketRouter {
   private final Version version;
   private final Connections connections;
   private final StreamListener listener;
+  private final StatelessResetToken statelessResetToken;
 
   public PacketRouter(
-      final Version version, final Connections connections, final StreamListener listener) {
+      final Version version,
+      final Connections connections,
+      final StreamListener listener,
+      final StatelessResetToken statelessResetToken) {
     this.version = version;
     this.connections = connections;
     this.listener = listener;
+    this.statelessResetToken = statelessResetToken;
   }
 
   private boolean validateVersion(
@@ -42,12 +52,43 @@ public class PacketRouter {
     return true;
   }
 
+  private boolean isKnownConnection(final HalfParsedPacket<?> halfParsed) {
+    // long header packets can open new connections, short header packets must belong to an
+    // existing one
+    if (halfParsed.getVersion().isPresent()) {
+      return true;
+    }
+
+    final Optional<ConnectionId> connId = halfParsed.getConnectionId();
+    return connId.isPresent() && connections.get(connId.get()).isPresent();
+  }
+
+  private void sendStatelessReset(
+      final Optional<ConnectionId> connId, final int packetLength, final PacketSender sender) {
+    // a reset must be smaller than the packet triggering it, to avoid reset loops between
+    // endpoints
+    if (connId.isPresent() && packetLength > StatelessResetPacket.MIN_LENGTH) {
+      final StatelessResetPacket reset =
+          new StatelessResetPacket(packetLength - 1, statelessResetToken.create(connId.get()));
+      sender.send(reset, null); // TODO remove null
+    }
+  }
+
   public void route(
       final ByteBuf bb, final PacketSender sender, final InetSocketAddress peerAddress) {
 
     while (bb.isReadable()) {
+      final int packetOffset = bb.readerIndex();
+      final int packetLength = bb.readableBytes();
+      final boolean zeroRtt = ZeroRttPacket.isZeroRtt(bb);
       final HalfParsedPacket<?> halfParsed = Packet.parse(bb, ConnectionId.LENGTH);
 
+      if (!isKnownConnection(halfParsed)) {
+        sendStatelessReset(halfParsed.getConnectionId(), packetLength, sender);
+        // skip rest of datagram
+        break;
+      }
+
       final ServerConnection conn =
           connections.get(
               halfParsed.getConnectionId(),
@@ -55,8 +96,22 @@ public class PacketRouter {
               sender,
               peerAddress); // TODO fix for when connId is omitted
 
+      if (zeroRtt && !conn.available(EncryptionLevel.ZeroRtt)) {
+        // early data sent before the client hello was handled, or rejected by the server. Handed
+        // to the connection, which reads it once the handshake has been calculated if early data
+        // is accepted. Skip only this packet, those coalesced after it can still be read
+        final int length = Varint.readAsInt(bb);
+        if (length > bb.readableBytes()) {
+          break;
+        }
+        bb.skipBytes(length);
+        conn.bufferZeroRtt(bb.retainedSlice(packetOffset, bb.readerIndex() - packetOffset));
+        continue;
+      }
+
       if (validateVersion(halfParsed, sender, conn.getLocalConnectionId())) {
-        final Packet packet = halfParsed.complete(conn::getAEAD);
+        final Packet packet =
+            halfParsed.complete(conn.getAEADProvider(), conn.getLargestReceivedPacketNumber());
 
         MDC.put("actor", "server");
         if (packet instanceof FullPacket) {
@@ -66,7 +121,11 @@ public class PacketRouter {
           MDC.put("connectionid", packet.getDestinationConnectionId().get().toString());
         }
 
-        conn.onPacket(packet);
+        try {
+          conn.onPacket(packet);
+        } finally {
+          Packet.release(packet);
+        }
       } else {
         // skip rest of datagram
         break;
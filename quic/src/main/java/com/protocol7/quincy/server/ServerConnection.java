@@ -6,6 +6,9 @@ import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.Pipeline;
 import com.protocol7.quincy.addressvalidation.RetryToken;
 import com.protocol7.quincy.addressvalidation.ServerRetryHandler;
+import com.protocol7.quincy.connection.ConfinedStream;
+import com.protocol7.quincy.connection.ConfinedTimer;
+import com.protocol7.quincy.connection.Confinement;
 import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.connection.State;
@@ -26,64 +29,106 @@ import com.protocol7.quincy.streams.DefaultStreamManager;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamListener;
 import com.protocol7.quincy.streams.StreamManager;
+import com.protocol7.quincy.streams.UrgencyStreamScheduler;
+import com.protocol7.quincy.termination.StatelessResetToken;
 import com.protocol7.quincy.termination.TerminationManager;
+import com.protocol7.quincy.tls.CertificateChain;
 import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.ServerTLSManager;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
+import com.protocol7.quincy.tls.aead.KeyPhases.KeyPhaseExpiredException;
+import com.protocol7.quincy.tls.aead.KeyPhases.KeysExhaustedException;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.Future;
 import java.net.InetSocketAddress;
 import java.security.PrivateKey;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ServerConnection implements InternalConnection {
 
+  // the 0-RTT packets buffered while the handshake is being calculated
+  public static final int MAX_BUFFERED_ZERO_RTT = 16;
+
+  private final Logger log = LoggerFactory.getLogger(ServerConnection.class);
+
   private Optional<ConnectionId> remoteConnectionId = Optional.empty();
   private final Optional<ConnectionId> localConnectionId;
   private final PacketSender packetSender;
   private final Version version;
-  private final AtomicReference<Long> sendPacketNumber = new AtomicReference<>(PacketNumber.MIN);
+  private long sendPacketNumber = PacketNumber.MIN;
+  private long largestReceivedPacketNumber = PacketNumber.NONE;
   private final ServerStateMachine stateMachine;
 
   private final ServerTLSManager tlsManager;
+  private final PacketBufferManager packetBuffer;
   private final Pipeline pipeline;
   private final InetSocketAddress peerAddress;
   private final StreamManager streamManager;
+  private final Executor connectionExecutor;
+  private final ConfinedTimer timer;
+  private final List<ByteBuf> bufferedZeroRtt = new ArrayList<>();
 
+  // the connection is confined to the connection executor. Internal calls are expected on that
+  // executor, while opening streams and closing hand off to it, as do timer tasks
   public ServerConnection(
       final Configuration configuration,
       final ConnectionId localConnectionId,
       final StreamListener streamListener,
       final PacketSender packetSender,
-      final List<byte[]> certificates,
+      final CertificateChain certificates,
       final PrivateKey privateKey,
       final FlowControlHandler flowControlHandler,
       final InetSocketAddress peerAddress,
-      final Timer timer) {
+      final Timer timer,
+      final Executor handshakeExecutor,
+      final Executor connectionExecutor) {
     this.version = configuration.getVersion();
     this.packetSender = packetSender;
     this.peerAddress = peerAddress;
-    final TransportParameters transportParameters = configuration.toTransportParameters();
-
-    this.streamManager = new DefaultStreamManager(this, streamListener);
+    this.connectionExecutor = connectionExecutor;
+    final TransportParameters transportParameters =
+        TransportParameters.newBuilder(configuration.toTransportParameters())
+            .withStatelessResetToken(new StatelessResetToken(privateKey).create(localConnectionId))
+            .build();
+
+    this.streamManager =
+        new DefaultStreamManager(
+            this,
+            flowControlHandler,
+            flowControlHandler,
+            new UrgencyStreamScheduler(),
+            streamListener);
 
     final Ticker ticker = Ticker.systemTicker();
+    this.timer = new ConfinedTimer(timer, connectionExecutor);
 
-    final PacketBufferManager packetBuffer =
+    this.packetBuffer =
         new PacketBufferManager(
-            new AckDelay(configuration.getAckDelayExponent(), ticker), this, timer, ticker);
+            new AckDelay(configuration.getAckDelayExponent(), ticker), this, this.timer, ticker);
     this.tlsManager =
-        new ServerTLSManager(localConnectionId, transportParameters, privateKey, certificates);
+        new ServerTLSManager(
+            localConnectionId,
+            configuration,
+            transportParameters,
+            privateKey,
+            certificates,
+            handshakeExecutor,
+            connectionExecutor);
 
     final LoggingHandler logger = new LoggingHandler(false);
 
     final TerminationManager terminationManager =
-        new TerminationManager(this, timer, configuration.getIdleTimeout(), TimeUnit.SECONDS);
+        new TerminationManager(this, this.timer, configuration.getIdleTimeout(), TimeUnit.SECONDS);
 
     this.pipeline =
         new Pipeline(
@@ -119,6 +164,7 @@ public class ServerConnection implements InternalConnection {
   }
 
   public Packet sendPacket(final Packet p) {
+    Confinement.check(connectionExecutor);
 
     final Packet newPacket = pipeline.send(this, p);
 
@@ -130,7 +176,9 @@ public class ServerConnection implements InternalConnection {
   public FullPacket send(final Frame... frames) {
     final Packet packet;
     if (tlsManager.available(EncryptionLevel.OneRtt)) {
-      packet = ShortPacket.create(false, getRemoteConnectionId(), nextSendPacketNumber(), frames);
+      packet =
+          ShortPacket.create(
+              tlsManager.getKeyPhase(), getRemoteConnectionId(), nextSendPacketNumber(), frames);
     } else if (tlsManager.available(EncryptionLevel.Handshake)) {
       packet =
           HandshakePacket.create(
@@ -150,12 +198,32 @@ public class ServerConnection implements InternalConnection {
   }
 
   private void sendPacketUnbuffered(final Packet packet) {
-    packetSender
-        .send(packet, getAEAD(Packet.getEncryptionLevel(packet)))
-        .awaitUninterruptibly(); // TODO fix
+    final AEAD aead;
+    try {
+      aead = tlsManager.getSendAEAD(packet);
+    } catch (final KeyPhaseExpiredException e) {
+      // dropped, buffered frames are retransmitted in a new packet
+      return;
+    } catch (final KeysExhaustedException e) {
+      // nothing more can be sent with these keys, not even a connection close
+      setState(State.Closing);
+      closeInternal();
+      setState(State.Closed);
+      return;
+    }
+
+    // not awaited, the connection executor must not block
+    packetSender.send(packet, aead);
   }
 
   public void onPacket(final Packet packet) {
+    Confinement.check(connectionExecutor);
+
+    if (packet instanceof FullPacket) {
+      largestReceivedPacketNumber =
+          Math.max(largestReceivedPacketNumber, ((FullPacket) packet).getPacketNumber());
+    }
+
     // with incorrect conn ID
     stateMachine.processPacket(packet);
 
@@ -167,8 +235,22 @@ public class ServerConnection implements InternalConnection {
     return tlsManager.getAEAD(level);
   }
 
+  // truncated packet numbers are decoded relative to this
+  public long getLargestReceivedPacketNumber() {
+    return largestReceivedPacketNumber;
+  }
+
+  public AEADProvider getAEADProvider() {
+    return tlsManager.getAEADProvider();
+  }
+
+  public boolean available(final EncryptionLevel level) {
+    return tlsManager.available(level);
+  }
+
   private long nextSendPacketNumber() {
-    return sendPacketNumber.updateAndGet(packetNumber -> PacketNumber.next(packetNumber));
+    sendPacketNumber = PacketNumber.next(sendPacketNumber);
+    return sendPacketNumber;
   }
 
   public State getState() {
@@ -177,17 +259,65 @@ public class ServerConnection implements InternalConnection {
 
   public void setState(final State state) {
     stateMachine.setState(state);
+
+    // the handshake has been calculated, and the 0-RTT keys installed if early data is accepted
+    if (state != State.Started && !bufferedZeroRtt.isEmpty()) {
+      readBufferedZeroRtt();
+    }
+  }
+
+  // 0-RTT packets arriving before the client hello is handled can not yet be read. They are
+  // buffered until the handshake has been calculated, once past that they can never be read
+  public void bufferZeroRtt(final ByteBuf packet) {
+    Confinement.check(connectionExecutor);
+
+    if (getState() == State.Started && bufferedZeroRtt.size() < MAX_BUFFERED_ZERO_RTT) {
+      bufferedZeroRtt.add(packet);
+    } else {
+      packet.release();
+    }
+  }
+
+  private void readBufferedZeroRtt() {
+    final List<ByteBuf> buffered = new ArrayList<>(bufferedZeroRtt);
+    bufferedZeroRtt.clear();
+
+    for (final ByteBuf bb : buffered) {
+      try {
+        // early data rejected, or the connection closed by an earlier packet
+        if (tlsManager.available(EncryptionLevel.ZeroRtt) && getState() != State.Closed) {
+          final Packet packet =
+              Packet.parse(bb, ConnectionId.LENGTH)
+                  .complete(getAEADProvider(), getLargestReceivedPacketNumber());
+          try {
+            onPacket(packet);
+          } finally {
+            Packet.release(packet);
+          }
+        }
+      } catch (final RuntimeException e) {
+        log.debug("Failed to read buffered 0-RTT packet", e);
+      } finally {
+        bb.release();
+      }
+    }
   }
 
   public Future<Void> close(
       final TransportError error, final FrameType frameType, final String msg) {
-    stateMachine.closeImmediate(new ConnectionCloseFrame(error.getValue(), frameType, msg));
+    return Confinement.chain(
+        connectionExecutor,
+        () -> {
+          stateMachine.closeImmediate(new ConnectionCloseFrame(error.getValue(), frameType, msg));
 
-    return packetSender.destroy();
+          return closeInternal();
+        });
   }
 
-  public Stream openStream() {
-    return streamManager.openStream(false, true);
+  public Future<Stream> openStream() {
+    return Confinement.submit(
+        connectionExecutor,
+        () -> new ConfinedStream(streamManager.openStream(false, true), connectionExecutor));
   }
 
   @Override
@@ -196,12 +326,25 @@ public class ServerConnection implements InternalConnection {
   }
 
   public Future<Void> close() {
-    stateMachine.closeImmediate();
+    return Confinement.chain(
+        connectionExecutor,
+        () -> {
+          stateMachine.closeImmediate();
 
-    return packetSender.destroy();
+          return closeInternal();
+        });
   }
 
-  public void closeByPeer() {
-    packetSender.destroy().awaitUninterruptibly(); // TOOD fix
+  public Future<Void> closeByPeer() {
+    return closeInternal();
+  }
+
+  private Future<Void> closeInternal() {
+    bufferedZeroRtt.forEach(ByteBuf::release);
+    bufferedZeroRtt.clear();
+    packetBuffer.close();
+    timer.stop();
+
+    return packetSender.destroy();
   }
 }
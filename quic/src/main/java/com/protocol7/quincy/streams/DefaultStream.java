@@ -1,36 +1,85 @@
 package com.protocol7.quincy.streams;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.min;
+
 import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
 import com.protocol7.quincy.protocol.StreamId;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.tls.aead.AEAD;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class DefaultStream implements Stream {
 
+  // the stream turns unwritable when more than the high watermark is waiting to be sent, and
+  // writable again once drained below the low watermark
+  public static final long HIGH_WATERMARK = 64 * 1024;
+  public static final long LOW_WATERMARK = 32 * 1024;
+
+  // urgency levels as in the HTTP extensible priorities, lower values are more urgent
+  public static final int URGENCY_LEVELS = 8;
+  public static final int DEFAULT_URGENCY = 3;
+  // weights as in HTTP/2 priorities
+  public static final int MAX_WEIGHT = 256;
+  public static final int DEFAULT_WEIGHT = 16;
+
+  // stream frames are sized to fit in a packet of 1200 bytes, which all QUIC paths must support,
+  // along with the packet header, the stream frame header, the AEAD tag and an ack frame possibly
+  // added when sending
+  private static final int MIN_PACKET_SIZE = 1200;
+  private static final int MAX_PACKET_HEADER = 64;
+  private static final int MAX_FRAME_HEADER = 1 + 3 * 8;
+  private static final int ACK_RESERVE = 128;
+  public static final int MAX_FRAME_DATA =
+      MIN_PACKET_SIZE - MAX_PACKET_HEADER - MAX_FRAME_HEADER - AEAD.OVERHEAD - ACK_RESERVE;
+
+  private static final Future<Void> WRITTEN =
+      ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+
   private final long id;
   private final FrameSender sender;
+  private final SendCredit sendCredit;
+  // called when data has been written, responsible for getting it sent
+  private final Consumer<DefaultStream> onWrite;
   private final StreamListener listener;
-  private final AtomicLong offset = new AtomicLong(0);
+  private long offset = 0;
   private final StreamType streamType;
   private final SendStateMachine sendStateMachine = new SendStateMachine();
   private final ReceiveStateMachine receiveStateMachine = new ReceiveStateMachine();
-  private final ReceivedDataBuffer receivedDataBuffer = new ReceivedDataBuffer();
-  private final AtomicBoolean seenFinish = new AtomicBoolean(false);
+  private final ReceivedDataBuffer receivedDataBuffer;
+  private final SendDataBuffer sendDataBuffer = new SendDataBuffer();
+  private boolean seenFinish = false;
+  private boolean writable = true;
+  private int urgency = DEFAULT_URGENCY;
+  private int weight = DEFAULT_WEIGHT;
+  // managed by Streams, true while waiting in the stream scheduler
+  boolean scheduled = false;
 
   public DefaultStream(
       final long id,
       final FrameSender sender,
+      final SendCredit sendCredit,
+      final ReceiveWindow receiveWindow,
+      final Consumer<DefaultStream> onWrite,
       final StreamListener listener,
       final StreamType streamType) {
     this.id = StreamId.validate(id);
     this.sender = sender;
+    this.sendCredit = sendCredit;
+    this.onWrite = onWrite;
     this.listener = listener;
     this.streamType = streamType;
+    this.receivedDataBuffer = new ReceivedDataBuffer(() -> receiveWindow.getReceiveMaxOffset(id));
   }
 
   public long getId() {
@@ -41,20 +90,115 @@ public class DefaultStream implements Stream {
     return streamType;
   }
 
-  public void write(final byte[] b, final boolean finish) {
-    canWrite();
+  public Future<Void> write(final byte[] b, final boolean finish) {
+    return write(Unpooled.wrappedBuffer(b), finish);
+  }
+
+  // must be called on the executor of the connection, where the data is buffered directly
+  public Future<Void> write(final ByteBuf b, final boolean finish) {
+    try {
+      canWrite();
+    } catch (final IllegalStateException e) {
+      b.release();
+      throw e;
+    }
+
+    sendDataBuffer.write(b, finish);
+    onWrite.accept(this);
+    return WRITTEN;
+  }
+
+  // sends as much of the buffered data as the peer has given credit for
+  public void flush() {
+    flush(Long.MAX_VALUE);
+  }
 
-    final long frameOffset = offset.getAndAdd(b.length);
-    final StreamFrame sf = new StreamFrame(id, frameOffset, finish, b);
-    final FullPacket p = sender.send(sf);
+  // sends at most maxLength bytes of the buffered data, in frames of at most MAX_FRAME_DATA bytes.
+  // Returns the number of bytes sent
+  long flush(final long maxLength) {
+    long sent = 0;
+    while (sendDataBuffer.hasMore()) {
+      final long credit = sendCredit.getSendCredit(id);
+      if (credit <= 0 && sendDataBuffer.peekLength() > 0) {
+        // wait for the peer to give more credit
+        sendCredit.onBlocked(id, sender);
+        break;
+      }
+      final long length = min(min(credit, maxLength - sent), MAX_FRAME_DATA);
+      if (length <= 0 && sendDataBuffer.peekLength() > 0) {
+        break;
+      }
+
+      // the frame references the data until the packet carrying it is acknowledged
+      final ByteBuf data = sendDataBuffer.read(length);
+      final boolean finish = sendDataBuffer.isDone();
+      final long frameOffset = offset;
+      offset += data.readableBytes();
+      sent += data.readableBytes();
+      final StreamFrame sf = new StreamFrame(id, frameOffset, finish, data);
+      final FullPacket p;
+      try {
+        p = sender.send(sf);
+      } catch (final RuntimeException e) {
+        // a packet failing to send is not buffered for retransmission, nothing else holds the data
+        sf.release();
+        throw e;
+      }
+
+      sendStateMachine.onStream(p.getPacketNumber(), finish);
+    }
 
-    sendStateMachine.onStream(p.getPacketNumber(), finish);
+    updateWritability();
+    return sent;
+  }
+
+  boolean hasPendingData() {
+    return sendDataBuffer.hasMore();
+  }
+
+  private void updateWritability() {
+    final long buffered = sendDataBuffer.getReadableBytes();
+    if (writable && buffered > HIGH_WATERMARK) {
+      writable = false;
+      listener.onWritabilityChanged(this, false);
+    } else if (!writable && buffered <= LOW_WATERMARK) {
+      writable = true;
+      listener.onWritabilityChanged(this, true);
+    }
+  }
+
+  @Override
+  public boolean isWritable() {
+    return writable;
+  }
+
+  @Override
+  public void setUrgency(final int urgency) {
+    checkArgument(urgency >= 0 && urgency < URGENCY_LEVELS);
+    this.urgency = urgency;
+  }
+
+  public int getUrgency() {
+    return urgency;
+  }
+
+  @Override
+  public void setWeight(final int weight) {
+    checkArgument(weight > 0 && weight <= MAX_WEIGHT);
+    this.weight = weight;
+  }
+
+  public int getWeight() {
+    return weight;
   }
 
   public void reset(final int applicationErrorCode) {
     canReset();
 
-    final Frame frame = new ResetStreamFrame(id, applicationErrorCode, offset.get());
+    // data not yet sent is dropped
+    sendDataBuffer.clear();
+
+    final Frame frame = new ResetStreamFrame(id, applicationErrorCode, offset);
 
     final FullPacket p = sender.send(frame);
 
@@ -62,7 +206,7 @@ public class DefaultStream implements Stream {
   }
 
   private void canWrite() {
-    if (!streamType.canSend() || !sendStateMachine.canSend()) {
+    if (!streamType.canSend() || !sendStateMachine.canSend() || sendDataBuffer.isClosed()) {
       throw new IllegalStateException();
     }
   }
@@ -73,23 +217,30 @@ public class DefaultStream implements Stream {
     }
   }
 
-  public void onData(final long offset, final boolean finish, final byte[] b) {
+  public void onData(final long offset, final boolean finish, final ByteBuf b) {
     if (finish) {
-      seenFinish.set(true);
+      seenFinish = true;
     }
 
     receivedDataBuffer.onData(b, offset, finish);
 
     while (receivedDataBuffer.hasMore()) {
-      final Optional<byte[]> data = receivedDataBuffer.read();
+      final Optional<ByteBuf> data = receivedDataBuffer.read();
 
-      listener.onData(this, data.get(), receivedDataBuffer.isDone() && seenFinish.get());
+      try {
+        listener.onData(this, data.get(), receivedDataBuffer.isDone() && seenFinish);
+      } finally {
+        data.get().release();
+      }
     }
 
     receiveStateMachine.onStream(finish);
   }
 
   public void onReset(final int applicationErrorCode, final long offset) {
+    // data not yet delivered will never be
+    receivedDataBuffer.clear();
+
     receiveStateMachine.onReset();
     receiveStateMachine.onAppReadReset();
   }
@@ -5,22 +5,46 @@ import static java.util.Objects.requireNonNull;
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.connection.State;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
+import com.protocol7.quincy.protocol.Payload;
 import com.protocol7.quincy.protocol.frames.AckBlock;
 import com.protocol7.quincy.protocol.frames.AckFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.protocol.packets.ZeroRttPacket;
 
 public class DefaultStreamManager implements StreamManager {
 
   private final Streams streams;
   private final StreamListener listener;
 
-  public DefaultStreamManager(final FrameSender frameSender, final StreamListener listener) {
-    this.streams = new Streams(requireNonNull(frameSender));
+  public DefaultStreamManager(
+      final FrameSender frameSender,
+      final SendCredit sendCredit,
+      final ReceiveWindow receiveWindow,
+      final StreamScheduler scheduler,
+      final StreamListener listener) {
+    this.streams =
+        new Streams(
+            requireNonNull(frameSender),
+            requireNonNull(sendCredit),
+            requireNonNull(receiveWindow),
+            requireNonNull(scheduler));
     this.listener = requireNonNull(listener);
+
+    sendCredit.addCreditListener(streams::flush);
+  }
+
+  @Override
+  public boolean acceptsInbound(final Packet packet) {
+    return (packet instanceof ShortPacket || packet instanceof ZeroRttPacket)
+        && isStreamRelated(((FullPacket) packet).getPayload());
   }
 
   @Override
@@ -28,11 +52,12 @@ public class DefaultStreamManager implements StreamManager {
     requireNonNull(packet);
     requireNonNull(ctx);
 
-    if (packet instanceof ShortPacket) {
-      final ShortPacket sp = (ShortPacket) packet;
-      for (final Frame frame : sp.getPayload().getFrames()) {
+    if (acceptsInbound(packet)) {
+      final FullPacket fp = (FullPacket) packet;
+      for (final Frame frame : fp.getPayload().getFrames()) {
         if (frame instanceof StreamFrame) {
-          if (ctx.getState() != State.Ready) {
+          // early data is accepted during the handshake
+          if (ctx.getState() != State.Ready && !(packet instanceof ZeroRttPacket)) {
             throw new IllegalStateException("Stream frames can only be handled in ready state");
           }
 
@@ -55,6 +80,12 @@ public class DefaultStreamManager implements StreamManager {
     ctx.next(packet);
   }
 
+  private static boolean isStreamRelated(final Payload payload) {
+    return payload.contains(FrameType.STREAM)
+        || payload.contains(FrameType.RESET_STREAM)
+        || payload.contains(FrameType.ACK);
+  }
+
   private void handleAcks(final AckBlock block) {
     // TODO optimize
     final long smallest = block.getSmallest();
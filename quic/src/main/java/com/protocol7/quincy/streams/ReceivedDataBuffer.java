@@ -1,38 +1,172 @@
 package com.protocol7.quincy.streams;
 
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.function.LongSupplier;
 
-// TODO optimize
+// Reassembles stream data received out of order. Received data is held as non-overlapping ranges,
+// keyed by their start offset. Data overlapping what has already been read or buffered is trimmed
+// and adjacent ranges are merged, so every byte is held at most once and retransmissions
+// re-segmented differently from the original are still readable.
 public class ReceivedDataBuffer {
 
-  private final TreeMap<Long, byte[]> buffer = new TreeMap<>();
-  private long largestOffset = 0;
+  private final TreeMap<Long, ByteBuf> buffer = new TreeMap<>();
+  // data beyond the max offset is never buffered
+  private final LongSupplier maxOffset;
+  private long finalOffset = -1;
   private long readOffset = 0;
+  private long bufferedBytes = 0;
+
+  public ReceivedDataBuffer(final LongSupplier maxOffset) {
+    this.maxOffset = requireNonNull(maxOffset);
+  }
+
+  // the buffered parts of the data are retained while buffered
+  public void onData(final ByteBuf data, final long offset, final boolean finish) {
+    final long end = offset + data.readableBytes();
+
+    // data beyond the flow control window is a protocol violation, closing the connection is up to
+    // flow control
+    if (end > maxOffset.getAsLong()) {
+      return;
+    }
 
-  public void onData(final byte[] data, final long offset, final boolean finish) {
-    buffer.put(offset, data);
     if (finish) {
-      this.largestOffset = offset;
+      this.finalOffset = end;
+    }
+
+    // already read
+    final long start = max(offset, readOffset);
+    if (start >= end) {
+      return;
+    }
+
+    final List<ByteBuf> parts = new ArrayList<>();
+    final long rangeStart;
+    long cursor;
+
+    final Map.Entry<Long, ByteBuf> floor = buffer.floorEntry(start);
+    final long floorEnd = floor != null ? floor.getKey() + floor.getValue().readableBytes() : -1;
+    if (floorEnd >= end) {
+      // already buffered
+      return;
+    } else if (floorEnd >= start) {
+      // overlapping or adjacent to the range before
+      rangeStart = floor.getKey();
+      cursor = floorEnd;
+      parts.add(remove(rangeStart));
+    } else {
+      rangeStart = start;
+      cursor = start;
+    }
+    // data that can't be read yet might be held for long, small parts are copied rather than
+    // pinning the whole packet they were received in
+    final boolean copy = rangeStart != readOffset;
+
+    // fill the gaps between the ranges within the data, merging them
+    Map.Entry<Long, ByteBuf> next;
+    while ((next = buffer.ceilingEntry(cursor)) != null && next.getKey() <= end) {
+      if (next.getKey() > cursor) {
+        parts.add(slice(data, offset, cursor, next.getKey(), copy));
+      }
+      final ByteBuf range = remove(next.getKey());
+      parts.add(range);
+      cursor = next.getKey() + range.readableBytes();
     }
+    if (cursor < end) {
+      parts.add(slice(data, offset, cursor, end, copy));
+    }
+
+    final ByteBuf merged = merge(data, parts);
+    buffer.put(rangeStart, merged);
+    bufferedBytes += merged.readableBytes();
   }
 
-  public boolean hasMore() {
-    return buffer.get(readOffset) != null;
+  private ByteBuf remove(final long key) {
+    final ByteBuf range = buffer.remove(key);
+    bufferedBytes -= range.readableBytes();
+    return range;
+  }
+
+  private static ByteBuf slice(
+      final ByteBuf data,
+      final long dataOffset,
+      final long from,
+      final long to,
+      final boolean copy) {
+    final int index = data.readerIndex() + (int) (from - dataOffset);
+    final int length = (int) (to - from);
+    if (copy && length < retainedCapacity(data) / 2) {
+      return data.alloc().buffer(length).writeBytes(data, index, length);
+    }
+    // a slice even if covering all of the data, the received data keeps its own indices and the
+    // held composites are only the merged ones, which can be appended to
+    return data.retainedSlice(index, length);
   }
 
-  public Optional<byte[]> read() {
-    final byte[] b = buffer.get(readOffset);
+  // the capacity of the buffer kept alive by retaining the data, slices keep their whole parent
+  private static int retainedCapacity(final ByteBuf data) {
+    ByteBuf root = data;
+    while (root.unwrap() != null) {
+      root = root.unwrap();
+    }
+    return root.capacity();
+  }
 
-    if (b != null) {
-      readOffset += b.length;
-      return Optional.of(b);
-    } else {
+  private static ByteBuf merge(final ByteBuf data, final List<ByteBuf> parts) {
+    if (parts.size() == 1) {
+      return parts.get(0);
+    }
+    // appended to the range before if already merged, rather than copying its components again.
+    // No consolidation, the number of ranges is limited by the flow control window
+    final ByteBuf first = parts.get(0);
+    final CompositeByteBuf composite =
+        first instanceof CompositeByteBuf
+            ? (CompositeByteBuf) first
+            : data.alloc().compositeBuffer(Integer.MAX_VALUE).addComponent(true, first);
+    for (int i = 1; i < parts.size(); i++) {
+      composite.addFlattenedComponents(true, parts.get(i));
+    }
+    return composite;
+  }
+
+  public boolean hasMore() {
+    return !buffer.isEmpty() && buffer.firstKey() == readOffset;
+  }
+
+  // the caller is responsible for releasing the returned data
+  public Optional<ByteBuf> read() {
+    if (!hasMore()) {
       return Optional.empty();
     }
+
+    final ByteBuf b = remove(readOffset);
+    readOffset += b.readableBytes();
+    return Optional.of(b);
   }
 
   public boolean isDone() {
-    return readOffset > largestOffset;
+    return finalOffset != -1 && readOffset >= finalOffset;
+  }
+
+  // the number of bytes held waiting for earlier data
+  public long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  public void clear() {
+    for (final ByteBuf b : buffer.values()) {
+      b.release();
+    }
+    buffer.clear();
+    bufferedBytes = 0;
   }
 }
@@ -0,0 +1,41 @@
+package com.protocol7.quincy.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+// streams take turns, each sending up to the quantum per turn
+public class RoundRobinStreamScheduler implements StreamScheduler {
+
+  public static final long DEFAULT_QUANTUM = 16 * 1024;
+
+  private final Queue<DefaultStream> queue = new ArrayDeque<>();
+  protected final long quantum;
+
+  public RoundRobinStreamScheduler(final long quantum) {
+    checkArgument(quantum > 0);
+
+    this.quantum = quantum;
+  }
+
+  @Override
+  public void schedule(final DefaultStream stream) {
+    queue.add(stream);
+  }
+
+  @Override
+  public DefaultStream poll() {
+    return queue.poll();
+  }
+
+  @Override
+  public long allocation(final DefaultStream stream) {
+    return quantum;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+}
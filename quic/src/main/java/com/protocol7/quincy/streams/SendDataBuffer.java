@@ -0,0 +1,74 @@
+package com.protocol7.quincy.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+// data written to a stream, waiting to be sent
+public class SendDataBuffer {
+
+  private final Queue<ByteBuf> buffer = new ArrayDeque<>();
+  private long readableBytes = 0;
+  // the last data written finishes the stream
+  private boolean finish = false;
+
+  // the buffer takes ownership of the data
+  public void write(final ByteBuf data, final boolean finish) {
+    checkState(!this.finish, "Stream already finished");
+
+    buffer.add(data);
+    readableBytes += data.readableBytes();
+    this.finish = finish;
+  }
+
+  public boolean hasMore() {
+    return !buffer.isEmpty();
+  }
+
+  // the size of the next data to read, empty data is used to only finish the stream
+  public int peekLength() {
+    final ByteBuf next = buffer.peek();
+    return next != null ? next.readableBytes() : 0;
+  }
+
+  // reads at most maxLength bytes, splitting written data if needed. The caller is responsible
+  // for releasing the returned data
+  public ByteBuf read(final long maxLength) {
+    checkArgument(maxLength >= 0);
+    checkState(hasMore());
+
+    final ByteBuf next = buffer.peek();
+    final ByteBuf data;
+    if (next.readableBytes() <= maxLength) {
+      data = buffer.poll();
+    } else {
+      data = next.readRetainedSlice((int) maxLength);
+    }
+    readableBytes -= data.readableBytes();
+    return data;
+  }
+
+  public long getReadableBytes() {
+    return readableBytes;
+  }
+
+  // no more data can be written
+  public boolean isClosed() {
+    return finish;
+  }
+
+  // all data has been read, including the finish
+  public boolean isDone() {
+    return finish && buffer.isEmpty();
+  }
+
+  public void clear() {
+    while (!buffer.isEmpty()) {
+      buffer.poll().release();
+    }
+    readableBytes = 0;
+  }
+}
@@ -2,10 +2,9 @@ package com.protocol7.quincy.streams;
 
 import static com.protocol7.quincy.streams.SendStateMachine.SendStreamState.*;
 
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class SendStateMachine {
 
@@ -23,8 +22,7 @@ public class SendStateMachine {
   }
 
   private SendStreamState state = Open;
-  private final Set<Long> outstandingStreamPackets =
-      Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final Set<Long> outstandingStreamPackets = new HashSet<>();
   private Optional<Long> outstandingResetPacket = Optional.empty();
 
   public void onStream(final long pn, final boolean fin) {
@@ -1,12 +1,29 @@
 package com.protocol7.quincy.streams;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Future;
+
 public interface Stream {
 
   long getId();
 
   StreamType getStreamType();
 
-  void write(final byte[] b, boolean finish);
+  Future<Void> write(final byte[] b, boolean finish);
+
+  // the stream takes ownership of the data, which is released once acknowledged by the peer. The
+  // future completes once the data is buffered for sending
+  Future<Void> write(ByteBuf b, boolean finish);
+
+  // false while too much written data is waiting for flow control credit, producers should hold
+  // off writing until notified through StreamListener#onWritabilityChanged
+  boolean isWritable();
+
+  // streams with a lower urgency, 0 to 7, are sent before others when competing for the connection
+  void setUrgency(int urgency);
+
+  // streams of the same urgency share the connection in proportion to their weight, 1 to 256
+  void setWeight(int weight);
 
   void reset(int applicationErrorCode);
 
@@ -1,5 +1,11 @@
 package com.protocol7.quincy.streams;
 
+import io.netty.buffer.ByteBuf;
+
 public interface StreamListener {
-  void onData(Stream stream, byte[] data, boolean finished);
+
+  // the data is released once the listener returns, listeners keeping it must retain it
+  void onData(Stream stream, ByteBuf data, boolean finished);
+
+  default void onWritabilityChanged(final Stream stream, final boolean writable) {}
 }
@@ -0,0 +1,17 @@
+package com.protocol7.quincy.streams;
+
+// decides which of the streams with data waiting to be sent gets to send next, and how much it may
+// send before yielding to the next stream. Used from the connection executor only
+public interface StreamScheduler {
+
+  // the stream has data waiting to be sent
+  void schedule(DefaultStream stream);
+
+  // the next stream to send from, or null if no stream is scheduled
+  DefaultStream poll();
+
+  // the number of bytes the polled stream may send before yielding
+  long allocation(DefaultStream stream);
+
+  boolean isEmpty();
+}
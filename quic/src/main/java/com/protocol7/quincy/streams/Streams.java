@@ -1,18 +1,33 @@
 package com.protocol7.quincy.streams;
 
 import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
 import com.protocol7.quincy.protocol.StreamId;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Streams {
 
   private final FrameSender frameSender;
-  private final Map<Long, DefaultStream> streams = new ConcurrentHashMap<>();
+  private final SendCredit sendCredit;
+  private final ReceiveWindow receiveWindow;
+  private final StreamScheduler scheduler;
+  private final LongObjectMap<DefaultStream> streams = new LongObjectHashMap<>();
   private long maxId = 0;
+  private boolean flushing = false;
 
-  public Streams(final FrameSender frameSender) {
+  public Streams(
+      final FrameSender frameSender,
+      final SendCredit sendCredit,
+      final ReceiveWindow receiveWindow,
+      final StreamScheduler scheduler) {
     this.frameSender = frameSender;
+    this.sendCredit = sendCredit;
+    this.receiveWindow = receiveWindow;
+    this.scheduler = scheduler;
   }
 
   public Stream openStream(
@@ -20,7 +35,9 @@ public class Streams {
     final StreamType type = bidirectional ? StreamType.Bidirectional : StreamType.Sending;
     final long streamId = StreamId.next(maxId, client, bidirectional);
     this.maxId = streamId;
-    final DefaultStream stream = new DefaultStream(streamId, frameSender, handler, type);
+    final DefaultStream stream =
+        new DefaultStream(
+            streamId, frameSender, sendCredit, receiveWindow, this::onWrite, handler, type);
     streams.put(streamId, stream);
     return stream;
   }
@@ -30,11 +47,14 @@ public class Streams {
     if (stream == null) {
       stream =
           new DefaultStream(
-              streamId, frameSender, handler, StreamType.Bidirectional); // TODO support stream type
-      final DefaultStream existingStream = streams.putIfAbsent(streamId, stream);
-      if (existingStream != null) {
-        stream = existingStream;
-      }
+              streamId,
+              frameSender,
+              sendCredit,
+              receiveWindow,
+              this::onWrite,
+              handler,
+              StreamType.Bidirectional); // TODO support stream type
+      streams.put(streamId, stream);
     }
     return stream;
   }
@@ -44,4 +64,53 @@ public class Streams {
       stream.onAck(pn);
     }
   }
+
+  private void onWrite(final DefaultStream stream) {
+    schedule(stream);
+    flush();
+  }
+
+  private void schedule(final DefaultStream stream) {
+    if (!stream.scheduled) {
+      stream.scheduled = true;
+      scheduler.schedule(stream);
+    }
+  }
+
+  // sends buffered data, in the order decided by the scheduler, until all streams are done or
+  // waiting for credit
+  public void flush() {
+    // listeners writing from within a flush are picked up by the ongoing flush
+    if (flushing) {
+      return;
+    }
+    flushing = true;
+    final List<DefaultStream> blocked = new ArrayList<>();
+    try {
+      DefaultStream stream;
+      while ((stream = scheduler.poll()) != null) {
+        stream.scheduled = false;
+
+        long sent = 0;
+        try {
+          sent = stream.flush(scheduler.allocation(stream));
+        } finally {
+          // streams stay scheduled even if sending failed, so they are not stalled
+          if (stream.hasPendingData()) {
+            if (sent > 0) {
+              schedule(stream);
+            } else {
+              blocked.add(stream);
+            }
+          }
+        }
+      }
+    } finally {
+      // blocked streams keep their order until more credit arrives
+      for (final DefaultStream b : blocked) {
+        schedule(b);
+      }
+      flushing = false;
+    }
+  }
 }
@@ -0,0 +1,57 @@
+package com.protocol7.quincy.streams;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.function.Supplier;
+
+// strict priority between urgency levels, streams only get to send when no stream with a lower
+// urgency value has data waiting. Streams of the same urgency are scheduled by the level scheduler
+public class UrgencyStreamScheduler implements StreamScheduler {
+
+  private final StreamScheduler[] levels = new StreamScheduler[DefaultStream.URGENCY_LEVELS];
+  // the level of the last polled stream, its urgency might change before the allocation
+  private int polledLevel = 0;
+
+  public UrgencyStreamScheduler() {
+    this(() -> new WeightedFairStreamScheduler(RoundRobinStreamScheduler.DEFAULT_QUANTUM));
+  }
+
+  public UrgencyStreamScheduler(final Supplier<StreamScheduler> levelScheduler) {
+    requireNonNull(levelScheduler);
+
+    for (int i = 0; i < levels.length; i++) {
+      levels[i] = requireNonNull(levelScheduler.get());
+    }
+  }
+
+  @Override
+  public void schedule(final DefaultStream stream) {
+    levels[stream.getUrgency()].schedule(stream);
+  }
+
+  @Override
+  public DefaultStream poll() {
+    for (int i = 0; i < levels.length; i++) {
+      if (!levels[i].isEmpty()) {
+        polledLevel = i;
+        return levels[i].poll();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public long allocation(final DefaultStream stream) {
+    return levels[polledLevel].allocation(stream);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (final StreamScheduler level : levels) {
+      if (!level.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,19 @@
+package com.protocol7.quincy.streams;
+
+// streams take turns, each sending in proportion to its weight. A stream with the default weight
+// sends the quantum per turn, the lightest streams still get a minimum chunk so that no turn is
+// spent on a few bytes
+public class WeightedFairStreamScheduler extends RoundRobinStreamScheduler {
+
+  public static final long MIN_ALLOCATION_CHUNK = 1024;
+
+  public WeightedFairStreamScheduler(final long quantum) {
+    super(quantum);
+  }
+
+  @Override
+  public long allocation(final DefaultStream stream) {
+    return Math.max(
+        MIN_ALLOCATION_CHUNK, quantum * stream.getWeight() / DefaultStream.DEFAULT_WEIGHT);
+  }
+}
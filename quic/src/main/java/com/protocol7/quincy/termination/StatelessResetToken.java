@@ -0,0 +1,41 @@
+package com.protocol7.quincy.termination;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.packets.StatelessResetPacket;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+public class StatelessResetToken {
+
+  private static final String HMAC_SHA256 = "HmacSHA256";
+
+  // a static key, so that a restarted server can recreate the tokens it has advertised
+  private final PrivateKey key;
+
+  public StatelessResetToken(final PrivateKey key) {
+    this.key = requireNonNull(key);
+  }
+
+  public byte[] create(final ConnectionId connectionId) {
+    requireNonNull(connectionId);
+
+    return Arrays.copyOf(hmac(connectionId.asBytes()), StatelessResetPacket.TOKEN_LENGTH);
+  }
+
+  private byte[] hmac(final byte[] data) {
+    try {
+      final Mac hmac = Mac.getInstance(HMAC_SHA256);
+      final SecretKeySpec keySpec = new SecretKeySpec(key.getEncoded(), HMAC_SHA256);
+      hmac.init(keySpec);
+      return hmac.doFinal(data);
+    } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new RuntimeException("Stateless reset token HMAC generation failed", e);
+    }
+  }
+}
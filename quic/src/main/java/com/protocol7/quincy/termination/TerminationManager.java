@@ -14,11 +14,10 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class TerminationManager implements InboundHandler {
 
-  private final AtomicReference<Timeout> timeout = new AtomicReference<>(null);
+  private Timeout timeout;
   private final InternalConnection connection;
   private final Timer timer;
   private final long idleTimeoutMs;
@@ -38,7 +37,8 @@ public class TerminationManager implements InboundHandler {
 
   @Override
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
-    if (packet instanceof FullPacket) {
+    if (packet instanceof FullPacket
+        && ((FullPacket) packet).getPayload().contains(FrameType.CONNECTION_CLOSE)) {
       final FullPacket fp = (FullPacket) packet;
 
       for (final Frame frame : fp.getPayload().getFrames()) {
@@ -57,12 +57,9 @@ public class TerminationManager implements InboundHandler {
   }
 
   private void resetIdleTimer() {
-    timeout.updateAndGet(
-        timeout -> {
-          if (timeout != null) {
-            timeout.cancel();
-          }
-          return timer.newTimeout(idleTask, idleTimeoutMs, TimeUnit.MILLISECONDS);
-        });
+    if (timeout != null) {
+      timeout.cancel();
+    }
+    timeout = timer.newTimeout(idleTask, idleTimeoutMs, TimeUnit.MILLISECONDS);
   }
 }
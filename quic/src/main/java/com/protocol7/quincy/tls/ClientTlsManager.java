@@ -1,5 +1,8 @@
 package com.protocol7.quincy.tls;
 
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.PipelineContext;
@@ -14,37 +17,76 @@ import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.RetryPacket;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.streams.ReceivedDataBuffer;
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.aead.KeyPhases;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.concurrent.Promise;
+import java.time.Clock;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
 public class ClientTlsManager implements InboundHandler {
 
+  // 1-RTT CRYPTO data not yet parsed into session tickets is limited, data beyond it is a
+  // protocol violation
+  private static final int MAX_ONE_RTT_CRYPTO_BUFFER = 64 * 1024;
+
   private ClientTlsSession tlsSession;
   private Promise promise;
   private final TransportParameters transportParameters;
   private final CertificateValidator certificateValidator;
+  private final SessionTicketCache ticketCache;
+  private final String origin;
+  private final List<CipherSuite> cipherSuites;
+  private final long keyUpdatePacketLimit;
+  private final long keyUpdateByteLimit;
+
+  // session tickets are reassembled from CRYPTO frames by offset, and parsed once complete
+  private long oneRttCryptoParsed = 0;
+  private final ReceivedDataBuffer oneRttCrypto =
+      new ReceivedDataBuffer(() -> oneRttCryptoParsed + MAX_ONE_RTT_CRYPTO_BUFFER);
+  private final ByteBuf oneRttCryptoMessages = Unpooled.buffer();
 
   public ClientTlsManager(
       final ConnectionId connectionId,
-      final TransportParameters transportParameters,
-      final CertificateValidator certificateValidator) {
-    this.transportParameters = transportParameters;
+      final Configuration configuration,
+      final CertificateValidator certificateValidator,
+      final SessionTicketCache ticketCache,
+      final String origin) {
+    this.transportParameters = configuration.toTransportParameters();
     this.certificateValidator = certificateValidator;
+    this.ticketCache = requireNonNull(ticketCache);
+    this.origin = requireNonNull(origin);
+    this.cipherSuites = configuration.getCipherSuites();
+    this.keyUpdatePacketLimit = configuration.getKeyUpdatePacketLimit();
+    this.keyUpdateByteLimit = configuration.getKeyUpdateByteLimit();
 
     resetTlsSession(connectionId);
   }
 
   public void resetTlsSession(final ConnectionId connectionId) {
+    if (tlsSession != null) {
+      // restarted after a retry, still the same connection so the ticket can be used again
+      tlsSession.getResumptionTicket().ifPresent(ticket -> ticketCache.put(origin, ticket));
+    }
+
     this.tlsSession =
         new ClientTlsSession(
             InitialAEAD.create(connectionId.asBytes(), true),
             transportParameters,
-            certificateValidator);
+            certificateValidator,
+            ticketCache,
+            origin,
+            cipherSuites);
   }
 
   public void handshake(
@@ -67,6 +109,12 @@ public class ClientTlsManager implements InboundHandler {
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     final State state = ctx.getState();
 
+    if (packet instanceof ShortPacket) {
+      // opened successfully, possibly using the keys of a key update initiated by the peer
+      final ShortPacket sp = (ShortPacket) packet;
+      tlsSession.getOneRttKeys().onReceived(sp.getKeyPhase(), sp.getPacketNumber());
+    }
+
     if (state == State.BeforeHello) {
       if (packet instanceof InitialPacket) {
         final InitialPacket ip = (InitialPacket) packet;
@@ -102,6 +150,18 @@ public class ClientTlsManager implements InboundHandler {
         throw new IllegalStateException(
             "Got packet in an unexpected state: " + state + " - " + packet);
       }
+    } else if (state == State.Ready && packet instanceof ShortPacket) {
+      // session tickets sent by the server after the handshake
+      for (final Frame frame : ((ShortPacket) packet).getPayload().getFrames()) {
+        if (frame instanceof CryptoFrame) {
+          try {
+            handleSessionTickets((CryptoFrame) frame);
+          } catch (final RuntimeException e) {
+            ctx.closeConnection(TransportError.PROTOCOL_VIOLATION, FrameType.CRYPTO, "");
+            return;
+          }
+        }
+      }
     }
 
     ctx.next(packet);
@@ -121,7 +181,17 @@ public class ClientTlsManager implements InboundHandler {
 
           ctx.send(new CryptoFrame(0, result.get().getFin()));
 
-          tlsSession.setOneRttAead(result.get().getOneRttAead());
+          tlsSession.setOneRttKeys(
+              new KeyPhases(
+                  result.get().getOneRttKeys(),
+                  keyUpdatePacketLimit,
+                  keyUpdateByteLimit,
+                  KeyPhases.DEFAULT_RETAIN_PREVIOUS,
+                  Clock.systemUTC()));
+
+          // from now on, application data is sent in 1-RTT packets. Early data not accepted by
+          // the server is retransmitted in those
+          tlsSession.unsetZeroRttAead();
 
           // tlsSession.unsetHandshakeAead(); TODO
           ctx.setState(State.Ready);
@@ -131,6 +201,36 @@ public class ClientTlsManager implements InboundHandler {
     }
   }
 
+  private void handleSessionTickets(final CryptoFrame cf) {
+    final byte[] data = cf.getCryptoData();
+    if (cf.getOffset() + data.length > oneRttCryptoParsed + MAX_ONE_RTT_CRYPTO_BUFFER) {
+      throw new IllegalArgumentException("1-RTT CRYPTO data exceeds buffer");
+    }
+
+    oneRttCrypto.onData(Unpooled.wrappedBuffer(data), cf.getOffset(), false);
+    Optional<ByteBuf> read;
+    while ((read = oneRttCrypto.read()).isPresent()) {
+      oneRttCryptoMessages.writeBytes(read.get());
+      read.get().release();
+    }
+
+    // handshake messages are prefixed by their type and 24 bit length
+    while (oneRttCryptoMessages.readableBytes() >= 4) {
+      final int length =
+          4 + oneRttCryptoMessages.getUnsignedMedium(oneRttCryptoMessages.readerIndex() + 1);
+      if (oneRttCryptoMessages.readableBytes() < length) {
+        // wait for more data
+        break;
+      }
+
+      final byte[] msg = new byte[length];
+      oneRttCryptoMessages.readBytes(msg);
+      oneRttCryptoParsed += length;
+      tlsSession.handleNewSessionTicket(msg);
+    }
+    oneRttCryptoMessages.discardReadBytes();
+  }
+
   private void sendInitialPacket(final FrameSender frameSender) {
     int len = 1200;
 
@@ -139,6 +239,14 @@ public class ClientTlsManager implements InboundHandler {
     frameSender.send(clientHello, new PaddingFrame(len));
   }
 
+  public boolean isEarlyDataAccepted() {
+    return tlsSession.isEarlyDataAccepted();
+  }
+
+  public Optional<TransportParameters> getPeerTransportParameters() {
+    return tlsSession.getPeerTransportParameters();
+  }
+
   public boolean available(final EncryptionLevel encLevel) {
     return tlsSession.available(encLevel);
   }
@@ -146,4 +254,26 @@ public class ClientTlsManager implements InboundHandler {
   public AEAD getAEAD(final EncryptionLevel level) {
     return tlsSession.getAEAD(level);
   }
+
+  // the key phase to create 1-RTT packets with
+  public boolean getKeyPhase() {
+    return tlsSession.getOneRttKeys().getKeyPhase();
+  }
+
+  // the AEAD to protect an outgoing packet with. 1-RTT packets use the keys of the key phase they
+  // were created with
+  public AEAD getSendAEAD(final Packet packet) {
+    if (packet instanceof ShortPacket) {
+      final ShortPacket sp = (ShortPacket) packet;
+      return tlsSession
+          .getOneRttKeys()
+          .forSending(sp.getKeyPhase(), sp.getPayload().calculateLength());
+    } else {
+      return getAEAD(Packet.getEncryptionLevel(packet));
+    }
+  }
+
+  public AEADProvider getAEADProvider() {
+    return tlsSession.getAEADProvider();
+  }
 }
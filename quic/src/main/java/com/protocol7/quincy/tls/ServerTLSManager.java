@@ -1,61 +1,90 @@
 package com.protocol7.quincy.tls;
 
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.aead.KeyPhases;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import java.security.PrivateKey;
-import java.util.List;
+import java.time.Clock;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ServerTLSManager implements InboundHandler {
 
-  private ServerTlsSession tlsSession;
+  private final Logger log = LoggerFactory.getLogger(ServerTLSManager.class);
 
+  private ServerTlsSession tlsSession;
+  private final Executor handshakeExecutor;
+  private final Executor connectionExecutor;
+  private boolean handshakeStarted = false;
+  private final long keyUpdatePacketLimit;
+  private final long keyUpdateByteLimit;
+
+  // cipher suites, key update limits and the state shared between handshakes are taken from the
+  // configuration, the transport parameters are specific to the connection
   public ServerTLSManager(
       final ConnectionId connectionId,
+      final Configuration configuration,
       final TransportParameters transportParameters,
       final PrivateKey privateKey,
-      final List<byte[]> certificates) {
+      final CertificateChain certificates,
+      final Executor handshakeExecutor,
+      final Executor connectionExecutor) {
     this.tlsSession =
         new ServerTlsSession(
             InitialAEAD.create(connectionId.asBytes(), false),
             transportParameters,
             certificates,
-            privateKey);
+            privateKey,
+            configuration.getKeyExchangePool(),
+            configuration.getTicketKeys(),
+            configuration.getAntiReplayFilter(),
+            configuration.getCipherSuites());
+    this.handshakeExecutor = requireNonNull(handshakeExecutor);
+    this.connectionExecutor = requireNonNull(connectionExecutor);
+    this.keyUpdatePacketLimit = configuration.getKeyUpdatePacketLimit();
+    this.keyUpdateByteLimit = configuration.getKeyUpdateByteLimit();
   }
 
   @Override
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     // TODO check version
     final State state = ctx.getState();
+
+    if (packet instanceof ShortPacket) {
+      // opened successfully, possibly using the keys of a key update initiated by the peer
+      final ShortPacket sp = (ShortPacket) packet;
+      tlsSession.getOneRttKeys().onReceived(sp.getKeyPhase(), sp.getPacketNumber());
+    }
+
     if (state == State.Started) {
       if (packet instanceof InitialPacket) {
         final InitialPacket initialPacket = (InitialPacket) packet;
 
-        if (initialPacket.getToken().isPresent()) {
+        // ignore resent client hellos while the handshake is being calculated
+        if (initialPacket.getToken().isPresent() && !handshakeStarted) {
+          handshakeStarted = true;
           final CryptoFrame cf = (CryptoFrame) initialPacket.getPayload().getFrames().get(0);
 
-          final ServerTlsSession.ServerHelloAndHandshake shah =
-              tlsSession.handleClientHello(cf.getCryptoData());
-
-          // sent as initial packet
-          ctx.send(new CryptoFrame(0, shah.getServerHello()));
-
-          tlsSession.setHandshakeAead(shah.getHandshakeAEAD());
-
-          // sent as handshake packet
-          ctx.send(new CryptoFrame(0, shah.getServerHandshake()));
-
-          tlsSession.setOneRttAead(shah.getOneRttAEAD());
-
-          ctx.setState(State.BeforeReady);
+          handleClientHello(cf.getCryptoData(), ctx.getConnection());
         }
       } else {
         throw new IllegalStateException("Unexpected packet in BeforeInitial: " + packet);
@@ -66,14 +95,67 @@ public class ServerTLSManager implements InboundHandler {
       tlsSession.handleClientFinished(cryptoFrame.getCryptoData());
 
       tlsSession.unsetInitialAead();
+      tlsSession.unsetZeroRttAead();
       tlsSession.unsetHandshakeAead();
 
       ctx.setState(State.Ready);
+
+      // sent as 1-RTT packet, allows the client to resume later connections
+      ctx.send(new CryptoFrame(0, tlsSession.createNewSessionTicket()));
     }
 
     ctx.next(packet);
   }
 
+  private void handleClientHello(final byte[] clientHello, final InternalConnection connection) {
+    // the handshake calculations are costly, run them on the handshake executor, without touching
+    // the session, and then apply the result to the session and send the resulting flights on the
+    // connection executor
+    handshakeExecutor.execute(
+        () -> {
+          final ServerHelloAndHandshake shah;
+          try {
+            shah = tlsSession.calculateHandshake(clientHello);
+          } catch (final RuntimeException e) {
+            log.warn("Failed to handle client hello", e);
+            connectionExecutor.execute(
+                () ->
+                    connection.close(
+                        TransportError.PROTOCOL_VIOLATION, FrameType.CRYPTO, "Invalid hello"));
+            return;
+          }
+
+          connectionExecutor.execute(() -> sendServerHelloAndHandshake(shah, connection));
+        });
+  }
+
+  private void sendServerHelloAndHandshake(
+      final ServerHelloAndHandshake shah, final InternalConnection connection) {
+    tlsSession.onHandshake(shah);
+
+    // sent as initial packet
+    connection.send(new CryptoFrame(0, shah.getServerHello()));
+
+    tlsSession.setHandshakeAead(shah.getHandshakeAEAD());
+
+    // sent as handshake packet
+    connection.send(new CryptoFrame(0, shah.getServerHandshake()));
+
+    tlsSession.setOneRttKeys(
+        new KeyPhases(
+            shah.getOneRttKeys(),
+            keyUpdatePacketLimit,
+            keyUpdateByteLimit,
+            KeyPhases.DEFAULT_RETAIN_PREVIOUS,
+            Clock.systemUTC()));
+
+    // allows early data from the client to be read, also that buffered by the connection while
+    // the handshake was being calculated, once the state changes below
+    shah.getZeroRttAEAD().ifPresent(tlsSession::setZeroRttAead);
+
+    connection.setState(State.BeforeReady);
+  }
+
   public AEAD getAEAD(final EncryptionLevel level) {
     return tlsSession.getAEAD(level);
   }
@@ -81,4 +163,26 @@ public class ServerTLSManager implements InboundHandler {
   public boolean available(final EncryptionLevel level) {
     return tlsSession.available(level);
   }
+
+  // the key phase to create 1-RTT packets with
+  public boolean getKeyPhase() {
+    return tlsSession.getOneRttKeys().getKeyPhase();
+  }
+
+  // the AEAD to protect an outgoing packet with. 1-RTT packets use the keys of the key phase they
+  // were created with
+  public AEAD getSendAEAD(final Packet packet) {
+    if (packet instanceof ShortPacket) {
+      final ShortPacket sp = (ShortPacket) packet;
+      return tlsSession
+          .getOneRttKeys()
+          .forSending(sp.getKeyPhase(), sp.getPayload().calculateLength());
+    } else {
+      return getAEAD(Packet.getEncryptionLevel(packet));
+    }
+  }
+
+  public AEADProvider getAEADProvider() {
+    return tlsSession.getAEADProvider();
+  }
 }
@@ -1,14 +1,12 @@
 package com.protocol7.quincy;
 
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.protocol7.quincy.client.ClientConnection;
 import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.PacketSender;
@@ -17,14 +15,20 @@ import com.protocol7.quincy.flowcontrol.DefaultFlowControlHandler;
 import com.protocol7.quincy.flowcontrol.FlowControlHandler;
 import com.protocol7.quincy.netty.QuicBuilder;
 import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.server.ServerConnection;
 import com.protocol7.quincy.streams.DefaultStream;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.tls.CertificateChain;
 import com.protocol7.quincy.tls.KeyUtil;
 import com.protocol7.quincy.tls.NoopCertificateValidator;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultEventExecutor;
 import io.netty.util.concurrent.DefaultPromise;
@@ -32,11 +36,11 @@ import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.concurrent.SucceededFuture;
 import java.security.PrivateKey;
+import java.time.Clock;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -56,8 +60,11 @@ public class ClientServerConnectionTest {
 
   private @Mock StreamListener clientListener;
   private @Mock StreamListener serverListener;
-  private @Mock Timer scheduler;
-  private final FlowControlHandler flowControlHandler = new DefaultFlowControlHandler(1000, 1000);
+  private final Timer scheduler = new MockTimer();
+  private final FlowControlHandler clientFlowControlHandler =
+      new DefaultFlowControlHandler(1000, 1000);
+  private final FlowControlHandler serverFlowControlHandler =
+      new DefaultFlowControlHandler(1000, 1000);
 
   public static class ForwardingPacketSender implements PacketSender {
 
@@ -71,6 +78,10 @@ public class ClientServerConnectionTest {
 
     @Override
     public Future<Void> send(final Packet packet, final AEAD aead) {
+      // the peer gets its own reference to the frame data, as it would to a received datagram
+      if (packet instanceof FullPacket) {
+        ((FullPacket) packet).getPayload().getFrames().forEach(ReferenceCountUtil::retain);
+      }
       executor.execute(() -> peer.onPacket(packet));
 
       return new SucceededFuture(executor, null);
@@ -90,10 +101,12 @@ public class ClientServerConnectionTest {
             destConnectionId,
             clientListener,
             clientSender,
-            flowControlHandler,
+            clientFlowControlHandler,
             TestUtil.getTestAddress(),
             new NoopCertificateValidator(),
-            scheduler);
+            new SessionTicketCache(100, Clock.systemUTC()),
+            scheduler,
+            MoreExecutors.directExecutor());
 
     final List<byte[]> certificates = KeyUtil.getCertsFromCrt("src/test/resources/server.crt");
     final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
@@ -104,11 +117,13 @@ public class ClientServerConnectionTest {
             srcConnectionId,
             serverListener,
             serverSender,
-            certificates,
+            new CertificateChain(certificates, false),
             privateKey,
-            flowControlHandler,
+            serverFlowControlHandler,
             TestUtil.getTestAddress(),
-            scheduler);
+            scheduler,
+            MoreExecutors.directExecutor(),
+            MoreExecutors.directExecutor());
 
     clientSender.setPeer(serverConnection);
     serverSender.setPeer(clientConnection);
@@ -139,16 +154,16 @@ public class ClientServerConnectionTest {
               return null;
             })
         .when(serverListener)
-        .onData(any(), eq(PING), eq(true));
+        .onData(any(), eq(Unpooled.wrappedBuffer(PING)), eq(true));
 
     // send ping
-    final Stream stream = clientConnection.openStream();
+    final Stream stream = clientConnection.openStream().syncUninterruptibly().getNow();
     stream.write(PING, true);
 
     sleep();
 
     // verify we got pong
-    verify(clientListener).onData(any(), eq(PONG), eq(true));
+    verify(clientListener).onData(any(), eq(Unpooled.wrappedBuffer(PONG)), eq(true));
   }
 
   @Test
@@ -159,35 +174,32 @@ public class ClientServerConnectionTest {
     // and verifies that they all arrive in order. The amount of data sent is meant to require flow
     // control.
 
-    final Stream stream = clientConnection.openStream();
+    final Stream stream = clientConnection.openStream().syncUninterruptibly().getNow();
+
+    // frames do not keep the boundaries of the writes, compare the data as a whole
+    final ByteBuf expected = Unpooled.buffer();
+    for (int i = 0; i < 100; i++) {
+      expected.writeBytes(b(i));
+    }
+    final ByteBuf received = Unpooled.buffer();
+    doAnswer(
+            invocation -> {
+              received.writeBytes((ByteBuf) invocation.getArgument(1));
+              return null;
+            })
+        .when(serverListener)
+        .onData(any(Stream.class), any(ByteBuf.class), any(Boolean.class));
 
     for (int i = 0; i < 100; i++) {
       stream.write(b(i), i == 99);
     }
 
     // wait until all messages have arrived
-    ArgumentCaptor<byte[]> captor = null;
-    for (int i = 0; i < 10; i++) {
-      captor = ArgumentCaptor.forClass(byte[].class);
-      verify(serverListener, atLeast(0))
-          .onData(any(Stream.class), captor.capture(), any(Boolean.class));
-
-      if (captor.getAllValues().size() >= 100) {
-        break;
-      }
+    for (int i = 0; i < 10 && received.readableBytes() < expected.readableBytes(); i++) {
       sleep();
     }
 
-    if (captor != null) {
-      assertEquals(100, captor.getAllValues().size());
-
-      for (int i = 0; i < 100; i++) {
-        final byte[] value = captor.getAllValues().get(i);
-        assertArrayEquals(b(i), value);
-      }
-    } else {
-      fail("Timed out");
-    }
+    assertEquals(expected, received);
   }
 
   private byte[] b(final int i) {
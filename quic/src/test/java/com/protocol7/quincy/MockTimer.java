@@ -15,6 +15,8 @@ public class MockTimer implements Timer {
   public Timeout newTimeout(final TimerTask timerTask, final long l, final TimeUnit timeUnit) {
     final Timeout timeout =
         new Timeout() {
+          private boolean cancelled = false;
+
           @Override
           public Timer timer() {
             return MockTimer.this;
@@ -32,12 +34,16 @@ public class MockTimer implements Timer {
 
           @Override
           public boolean isCancelled() {
-            return false;
+            return cancelled;
           }
 
           @Override
           public boolean cancel() {
-            return false;
+            if (cancelled) {
+              return false;
+            }
+            cancelled = true;
+            return true;
           }
         };
     timeouts.add(timeout);
@@ -51,7 +57,9 @@ public class MockTimer implements Timer {
 
   public void trigger() throws Exception {
     for (final Timeout timeout : timeouts) {
-      timeout.task().run(timeout);
+      if (!timeout.isCancelled()) {
+        timeout.task().run(timeout);
+      }
     }
   }
 }
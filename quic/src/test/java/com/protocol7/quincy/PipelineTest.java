@@ -1,13 +1,21 @@
 package com.protocol7.quincy;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 import com.protocol7.quincy.connection.Connection;
 import com.protocol7.quincy.protocol.packets.Packet;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -41,6 +49,20 @@ public class PipelineTest {
     public void beforeSendPacket(final Packet packet, final PipelineContext ctx) {}
   }
 
+  private static class RejectingInboundHandler extends PropagatingInboundHandler {
+    @Override
+    public boolean acceptsInbound(final Packet packet) {
+      return false;
+    }
+  }
+
+  private static class RejectingOutboundHandler extends PropagatingOutboundHandler {
+    @Override
+    public boolean acceptsOutbound(final Packet packet) {
+      return false;
+    }
+  }
+
   @Mock Connection connection;
   @Mock Packet packet;
 
@@ -103,4 +125,102 @@ public class PipelineTest {
     verify(handler2).beforeSendPacket(eq(packet), any(PipelineContext.class));
     verifyZeroInteractions(handler3);
   }
+
+  @Test
+  public void inboundSkipNotAccepted() {
+    final InboundHandler handler1 = spy(new RejectingInboundHandler());
+    final InboundHandler handler2 = spy(new PropagatingInboundHandler());
+
+    final Pipeline pipeline = new Pipeline(List.of(handler1, handler2), List.of());
+
+    pipeline.onPacket(connection, packet);
+
+    verify(handler1, never()).onReceivePacket(any(Packet.class), any(PipelineContext.class));
+    verify(handler2).onReceivePacket(eq(packet), any(PipelineContext.class));
+  }
+
+  @Test
+  public void outboundSkipNotAccepted() {
+    final OutboundHandler handler1 = spy(new PropagatingOutboundHandler());
+    final OutboundHandler handler2 = spy(new RejectingOutboundHandler());
+
+    final Pipeline pipeline = new Pipeline(List.of(), List.of(handler1, handler2));
+
+    assertSame(packet, pipeline.send(connection, packet));
+
+    verify(handler1).beforeSendPacket(eq(packet), any(PipelineContext.class));
+    verify(handler2, never()).beforeSendPacket(any(Packet.class), any(PipelineContext.class));
+  }
+
+  @Test
+  public void outboundReplacePacket() {
+    final Packet other = mock(Packet.class);
+    final OutboundHandler handler = (p, ctx) -> ctx.next(other);
+
+    final Pipeline pipeline = new Pipeline(List.of(), List.of(handler));
+
+    assertSame(other, pipeline.send(connection, packet));
+    // the context is reused for the next packet
+    assertSame(other, pipeline.send(connection, packet));
+  }
+
+  @Test
+  public void outboundNonPropagationReturnsNull() {
+    final Pipeline pipeline = new Pipeline(List.of(), List.of(new NonPropagatingOutboundHandler()));
+
+    assertNull(pipeline.send(connection, packet));
+  }
+
+  @Test
+  public void reentrant() {
+    final Packet other = mock(Packet.class);
+    final List<Packet> sent = new ArrayList<>();
+    final Pipeline[] pipeline = new Pipeline[1];
+
+    // the first handler sends a packet through the pipeline while handling one
+    final OutboundHandler handler1 =
+        (p, ctx) -> {
+          if (p == packet) {
+            pipeline[0].send(connection, other);
+          }
+          ctx.next(p);
+        };
+    final OutboundHandler handler2 =
+        (p, ctx) -> {
+          sent.add(p);
+          ctx.next(p);
+        };
+
+    pipeline[0] = new Pipeline(List.of(), List.of(handler1, handler2));
+
+    assertSame(packet, pipeline[0].send(connection, packet));
+    assertEquals(List.of(other, packet), sent);
+  }
+
+  @Test
+  public void releaseOnException() {
+    final OutboundHandler failing =
+        (p, ctx) -> {
+          throw new IllegalStateException();
+        };
+    final OutboundHandler handler = spy(new PropagatingOutboundHandler());
+
+    final Pipeline pipeline = new Pipeline(List.of(), List.of(handler, failing));
+
+    try {
+      pipeline.send(connection, packet);
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+
+    // must start from the first handler again
+    try {
+      pipeline.send(connection, packet);
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+    verify(handler, times(2)).beforeSendPacket(eq(packet), any(PipelineContext.class));
+  }
 }
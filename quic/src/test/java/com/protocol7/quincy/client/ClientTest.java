@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.protocol7.quincy.MockTimer;
 import com.protocol7.quincy.TestUtil;
 import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.connection.State;
@@ -14,15 +16,27 @@ import com.protocol7.quincy.protocol.*;
 import com.protocol7.quincy.protocol.frames.*;
 import com.protocol7.quincy.protocol.packets.*;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.tls.CertificateChain;
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.KeyExchangePool;
 import com.protocol7.quincy.tls.KeyUtil;
 import com.protocol7.quincy.tls.NoopCertificateValidator;
 import com.protocol7.quincy.tls.ServerTlsSession;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
 import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.*;
 import java.security.PrivateKey;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
@@ -45,12 +59,13 @@ public class ClientTest {
   private final ConnectionId srcConnectionId = ConnectionId.random();
   private long packetNumber = 0;
   private final long streamId = StreamId.random(true, true);
+  private final byte[] statelessResetToken = Rnd.rndBytes(StatelessResetPacket.TOKEN_LENGTH);
 
-  private final FlowControlHandler flowControlHandler = new MockFlowControlHandler();
+  private final FlowControlHandler flowControlHandler = spy(new MockFlowControlHandler());
 
   @Mock private PacketSender packetSender;
   @Mock private StreamListener streamListener;
-  @Mock private Timer scheduler;
+  private final Timer scheduler = new MockTimer();
 
   @Before
   public void setUp() {
@@ -68,7 +83,9 @@ public class ClientTest {
             flowControlHandler,
             TestUtil.getTestAddress(),
             new NoopCertificateValidator(),
-            scheduler);
+            new SessionTicketCache(100, Clock.systemUTC()),
+            scheduler,
+            MoreExecutors.directExecutor());
 
     final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
     final List<byte[]> serverCert = KeyUtil.getCertsFromCrt("src/test/resources/server.crt");
@@ -76,9 +93,16 @@ public class ClientTest {
     serverTlsSession =
         new ServerTlsSession(
             InitialAEAD.create(Rnd.rndBytes(4), false),
-            new QuicBuilder().configuration().toTransportParameters(),
-            serverCert,
-            privateKey);
+            TransportParameters.newBuilder(
+                    new QuicBuilder().configuration().toTransportParameters())
+                .withStatelessResetToken(statelessResetToken)
+                .build(),
+            new CertificateChain(serverCert, false),
+            privateKey,
+            KeyExchangePool.shared(),
+            TicketKeys.shared(),
+            AntiReplayFilter.shared(),
+            CipherSuite.SUPPORTED);
   }
 
   @Test
@@ -181,10 +205,10 @@ public class ClientTest {
 
     connection.onPacket(packet(new StreamFrame(streamId, 0, true, DATA)));
 
-    final ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
+    final ArgumentCaptor<ByteBuf> dataCaptor = ArgumentCaptor.forClass(ByteBuf.class);
     verify(streamListener).onData(any(), dataCaptor.capture(), eq(true));
 
-    assertArrayEquals(DATA, dataCaptor.getValue());
+    assertArrayEquals(DATA, ByteBufUtil.getBytes(dataCaptor.getValue()));
 
     // verify ack
     assertAck(4, 3, 3, 3);
@@ -197,8 +221,8 @@ public class ClientTest {
     connection.onPacket(packet(new StreamFrame(streamId, 0, false, DATA)));
     connection.onPacket(packet(new StreamFrame(streamId, DATA.length, true, DATA2)));
 
-    verify(streamListener).onData(any(), eq(DATA), eq(false));
-    verify(streamListener).onData(any(), eq(DATA2), eq(true));
+    verify(streamListener).onData(any(), eq(Unpooled.wrappedBuffer(DATA)), eq(false));
+    verify(streamListener).onData(any(), eq(Unpooled.wrappedBuffer(DATA2)), eq(true));
 
     // verify ack
     assertAck(4, 3, 3, 3);
@@ -210,17 +234,35 @@ public class ClientTest {
   public void streamFrameOutOfOrder() {
     handshake();
 
+    // the data is released once the listener returns
+    final List<ByteBuf> received = new ArrayList<>();
+    doAnswer(invocation -> received.add(Unpooled.copiedBuffer((ByteBuf) invocation.getArgument(1))))
+        .when(streamListener)
+        .onData(any(), any(), eq(true));
+
     connection.onPacket(packet(new StreamFrame(streamId, DATA.length, true, DATA2)));
     connection.onPacket(packet(new StreamFrame(streamId, 0, false, DATA)));
 
-    verify(streamListener).onData(any(), eq(DATA), eq(false));
-    verify(streamListener).onData(any(), eq(DATA2), eq(true));
+    // reassembled into a single read
+    assertEquals(List.of(Unpooled.wrappedBuffer(DATA, DATA2)), received);
 
     // verify acks
     assertAck(4, 3, 3, 3);
     assertAck(5, 4, 4, 4);
   }
 
+  @Test
+  public void sendStreamFrame() {
+    handshake();
+
+    connection.send(new StreamFrame(streamId, 0, true, DATA));
+
+    // stream data is subject to flow control
+    verify(flowControlHandler)
+        .beforeSendPacket(
+            argThat(p -> ((FullPacket) p).getPayload().contains(FrameType.STREAM)), any());
+  }
+
   @Test
   public void resetStreamFrame() {
     handshake();
@@ -277,6 +319,40 @@ public class ClientTest {
     }
   }
 
+  @Test
+  public void statelessReset() {
+    handshake();
+
+    final ByteBuf bb = Unpooled.buffer();
+    new StatelessResetPacket(40, statelessResetToken).write(bb, null);
+
+    assertTrue(connection.isStatelessReset(bb));
+
+    connection.onStatelessReset();
+
+    assertEquals(State.Closed, connection.getState());
+    verify(packetSender).destroy();
+  }
+
+  @Test
+  public void statelessResetInvalidToken() {
+    handshake();
+
+    final ByteBuf bb = Unpooled.buffer();
+    new StatelessResetPacket(40, Rnd.rndBytes(StatelessResetPacket.TOKEN_LENGTH)).write(bb, null);
+
+    assertFalse(connection.isStatelessReset(bb));
+  }
+
+  @Test
+  public void statelessResetBeforeHandshake() {
+    final ByteBuf bb = Unpooled.buffer();
+    new StatelessResetPacket(40, statelessResetToken).write(bb, null);
+
+    // no token known before the handshake is done
+    assertFalse(connection.isStatelessReset(bb));
+  }
+
   @Test
   public void versionNegotiation() {
     final DefaultPromise<Void> handshakeFuture = new DefaultPromise(GlobalEventExecutor.INSTANCE);
@@ -336,7 +412,8 @@ public class ClientTest {
         false,
         Optional.of(srcConnectionId), // TODO correct?
         nextPacketNumber(),
-        new Payload(frames));
+        new Payload(frames),
+        PacketNumber.MAX_LENGTH);
   }
 
   private long nextPacketNumber() {
@@ -0,0 +1,71 @@
+package com.protocol7.quincy.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.protocol7.quincy.streams.Stream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConfinedStreamTest {
+
+  private final DefaultEventExecutor executor = new DefaultEventExecutor();
+  private final Stream stream = mock(Stream.class);
+  private final ConfinedStream confinedStream = new ConfinedStream(stream, executor);
+
+  @After
+  public void tearDown() {
+    executor.shutdownGracefully();
+  }
+
+  @Test
+  public void writeOnExecutor() {
+    when(stream.write(any(ByteBuf.class), anyBoolean()))
+        .thenAnswer(
+            invocation -> {
+              // handed off to the executor of the connection
+              assertTrue(executor.inEventLoop());
+              return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+            });
+
+    final ByteBuf data = Unpooled.copiedBuffer(new byte[] {1, 2, 3});
+    final Future<Void> future = confinedStream.write(data, true);
+
+    assertTrue(future.syncUninterruptibly().isSuccess());
+    verify(stream).write(data, true);
+  }
+
+  @Test
+  public void releaseOnRejected() {
+    executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+
+    final ByteBuf data = Unpooled.copiedBuffer(new byte[] {1, 2, 3});
+    final Future<Void> future = confinedStream.write(data, true);
+
+    assertTrue(future.cause() instanceof RejectedExecutionException);
+    assertEquals(0, data.refCnt());
+    verifyZeroInteractions(stream);
+  }
+
+  @Test
+  public void resetOnExecutor() throws Exception {
+    confinedStream.reset(123);
+
+    // wait for the executor to have run the reset
+    executor.submit(() -> {}).get();
+    verify(stream).reset(123);
+  }
+}
@@ -0,0 +1,99 @@
+package com.protocol7.quincy.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.MockTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ConfinedTimerTest {
+
+  private final MockTimer timer = new MockTimer();
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final ConfinedTimer confinedTimer = new ConfinedTimer(timer, tasks::add);
+
+  @Test
+  public void runOnExecutor() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    final Timeout timeout =
+        confinedTimer.newTimeout(t -> runs.incrementAndGet(), 10, TimeUnit.MILLISECONDS);
+
+    timer.trigger();
+
+    // handed off to the executor, not run on the timer
+    assertEquals(0, runs.get());
+    assertEquals(1, tasks.size());
+
+    tasks.get(0).run();
+    assertEquals(1, runs.get());
+    assertSame(confinedTimer, timeout.timer());
+  }
+
+  @Test
+  public void rescheduleConfined() throws Exception {
+    final List<Timeout> seen = new ArrayList<>();
+    final TimerTask task = seen::add;
+
+    confinedTimer.newTimeout(task, 10, TimeUnit.MILLISECONDS);
+    timer.trigger();
+    tasks.get(0).run();
+
+    // the task sees the confined timeout, and rescheduling through it stays confined
+    assertEquals(1, seen.size());
+    assertSame(confinedTimer, seen.get(0).timer());
+    assertSame(task, seen.get(0).task());
+  }
+
+  @Test
+  public void stop() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    confinedTimer.newTimeout(t -> runs.incrementAndGet(), 5, TimeUnit.MILLISECONDS);
+    timer.trigger();
+    final Timeout timeout =
+        confinedTimer.newTimeout(t -> runs.incrementAndGet(), 10, TimeUnit.MILLISECONDS);
+
+    // cancels the timeouts not yet run, the shared timer is left running
+    assertEquals(Set.of(timeout), confinedTimer.stop());
+    assertTrue(timeout.isCancelled());
+
+    // already handed off to the executor, but no longer run
+    tasks.forEach(Runnable::run);
+    assertEquals(0, runs.get());
+  }
+
+  @Test
+  public void newTimeoutAfterStop() {
+    confinedTimer.stop();
+
+    final Timeout timeout = confinedTimer.newTimeout(t -> {}, 10, TimeUnit.MILLISECONDS);
+    assertTrue(timeout.isCancelled());
+  }
+
+  @Test
+  public void exceptionsWrapped() throws Exception {
+    confinedTimer.newTimeout(
+        t -> {
+          throw new Exception("failed");
+        },
+        10,
+        TimeUnit.MILLISECONDS);
+    timer.trigger();
+
+    try {
+      tasks.get(0).run();
+    } catch (final RuntimeException e) {
+      assertTrue(e.getCause() instanceof Exception);
+      assertEquals("failed", e.getCause().getMessage());
+      return;
+    }
+    throw new AssertionError("Expected exception");
+  }
+}
@@ -0,0 +1,102 @@
+package com.protocol7.quincy.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConfinementTest {
+
+  private final DefaultEventExecutor executor = new DefaultEventExecutor();
+
+  @After
+  public void tearDown() {
+    executor.shutdownGracefully();
+  }
+
+  @Test
+  public void onExecutor() throws Exception {
+    executor.submit(() -> Confinement.check(executor)).get();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void outsideExecutor() {
+    Confinement.check(executor);
+  }
+
+  @Test
+  public void directExecutor() {
+    Confinement.check(MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void submitOnExecutor() throws Exception {
+    final Future<Thread> future =
+        executor.submit(() -> Confinement.submit(executor, Thread::currentThread)).get();
+
+    // run directly
+    assertTrue(future.isDone());
+    assertTrue(executor.inEventLoop(future.getNow()));
+  }
+
+  @Test
+  public void submitOutsideExecutor() {
+    final Future<Thread> future = Confinement.submit(executor, Thread::currentThread);
+
+    // handed off to the executor
+    assertTrue(executor.inEventLoop(future.syncUninterruptibly().getNow()));
+  }
+
+  @Test
+  public void submitFailing() {
+    final IllegalStateException e = new IllegalStateException();
+    final Future<Void> future =
+        Confinement.submit(
+            executor,
+            () -> {
+              throw e;
+            });
+
+    assertSame(e, future.awaitUninterruptibly().cause());
+  }
+
+  @Test
+  public void submitRejected() {
+    executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+
+    final Future<Void> future = Confinement.submit(executor, () -> null);
+
+    assertTrue(future.cause() instanceof RejectedExecutionException);
+  }
+
+  @Test
+  public void chainOutsideExecutor() {
+    final Promise<String> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+    final Future<String> future = Confinement.chain(executor, () -> promise);
+
+    executor.submit(() -> {}).syncUninterruptibly();
+    // completes with the future returned by the work
+    assertFalse(future.isDone());
+
+    promise.setSuccess("done");
+    assertEquals("done", future.syncUninterruptibly().getNow());
+  }
+
+  @Test
+  public void executeOutsideExecutor() throws Exception {
+    final Promise<Thread> promise = executor.newPromise();
+    Confinement.execute(executor, () -> promise.setSuccess(Thread.currentThread()));
+
+    assertTrue(executor.inEventLoop(promise.get()));
+  }
+}
@@ -1,14 +1,17 @@
 package com.protocol7.quincy.flowcontrol;
 
 import static java.util.Optional.of;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
@@ -111,6 +114,58 @@ public class DefaultFlowControlHandlerTest {
     verify(ctx).send(new DataBlockedFrame(17));
   }
 
+  @Test
+  public void sendCredit() {
+    assertEquals(10, handler.getSendCredit(sid));
+
+    assertTrue(handler.tryConsume(sid, 8, ctx));
+    assertEquals(2, handler.getSendCredit(sid));
+    // limited by the connection
+    assertEquals(7, handler.getSendCredit(sid2));
+  }
+
+  @Test
+  public void onBlocked() {
+    final FrameSender sender = mock(FrameSender.class);
+
+    assertTrue(handler.tryConsume(sid, 10, ctx));
+    handler.onBlocked(sid, sender);
+    verify(sender).send(new StreamDataBlockedFrame(sid, 10));
+
+    // only once until the peer gives more credit
+    handler.onBlocked(sid, sender);
+    verifyZeroInteractions(sender);
+
+    assertTrue(handler.tryConsume(sid2, 5, ctx));
+    handler.onBlocked(sid2, sender);
+    verify(sender).send(new DataBlockedFrame(15));
+  }
+
+  @Test
+  public void creditListener() {
+    final Runnable listener = mock(Runnable.class);
+    handler.addCreditListener(listener);
+
+    handler.onReceivePacket(p(new StreamFrame(sid, 0, false, new byte[1])), ctx);
+    verifyZeroInteractions(listener);
+
+    handler.onReceivePacket(p(new MaxStreamDataFrame(sid, 20)), ctx);
+    verify(listener).run();
+
+    handler.onReceivePacket(p(new MaxDataFrame(20)), ctx);
+    verify(listener, times(2)).run();
+  }
+
+  @Test
+  public void receiveMaxOffset() {
+    assertEquals(10, handler.getReceiveMaxOffset(sid));
+
+    // going over 50% of the max stream offset doubles it
+    handler.onReceivePacket(p(new StreamFrame(sid, 0, false, new byte[6])), ctx);
+    assertEquals(20, handler.getReceiveMaxOffset(sid));
+    assertEquals(10, handler.getReceiveMaxOffset(sid2));
+  }
+
   @Test
   public void streamFrames() {
     Packet packet = p(new StreamFrame(sid, 0, false, new byte[3]));
@@ -138,6 +193,11 @@ public class DefaultFlowControlHandlerTest {
   }
 
   private FullPacket p(final Frame frame) {
-    return new ShortPacket(false, of(ConnectionId.random()), PacketNumber.MIN, new Payload(frame));
+    return new ShortPacket(
+        false,
+        of(ConnectionId.random()),
+        PacketNumber.MIN,
+        new Payload(frame),
+        PacketNumber.MAX_LENGTH);
   }
 }
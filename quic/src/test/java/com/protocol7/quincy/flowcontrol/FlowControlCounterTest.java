@@ -32,6 +32,27 @@ public class FlowControlCounterTest {
     assertConsume(fcm.tryConsume(sid, 11), true, 11, maxConn, 11, 20);
   }
 
+  @Test
+  public void credit() {
+    assertEquals(maxStream, fcm.getCredit(sid));
+
+    fcm.tryConsume(sid, 7);
+    assertEquals(3, fcm.getCredit(sid));
+    assertEquals(8, fcm.getConnectionCredit());
+
+    // limited by the connection
+    assertEquals(8, fcm.getCredit(sid2));
+
+    fcm.tryConsume(sid2, 8);
+    assertEquals(0, fcm.getCredit(sid));
+
+    fcm.setConnectionMaxBytes(30);
+    fcm.setStreamMaxBytes(sid, 12);
+    assertEquals(5, fcm.getCredit(sid));
+    assertEquals(12, fcm.getStreamMaxBytes(sid));
+    assertEquals(30, fcm.getConnectionMaxBytes());
+  }
+
   @Test
   public void tryConsumeOutOfOrder() {
     assertConsume(fcm.tryConsume(sid, 8), true, 8, maxConn, 8, maxStream);
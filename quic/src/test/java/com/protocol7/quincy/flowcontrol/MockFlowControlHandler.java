@@ -1,5 +1,6 @@
 package com.protocol7.quincy.flowcontrol;
 
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.protocol.packets.Packet;
 
@@ -13,4 +14,20 @@ public class MockFlowControlHandler implements FlowControlHandler {
   public void beforeSendPacket(final Packet packet, final PipelineContext ctx) {
     ctx.next(packet);
   }
+
+  @Override
+  public long getSendCredit(final long sid) {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public void onBlocked(final long sid, final FrameSender sender) {}
+
+  @Override
+  public void addCreditListener(final Runnable listener) {}
+
+  @Override
+  public long getReceiveMaxOffset(final long sid) {
+    return Long.MAX_VALUE;
+  }
 }
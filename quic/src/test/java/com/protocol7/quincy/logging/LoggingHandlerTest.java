@@ -40,6 +40,11 @@ public class LoggingHandlerTest {
   }
 
   private FullPacket p(final Frame... frames) {
-    return new ShortPacket(false, of(ConnectionId.random()), PacketNumber.MIN, new Payload(frames));
+    return new ShortPacket(
+        false,
+        of(ConnectionId.random()),
+        PacketNumber.MIN,
+        new Payload(frames),
+        PacketNumber.MAX_LENGTH);
   }
 }
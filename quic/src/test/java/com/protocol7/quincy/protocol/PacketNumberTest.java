@@ -34,6 +34,16 @@ public class PacketNumberTest {
     TestUtil.assertHex("0000007b", b);
   }
 
+  @Test
+  public void roundtripBuffer() {
+    final ByteBuf bb = Unpooled.buffer();
+    PacketNumber.write(0x2589fa19, 4, bb);
+    PacketNumber.write(0x3719, 2, bb);
+
+    assertEquals(0x2589fa19, PacketNumber.read(bb, 4));
+    assertEquals(0x3719, PacketNumber.read(bb, 2));
+  }
+
   @Test
   public void next() {
     final long pn = 123;
@@ -45,13 +55,53 @@ public class PacketNumberTest {
   public void roundtrip() {
     final long pn = 123;
 
-    final byte[] b = PacketNumber.write(pn, PacketNumber.getLength(pn));
+    final int length = PacketNumber.getLength(pn, PacketNumber.NONE);
+    final ByteBuf bb = Unpooled.buffer();
+    PacketNumber.write(pn, length, bb);
 
-    final long parsed = PacketNumber.parse(b);
+    final long parsed = PacketNumber.read(bb, length);
 
     assertEquals(pn, parsed);
   }
 
+  @Test
+  public void lengthRelativeToLargestAcked() {
+    // RFC 9000, appendix A.2
+    assertEquals(2, PacketNumber.getLength(0xac5c02, 0xabe8b3));
+    assertEquals(3, PacketNumber.getLength(0xace8fe, 0xabe8b3));
+
+    assertEquals(1, PacketNumber.getLength(0, PacketNumber.NONE));
+    assertEquals(1, PacketNumber.getLength(127, 0));
+    assertEquals(2, PacketNumber.getLength(128, 0));
+    assertEquals(4, PacketNumber.getLength(1L << 40, 0));
+  }
+
+  @Test
+  public void decode() {
+    // RFC 9000, appendix A.3
+    assertEquals(0xa82f9b32L, PacketNumber.decode(0x9b32, 2, 0xa82f30eaL));
+
+    assertEquals(0, PacketNumber.decode(0, 1, PacketNumber.NONE));
+    assertEquals(0x2589fa19, PacketNumber.decode(0x2589fa19, 4, PacketNumber.NONE));
+    // wrapped
+    assertEquals(0x100, PacketNumber.decode(0x00, 1, 0xff));
+    // reordered, older than the largest received
+    assertEquals(0xfe, PacketNumber.decode(0xfe, 1, 0x101));
+  }
+
+  @Test
+  public void roundtripTruncated() {
+    // past 2^32 packets
+    final long largest = (1L << 32) + 1000;
+    for (long pn = largest + 1; pn < largest + 100_000; pn += 997) {
+      final int length = PacketNumber.getLength(pn, largest);
+      final ByteBuf bb = Unpooled.buffer();
+      PacketNumber.write(pn, length, bb);
+
+      assertEquals(pn, PacketNumber.decode(PacketNumber.read(bb, length), length, largest));
+    }
+  }
+
   @Test
   public void parseVarint() {
     assertRead(0x19, "19");
@@ -69,13 +119,13 @@ public class PacketNumberTest {
   }
 
   private void assertRead(final int expected, final String h) {
-    final long pn = PacketNumber.parse(Hex.dehex(h));
+    final long pn = PacketNumber.read(bb(h), h.length() / 2);
     assertEquals(expected, pn);
   }
 
   private void assertWrite(final int pn, final String expected) {
     final ByteBuf bb = Unpooled.buffer();
-    bb.writeBytes(PacketNumber.write(pn, PacketNumber.getLength(pn)));
+    PacketNumber.write(pn, PacketNumber.MAX_LENGTH, bb);
 
     final byte[] b = Bytes.drainToArray(bb);
 
@@ -1,6 +1,8 @@
 package com.protocol7.quincy.protocol;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import com.protocol7.quincy.TestUtil;
 import com.protocol7.quincy.protocol.frames.*;
@@ -17,32 +19,116 @@ public class PayloadTest {
   private final long pn = 1;
   private final byte[] aad = new byte[12];
 
+  private ByteBuf withAad() {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(aad);
+    return bb;
+  }
+
   @Test
   public void roundtrip() {
     final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
 
-    final ByteBuf bb = Unpooled.buffer();
-    payload.write(bb, aead, pn, aad);
+    final ByteBuf bb = withAad();
+    payload.write(bb, aead, pn, 0);
+    bb.readerIndex(aad.length);
+
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, 0);
+
+    assertEquals(payload, parsed);
+    assertFalse(bb.isReadable());
+  }
+
+  @Test
+  public void roundtripDirect() {
+    final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
+
+    final ByteBuf bb = Unpooled.directBuffer();
+    bb.writeBytes(aad);
+    payload.write(bb, aead, pn, 0);
+    bb.readerIndex(aad.length);
 
-    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, aad);
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, 0);
 
     assertEquals(payload, parsed);
   }
 
+  @Test
+  public void releaseParsedFrames() {
+    final Payload payload = new Payload(new StreamFrame(0, 0, true, "hello".getBytes()));
+
+    final ByteBuf bb = withAad();
+    payload.write(bb, aead, pn, 0);
+    bb.readerIndex(aad.length);
+
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, 0);
+
+    // stream data is a slice of the decrypted packet, retained until released
+    bb.release();
+    final StreamFrame sf = (StreamFrame) parsed.getFrames().get(0);
+    assertEquals(1, sf.refCnt());
+    assertEquals(Unpooled.wrappedBuffer("hello".getBytes()), sf.getData());
+
+    parsed.release();
+    assertEquals(0, sf.refCnt());
+  }
+
+  @Test
+  public void contains() {
+    final Payload payload = new Payload(new AckFrame(0, new AckBlock(1, 2)), PingFrame.INSTANCE);
+
+    assertTrue(payload.contains(FrameType.ACK));
+    assertTrue(payload.contains(FrameType.PING));
+    assertFalse(payload.contains(FrameType.STREAM));
+    assertFalse(payload.containsOnly(FrameType.ACK));
+
+    assertTrue(payload.addFrame(new MaxDataFrame(1)).contains(FrameType.MAX_DATA));
+    assertTrue(new Payload(new AckFrame(0, new AckBlock(1, 2))).containsOnly(FrameType.ACK));
+  }
+
+  @Test
+  public void containsParsed() {
+    final Payload payload = new Payload(new StreamFrame(0, 0, true, "hello".getBytes()));
+
+    final ByteBuf bb = withAad();
+    payload.write(bb, aead, pn, 0);
+    bb.readerIndex(aad.length);
+
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, 0);
+
+    assertTrue(parsed.containsOnly(FrameType.STREAM));
+    assertFalse(parsed.contains(FrameType.CRYPTO));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void parseInvalidAad() {
+    final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
+
+    final ByteBuf bb = withAad();
+    payload.write(bb, aead, pn, 0);
+    bb.setByte(0, 1);
+    bb.readerIndex(aad.length);
+
+    Payload.parse(bb, payload.calculateLength(), aead, pn, 0);
+  }
+
   @Test
   public void write() {
     final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
 
-    final ByteBuf bb = Unpooled.buffer();
-    payload.write(bb, aead, pn, aad);
+    final ByteBuf bb = withAad();
+    payload.write(bb, aead, pn, 0);
+    bb.readerIndex(aad.length);
 
     TestUtil.assertBuffer("e1eca61dcd946af283d48c55a5d25967efd6", bb);
   }
 
   @Test
   public void parse() {
-    final ByteBuf bb = Unpooled.copiedBuffer(Hex.dehex("e1eca61dcd946af283d48c55a5d25967efd6"));
-    final Payload parsed = Payload.parse(bb, bb.writerIndex(), aead, pn, aad);
+    final ByteBuf bb = withAad();
+    bb.writeBytes(Hex.dehex("e1eca61dcd946af283d48c55a5d25967efd6"));
+    bb.readerIndex(aad.length);
+    final Payload parsed = Payload.parse(bb, bb.readableBytes(), aead, pn, 0);
 
     final Payload expected = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
     assertEquals(expected, parsed);
@@ -1,5 +1,6 @@
 package com.protocol7.quincy.protocol.frames;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.protocol7.quincy.utils.Rnd;
@@ -102,6 +103,28 @@ public class FrameTest {
     assertFrame(new NewToken(Rnd.rndBytes(20)));
   }
 
+  @Test(expected = RuntimeException.class)
+  public void unsupportedFrame() {
+    // PATH_CHALLENGE
+    Frame.parse(Unpooled.wrappedBuffer(new byte[] {0x1a, 0, 0, 0, 0, 0, 0, 0, 0}));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void unknownFrame() {
+    Frame.parse(Unpooled.wrappedBuffer(new byte[] {0x1e}));
+  }
+
+  @Test
+  public void frameTypeWithFlags() {
+    assertEquals(FrameType.ACK, FrameType.fromByte((byte) 0x03));
+    for (int b = 0x08; b <= 0x0f; b++) {
+      assertEquals(FrameType.STREAM, FrameType.fromByte((byte) b));
+    }
+    assertEquals(FrameType.MAX_STREAMS, FrameType.fromByte((byte) 0x13));
+    assertEquals(FrameType.STREAMS_BLOCKED, FrameType.fromByte((byte) 0x17));
+    assertEquals(FrameType.APPLICATION_CLOSE, FrameType.fromByte((byte) 0x1d));
+  }
+
   private void assertFrame(final Frame frame) {
     final ByteBuf bb = Unpooled.buffer();
     frame.write(bb);
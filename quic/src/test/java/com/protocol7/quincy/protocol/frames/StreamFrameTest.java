@@ -33,7 +33,24 @@ public class StreamFrameTest {
     assertFalse(frame.isFin());
     assertEquals(0, frame.getOffset());
     assertEquals(467722447824726350L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertEquals(Unpooled.wrappedBuffer(DATA), frame.getData());
+  }
+
+  @Test
+  public void parseRetainsSlice() {
+    final ByteBuf bb = Unpooled.copiedBuffer(Hex.dehex("10c67daf169411a94e48656c6c6f"));
+
+    final StreamFrame frame = StreamFrame.parse(bb);
+    assertEquals(2, bb.refCnt());
+
+    // the frame data remains readable after the packet buffer is released
+    bb.release();
+    assertEquals(1, frame.refCnt());
+    assertEquals(Unpooled.wrappedBuffer(DATA), frame.getData());
+    assertEquals(DATA.length, frame.getLength());
+
+    assertTrue(frame.release());
+    assertEquals(0, bb.refCnt());
   }
 
   @Test
@@ -45,7 +62,7 @@ public class StreamFrameTest {
     assertFalse(frame.isFin());
     assertEquals(123, frame.getOffset());
     assertEquals(210490071094968184L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertEquals(Unpooled.wrappedBuffer(DATA), frame.getData());
   }
 
   @Test
@@ -57,7 +74,7 @@ public class StreamFrameTest {
     assertTrue(frame.isFin());
     assertEquals(0, frame.getOffset());
     assertEquals(4158820520164861892L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertEquals(Unpooled.wrappedBuffer(DATA), frame.getData());
   }
 
   @Test
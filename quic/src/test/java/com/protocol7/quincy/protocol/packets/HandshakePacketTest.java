@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
+import com.protocol7.quincy.protocol.Payload;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.tls.aead.AEAD;
@@ -59,6 +60,17 @@ public class HandshakePacketTest {
     assertEquals(parsed1.getPayload(), parsed2.getPayload());
   }
 
+  @Test
+  public void addFrameWithPacketNumberLength() {
+    final HandshakePacket packet = p(PacketNumber.MIN);
+
+    final HandshakePacket rebuilt = packet.addFrame(new PaddingFrame(2), 2);
+
+    assertEquals(2, rebuilt.getPacketNumberLength());
+    assertEquals(new Payload(new PaddingFrame(1), new PaddingFrame(2)), rebuilt.getPayload());
+    assertEquals(new Payload(new PaddingFrame(1)), packet.getPayload()); // must not been mutated
+  }
+
   private HandshakePacket p(final long pn) {
     return HandshakePacket.create(
         Optional.of(destConnId), Optional.of(srcConnId), pn, Version.DRAFT_18, new PaddingFrame(1));
@@ -1,11 +1,13 @@
 package com.protocol7.quincy.protocol.packets;
 
 import static java.util.Optional.empty;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.protocol7.quincy.protocol.*;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.tls.EncryptionLevel;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.TestAEAD;
 import com.protocol7.quincy.utils.Rnd;
@@ -37,6 +39,41 @@ public class PacketTest {
     assertTrue(parsed instanceof InitialPacket);
   }
 
+  @Test
+  public void destinationConnectionIdHash() {
+    final ByteBuf initial = Unpooled.buffer();
+    InitialPacket.create(
+            Optional.of(connId), empty(), pn, Version.DRAFT_18, empty(), new PaddingFrame(1))
+        .write(initial, aead);
+
+    final ByteBuf shortPacket = Unpooled.buffer();
+    new ShortPacket(
+            false,
+            Optional.of(connId),
+            pn + 1,
+            new Payload(PingFrame.INSTANCE),
+            PacketNumber.MAX_LENGTH)
+        .write(shortPacket, aead);
+
+    // long and short header packets for the same connection must hash the same
+    assertEquals(
+        connId.hashCode(), Packet.destinationConnectionIdHash(initial, connId.getLength()));
+    assertEquals(
+        connId.hashCode(), Packet.destinationConnectionIdHash(shortPacket, connId.getLength()));
+
+    // the buffer is not read
+    assertEquals(0, initial.readerIndex());
+  }
+
+  @Test
+  public void destinationConnectionIdHashTruncated() {
+    assertEquals(0, Packet.destinationConnectionIdHash(Unpooled.buffer(), connId.getLength()));
+    assertEquals(
+        0,
+        Packet.destinationConnectionIdHash(
+            Unpooled.wrappedBuffer(new byte[] {0x40, 1, 2}), connId.getLength()));
+  }
+
   @Test
   public void parseVerNegPacket() {
     final VersionNegotiationPacket packet =
@@ -76,6 +113,21 @@ public class PacketTest {
     assertTrue(parsed instanceof HandshakePacket);
   }
 
+  @Test
+  public void parseZeroRttPacket() {
+    final ZeroRttPacket packet =
+        ZeroRttPacket.create(
+            Optional.ofNullable(connId), empty(), pn, Version.DRAFT_18, new PaddingFrame(1));
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, aead);
+
+    assertTrue(ZeroRttPacket.isZeroRtt(bb));
+
+    final Packet parsed = Packet.parse(bb, connId.getLength()).complete(l -> aead);
+    assertTrue(parsed instanceof ZeroRttPacket);
+    assertEquals(EncryptionLevel.ZeroRtt, Packet.getEncryptionLevel(parsed));
+  }
+
   @Test
   public void parseRetryPacket() {
     final RetryPacket packet =
@@ -91,7 +143,12 @@ public class PacketTest {
   @Test
   public void parseShortPacket() {
     final ShortPacket packet =
-        new ShortPacket(false, Optional.of(connId), pn, new Payload(PingFrame.INSTANCE));
+        new ShortPacket(
+            false,
+            Optional.of(connId),
+            pn + 1,
+            new Payload(PingFrame.INSTANCE),
+            PacketNumber.MAX_LENGTH);
     final ByteBuf bb = Unpooled.buffer();
     packet.write(bb, aead);
 
@@ -2,15 +2,23 @@ package com.protocol7.quincy.protocol.packets;
 
 import static java.util.Optional.of;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.Payload;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.protocol.frames.PingFrame;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADs;
+import com.protocol7.quincy.tls.aead.KeyPhase;
+import com.protocol7.quincy.tls.aead.KeyPhases;
 import com.protocol7.quincy.tls.aead.TestAEAD;
 import com.protocol7.quincy.utils.Bits;
+import com.protocol7.quincy.utils.Rnd;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.time.Clock;
 import org.junit.Test;
 
 public class ShortPacketTest {
@@ -32,6 +40,47 @@ public class ShortPacketTest {
     assertEquals(packet.getPayload(), parsed.getPayload());
   }
 
+  @Test
+  public void roundtripKeyPhase() {
+    final byte[] secret = Rnd.rndBytes(32);
+    final KeyPhase keys = new KeyPhase(false, aead, secret, secret);
+    final AEADs aeads = new AEADs(aead);
+    aeads.setOneRttKeys(
+        new KeyPhases(
+            keys,
+            KeyPhases.NO_LIMIT,
+            KeyPhases.NO_LIMIT,
+            KeyPhases.DEFAULT_RETAIN_PREVIOUS,
+            Clock.systemUTC()));
+
+    // protected using the keys of the next phase, the header using the unchanged header keys
+    final ShortPacket packet = ShortPacket.create(true, of(dest), pn, PingFrame.INSTANCE);
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, keys.next().getAEAD());
+
+    final ShortPacket parsed = ShortPacket.parse(bb, dest.getLength()).complete(aeads);
+
+    assertTrue(parsed.getKeyPhase());
+    assertEquals(packet.getPacketNumber(), parsed.getPacketNumber());
+    assertEquals(packet.getPayload(), parsed.getPayload());
+  }
+
+  @Test
+  public void roundtripTruncated() {
+    // a short packet number, padded for the header protection sample
+    final ShortPacket packet =
+        ShortPacket.create(false, of(dest), pn, PingFrame.INSTANCE).withPacketNumberLength(1);
+    final ByteBuf bb = buffer(packet);
+
+    assertEquals(1 + dest.getLength() + 1 + 3 + AEAD.OVERHEAD, bb.readableBytes());
+    final ShortPacket parsed =
+        ShortPacket.parse(bb, dest.getLength()).complete(level -> aead, pn - 10);
+
+    assertEquals(pn, parsed.getPacketNumber());
+    assertEquals(1, parsed.getPacketNumberLength());
+    assertEquals(PingFrame.INSTANCE, parsed.getPayload().getFrames().get(0));
+  }
+
   @Test
   public void roundtripPrefix() {
     // make sure packet doesn't need to start at 0 in buffer
@@ -53,6 +102,29 @@ public class ShortPacketTest {
     assertEquals(packet.getPayload(), parsed.getPayload());
   }
 
+  @Test
+  public void builder() {
+    final ShortPacket packet = packet();
+
+    final ShortPacket built =
+        ShortPacket.builder(packet).addFrame(new PaddingFrame(1)).withPacketNumberLength(2).build();
+
+    assertEquals(
+        new ShortPacket(
+            false,
+            of(dest),
+            pn,
+            new Payload(PingFrame.INSTANCE, new PaddingFrame(1)),
+            PacketNumber.MAX_LENGTH),
+        built);
+    assertEquals(2, built.getPacketNumberLength());
+    assertEquals(new Payload(PingFrame.INSTANCE), packet.getPayload()); // must not been mutated
+
+    final ShortPacket rebuilt = ShortPacket.builder(packet).build();
+    assertEquals(packet, rebuilt);
+    assertEquals(packet.getPacketNumberLength(), rebuilt.getPacketNumberLength());
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void invalidFirstBit() {
     final ByteBuf bb = buffer(packet());
@@ -70,7 +142,8 @@ public class ShortPacketTest {
   }
 
   private ShortPacket packet() {
-    return new ShortPacket(false, of(dest), pn, new Payload(PingFrame.INSTANCE));
+    return new ShortPacket(
+        false, of(dest), pn, new Payload(PingFrame.INSTANCE), PacketNumber.MAX_LENGTH);
   }
 
   private ByteBuf buffer(final ShortPacket packet) {
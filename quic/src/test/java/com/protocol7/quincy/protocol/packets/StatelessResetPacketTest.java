@@ -0,0 +1,90 @@
+package com.protocol7.quincy.protocol.packets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class StatelessResetPacketTest {
+
+  private final byte[] token = Rnd.rndBytes(StatelessResetPacket.TOKEN_LENGTH);
+  private final StatelessResetPacket packet = new StatelessResetPacket(40, token);
+
+  @Test
+  public void write() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+
+    assertEquals(40, bb.readableBytes());
+    // must look like a short header packet
+    assertFalse(Packet.isLongHeader(bb.getByte(0) & 0xFF));
+    assertEquals(0x40, bb.getByte(0) & 0x40);
+  }
+
+  @Test
+  public void isStatelessReset() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+
+    assertTrue(StatelessResetPacket.isStatelessReset(bb, token));
+    // must not consume the buffer
+    assertEquals(40, bb.readableBytes());
+  }
+
+  @Test
+  public void isStatelessResetOtherToken() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+
+    assertFalse(
+        StatelessResetPacket.isStatelessReset(bb, Rnd.rndBytes(StatelessResetPacket.TOKEN_LENGTH)));
+  }
+
+  @Test
+  public void isStatelessResetLastByteDiffers() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+    bb.setByte(bb.writerIndex() - 1, bb.getByte(bb.writerIndex() - 1) ^ 1);
+
+    assertFalse(StatelessResetPacket.isStatelessReset(bb, token));
+  }
+
+  @Test
+  public void isStatelessResetNoToken() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+
+    assertFalse(StatelessResetPacket.isStatelessReset(bb, new byte[0]));
+  }
+
+  @Test
+  public void isStatelessResetTooShort() {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(token);
+
+    assertFalse(StatelessResetPacket.isStatelessReset(bb, token));
+  }
+
+  @Test
+  public void isStatelessResetLongHeader() {
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, null);
+    bb.setByte(0, bb.getByte(0) | 0x80);
+
+    assertFalse(StatelessResetPacket.isStatelessReset(bb, token));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooShort() {
+    new StatelessResetPacket(StatelessResetPacket.MIN_LENGTH - 1, token);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidToken() {
+    new StatelessResetPacket(40, new byte[15]);
+  }
+}
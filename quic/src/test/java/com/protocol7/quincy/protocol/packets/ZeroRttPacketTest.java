@@ -0,0 +1,77 @@
+package com.protocol7.quincy.protocol.packets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.PacketNumber;
+import com.protocol7.quincy.protocol.StreamId;
+import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.TestAEAD;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Optional;
+import org.junit.Test;
+
+public class ZeroRttPacketTest {
+
+  private final ConnectionId destConnId = ConnectionId.random();
+  private final ConnectionId srcConnId = ConnectionId.random();
+
+  private final AEAD aead = TestAEAD.create();
+
+  @Test
+  public void roundtrip() {
+    final StreamFrame frame =
+        new StreamFrame(StreamId.next(-1, true, true), 0, true, "hello".getBytes());
+    final ZeroRttPacket packet =
+        ZeroRttPacket.create(
+            Optional.of(destConnId),
+            Optional.of(srcConnId),
+            PacketNumber.MIN,
+            Version.DRAFT_18,
+            frame);
+
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, aead);
+
+    assertTrue(ZeroRttPacket.isZeroRtt(bb));
+
+    final ZeroRttPacket parsed = ZeroRttPacket.parse(bb).complete(l -> aead);
+
+    assertEquals(destConnId, parsed.getDestinationConnectionId().get());
+    assertEquals(srcConnId, parsed.getSourceConnectionId().get());
+    assertEquals(PacketNumber.MIN, parsed.getPacketNumber());
+    assertEquals(packet.getVersion(), parsed.getVersion());
+    assertEquals(frame, parsed.getPayload().getFrames().get(0));
+  }
+
+  @Test
+  public void isNotZeroRtt() {
+    final ByteBuf bb = Unpooled.buffer();
+    HandshakePacket.create(
+            Optional.of(destConnId),
+            Optional.of(srcConnId),
+            PacketNumber.MIN,
+            Version.DRAFT_18,
+            new PaddingFrame(1))
+        .write(bb, aead);
+
+    assertFalse(ZeroRttPacket.isZeroRtt(bb));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cryptoFrameNotAllowed() {
+    ZeroRttPacket.create(
+        Optional.of(destConnId),
+        Optional.of(srcConnId),
+        PacketNumber.MIN,
+        Version.DRAFT_18,
+        new CryptoFrame(0, new byte[10]));
+  }
+}
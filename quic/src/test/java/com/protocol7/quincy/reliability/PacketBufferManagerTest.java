@@ -5,10 +5,12 @@ import static java.util.Optional.of;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.Payload;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.AckBlock;
@@ -16,14 +18,19 @@ import com.protocol7.quincy.protocol.frames.AckFrame;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
@@ -55,7 +62,8 @@ public class PacketBufferManagerTest {
     when(ticker.nanoTime()).thenReturn(2000_0000_0000L);
 
     final ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-    when(timer.newTimeout(taskCaptor.capture(), anyLong(), any(TimeUnit.class))).thenReturn(null);
+    when(timer.newTimeout(taskCaptor.capture(), anyLong(), any(TimeUnit.class)))
+        .thenReturn(timeout);
 
     when(timeout.timer()).thenReturn(timer);
 
@@ -182,6 +190,19 @@ public class PacketBufferManagerTest {
     assertFalse(buffer.getBuffer().isEmpty());
   }
 
+  @Test
+  public void dontBufferFailedSend() {
+    doThrow(new IllegalStateException()).when(ctx).next(any(Packet.class));
+
+    try {
+      buffer.beforeSendPacket(packet(2, PingFrame.INSTANCE), ctx);
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+
+    assertTrue(buffer.getBuffer().isEmpty());
+  }
+
   @Test
   public void send() {
     final Packet pingPacket = packet(2, PingFrame.INSTANCE);
@@ -195,6 +216,36 @@ public class PacketBufferManagerTest {
     assertBuffered(2);
   }
 
+  @Test
+  public void truncatePacketNumber() {
+    buffer.beforeSendPacket(packet(300, PingFrame.INSTANCE), ctx);
+    assertEquals(2, ((FullPacket) verifyNext()).getPacketNumberLength());
+
+    // once acked, later packet numbers are encoded relative to the largest acked
+    buffer.onReceivePacket(packet(3, new AckFrame(123, new AckBlock(300, 300))), ctx);
+    buffer.beforeSendPacket(packet(301, PingFrame.INSTANCE), ctx);
+
+    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
+    verify(ctx, times(3)).next(captor.capture());
+    assertEquals(1, ((FullPacket) captor.getValue()).getPacketNumberLength());
+  }
+
+  @Test
+  public void piggybackAck() {
+    // acks for ack only packets are not flushed, but sent with the next packet
+    buffer.onReceivePacket(packet(1, new AckFrame(123, new AckBlock(7, 8))), ctx);
+    buffer.beforeSendPacket(packet(300, PingFrame.INSTANCE), ctx);
+
+    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
+    verify(ctx, times(2)).next(captor.capture());
+    final FullPacket actual = (FullPacket) captor.getValue();
+    assertEquals(300, actual.getPacketNumber());
+    assertEquals(2, actual.getPacketNumberLength());
+    assertEquals(
+        List.of(PingFrame.INSTANCE, new AckFrame(67, new AckBlock(1, 1))),
+        actual.getPayload().getFrames());
+  }
+
   @Test
   public void resend() throws Exception {
     final Packet pingPacket = packet(2, PingFrame.INSTANCE);
@@ -209,8 +260,44 @@ public class PacketBufferManagerTest {
     verify(frameSender).send(PingFrame.INSTANCE);
   }
 
+  @Test
+  public void releaseNotResent() throws Exception {
+    final ByteBuf data1 = Unpooled.buffer().writeZero(10);
+    final ByteBuf data2 = Unpooled.buffer().writeZero(10);
+    buffer.beforeSendPacket(
+        packet(2, new StreamFrame(0, 0, false, data1), new StreamFrame(0, 10, false, data2)), ctx);
+
+    when(ticker.nanoTime()).thenReturn(3000_0000_0000L);
+    when(frameSender.send(any(Frame.class))).thenThrow(new IllegalStateException());
+
+    try {
+      resendTask.run(timeout);
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+
+    // neither buffered nor sent
+    assertEquals(0, data1.refCnt());
+    assertEquals(0, data2.refCnt());
+  }
+
+  @Test
+  public void close() {
+    final ByteBuf data = Unpooled.buffer().writeZero(10);
+    buffer.beforeSendPacket(packet(2, new StreamFrame(0, 0, false, data)), ctx);
+    buffer.beforeSendPacket(ip(3, new PaddingFrame(1)), ctx);
+
+    buffer.close();
+
+    assertEquals(0, data.refCnt());
+    assertBufferEmpty();
+    assertTrue(buffer.getInitialBuffer().isEmpty());
+    verify(timeout).cancel();
+  }
+
   private Packet packet(final long pn, final Frame... frames) {
-    return new ShortPacket(false, of(random()), pn, new Payload(frames));
+    return new ShortPacket(false, of(random()), pn, new Payload(frames), PacketNumber.MAX_LENGTH);
   }
 
   private Packet ip(final long pn, final Frame... frames) {
@@ -7,9 +7,12 @@ import static org.mockito.Mockito.when;
 
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.MaxDataFrame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -78,6 +81,39 @@ public class PacketBufferTest {
     assertTrue(buffer.drainSince(10, TimeUnit.NANOSECONDS).isEmpty());
   }
 
+  @Test
+  public void releaseOnAck() {
+    final ByteBuf data = Unpooled.directBuffer().writeBytes("hello".getBytes());
+    buffer.put(ShortPacket.create(false, Optional.empty(), pn1, new StreamFrame(0, 0, true, data)));
+
+    assertEquals(1, data.refCnt());
+    buffer.remove(pn1);
+    assertEquals(0, data.refCnt());
+  }
+
+  @Test
+  public void releaseOnClear() {
+    final ByteBuf data = Unpooled.directBuffer().writeBytes("hello".getBytes());
+    buffer.put(ShortPacket.create(false, Optional.empty(), pn1, new StreamFrame(0, 0, true, data)));
+
+    buffer.clear();
+    assertTrue(buffer.isEmpty());
+    assertEquals(0, data.refCnt());
+  }
+
+  @Test
+  public void drainHandsOverData() {
+    final ByteBuf data = Unpooled.directBuffer().writeBytes("hello".getBytes());
+    final StreamFrame frame = new StreamFrame(0, 0, true, data);
+    buffer.put(ShortPacket.create(false, Optional.empty(), pn1, frame));
+
+    when(ticker.nanoTime()).thenReturn(100L);
+    assertEquals(List.of(frame), buffer.drainSince(10, TimeUnit.NANOSECONDS));
+
+    // to be resent, and buffered again
+    assertEquals(1, data.refCnt());
+  }
+
   private FullPacket p(final long pn) {
     return ShortPacket.create(false, Optional.empty(), pn, f(pn));
   }
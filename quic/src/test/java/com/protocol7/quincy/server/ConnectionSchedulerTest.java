@@ -0,0 +1,166 @@
+package com.protocol7.quincy.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+public class ConnectionSchedulerTest {
+
+  private final Queue<Runnable> executor = new ArrayDeque<>();
+  private final List<String> runs = new ArrayList<>();
+  private final ConnectionScheduler scheduler = new ConnectionScheduler(executor::add, 2, 4, 10);
+
+  private void schedule(final int key, final String name) {
+    scheduler.schedule(key, () -> runs.add(name), Unpooled.EMPTY_BUFFER);
+  }
+
+  private void runExecutor() {
+    executor.poll().run();
+  }
+
+  @Test
+  public void roundRobin() {
+    for (int i = 0; i < 4; i++) {
+      schedule(1, "a" + i);
+    }
+    schedule(2, "b0");
+    schedule(2, "b1");
+
+    // a single drain is scheduled
+    assertEquals(1, executor.size());
+
+    // at most a quantum of 2 per connection per round, and a budget of 4 per drain
+    runExecutor();
+    assertEquals(List.of("a0", "a1", "b0", "b1"), runs);
+
+    // the rest is left for the next drain, after yielding the executor
+    assertEquals(1, executor.size());
+    runExecutor();
+    assertEquals(List.of("a0", "a1", "b0", "b1", "a2", "a3"), runs);
+    assertTrue(scheduler.isIdle());
+    assertTrue(executor.isEmpty());
+  }
+
+  @Test
+  public void heavyConnectionDoesNotStarve() {
+    for (int i = 0; i < 10; i++) {
+      schedule(1, "a" + i);
+    }
+    runExecutor();
+
+    // a connection getting work later is run in the next drain, not after all the work queued
+    // for the heavy connection
+    schedule(2, "b0");
+    runExecutor();
+
+    assertEquals(List.of("a0", "a1", "a2", "a3", "a4", "a5", "b0", "a6"), runs);
+    assertFalse(scheduler.isIdle());
+  }
+
+  @Test
+  public void failingTask() {
+    scheduler.schedule(
+        1,
+        () -> {
+          throw new IllegalStateException();
+        },
+        Unpooled.EMPTY_BUFFER);
+    schedule(2, "b0");
+
+    runExecutor();
+
+    assertEquals(List.of("b0"), runs);
+  }
+
+  @Test
+  public void scheduleWhileRunning() {
+    scheduler.schedule(1, () -> schedule(1, "a1"), Unpooled.EMPTY_BUFFER);
+
+    runExecutor();
+
+    // run in the same drain, in order
+    assertEquals(List.of("a1"), runs);
+    assertTrue(scheduler.isIdle());
+  }
+
+  @Test
+  public void dropBeyondMaxQueued() {
+    for (int i = 0; i < 10; i++) {
+      schedule(1, "a" + i);
+    }
+    final ByteBuf msg = Unpooled.buffer();
+    scheduler.schedule(1, () -> runs.add("a10"), msg);
+
+    // released, as the task will never run
+    assertEquals(0, msg.refCnt());
+
+    // other connections are not affected
+    final ByteBuf other = Unpooled.buffer();
+    scheduler.schedule(2, () -> runs.add("b0"), other);
+    assertEquals(1, other.refCnt());
+  }
+
+  @Test
+  public void unboundedBeyondMaxQueued() {
+    for (int i = 0; i < 10; i++) {
+      schedule(1, "a" + i);
+    }
+    final List<String> dropped = new ArrayList<>();
+    scheduler.scheduleUnbounded(1, () -> runs.add("w0"), () -> dropped.add("w0"));
+
+    while (!executor.isEmpty()) {
+      runExecutor();
+    }
+
+    // not dropped, and run in order after the queued work
+    assertEquals("w0", runs.get(runs.size() - 1));
+    assertEquals(11, runs.size());
+    assertTrue(dropped.isEmpty());
+  }
+
+  @Test
+  public void unboundedOnRejected() {
+    final ConnectionScheduler scheduler =
+        new ConnectionScheduler(
+            task -> {
+              throw new RejectedExecutionException();
+            },
+            2,
+            4,
+            10);
+
+    final List<String> dropped = new ArrayList<>();
+    scheduler.scheduleUnbounded(1, () -> runs.add("w0"), () -> dropped.add("w0"));
+
+    assertEquals(List.of("w0"), dropped);
+    assertTrue(runs.isEmpty());
+    assertTrue(scheduler.isIdle());
+  }
+
+  @Test
+  public void releaseOnRejected() {
+    final ConnectionScheduler scheduler =
+        new ConnectionScheduler(
+            task -> {
+              throw new RejectedExecutionException();
+            },
+            2,
+            4,
+            10);
+
+    final ByteBuf msg = Unpooled.buffer();
+    scheduler.schedule(1, () -> runs.add("a0"), msg);
+
+    assertEquals(0, msg.refCnt());
+    assertTrue(scheduler.isIdle());
+  }
+}
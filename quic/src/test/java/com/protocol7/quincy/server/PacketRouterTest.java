@@ -2,8 +2,11 @@ package com.protocol7.quincy.server;
 
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -13,14 +16,23 @@ import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
+import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.protocol.packets.StatelessResetPacket;
 import com.protocol7.quincy.protocol.packets.VersionNegotiationPacket;
+import com.protocol7.quincy.protocol.packets.ZeroRttPacket;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.termination.StatelessResetToken;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.tls.KeyUtil;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.TestAEAD;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.net.InetSocketAddress;
+import java.security.PrivateKey;
 import java.util.List;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,14 +54,18 @@ public class PacketRouterTest {
   @Mock private StreamListener listener;
   @Mock private PacketSender sender;
   private InetSocketAddress peerAddress = TestUtil.getTestAddress();
+  private final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
 
   @Before
   public void setUp() {
-    router = new PacketRouter(Version.DRAFT_18, connections, listener);
+    router =
+        new PacketRouter(
+            Version.DRAFT_18, connections, listener, new StatelessResetToken(privateKey));
 
     when(connections.get(any(), any(), any(), any())).thenReturn(connection);
+    when(connections.get(any(ConnectionId.class))).thenReturn(Optional.of(connection));
 
-    when(connection.getAEAD(any())).thenReturn(aead);
+    when(connection.getAEADProvider()).thenReturn(level -> aead);
     when(connection.getLocalConnectionId()).thenReturn(of(srcConnId));
   }
 
@@ -67,6 +83,48 @@ public class PacketRouterTest {
     verify(connection).onPacket(packet);
   }
 
+  @Test
+  public void bufferEarlyDataWithoutKeys() {
+    when(connection.available(EncryptionLevel.ZeroRtt)).thenReturn(false);
+
+    final ZeroRttPacket packet =
+        ZeroRttPacket.create(of(destConnId), empty(), 2, Version.DRAFT_18, new PaddingFrame(1));
+
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, aead);
+    final ByteBuf written = bb.copy();
+
+    router.route(bb, sender, peerAddress);
+
+    verify(connection, never()).onPacket(any());
+
+    // handed to the connection as a whole, to be read once the keys are installed
+    final ArgumentCaptor<ByteBuf> captor = ArgumentCaptor.forClass(ByteBuf.class);
+    verify(connection).bufferZeroRtt(captor.capture());
+    assertEquals(written, captor.getValue());
+    assertEquals(2, bb.refCnt());
+  }
+
+  @Test
+  public void routeCoalescedAfterBufferedEarlyData() {
+    when(connection.available(EncryptionLevel.ZeroRtt)).thenReturn(false);
+
+    final ZeroRttPacket zeroRtt =
+        ZeroRttPacket.create(of(destConnId), empty(), 2, Version.DRAFT_18, new PaddingFrame(1));
+    final ShortPacket oneRtt = ShortPacket.create(false, of(destConnId), 3, new PaddingFrame(1));
+
+    final ByteBuf bb = Unpooled.buffer();
+    zeroRtt.write(bb, aead);
+    oneRtt.write(bb, aead);
+
+    router.route(bb, sender, peerAddress);
+
+    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
+    verify(connection).onPacket(captor.capture());
+    assertTrue(captor.getValue() instanceof ShortPacket);
+    assertEquals(3, ((ShortPacket) captor.getValue()).getPacketNumber());
+  }
+
   @Test(expected = RuntimeException.class)
   public void invalidPacket() {
     final ByteBuf bb = Unpooled.wrappedBuffer("this is not a packet".getBytes());
@@ -95,4 +153,40 @@ public class PacketRouterTest {
     assertEquals(srcConnId, verNeg.getSourceConnectionId().get());
     assertEquals(List.of(Version.DRAFT_18), verNeg.getSupportedVersions());
   }
+
+  @Test
+  public void statelessResetForUnknownConnection() {
+    when(connections.get(destConnId)).thenReturn(Optional.empty());
+
+    final ShortPacket packet = ShortPacket.create(false, of(destConnId), 2, new PaddingFrame(40));
+
+    final ByteBuf bb = Unpooled.buffer();
+    packet.write(bb, aead);
+    final int length = bb.readableBytes();
+
+    router.route(bb, sender, peerAddress);
+
+    final ArgumentCaptor<StatelessResetPacket> captor =
+        ArgumentCaptor.forClass(StatelessResetPacket.class);
+    verify(sender).send(captor.capture(), any());
+
+    final StatelessResetPacket reset = captor.getValue();
+    assertEquals(length - 1, reset.getLength());
+    assertArrayEquals(new StatelessResetToken(privateKey).create(destConnId), reset.getToken());
+
+    verify(connection, never()).onPacket(any());
+  }
+
+  @Test
+  public void noStatelessResetForShortPacket() {
+    when(connections.get(destConnId)).thenReturn(Optional.empty());
+
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeByte(0x40);
+    destConnId.write(bb);
+
+    router.route(bb, sender, peerAddress);
+
+    verify(sender, never()).send(any(), any());
+  }
 }
@@ -6,6 +6,8 @@ import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.protocol7.quincy.MockTimer;
 import com.protocol7.quincy.TestUtil;
 import com.protocol7.quincy.connection.PacketSender;
 import com.protocol7.quincy.connection.State;
@@ -16,16 +18,22 @@ import com.protocol7.quincy.protocol.*;
 import com.protocol7.quincy.protocol.frames.*;
 import com.protocol7.quincy.protocol.packets.*;
 import com.protocol7.quincy.streams.StreamListener;
+import com.protocol7.quincy.tls.CertificateChain;
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.ClientTlsSession;
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.ClientTlsSession.HandshakeResult;
 import com.protocol7.quincy.tls.KeyUtil;
 import com.protocol7.quincy.tls.NoopCertificateValidator;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultEventExecutor;
 import io.netty.util.concurrent.SucceededFuture;
 import java.security.PrivateKey;
+import java.time.Clock;
 import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
@@ -50,11 +58,14 @@ public class ServerTest {
       new ClientTlsSession(
           InitialAEAD.create(destConnectionId.asBytes(), true),
           new QuicBuilder().configuration().toTransportParameters(),
-          new NoopCertificateValidator());
+          new NoopCertificateValidator(),
+          new SessionTicketCache(100, Clock.systemUTC()),
+          "",
+          CipherSuite.SUPPORTED);
 
   @Mock private PacketSender packetSender;
   @Mock private StreamListener streamListener;
-  @Mock private Timer scheduler;
+  private final Timer scheduler = new MockTimer();
   private final FlowControlHandler flowControlHandler = new DefaultFlowControlHandler(1000, 1000);
 
   @Before
@@ -71,11 +82,49 @@ public class ServerTest {
             srcConnectionId,
             streamListener,
             packetSender,
-            certificates,
+            new CertificateChain(certificates, false),
             privateKey,
             flowControlHandler,
             TestUtil.getTestAddress(),
-            scheduler);
+            scheduler,
+            MoreExecutors.directExecutor(),
+            MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void bufferZeroRtt() {
+    final ByteBuf packet = Unpooled.buffer().writeBytes(DATA);
+
+    connection.bufferZeroRtt(packet);
+
+    // held until the handshake has been calculated
+    assertEquals(1, packet.refCnt());
+
+    // no 0-RTT keys installed, early data rejected
+    connection.setState(State.BeforeReady);
+
+    assertEquals(0, packet.refCnt());
+  }
+
+  @Test
+  public void bufferZeroRttAfterHandshake() {
+    connection.setState(State.BeforeReady);
+
+    final ByteBuf packet = Unpooled.buffer().writeBytes(DATA);
+    connection.bufferZeroRtt(packet);
+
+    // can never be read
+    assertEquals(0, packet.refCnt());
+  }
+
+  @Test
+  public void releaseBufferedZeroRttOnClose() {
+    final ByteBuf packet = Unpooled.buffer().writeBytes(DATA);
+    connection.bufferZeroRtt(packet);
+
+    connection.closeByPeer();
+
+    assertEquals(0, packet.refCnt());
   }
 
   @Test
@@ -120,6 +169,10 @@ public class ServerTest {
     connection.onPacket(hp(destConnectionId2, new CryptoFrame(0, hr.getFin())));
 
     assertEquals(State.Ready, connection.getState());
+
+    final ShortPacket ticket = (ShortPacket) captureSentPacket(4);
+    final CryptoFrame cf3 = (CryptoFrame) ticket.getPayload().getFrames().get(0);
+    clientTlsSession.handleNewSessionTicket(cf3.getCryptoData());
   }
 
   @Test
@@ -128,7 +181,7 @@ public class ServerTest {
 
     connection.onPacket(packet(destConnectionId2, new StreamFrame(streamId, 0, false, DATA)));
 
-    verify(streamListener).onData(any(), eq(DATA), eq(false));
+    verify(streamListener).onData(any(), eq(Unpooled.wrappedBuffer(DATA)), eq(false));
   }
 
   @Test
@@ -144,7 +197,7 @@ public class ServerTest {
 
     connection.onPacket(packet(destConnectionId2, PingFrame.INSTANCE));
 
-    assertAck(4, 3, 4, 4);
+    assertAck(5, 4, 4, 4);
   }
 
   private void assertAck(
@@ -178,7 +231,8 @@ public class ServerTest {
   }
 
   private Packet packet(final ConnectionId destConnId, final Frame... frames) {
-    return new ShortPacket(false, of(destConnId), nextPacketNumber(), new Payload(frames));
+    return new ShortPacket(
+        false, of(destConnId), nextPacketNumber(), new Payload(frames), PacketNumber.MAX_LENGTH);
   }
 
   private Packet hp(final ConnectionId destConnId, final Frame... frames) {
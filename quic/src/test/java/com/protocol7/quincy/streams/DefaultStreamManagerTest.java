@@ -1,23 +1,34 @@
 package com.protocol7.quincy.streams;
 
 import static java.util.Optional.of;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.connection.State;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.Payload;
+import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.protocol.packets.ZeroRttPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,7 +53,13 @@ public class DefaultStreamManagerTest {
     when(ctx.getState()).thenReturn(State.Ready);
     when(packet.getPacketNumber()).thenReturn(456L);
 
-    manager = new DefaultStreamManager(ctx, listener);
+    manager =
+        new DefaultStreamManager(
+            ctx,
+            SendCredit.UNLIMITED,
+            ReceiveWindow.UNLIMITED,
+            new UrgencyStreamScheduler(),
+            listener);
   }
 
   @Test
@@ -89,7 +106,7 @@ public class DefaultStreamManagerTest {
     final Stream stream = manager.openStream(true, true);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), 0, true, DATA1)), ctx);
-    verify(listener).onData(stream, DATA1, true);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA1), true);
 
     assertTrue(stream.isFinished());
   }
@@ -99,11 +116,11 @@ public class DefaultStreamManagerTest {
     final Stream stream = manager.openStream(true, true);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), 0, false, DATA1)), ctx);
-    verify(listener).onData(stream, DATA1, false);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA1), false);
     verifyNoMoreInteractions(listener);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), DATA1.length, true, DATA2)), ctx);
-    verify(listener).onData(stream, DATA2, true);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA2), true);
 
     assertTrue(stream.isFinished());
   }
@@ -111,13 +128,18 @@ public class DefaultStreamManagerTest {
   @Test
   public void receiveMultiOutOfOrder() {
     final Stream stream = manager.openStream(true, true);
+    // the data is released once the listener returns
+    final List<ByteBuf> received = new ArrayList<>();
+    doAnswer(invocation -> received.add(Unpooled.copiedBuffer((ByteBuf) invocation.getArgument(1))))
+        .when(listener)
+        .onData(eq(stream), any(), eq(true));
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), DATA1.length, true, DATA2)), ctx);
     verifyNoMoreInteractions(listener);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), 0, false, DATA1)), ctx);
-    verify(listener).onData(stream, DATA1, false);
-    verify(listener).onData(stream, DATA2, true);
+    // reassembled into a single read
+    assertEquals(List.of(Unpooled.wrappedBuffer(DATA1, DATA2)), received);
 
     assertTrue(stream.isFinished());
   }
@@ -127,7 +149,7 @@ public class DefaultStreamManagerTest {
     final Stream stream = manager.openStream(true, true);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), 0, false, DATA1)), ctx);
-    verify(listener).onData(stream, DATA1, false);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA1), false);
     verifyNoMoreInteractions(listener);
 
     manager.onReceivePacket(p(new ResetStreamFrame(stream.getId(), 123, DATA1.length)), ctx);
@@ -142,7 +164,28 @@ public class DefaultStreamManagerTest {
     manager.onReceivePacket(p(new StreamFrame(0, 0, false, DATA1)), ctx);
   }
 
+  @Test
+  public void receiveEarlyData() {
+    when(ctx.getState()).thenReturn(State.BeforeReady);
+    final Stream stream = manager.openStream(true, true);
+
+    manager.onReceivePacket(
+        ZeroRttPacket.create(
+            of(ConnectionId.random()),
+            of(ConnectionId.random()),
+            PacketNumber.MIN,
+            Version.DRAFT_18,
+            new StreamFrame(stream.getId(), 0, true, DATA1)),
+        ctx);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA1), true);
+  }
+
   private FullPacket p(final Frame... frames) {
-    return new ShortPacket(false, of(ConnectionId.random()), PacketNumber.MIN, new Payload(frames));
+    return new ShortPacket(
+        false,
+        of(ConnectionId.random()),
+        PacketNumber.MIN,
+        new Payload(frames),
+        PacketNumber.MAX_LENGTH);
   }
 }
@@ -2,6 +2,9 @@ package com.protocol7.quincy.streams;
 
 import static org.junit.Assert.*;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.Test;
 
 public class ReceivedDataBufferTest {
@@ -9,31 +12,245 @@ public class ReceivedDataBufferTest {
   public static final byte[] DATA1 = "hello".getBytes();
   public static final byte[] DATA2 = "world".getBytes();
 
-  private final ReceivedDataBuffer buffer = new ReceivedDataBuffer();
+  private final ReceivedDataBuffer buffer = new ReceivedDataBuffer(() -> Long.MAX_VALUE);
 
   @Test
   public void inOrder() {
-    buffer.onData(DATA1, 0, false);
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
     assertFalse(buffer.isDone());
-    assertArrayEquals(DATA1, buffer.read().get());
+    assertEquals(Unpooled.wrappedBuffer(DATA1), buffer.read().get());
 
-    buffer.onData(DATA2, DATA1.length, true);
+    buffer.onData(Unpooled.wrappedBuffer(DATA2), DATA1.length, true);
 
-    assertArrayEquals(DATA2, buffer.read().get());
+    assertEquals(Unpooled.wrappedBuffer(DATA2), buffer.read().get());
     assertTrue(buffer.isDone());
   }
 
   @Test
   public void outOfOrder() {
-    buffer.onData(DATA2, DATA1.length, true);
+    buffer.onData(Unpooled.wrappedBuffer(DATA2), DATA1.length, true);
 
     assertFalse(buffer.isDone());
     assertFalse(buffer.read().isPresent());
 
-    buffer.onData(DATA1, 0, false);
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
 
-    assertArrayEquals(DATA1, buffer.read().get());
-    assertArrayEquals(DATA2, buffer.read().get());
+    // merged with the adjacent data
+    assertEquals(Unpooled.wrappedBuffer(DATA1, DATA2), buffer.read().get());
+    assertFalse(buffer.hasMore());
     assertTrue(buffer.isDone());
   }
+
+  @Test
+  public void retainUntilRead() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA1);
+    buffer.onData(data, 0, false);
+    assertEquals(2, data.refCnt());
+
+    // released by the frame
+    data.release();
+
+    final ByteBuf read = buffer.read().get();
+    assertSame(data, read.unwrap());
+    assertEquals(1, read.refCnt());
+  }
+
+  @Test
+  public void duplicate() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA1);
+    final ByteBuf duplicate = Unpooled.wrappedBuffer(DATA1);
+
+    buffer.onData(data, 0, false);
+    buffer.onData(duplicate, 0, false);
+
+    // the duplicate is not held
+    assertEquals(1, duplicate.refCnt());
+    assertSame(data, buffer.read().get().unwrap());
+
+    // already read data is ignored
+    final ByteBuf late = Unpooled.wrappedBuffer(DATA1);
+    buffer.onData(late, 0, false);
+    assertEquals(1, late.refCnt());
+    assertFalse(buffer.hasMore());
+  }
+
+  @Test
+  public void overlapping() {
+    // retransmitted with different segmentation
+    buffer.onData(Unpooled.wrappedBuffer("wor".getBytes()), 5, false);
+    buffer.onData(Unpooled.wrappedBuffer("llowo".getBytes()), 2, false);
+    assertEquals(6, buffer.getBufferedBytes());
+    assertFalse(buffer.hasMore());
+
+    buffer.onData(Unpooled.wrappedBuffer("hel".getBytes()), 0, false);
+    buffer.onData(Unpooled.wrappedBuffer("orld".getBytes()), 6, true);
+
+    assertEquals(Unpooled.wrappedBuffer("helloworld".getBytes()), buffer.read().get());
+    assertFalse(buffer.hasMore());
+    assertTrue(buffer.isDone());
+    assertEquals(0, buffer.getBufferedBytes());
+  }
+
+  @Test
+  public void overlappingRead() {
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
+    buffer.read().get();
+
+    // only the unread part is buffered
+    buffer.onData(Unpooled.wrappedBuffer("loworld".getBytes()), 3, true);
+
+    assertEquals(Unpooled.wrappedBuffer(DATA2), buffer.read().get());
+    assertTrue(buffer.isDone());
+  }
+
+  @Test
+  public void mergeAdjacent() {
+    final ByteBuf data1 = Unpooled.directBuffer().writeBytes(DATA1);
+    final ByteBuf data2 = Unpooled.directBuffer().writeBytes(DATA2);
+    final ByteBuf data3 = Unpooled.directBuffer().writeBytes(DATA1);
+
+    buffer.onData(data3, 11, true);
+    buffer.onData(data1, 1, false);
+    // adjacent to both ranges, merging them
+    buffer.onData(data2, 6, false);
+
+    assertEquals(DATA1.length + DATA2.length + DATA1.length, buffer.getBufferedBytes());
+
+    buffer.onData(Unpooled.wrappedBuffer(new byte[] {'!'}), 0, false);
+
+    final ByteBuf read = buffer.read().get();
+    assertEquals(Unpooled.wrappedBuffer("!helloworldhello".getBytes()), read);
+    assertTrue(buffer.isDone());
+
+    read.release();
+    assertEquals(1, data1.refCnt());
+    assertEquals(1, data2.refCnt());
+    assertEquals(1, data3.refCnt());
+  }
+
+  @Test
+  public void reordered() {
+    final byte[] expected = new byte[1000];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (byte) i;
+    }
+
+    // every other chunk, then the rest in reverse, all but the first
+    for (int i = 2; i < 100; i += 2) {
+      buffer.onData(Unpooled.wrappedBuffer(expected, i * 10, 10), i * 10, false);
+    }
+    for (int i = 99; i > 0; i -= 2) {
+      buffer.onData(Unpooled.wrappedBuffer(expected, i * 10, 10), i * 10, i == 99);
+    }
+    assertFalse(buffer.hasMore());
+    assertEquals(990, buffer.getBufferedBytes());
+
+    buffer.onData(Unpooled.wrappedBuffer(expected, 0, 10), 0, false);
+
+    assertEquals(Unpooled.wrappedBuffer(expected), buffer.read().get());
+    assertFalse(buffer.hasMore());
+    assertTrue(buffer.isDone());
+  }
+
+  @Test
+  public void beyondMaxOffset() {
+    final ReceivedDataBuffer buffer = new ReceivedDataBuffer(() -> 8);
+
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA2);
+    buffer.onData(data, 5, false);
+
+    assertEquals(1, data.refCnt());
+    assertEquals(0, buffer.getBufferedBytes());
+  }
+
+  @Test
+  public void beyondMaxOffsetNotFinal() {
+    final ReceivedDataBuffer buffer = new ReceivedDataBuffer(() -> 8);
+
+    buffer.onData(Unpooled.wrappedBuffer(DATA2), 5, true);
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
+    buffer.read().get();
+
+    // the final offset of data not accepted is ignored
+    assertFalse(buffer.isDone());
+  }
+
+  @Test
+  public void copySmallOutOfOrderData() {
+    final ByteBuf packet = Unpooled.buffer(1200).writeZero(1200);
+    final ByteBuf data = packet.retainedSlice(100, DATA2.length).setBytes(0, DATA2);
+    buffer.onData(data, DATA1.length, false);
+
+    // released by the frame and the packet, the packet is not pinned by the buffered data
+    data.release();
+    packet.release();
+    assertEquals(0, packet.refCnt());
+
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
+    assertEquals(Unpooled.wrappedBuffer(DATA1, DATA2), buffer.read().get());
+  }
+
+  @Test
+  public void retainInOrderData() {
+    final ByteBuf packet = Unpooled.buffer(1200).writeZero(1200);
+    final ByteBuf data = packet.retainedSlice(100, DATA1.length);
+    buffer.onData(data, 0, false);
+
+    // readable right away, held without copying
+    data.release();
+    assertEquals(2, packet.refCnt());
+    buffer.read().get().release();
+    assertEquals(1, packet.refCnt());
+  }
+
+  @Test
+  public void appendToMergedRange() {
+    final byte[] data = "hello world".getBytes();
+    for (int i = 1; i < data.length; i++) {
+      buffer.onData(Unpooled.wrappedBuffer(data, i, 1), i, false);
+    }
+    buffer.onData(Unpooled.wrappedBuffer(data, 0, 1), 0, false);
+
+    // a single range, not nesting the ranges it was merged from
+    final ByteBuf read = buffer.read().get();
+    assertEquals(Unpooled.wrappedBuffer(data), read);
+    assertEquals(data.length, ((CompositeByteBuf) read).numComponents());
+    assertFalse(buffer.hasMore());
+  }
+
+  @Test
+  public void composite() {
+    final CompositeByteBuf data =
+        Unpooled.compositeBuffer()
+            .addComponent(true, Unpooled.wrappedBuffer(DATA1))
+            .addComponent(true, Unpooled.wrappedBuffer(DATA2));
+    buffer.onData(data, DATA1.length, false);
+    buffer.onData(Unpooled.wrappedBuffer(DATA1), 0, false);
+
+    // the received composite is not appended to
+    assertEquals(DATA1.length + DATA2.length, data.readableBytes());
+    assertEquals(Unpooled.wrappedBuffer(DATA1, DATA1, DATA2), buffer.read().get());
+  }
+
+  @Test
+  public void readKeepsReceivedIndices() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA1);
+    buffer.onData(data, 0, false);
+
+    // the received data is still referenced by its frame, reading must not consume it
+    buffer.read().get().skipBytes(DATA1.length);
+    assertEquals(DATA1.length, data.readableBytes());
+  }
+
+  @Test
+  public void clear() {
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA2);
+    buffer.onData(data, 5, false);
+    data.release();
+
+    buffer.clear();
+
+    assertEquals(0, data.refCnt());
+    assertEquals(0, buffer.getBufferedBytes());
+  }
 }
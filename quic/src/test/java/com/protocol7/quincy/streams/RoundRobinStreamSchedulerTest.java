@@ -0,0 +1,50 @@
+package com.protocol7.quincy.streams;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
+import com.protocol7.quincy.protocol.StreamId;
+import org.junit.Test;
+
+public class RoundRobinStreamSchedulerTest {
+
+  private final RoundRobinStreamScheduler scheduler = new RoundRobinStreamScheduler(100);
+
+  @Test
+  public void inOrder() {
+    final DefaultStream stream1 = stream();
+    final DefaultStream stream2 = stream();
+
+    assertTrue(scheduler.isEmpty());
+    scheduler.schedule(stream1);
+    scheduler.schedule(stream2);
+    assertFalse(scheduler.isEmpty());
+
+    assertSame(stream1, scheduler.poll());
+    assertEquals(100, scheduler.allocation(stream1));
+    scheduler.schedule(stream1);
+
+    assertSame(stream2, scheduler.poll());
+    assertSame(stream1, scheduler.poll());
+    assertNull(scheduler.poll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidQuantum() {
+    new RoundRobinStreamScheduler(0);
+  }
+
+  static DefaultStream stream() {
+    return new DefaultStream(
+        StreamId.random(true, true),
+        mock(FrameSender.class),
+        SendCredit.UNLIMITED,
+        ReceiveWindow.UNLIMITED,
+        DefaultStream::flush,
+        mock(StreamListener.class),
+        StreamType.Bidirectional);
+  }
+}
@@ -0,0 +1,83 @@
+package com.protocol7.quincy.streams;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class SendDataBufferTest {
+
+  public static final byte[] DATA1 = "hello".getBytes();
+  public static final byte[] DATA2 = "world".getBytes();
+
+  private final SendDataBuffer buffer = new SendDataBuffer();
+
+  @Test
+  public void readWhole() {
+    buffer.write(Unpooled.wrappedBuffer(DATA1), false);
+    buffer.write(Unpooled.wrappedBuffer(DATA2), true);
+    assertEquals(DATA1.length + DATA2.length, buffer.getReadableBytes());
+    assertTrue(buffer.isClosed());
+
+    assertEquals(Unpooled.wrappedBuffer(DATA1), buffer.read(100));
+    assertFalse(buffer.isDone());
+    assertEquals(Unpooled.wrappedBuffer(DATA2), buffer.read(100));
+    assertTrue(buffer.isDone());
+    assertFalse(buffer.hasMore());
+    assertEquals(0, buffer.getReadableBytes());
+  }
+
+  @Test
+  public void readSplit() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA1);
+    buffer.write(data, true);
+
+    final ByteBuf first = buffer.read(2);
+    assertEquals(Unpooled.wrappedBuffer(DATA1, 0, 2), first);
+    assertEquals(3, buffer.peekLength());
+    assertEquals(3, buffer.getReadableBytes());
+    assertFalse(buffer.isDone());
+
+    final ByteBuf second = buffer.read(100);
+    assertEquals(Unpooled.wrappedBuffer(DATA1, 2, 3), second);
+    assertTrue(buffer.isDone());
+
+    // the split data shares the written buffer
+    first.release();
+    second.release();
+    assertEquals(0, data.refCnt());
+  }
+
+  @Test
+  public void finishOnly() {
+    buffer.write(Unpooled.wrappedBuffer(DATA1), false);
+    buffer.read(100);
+    assertFalse(buffer.isDone());
+
+    buffer.write(Unpooled.EMPTY_BUFFER, true);
+    assertTrue(buffer.hasMore());
+    assertEquals(0, buffer.peekLength());
+
+    assertEquals(0, buffer.read(0).readableBytes());
+    assertTrue(buffer.isDone());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void writeAfterFinish() {
+    buffer.write(Unpooled.wrappedBuffer(DATA1), true);
+    buffer.write(Unpooled.wrappedBuffer(DATA2), false);
+  }
+
+  @Test
+  public void clear() {
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA1);
+    buffer.write(data, false);
+
+    buffer.clear();
+
+    assertFalse(buffer.hasMore());
+    assertEquals(0, buffer.getReadableBytes());
+    assertEquals(0, data.refCnt());
+  }
+}
@@ -6,11 +6,17 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
 import com.protocol7.quincy.protocol.StreamId;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -23,6 +29,7 @@ public class StreamTest {
   @Mock private PipelineContext ctx;
   @Mock private StreamListener listener;
   @Mock private FullPacket packet;
+  @Mock private SendCredit sendCredit;
   private final long streamId = StreamId.random(true, true);
 
   @Before
@@ -35,21 +42,85 @@ public class StreamTest {
 
   @Test
   public void write() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
 
     stream.write(DATA, false);
 
     final StreamFrame frame = (StreamFrame) captureFrame();
 
-    assertEquals(DATA, frame.getData());
+    assertEquals(Unpooled.wrappedBuffer(DATA), frame.getData());
     assertEquals(0, frame.getOffset());
     assertEquals(streamId, frame.getStreamId());
     assertFalse(frame.isFin());
   }
 
+  @Test
+  public void writeByteBuf() {
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
+
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA);
+    stream.write(data, false);
+    stream.write(Unpooled.wrappedBuffer(DATA), false);
+
+    final StreamFrame frame = (StreamFrame) captureFrame();
+
+    // the frame references the written data, held until acknowledged
+    assertEquals(DATA.length, frame.getOffset());
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, times(2)).send(captor.capture());
+    assertSame(data, ((StreamFrame) captor.getAllValues().get(0)).getData());
+    assertEquals(1, data.refCnt());
+  }
+
+  @Test
+  public void writeLargerThanFrame() {
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
+
+    stream.write(new byte[DefaultStream.MAX_FRAME_DATA * 2 + 10], true);
+
+    // split into frames fitting in a packet
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, times(3)).send(captor.capture());
+    final List<Frame> frames = captor.getAllValues();
+    assertEquals(DefaultStream.MAX_FRAME_DATA, ((StreamFrame) frames.get(0)).getLength());
+    assertEquals(DefaultStream.MAX_FRAME_DATA, ((StreamFrame) frames.get(1)).getOffset());
+    assertEquals(10, ((StreamFrame) frames.get(2)).getLength());
+    assertTrue(((StreamFrame) frames.get(2)).isFin());
+  }
+
+  @Test
+  public void writeByteBufSendFailed() {
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
+    when(ctx.send(any(Frame.class))).thenThrow(new IllegalStateException());
+
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA);
+    try {
+      stream.write(data, false);
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+
+    assertEquals(0, data.refCnt());
+  }
+
+  @Test
+  public void writeByteBufOnClosed() {
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
+    stream.write(DATA, true);
+
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA);
+    try {
+      stream.write(data, true);
+      fail();
+    } catch (final IllegalStateException e) {
+      assertEquals(0, data.refCnt());
+    }
+  }
+
   @Test
   public void writeWithOffset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
 
     stream.write(DATA, false);
     final StreamFrame frame1 = (StreamFrame) captureFrame();
@@ -62,7 +133,7 @@ public class StreamTest {
 
   @Test
   public void reset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
 
     stream.write(DATA, false);
     captureFrame();
@@ -78,7 +149,7 @@ public class StreamTest {
 
   @Test(expected = IllegalStateException.class)
   public void resetOnClosed() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
 
     stream.reset(123);
     stream.reset(123);
@@ -86,12 +157,99 @@ public class StreamTest {
 
   @Test(expected = IllegalStateException.class)
   public void writeOnClosed() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
     stream.write(DATA, true);
     assertTrue(stream.isFinished());
     stream.write(DATA, true);
   }
 
+  @Test
+  public void writeBlocked() {
+    final DefaultStream stream = stream(sendCredit);
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(0L);
+    stream.write(DATA, true);
+
+    // buffered until credit arrives
+    verify(sendCredit).onBlocked(streamId, ctx);
+    verify(ctx, never()).send(any(Frame.class));
+    assertFalse(stream.isFinished());
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(2L, 0L);
+    stream.flush();
+
+    final StreamFrame frame1 = (StreamFrame) captureFrame();
+    assertEquals(Unpooled.wrappedBuffer(DATA, 0, 2), frame1.getData());
+    assertEquals(0, frame1.getOffset());
+    assertFalse(frame1.isFin());
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(100L);
+    stream.flush();
+
+    final StreamFrame frame2 = (StreamFrame) captureFrame();
+    assertEquals(Unpooled.wrappedBuffer(DATA, 2, DATA.length - 2), frame2.getData());
+    assertEquals(2, frame2.getOffset());
+    assertTrue(frame2.isFin());
+    assertTrue(stream.isFinished());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void writeAfterBufferedFinish() {
+    final DefaultStream stream = stream(sendCredit);
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(0L);
+    stream.write(DATA, true);
+    stream.write(DATA, false);
+  }
+
+  @Test
+  public void writability() {
+    final DefaultStream stream = stream(sendCredit);
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(0L);
+    stream.write(new byte[(int) DefaultStream.HIGH_WATERMARK], false);
+    assertTrue(stream.isWritable());
+
+    stream.write(DATA, false);
+    assertFalse(stream.isWritable());
+    verify(listener).onWritabilityChanged(stream, false);
+
+    // credit is consumed by the frames sent
+    final AtomicLong credit = new AtomicLong();
+    when(sendCredit.getSendCredit(streamId)).thenAnswer(invocation -> credit.get());
+    when(ctx.send(any(Frame.class)))
+        .thenAnswer(
+            invocation -> {
+              credit.addAndGet(-((StreamFrame) invocation.getArgument(0)).getLength());
+              return packet;
+            });
+
+    // drained, but still above the low watermark
+    credit.set(DefaultStream.HIGH_WATERMARK - DefaultStream.LOW_WATERMARK);
+    stream.flush();
+    assertFalse(stream.isWritable());
+
+    credit.set(DATA.length);
+    stream.flush();
+    assertTrue(stream.isWritable());
+    verify(listener).onWritabilityChanged(stream, true);
+  }
+
+  @Test
+  public void resetReleasesBuffered() {
+    final DefaultStream stream = stream(sendCredit);
+
+    when(sendCredit.getSendCredit(streamId)).thenReturn(0L);
+    final ByteBuf data = Unpooled.directBuffer().writeBytes(DATA);
+    stream.write(data, false);
+
+    stream.reset(123);
+
+    assertEquals(0, data.refCnt());
+    final ResetStreamFrame frame = (ResetStreamFrame) captureFrame();
+    assertEquals(0, frame.getOffset());
+  }
+
   private Frame captureFrame() {
     final ArgumentCaptor<Frame> packetCaptor = ArgumentCaptor.forClass(Frame.class);
     verify(ctx, atLeastOnce()).send(packetCaptor.capture());
@@ -100,17 +258,28 @@ public class StreamTest {
 
   @Test
   public void onData() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
-    stream.onData(0, true, DATA);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
+    stream.onData(0, true, Unpooled.wrappedBuffer(DATA));
 
-    verify(listener).onData(stream, DATA, true);
+    verify(listener).onData(stream, Unpooled.wrappedBuffer(DATA), true);
   }
 
   @Test
   public void onReset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(SendCredit.UNLIMITED);
     stream.onReset(123, 456);
 
     assertTrue(stream.isFinished());
   }
+
+  private DefaultStream stream(final SendCredit sendCredit) {
+    return new DefaultStream(
+        streamId,
+        ctx,
+        sendCredit,
+        ReceiveWindow.UNLIMITED,
+        DefaultStream::flush,
+        listener,
+        Bidirectional);
+  }
 }
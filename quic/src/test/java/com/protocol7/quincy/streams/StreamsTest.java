@@ -1,12 +1,26 @@
 package com.protocol7.quincy.streams;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.flowcontrol.ReceiveWindow;
+import com.protocol7.quincy.flowcontrol.SendCredit;
 import com.protocol7.quincy.protocol.StreamId;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -15,12 +29,15 @@ public class StreamsTest {
 
   @Mock PipelineContext ctx;
   @Mock StreamListener listener;
+  @Mock FullPacket packet;
 
   private Streams streams;
 
   @Before
   public void setUp() {
-    this.streams = new Streams(ctx);
+    this.streams =
+        new Streams(
+            ctx, SendCredit.UNLIMITED, ReceiveWindow.UNLIMITED, new UrgencyStreamScheduler());
   }
 
   @Test
@@ -40,4 +57,110 @@ public class StreamsTest {
     final DefaultStream stream3 = streams.getOrCreate(StreamId.random(true, true), listener);
     assertNotSame(stream1, stream3);
   }
+
+  @Test
+  public void urgentStreamFirst() {
+    final TestSendCredit credit = new TestSendCredit();
+    streams = new Streams(ctx, credit, ReceiveWindow.UNLIMITED, new UrgencyStreamScheduler());
+
+    final Stream bulk = streams.openStream(true, true, listener);
+    final Stream control = streams.openStream(true, true, listener);
+    control.setUrgency(0);
+
+    // both waiting for credit, the bulk stream wrote first
+    bulk.write(new byte[10], false);
+    control.write(new byte[10], false);
+
+    credit.credit = 15;
+    streams.flush();
+
+    final List<StreamFrame> frames = captureFrames(2);
+    assertEquals(control.getId(), frames.get(0).getStreamId());
+    assertEquals(10, frames.get(0).getLength());
+    assertEquals(bulk.getId(), frames.get(1).getStreamId());
+    assertEquals(5, frames.get(1).getLength());
+  }
+
+  @Test
+  public void sharedByWeight() {
+    final TestSendCredit credit = new TestSendCredit();
+    streams =
+        new Streams(ctx, credit, ReceiveWindow.UNLIMITED, new WeightedFairStreamScheduler(1024));
+
+    final Stream heavy = streams.openStream(true, true, listener);
+    heavy.setWeight(32);
+    final Stream light = streams.openStream(true, true, listener);
+
+    heavy.write(new byte[5000], false);
+    light.write(new byte[5000], false);
+
+    credit.credit = 6 * 1024;
+    streams.flush();
+
+    // 2048 bytes per turn for the heavy stream, 1024 for the light, each turn sent in frames that
+    // fit in a packet
+    final List<StreamFrame> frames = captureFrames(10);
+    final List<Long> turns = new ArrayList<>();
+    final List<Long> turnLengths = new ArrayList<>();
+    for (final StreamFrame frame : frames) {
+      if (turns.isEmpty() || turns.get(turns.size() - 1) != frame.getStreamId()) {
+        turns.add(frame.getStreamId());
+        turnLengths.add(0L);
+      }
+      turnLengths.set(turns.size() - 1, turnLengths.get(turns.size() - 1) + frame.getLength());
+    }
+    assertEquals(List.of(heavy.getId(), light.getId(), heavy.getId(), light.getId()), turns);
+    assertEquals(List.of(2048L, 1024L, 2048L, 1024L), turnLengths);
+  }
+
+  @Test
+  public void rescheduledWhenSendFails() {
+    when(ctx.send(any(Frame.class))).thenThrow(new IllegalStateException()).thenReturn(packet);
+
+    final Stream stream = streams.openStream(true, true, listener);
+    try {
+      stream.write(new byte[2000], false);
+      fail();
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+
+    // the rest of the data is still sent
+    streams.flush();
+
+    final List<StreamFrame> frames = captureFrames(3);
+    assertEquals(
+        2000 - DefaultStream.MAX_FRAME_DATA, frames.get(1).getLength() + frames.get(2).getLength());
+  }
+
+  // connection wide credit, shared by all streams and consumed when sending
+  private class TestSendCredit implements SendCredit {
+    private long credit = 0;
+
+    private TestSendCredit() {
+      when(ctx.send(any(Frame.class)))
+          .thenAnswer(
+              invocation -> {
+                credit -= ((StreamFrame) invocation.getArgument(0)).getLength();
+                return packet;
+              });
+    }
+
+    @Override
+    public long getSendCredit(final long sid) {
+      return credit;
+    }
+
+    @Override
+    public void onBlocked(final long sid, final FrameSender sender) {}
+
+    @Override
+    public void addCreditListener(final Runnable listener) {}
+  }
+
+  private List<StreamFrame> captureFrames(final int count) {
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, times(count)).send(captor.capture());
+    return captor.getAllValues().stream().map(f -> (StreamFrame) f).collect(Collectors.toList());
+  }
 }
@@ -0,0 +1,41 @@
+package com.protocol7.quincy.streams;
+
+import static com.protocol7.quincy.streams.RoundRobinStreamSchedulerTest.stream;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UrgencyStreamSchedulerTest {
+
+  private final UrgencyStreamScheduler scheduler =
+      new UrgencyStreamScheduler(() -> new RoundRobinStreamScheduler(100));
+
+  @Test
+  public void mostUrgentFirst() {
+    final DefaultStream bulk = stream();
+    bulk.setUrgency(7);
+    final DefaultStream normal1 = stream();
+    final DefaultStream normal2 = stream();
+    final DefaultStream control = stream();
+    control.setUrgency(0);
+
+    scheduler.schedule(bulk);
+    scheduler.schedule(normal1);
+    scheduler.schedule(control);
+    scheduler.schedule(normal2);
+
+    assertSame(control, scheduler.poll());
+    assertEquals(100, scheduler.allocation(control));
+    // round robin within the same urgency
+    assertSame(normal1, scheduler.poll());
+    assertSame(normal2, scheduler.poll());
+    assertSame(bulk, scheduler.poll());
+    assertNull(scheduler.poll());
+    assertTrue(scheduler.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidUrgency() {
+    stream().setUrgency(DefaultStream.URGENCY_LEVELS);
+  }
+}
@@ -0,0 +1,32 @@
+package com.protocol7.quincy.streams;
+
+import static com.protocol7.quincy.streams.RoundRobinStreamSchedulerTest.stream;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class WeightedFairStreamSchedulerTest {
+
+  private final WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler(16 * 1024);
+
+  @Test
+  public void allocation() {
+    final DefaultStream stream = stream();
+    assertEquals(16 * 1024, scheduler.allocation(stream));
+
+    stream.setWeight(DefaultStream.MAX_WEIGHT);
+    assertEquals(256 * 1024, scheduler.allocation(stream));
+
+    stream.setWeight(1);
+    assertEquals(1024, scheduler.allocation(stream));
+  }
+
+  @Test
+  public void minimumAllocation() {
+    final WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler(1);
+
+    final DefaultStream stream = stream();
+    stream.setWeight(1);
+    assertEquals(WeightedFairStreamScheduler.MIN_ALLOCATION_CHUNK, scheduler.allocation(stream));
+  }
+}
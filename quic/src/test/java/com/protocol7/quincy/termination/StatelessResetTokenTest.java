@@ -0,0 +1,42 @@
+package com.protocol7.quincy.termination;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.packets.StatelessResetPacket;
+import com.protocol7.quincy.tls.KeyUtil;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class StatelessResetTokenTest {
+
+  private final PrivateKey key = KeyUtil.getPrivateKey("src/test/resources/server.der");
+  private final StatelessResetToken srt = new StatelessResetToken(key);
+  private final ConnectionId connId = ConnectionId.random();
+
+  @Test
+  public void create() {
+    final byte[] token = srt.create(connId);
+
+    assertEquals(StatelessResetPacket.TOKEN_LENGTH, token.length);
+  }
+
+  @Test
+  public void sameForSameKeyAndConnectionId() {
+    // must be possible to recreate with a new instance, e.g. after a restart
+    assertArrayEquals(srt.create(connId), new StatelessResetToken(key).create(connId));
+  }
+
+  @Test
+  public void differentForConnectionIds() {
+    assertFalse(Arrays.equals(srt.create(connId), srt.create(ConnectionId.random())));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullConnectionId() {
+    srt.create(null);
+  }
+}
@@ -70,6 +70,7 @@ public class TerminationManagerTest {
   }
 
   private Packet packet(final Frame... frames) {
-    return new ShortPacket(false, of(random()), PacketNumber.MIN, new Payload(frames));
+    return new ShortPacket(
+        false, of(random()), PacketNumber.MIN, new Payload(frames), PacketNumber.MAX_LENGTH);
   }
 }
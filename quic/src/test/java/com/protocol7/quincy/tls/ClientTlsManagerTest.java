@@ -1,28 +1,43 @@
 package com.protocol7.quincy.tls;
 
 import static java.util.Optional.empty;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.netty.QuicBuilder;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
+import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.frames.PingFrame;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.function.Consumer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,16 +48,26 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class ClientTlsManagerTest {
 
   private ConnectionId connectionId = ConnectionId.random();
-  private TransportParameters tps = new QuicBuilder().configuration().toTransportParameters();
+  private Configuration configuration = new QuicBuilder().configuration();
+  private TransportParameters tps = configuration.toTransportParameters();
   private ClientTlsManager manager =
-      new ClientTlsManager(connectionId, tps, new NoopCertificateValidator());
+      new ClientTlsManager(
+          connectionId,
+          configuration,
+          new NoopCertificateValidator(),
+          new SessionTicketCache(100, Clock.systemUTC()),
+          "");
 
   private ServerTlsSession serverTlsSession =
       new ServerTlsSession(
           InitialAEAD.create(connectionId.asBytes(), false),
           tps,
-          KeyUtil.getCertsFromCrt("src/test/resources/server.crt"),
-          KeyUtil.getPrivateKey("src/test/resources/server.der"));
+          new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"), false),
+          KeyUtil.getPrivateKey("src/test/resources/server.der"),
+          KeyExchangePool.shared(),
+          TicketKeys.shared(),
+          AntiReplayFilter.shared(),
+          CipherSuite.SUPPORTED);
 
   @Test
   public void handshake() {
@@ -83,6 +108,149 @@ public class ClientTlsManagerTest {
     // and we're done
   }
 
+  @Test
+  public void sessionTicket() {
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+    final ClientTlsManager manager =
+        new ClientTlsManager(
+            connectionId, configuration, new NoopCertificateValidator(), cache, "example.com:443");
+
+    final FrameSender sender = mock(FrameSender.class);
+    manager.handshake(State.Started, sender, mock(Consumer.class), mock(Promise.class));
+
+    final ArgumentCaptor<CryptoFrame> chFrame = ArgumentCaptor.forClass(CryptoFrame.class);
+    verify(sender).send(chFrame.capture(), any(PaddingFrame.class));
+
+    final ServerHelloAndHandshake shah =
+        serverTlsSession.handleClientHello(chFrame.getValue().getCryptoData());
+
+    final PipelineContext ctx = mock(PipelineContext.class);
+    when(ctx.getState()).thenReturn(State.BeforeHello);
+    manager.onReceivePacket(ip(shah.getServerHello()), ctx);
+    when(ctx.getState()).thenReturn(State.BeforeHandshake);
+    manager.onReceivePacket(hp(shah.getServerHandshake()), ctx);
+
+    final ArgumentCaptor<CryptoFrame> finFrame = ArgumentCaptor.forClass(CryptoFrame.class);
+    verify(ctx).send(finFrame.capture());
+    serverTlsSession.handleClientFinished(finFrame.getValue().getCryptoData());
+
+    // receive session ticket
+    final ShortPacket ticketPacket =
+        ShortPacket.create(
+            false,
+            empty(),
+            PacketNumber.MIN,
+            new CryptoFrame(0, serverTlsSession.createNewSessionTicket()));
+    when(ctx.getState()).thenReturn(State.Ready);
+    manager.onReceivePacket(ticketPacket, ctx);
+
+    assertEquals(1, cache.size());
+    verify(ctx).next(ticketPacket);
+  }
+
+  @Test
+  public void sessionTicketOutOfOrder() {
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+    final PipelineContext ctx = mock(PipelineContext.class);
+    final ClientTlsManager manager = handshaken(cache, ctx);
+
+    final byte[] ticket = serverTlsSession.createNewSessionTicket();
+    final int split = ticket.length / 2;
+    final byte[] first = Arrays.copyOfRange(ticket, 0, split);
+    final byte[] second = Arrays.copyOfRange(ticket, split, ticket.length);
+
+    when(ctx.getState()).thenReturn(State.Ready);
+    manager.onReceivePacket(
+        ShortPacket.create(false, empty(), 3, new CryptoFrame(split, second)), ctx);
+    assertEquals(0, cache.size());
+
+    manager.onReceivePacket(ShortPacket.create(false, empty(), 4, new CryptoFrame(0, first)), ctx);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void invalidSessionTicket() {
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+    final PipelineContext ctx = mock(PipelineContext.class);
+    final ClientTlsManager manager = handshaken(cache, ctx);
+
+    // a handshake message of the wrong type
+    final ShortPacket packet =
+        ShortPacket.create(false, empty(), 3, new CryptoFrame(0, new byte[] {1, 0, 0, 1, 0}));
+    when(ctx.getState()).thenReturn(State.Ready);
+    manager.onReceivePacket(packet, ctx);
+
+    assertEquals(0, cache.size());
+    verify(ctx).closeConnection(TransportError.PROTOCOL_VIOLATION, FrameType.CRYPTO, "");
+    verify(ctx, never()).next(packet);
+  }
+
+  @Test
+  public void keyUpdate() {
+    final ClientTlsManager manager =
+        new ClientTlsManager(
+            connectionId,
+            new QuicBuilder().withKeyUpdatePacketLimit(2).configuration(),
+            new NoopCertificateValidator(),
+            new SessionTicketCache(100, Clock.systemUTC()),
+            "example.com:443");
+
+    final FrameSender sender = mock(FrameSender.class);
+    manager.handshake(State.Started, sender, mock(Consumer.class), mock(Promise.class));
+
+    final ArgumentCaptor<CryptoFrame> chFrame = ArgumentCaptor.forClass(CryptoFrame.class);
+    verify(sender).send(chFrame.capture(), any(PaddingFrame.class));
+
+    final ServerHelloAndHandshake shah =
+        serverTlsSession.handleClientHello(chFrame.getValue().getCryptoData());
+
+    final PipelineContext ctx = mock(PipelineContext.class);
+    when(ctx.getState()).thenReturn(State.BeforeHello);
+    manager.onReceivePacket(ip(shah.getServerHello()), ctx);
+    when(ctx.getState()).thenReturn(State.BeforeHandshake);
+    manager.onReceivePacket(hp(shah.getServerHandshake()), ctx);
+
+    // the server has sent using the current keys
+    when(ctx.getState()).thenReturn(State.Ready);
+    manager.onReceivePacket(ShortPacket.create(false, empty(), 1, PingFrame.INSTANCE), ctx);
+
+    assertFalse(manager.getKeyPhase());
+    manager.getSendAEAD(ShortPacket.create(false, empty(), 1, PingFrame.INSTANCE));
+    manager.getSendAEAD(ShortPacket.create(false, empty(), 2, PingFrame.INSTANCE));
+    assertTrue(manager.getKeyPhase());
+
+    // the server can open packets using its next keys
+    final ShortPacket updated = ShortPacket.create(true, empty(), 3, PingFrame.INSTANCE);
+    assertArrayEquals(
+        shah.getOneRttKeys().next().getAEAD().getOtherKey(),
+        manager.getSendAEAD(updated).getMyKey());
+  }
+
+  private ClientTlsManager handshaken(final SessionTicketCache cache, final PipelineContext ctx) {
+    final ClientTlsManager manager =
+        new ClientTlsManager(
+            connectionId, configuration, new NoopCertificateValidator(), cache, "example.com:443");
+
+    final FrameSender sender = mock(FrameSender.class);
+    manager.handshake(State.Started, sender, mock(Consumer.class), mock(Promise.class));
+
+    final ArgumentCaptor<CryptoFrame> chFrame = ArgumentCaptor.forClass(CryptoFrame.class);
+    verify(sender).send(chFrame.capture(), any(PaddingFrame.class));
+
+    final ServerHelloAndHandshake shah =
+        serverTlsSession.handleClientHello(chFrame.getValue().getCryptoData());
+
+    when(ctx.getState()).thenReturn(State.BeforeHello);
+    manager.onReceivePacket(ip(shah.getServerHello()), ctx);
+    when(ctx.getState()).thenReturn(State.BeforeHandshake);
+    manager.onReceivePacket(hp(shah.getServerHandshake()), ctx);
+
+    final ArgumentCaptor<CryptoFrame> finFrame = ArgumentCaptor.forClass(CryptoFrame.class);
+    verify(ctx).send(finFrame.capture());
+    serverTlsSession.handleClientFinished(finFrame.getValue().getCryptoData());
+    return manager;
+  }
+
   private InitialPacket ip(final byte[] b) {
     return InitialPacket.create(
         empty(), empty(), PacketNumber.MIN, Version.DRAFT_18, empty(), new CryptoFrame(0, b));
@@ -2,25 +2,41 @@ package com.protocol7.quincy.tls;
 
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.connection.InternalConnection;
 import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.netty.QuicBuilder;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
+import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import java.time.Clock;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -30,17 +46,26 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class ServerTlsManagerTest {
 
   private final ConnectionId connectionId = ConnectionId.random();
-  private final TransportParameters tps = new QuicBuilder().configuration().toTransportParameters();
+  private final Configuration configuration = new QuicBuilder().configuration();
+  private final TransportParameters tps = configuration.toTransportParameters();
   private final ServerTLSManager manager =
       new ServerTLSManager(
           connectionId,
+          configuration,
           tps,
           KeyUtil.getPrivateKey("src/test/resources/server.der"),
-          KeyUtil.getCertsFromCrt("src/test/resources/server.crt"));
+          new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"), false),
+          MoreExecutors.directExecutor(),
+          MoreExecutors.directExecutor());
 
   private final ClientTlsSession clientTlsSession =
       new ClientTlsSession(
-          InitialAEAD.create(connectionId.asBytes(), true), tps, new NoopCertificateValidator());
+          InitialAEAD.create(connectionId.asBytes(), true),
+          tps,
+          new NoopCertificateValidator(),
+          new SessionTicketCache(100, Clock.systemUTC()),
+          "",
+          CipherSuite.SUPPORTED);
 
   @Test
   public void handshake() throws CertificateInvalidException {
@@ -48,6 +73,8 @@ public class ServerTlsManagerTest {
     final byte[] ch = clientTlsSession.startHandshake();
 
     final PipelineContext ctx = mock(PipelineContext.class);
+    final InternalConnection connection = mock(InternalConnection.class);
+    when(ctx.getConnection()).thenReturn(connection);
 
     when(ctx.getState()).thenReturn(State.Started);
     final Packet chPacket = ip(ch);
@@ -55,8 +82,8 @@ public class ServerTlsManagerTest {
 
     // receive server hello
     final ArgumentCaptor<CryptoFrame> cfCaptor = ArgumentCaptor.forClass(CryptoFrame.class);
-    verify(ctx, times(2)).send(cfCaptor.capture());
-    verify(ctx).setState(State.BeforeReady);
+    verify(connection, times(2)).send(cfCaptor.capture());
+    verify(connection).setState(State.BeforeReady);
     verify(ctx).next(chPacket);
 
     clientTlsSession.handleServerHello(cfCaptor.getAllValues().get(0).getCryptoData());
@@ -67,13 +94,79 @@ public class ServerTlsManagerTest {
     final Packet finPacket = hp(hr.getFin());
     manager.onReceivePacket(finPacket, ctx);
 
-    verify(ctx, times(2)).send(any(CryptoFrame.class)); // no more interactions
     verify(ctx).setState(State.Ready);
     verify(ctx).next(finPacket);
 
+    // session ticket sent after the handshake
+    verify(ctx).send(cfCaptor.capture());
+    clientTlsSession.handleNewSessionTicket(cfCaptor.getValue().getCryptoData());
+
     // and we're done
   }
 
+  @Test
+  public void handshakeOnExecutor() throws InterruptedException {
+    final ExecutorService handshakeExecutor = Executors.newSingleThreadExecutor();
+    final BlockingQueue<Runnable> connectionTasks = new LinkedBlockingQueue<>();
+
+    final ServerTLSManager manager =
+        new ServerTLSManager(
+            connectionId,
+            configuration,
+            tps,
+            KeyUtil.getPrivateKey("src/test/resources/server.der"),
+            new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"), false),
+            handshakeExecutor,
+            connectionTasks::add);
+
+    try {
+      final PipelineContext ctx = mock(PipelineContext.class);
+      // the context is reused once the handler returns, the handshake continues on the connection
+      final InternalConnection connection = mock(InternalConnection.class);
+      when(ctx.getConnection()).thenReturn(connection);
+      when(ctx.getState()).thenReturn(State.Started);
+
+      final Packet chPacket = ip(clientTlsSession.startHandshake());
+      manager.onReceivePacket(chPacket, ctx);
+
+      // the packet continues through the pipeline while the handshake is calculated
+      verify(ctx).next(chPacket);
+
+      // a resent client hello must not start another handshake
+      manager.onReceivePacket(chPacket, ctx);
+
+      final Runnable task = connectionTasks.poll(10, TimeUnit.SECONDS);
+      assertNotNull(task);
+      verify(connection, never()).send(any(CryptoFrame.class));
+
+      // flights are sent on the connection executor
+      task.run();
+
+      verify(connection, times(2)).send(any(CryptoFrame.class));
+      verify(connection).setState(State.BeforeReady);
+      assertTrue(manager.available(EncryptionLevel.OneRtt));
+
+      Thread.sleep(100);
+      assertTrue(connectionTasks.isEmpty());
+    } finally {
+      handshakeExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void invalidClientHello() {
+    final PipelineContext ctx = mock(PipelineContext.class);
+    final InternalConnection connection = mock(InternalConnection.class);
+    when(ctx.getConnection()).thenReturn(connection);
+    when(ctx.getState()).thenReturn(State.Started);
+
+    final Packet chPacket = ip("not a hello".getBytes());
+    manager.onReceivePacket(chPacket, ctx);
+
+    verify(connection).close(eq(TransportError.PROTOCOL_VIOLATION), eq(FrameType.CRYPTO), any());
+    verify(connection, never()).send(any(CryptoFrame.class));
+  }
+
   private InitialPacket ip(final byte[] b) {
     return InitialPacket.create(
         empty(),
@@ -0,0 +1,51 @@
+package com.protocol7.quincy.tls;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Preconditions;
+import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificate;
+import com.protocol7.quincy.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import java.util.List;
+import java.util.Optional;
+
+// server certificate messages, encoded once and shared by all handshakes using the same chain
+public class CertificateChain {
+
+  private final List<byte[]> certificates;
+  private final byte[] certificateMessage;
+  private final Optional<byte[]> compressedCertificateMessage;
+
+  public CertificateChain(final List<byte[]> certificates, final boolean compress) {
+    requireNonNull(certificates);
+    Preconditions.checkArgument(!certificates.isEmpty());
+
+    this.certificates = certificates;
+
+    final ServerCertificate sc = new ServerCertificate(new byte[0], certificates);
+    this.certificateMessage = Bytes.write(sc);
+
+    if (compress) {
+      this.compressedCertificateMessage = Optional.of(Bytes.write(sc::writeCompressed));
+    } else {
+      this.compressedCertificateMessage = Optional.empty();
+    }
+  }
+
+  public List<byte[]> getCertificates() {
+    return certificates;
+  }
+
+  public boolean isCompressed() {
+    return compressedCertificateMessage.isPresent();
+  }
+
+  // write the compressed message if available and requested, else the plain certificate message
+  public void write(final ByteBuf bb, final boolean compressed) {
+    if (compressed && compressedCertificateMessage.isPresent()) {
+      bb.writeBytes(compressedCertificateMessage.get());
+    } else {
+      bb.writeBytes(certificateMessage);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.protocol7.quincy.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// RFC 8879 certificate compression, only zlib is available without additional dependencies
+public class CertificateCompression {
+
+  public static final int ZLIB = 1;
+
+  // limited by the 24 bit length field
+  public static final int MAX_UNCOMPRESSED_LENGTH = (1 << 24) - 1;
+
+  public static byte[] compress(final byte[] data) {
+    final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+      final byte[] buf = new byte[4096];
+      while (!deflater.finished()) {
+        final int len = deflater.deflate(buf);
+        out.write(buf, 0, len);
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  public static byte[] decompress(final byte[] data, final int uncompressedLength) {
+    if (uncompressedLength <= 0 || uncompressedLength > MAX_UNCOMPRESSED_LENGTH) {
+      throw new IllegalArgumentException("Invalid uncompressed length: " + uncompressedLength);
+    }
+
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+
+      // the announced length comes from the peer, grow the output as data inflates rather than
+      // allocating it up front, and never inflate beyond it
+      final ByteArrayOutputStream out =
+          new ByteArrayOutputStream(Math.min(uncompressedLength, 4 * data.length));
+      final byte[] buf = new byte[4096];
+      while (!inflater.finished()) {
+        // one byte past the announced length is enough to detect overlong data
+        final int max = Math.min(buf.length, uncompressedLength - out.size() + 1);
+        final int len = inflater.inflate(buf, 0, max);
+        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        out.write(buf, 0, len);
+        if (out.size() > uncompressedLength) {
+          break;
+        }
+      }
+
+      if (out.size() != uncompressedLength || !inflater.finished()) {
+        throw new IllegalArgumentException("Compressed certificate length mismatch");
+      }
+      return out.toByteArray();
+    } catch (final DataFormatException e) {
+      throw new IllegalArgumentException("Invalid compressed certificate", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
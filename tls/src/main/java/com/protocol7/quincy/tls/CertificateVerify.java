@@ -6,8 +6,6 @@ import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
-import java.security.spec.MGF1ParameterSpec;
-import java.security.spec.PSSParameterSpec;
 import java.util.Arrays;
 
 public class CertificateVerify {
@@ -26,17 +24,16 @@ public class CertificateVerify {
   private static final byte[] SERVER_PREFIX = Bytes.concat(PADDING, SERVER_CONTEXT, SEPARATOR);
   private static final byte[] CLIENT_PREFIX = Bytes.concat(PADDING, CLIENT_CONTEXT, SEPARATOR);
 
-  private static final String ALGORITHM = "RSASSA-PSS";
-  private static final PSSParameterSpec PARAMETER_SPEC =
-      new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1);
-
-  public static byte[] sign(final byte[] data, final PrivateKey key, final boolean isClient) {
+  public static byte[] sign(
+      final byte[] data,
+      final SignatureScheme scheme,
+      final PrivateKey key,
+      final boolean isClient) {
     final byte[] prefix = isClient ? CLIENT_PREFIX : SERVER_PREFIX;
     final byte[] toSign = Bytes.concat(prefix, data);
 
     try {
-      final Signature sig = Signature.getInstance(ALGORITHM);
-      sig.setParameter(PARAMETER_SPEC);
+      final Signature sig = scheme.newSignature();
 
       sig.initSign(key);
       sig.update(toSign);
@@ -49,14 +46,19 @@ public class CertificateVerify {
   public static boolean verify(
       final byte[] signature,
       final byte[] data,
+      final SignatureScheme scheme,
       final PublicKey publicKey,
       final boolean isClient) {
+    if (!scheme.matches(publicKey)) {
+      throw new IllegalArgumentException(
+          "Signature scheme " + scheme + " does not match key " + publicKey.getAlgorithm());
+    }
+
     final byte[] prefix = isClient ? CLIENT_PREFIX : SERVER_PREFIX;
     final byte[] toVerify = Bytes.concat(prefix, data);
 
     try {
-      final Signature sig = Signature.getInstance(ALGORITHM);
-      sig.setParameter(PARAMETER_SPEC);
+      final Signature sig = scheme.newSignature();
 
       sig.initVerify(publicKey);
       sig.update(toVerify);
@@ -8,13 +8,35 @@ import java.util.List;
 import java.util.Optional;
 
 public enum CipherSuite {
-  TLS_AES_128_GCM_SHA256(0x1301),
-  TLS_AES_256_GCM_SHA384(0x1302),
-  TLS_CHACHA20_POLY1305_SHA256(0x1303);
+  // confidentiality limits from RFC 9001, section 6.6. For ChaCha20 the limit is larger than the
+  // number of possible packets
+  TLS_AES_128_GCM_SHA256(0x1301, 16, 1L << 23),
+  TLS_AES_256_GCM_SHA384(0x1302, 32, 1L << 23),
+  TLS_CHACHA20_POLY1305_SHA256(0x1303, 32, Long.MAX_VALUE);
 
   private static final EnumSet<CipherSuite> ALL = EnumSet.allOf(CipherSuite.class);
 
-  public static final List<CipherSuite> SUPPORTED = List.of(TLS_AES_128_GCM_SHA256);
+  // in order of preference
+  public static final List<CipherSuite> SUPPORTED =
+      List.of(TLS_AES_128_GCM_SHA256, TLS_CHACHA20_POLY1305_SHA256);
+
+  // the first of our preferred cipher suites also offered by the peer
+  public static Optional<CipherSuite> select(
+      final List<CipherSuite> preferred, final List<CipherSuite> offered) {
+    for (final CipherSuite cs : preferred) {
+      if (offered.contains(cs)) {
+        return Optional.of(cs);
+      }
+    }
+    return Optional.empty();
+  }
+
+  public static List<CipherSuite> validateSupported(final List<CipherSuite> cipherSuites) {
+    if (cipherSuites.isEmpty() || !SUPPORTED.containsAll(cipherSuites)) {
+      throw new IllegalArgumentException("Unsupported cipher suites: " + cipherSuites);
+    }
+    return List.copyOf(cipherSuites);
+  }
 
   public static List<CipherSuite> parseKnown(final ByteBuf bb) {
     final int len = bb.readShort() / 2;
@@ -49,12 +71,26 @@ public enum CipherSuite {
   }
 
   private final int value;
+  private final int keyLength;
+  private final long confidentialityLimit;
 
-  CipherSuite(final int value) {
+  CipherSuite(final int value, final int keyLength, final long confidentialityLimit) {
     this.value = value;
+    this.keyLength = keyLength;
+    this.confidentialityLimit = confidentialityLimit;
   }
 
   public int getValue() {
     return value;
   }
+
+  // length of both the packet and header protection keys
+  public int getKeyLength() {
+    return keyLength;
+  }
+
+  // the number of packets that can be protected using the same key
+  public long getConfidentialityLimit() {
+    return confidentialityLimit;
+  }
 }
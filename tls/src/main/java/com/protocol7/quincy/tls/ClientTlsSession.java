@@ -1,26 +1,41 @@
 package com.protocol7.quincy.tls;
 
 import static com.protocol7.quincy.tls.aead.Labels.CLIENT_HANDSHAKE_TRAFFIC_SECRET;
+import static java.util.Objects.requireNonNull;
 
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
 import com.protocol7.quincy.tls.aead.AEADs;
 import com.protocol7.quincy.tls.aead.HandshakeAEAD;
+import com.protocol7.quincy.tls.aead.KeyPhase;
+import com.protocol7.quincy.tls.aead.KeyPhases;
 import com.protocol7.quincy.tls.aead.OneRttAEAD;
+import com.protocol7.quincy.tls.aead.ZeroRttAEAD;
+import com.protocol7.quincy.tls.extensions.EarlyData;
+import com.protocol7.quincy.tls.extensions.Extension;
 import com.protocol7.quincy.tls.extensions.ExtensionType;
 import com.protocol7.quincy.tls.extensions.KeyShare;
+import com.protocol7.quincy.tls.extensions.PreSharedKey;
+import com.protocol7.quincy.tls.extensions.PreSharedKey.Identity;
 import com.protocol7.quincy.tls.extensions.SupportedVersions;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import com.protocol7.quincy.tls.messages.ClientFinished;
 import com.protocol7.quincy.tls.messages.ClientHello;
+import com.protocol7.quincy.tls.messages.NewSessionTicket;
 import com.protocol7.quincy.tls.messages.ServerHandshake.EncryptedExtensions;
 import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificate;
 import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificateVerify;
 import com.protocol7.quincy.tls.messages.ServerHandshake.ServerHandshakeFinished;
 import com.protocol7.quincy.tls.messages.ServerHello;
+import com.protocol7.quincy.tls.resumption.ResumptionTicket;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
 import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,20 +51,39 @@ public class ClientTlsSession {
   private final AEADs aeads;
   private final KeyExchange kek;
   private final CertificateValidator certificateValidator;
+  private final SessionTicketCache ticketCache;
+  private final String origin;
+  private final List<CipherSuite> cipherSuites;
 
   private ByteBuf handshakeBuffer;
+  private final TranscriptHash transcript = new TranscriptHash();
   private byte[] clientHello;
-  private byte[] serverHello;
+  private Optional<ResumptionTicket> ticket = Optional.empty();
+  private Optional<byte[]> earlySecret = Optional.empty();
+  private CipherSuite cipherSuite;
+  private boolean resumed;
+  private boolean earlyDataOffered;
+  private boolean earlyDataAccepted;
+  private byte[] helloHash;
   private byte[] handshakeSecret;
+  private byte[] resumptionMasterSecret;
+  private Optional<TransportParameters> peerTransportParameters = Optional.empty();
 
+  // cipher suites in order of preference
   public ClientTlsSession(
       final AEAD initialAEAD,
       final TransportParameters transportParameters,
-      final CertificateValidator certificateValidator) {
+      final CertificateValidator certificateValidator,
+      final SessionTicketCache ticketCache,
+      final String origin,
+      final List<CipherSuite> cipherSuites) {
     this.transportParameters = transportParameters;
 
     aeads = new AEADs(initialAEAD);
     this.certificateValidator = certificateValidator;
+    this.ticketCache = requireNonNull(ticketCache);
+    this.origin = requireNonNull(origin);
+    this.cipherSuites = CipherSuite.validateSupported(cipherSuites);
     kek = KeyExchange.generate(Group.X25519);
     handshakeBuffer = Unpooled.buffer(); // replace with position keeping buffer
   }
@@ -59,17 +93,62 @@ public class ClientTlsSession {
       throw new IllegalStateException("Already started");
     }
 
-    final ClientHello ch = ClientHello.defaults(kek, transportParameters);
-    clientHello = Bytes.write(bb -> ch.write(bb, true));
+    ticket = ticketCache.take(origin);
+    if (ticket.isPresent()) {
+      clientHello = resumptionHello(ticket.get());
+    } else {
+      final ClientHello ch = ClientHello.defaults(kek, cipherSuites, transportParameters);
+      clientHello = Bytes.write(bb -> ch.write(bb, true));
+    }
+
+    transcript.update(clientHello);
+
+    if (earlyDataOffered) {
+      aeads.setZeroRttAead(
+          ZeroRttAEAD.create(
+              earlySecret.get(), transcript.snapshot(), ticket.get().getCipherSuite()));
+    }
+
     return clientHello;
   }
 
+  private byte[] resumptionHello(final ResumptionTicket ticket) {
+    final byte[] secret = HKDF.calculateEarlySecret(ticket.getPsk());
+    earlySecret = Optional.of(secret);
+
+    // write with an empty binder, then fill it in from the hash of the truncated client hello
+    final Instant now = ticketCache.getClock().instant();
+    final PreSharedKey psk =
+        new PreSharedKey(
+            List.of(new Identity(ticket.getTicket(), ticket.getObfuscatedAge(now))),
+            List.of(new byte[32]));
+    // the pre shared key must be the last extension
+    earlyDataOffered = ticket.allowsEarlyData() && cipherSuites.contains(ticket.getCipherSuite());
+    final ClientHello ch;
+    if (earlyDataOffered) {
+      ch = ClientHello.defaults(kek, cipherSuites, transportParameters, new EarlyData(), psk);
+    } else {
+      ch = ClientHello.defaults(kek, cipherSuites, transportParameters, psk);
+    }
+    final byte[] hello = Bytes.write(bb -> ch.write(bb, true));
+
+    final int truncatedLength = hello.length - psk.getBindersLength();
+    final byte[] binder =
+        VerifyData.create(
+            HKDF.calculateBinderKey(secret), Hash.sha256(Arrays.copyOf(hello, truncatedLength)));
+
+    // skip the binders list length and the binder length
+    System.arraycopy(binder, 0, hello, truncatedLength + 3, binder.length);
+    return hello;
+  }
+
   public AEAD handleServerHello(final byte[] msg) {
     if (clientHello == null) {
       throw new IllegalStateException("Not started");
     }
-
-    serverHello = msg;
+    if (helloHash != null) {
+      throw new IllegalStateException("Already got server hello");
+    }
 
     final ByteBuf bb = Unpooled.wrappedBuffer(msg);
     final ServerHello hello = ServerHello.parse(bb, true);
@@ -83,22 +162,40 @@ public class ClientTlsSession {
       throw new IllegalArgumentException("Illegal version");
     }
 
+    if (!cipherSuites.contains(hello.getCipherSuites())) {
+      throw new IllegalArgumentException("Cipher suite not offered: " + hello.getCipherSuites());
+    }
+    cipherSuite = hello.getCipherSuites();
+
     final KeyShare keyShareExtension =
         (KeyShare)
             hello.geExtension(ExtensionType.KEY_SHARE).orElseThrow(IllegalArgumentException::new);
     final byte[] peerPublicKey = keyShareExtension.getKey(Group.X25519).get();
     final byte[] sharedSecret = kek.generateSharedSecret(peerPublicKey);
 
-    final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+    final Optional<Extension> psk = hello.geExtension(ExtensionType.PRE_SHARED_KEY);
+    if (psk.isPresent()) {
+      if (earlySecret.isEmpty() || ((PreSharedKey) psk.get()).getSelectedIdentity() != 0) {
+        throw new IllegalArgumentException("Unexpected PSK identity");
+      }
+      resumed = true;
+    }
+
+    transcript.update(msg);
+    helloHash = transcript.snapshot();
 
-    handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
+    if (resumed) {
+      handshakeSecret = HKDF.calculateHandshakeSecret(earlySecret.get(), sharedSecret);
+    } else {
+      handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
+    }
 
-    return HandshakeAEAD.create(handshakeSecret, helloHash, true);
+    return HandshakeAEAD.create(handshakeSecret, helloHash, true, cipherSuite);
   }
 
   public synchronized Optional<HandshakeResult> handleHandshake(final byte[] msg)
       throws CertificateInvalidException {
-    if (clientHello == null || serverHello == null) {
+    if (clientHello == null || helloHash == null) {
       throw new IllegalStateException("Got handshake in unexpected state");
     }
 
@@ -106,39 +203,53 @@ public class ClientTlsSession {
 
     handshakeBuffer.markReaderIndex();
     try {
-      final int pos = handshakeBuffer.readerIndex();
-      EncryptedExtensions.parse(handshakeBuffer, true);
-      final ServerCertificate sc = ServerCertificate.parse(handshakeBuffer);
-
-      final byte[] scvBytes = new byte[handshakeBuffer.readerIndex() - pos];
-      handshakeBuffer.resetReaderIndex();
-      handshakeBuffer.readBytes(scvBytes);
-
-      final ServerCertificateVerify scv = ServerCertificateVerify.parse(handshakeBuffer);
-
-      validateServerCertificateVerify(sc, scv, scvBytes);
-
-      final byte[] finBytes = new byte[handshakeBuffer.readerIndex() - pos];
-      handshakeBuffer.resetReaderIndex();
-      handshakeBuffer.readBytes(finBytes);
-
+      // parse the complete server handshake before updating the transcript
+      final int eeIndex = handshakeBuffer.readerIndex();
+      final EncryptedExtensions ee = EncryptedExtensions.parse(handshakeBuffer, true);
+
+      // resumed handshakes are authenticated by the PSK and have no certificate
+      ServerCertificate sc = null;
+      ServerCertificateVerify scv = null;
+      int scvIndex = handshakeBuffer.readerIndex();
+      if (!resumed) {
+        sc = ServerCertificate.parse(handshakeBuffer);
+        scvIndex = handshakeBuffer.readerIndex();
+        scv = ServerCertificateVerify.parse(handshakeBuffer);
+      }
+      final int finIndex = handshakeBuffer.readerIndex();
       final ServerHandshakeFinished fin = ServerHandshakeFinished.parse(handshakeBuffer);
+      final int endIndex = handshakeBuffer.readerIndex();
 
-      final byte[] helloHash = Hash.sha256(clientHello, serverHello);
-      validateServerFinish(fin, helloHash, finBytes);
+      transcript.update(handshakeBuffer, eeIndex, scvIndex - eeIndex);
+      if (!resumed) {
+        validateServerCertificateVerify(sc, scv, transcript.snapshot());
+      }
 
-      if (!certificateValidator.validate(sc.getServerCertificates())) {
+      transcript.update(handshakeBuffer, scvIndex, finIndex - scvIndex);
+      validateServerFinish(fin, transcript.snapshot());
+
+      if (!resumed && !certificateValidator.validate(sc.getServerCertificates())) {
         throw new CertificateInvalidException();
       }
 
-      handshakeBuffer.resetReaderIndex();
+      for (final Extension extension : ee.getExtensions()) {
+        if (extension instanceof TransportParameters) {
+          peerTransportParameters = Optional.of((TransportParameters) extension);
+        } else if (extension instanceof EarlyData) {
+          if (!earlyDataOffered) {
+            throw new IllegalArgumentException("Early data accepted but not offered");
+          }
+          earlyDataAccepted = true;
+        }
+      }
 
-      final byte[] hs = Bytes.drainToArray(handshakeBuffer);
+      transcript.update(handshakeBuffer, finIndex, endIndex - finIndex);
       handshakeBuffer = Unpooled.buffer();
 
-      final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, hs);
+      final byte[] handshakeHash = transcript.snapshot();
 
-      final AEAD aead = OneRttAEAD.create(handshakeSecret, handshakeHash, true);
+      final KeyPhase oneRttKeys =
+          OneRttAEAD.createKeyPhase(handshakeSecret, handshakeHash, true, cipherSuite);
 
       // TODO dedup
       final byte[] clientHandshakeTrafficSecret =
@@ -149,7 +260,11 @@ public class ClientTlsSession {
 
       final byte[] b = Bytes.write(clientFinished);
 
-      return Optional.of(new HandshakeResult(b, aead));
+      transcript.update(b);
+      resumptionMasterSecret =
+          HKDF.calculateResumptionMasterSecret(handshakeSecret, transcript.snapshot());
+
+      return Optional.of(new HandshakeResult(b, oneRttKeys));
     } catch (final IndexOutOfBoundsException e) {
       // wait for more data
       log.debug("Need more data, waiting...");
@@ -159,10 +274,8 @@ public class ClientTlsSession {
     }
   }
 
-  private void validateServerFinish(
-      final ServerHandshakeFinished fin, final byte[] helloHash, final byte[] finBytes) {
+  private void validateServerFinish(final ServerHandshakeFinished fin, final byte[] finishedHash) {
     // verify server fin
-    final byte[] finishedHash = Hash.sha256(clientHello, serverHello, finBytes);
 
     final byte[] serverHandshakeTrafficSecret =
         HKDF.expandLabel(handshakeSecret, "s hs traffic", helloHash, 32);
@@ -176,19 +289,79 @@ public class ClientTlsSession {
   }
 
   private void validateServerCertificateVerify(
-      final ServerCertificate sc, final ServerCertificateVerify scv, final byte[] handshakeData) {
-    final byte[] toVerify = Hash.sha256(clientHello, serverHello, handshakeData);
-
+      final ServerCertificate sc, final ServerCertificateVerify scv, final byte[] toVerify) {
     final byte[] serverSig = scv.getSignature();
 
     final PublicKey serverKey = sc.getAsCertificiates().get(0).getPublicKey();
 
-    final boolean valid = CertificateVerify.verify(serverSig, toVerify, serverKey, false);
+    // only accept the schemes we offered, and that match the server certificate
+    final SignatureScheme scheme =
+        SignatureScheme.fromValue(scv.getType())
+            .filter(SignatureScheme.SUPPORTED::contains)
+            .filter(s -> s.matches(serverKey))
+            .orElseThrow(() -> new RuntimeException("Unexpected signature scheme"));
+
+    final boolean valid = CertificateVerify.verify(serverSig, toVerify, scheme, serverKey, false);
     if (!valid) {
       throw new RuntimeException("Invalid server certificate verify");
     }
   }
 
+  public synchronized void handleNewSessionTicket(final byte[] msg) {
+    if (resumptionMasterSecret == null) {
+      throw new IllegalStateException("Got session ticket before handshake completed");
+    }
+
+    final ByteBuf bb = Unpooled.wrappedBuffer(msg);
+    while (bb.isReadable()) {
+      final NewSessionTicket nst = NewSessionTicket.parse(bb);
+
+      final byte[] psk = HKDF.calculateResumptionPsk(resumptionMasterSecret, nst.getNonce());
+      final boolean earlyData =
+          nst.getExtension(ExtensionType.EARLY_DATA)
+              .flatMap(ext -> ((EarlyData) ext).getMaxEarlyDataSize())
+              .map(size -> size == EarlyData.QUIC_MAX_EARLY_DATA_SIZE)
+              .orElse(false);
+      ticketCache.put(
+          origin,
+          new ResumptionTicket(
+              nst.getTicket(),
+              psk,
+              nst.getAgeAdd(),
+              ticketCache.getClock().instant(),
+              nst.getLifetime(),
+              earlyData,
+              cipherSuite));
+    }
+  }
+
+  // the negotiated cipher suite, set once the server hello is handled
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
+  }
+
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  // the ticket used when resuming, if any
+  public Optional<ResumptionTicket> getResumptionTicket() {
+    return ticket;
+  }
+
+  public boolean isEarlyDataOffered() {
+    return earlyDataOffered;
+  }
+
+  // if false after the handshake, any early data was dropped by the server and must be resent
+  public boolean isEarlyDataAccepted() {
+    return earlyDataAccepted;
+  }
+
+  public Optional<TransportParameters> getPeerTransportParameters() {
+    return peerTransportParameters;
+  }
+
   public boolean available(final EncryptionLevel encLevel) {
     return aeads.available(encLevel);
   }
@@ -201,8 +374,20 @@ public class ClientTlsSession {
     aeads.setHandshakeAead(handshakeAead);
   }
 
-  public void setOneRttAead(final AEAD oneRttAead) {
-    aeads.setOneRttAead(oneRttAead);
+  public void setOneRttKeys(final KeyPhases oneRttKeys) {
+    aeads.setOneRttKeys(oneRttKeys);
+  }
+
+  public KeyPhases getOneRttKeys() {
+    return aeads.getOneRttKeys();
+  }
+
+  public AEADProvider getAEADProvider() {
+    return aeads;
+  }
+
+  public void unsetZeroRttAead() {
+    aeads.unsetZeroRttAead();
   }
 
   public void unsetInitialAead() {
@@ -215,11 +400,11 @@ public class ClientTlsSession {
 
   public static class HandshakeResult {
     private final byte[] fin;
-    private final AEAD oneRttAead;
+    private final KeyPhase oneRttKeys;
 
-    public HandshakeResult(final byte[] fin, final AEAD oneRttAead) {
+    public HandshakeResult(final byte[] fin, final KeyPhase oneRttKeys) {
       this.fin = fin;
-      this.oneRttAead = oneRttAead;
+      this.oneRttKeys = oneRttKeys;
     }
 
     public byte[] getFin() {
@@ -227,7 +412,11 @@ public class ClientTlsSession {
     }
 
     public AEAD getOneRttAead() {
-      return oneRttAead;
+      return oneRttKeys.getAEAD();
+    }
+
+    public KeyPhase getOneRttKeys() {
+      return oneRttKeys;
     }
   }
 }
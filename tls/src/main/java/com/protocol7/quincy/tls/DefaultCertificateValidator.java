@@ -1,28 +1,74 @@
 package com.protocol7.quincy.tls;
 
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXCertPathValidatorResult;
 import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class DefaultCertificateValidator implements CertificateValidator {
 
-  private final KeyStore truststore;
+  private static final int DEFAULT_CACHE_SIZE = 1000;
+
+  private final PKIXParameters parameters;
+  private final Clock clock;
+
+  // digest of validated chains, mapped to when the first of the certificates in the chain or the
+  // trust anchor expires
+  private final Cache<ByteBuffer, Instant> validated;
 
   public DefaultCertificateValidator(final KeyStore truststore) {
-    this.truststore = truststore;
+    this(truststore, DEFAULT_CACHE_SIZE, Clock.systemUTC());
+  }
+
+  public DefaultCertificateValidator(
+      final KeyStore truststore, final int cacheSize, final Clock clock) {
+    requireNonNull(truststore);
+    this.clock = requireNonNull(clock);
+
+    // trust anchors are only extracted from the truststore once
+    try {
+      this.parameters = new PKIXParameters(truststore);
+      this.parameters.setRevocationEnabled(false);
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+
+    this.validated = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
   }
 
   @Override
   public boolean validate(final List<byte[]> certificates) {
+    final Instant now = clock.instant();
+    final ByteBuffer key = digest(certificates);
+
+    final Instant expires = validated.getIfPresent(key);
+    if (expires != null) {
+      if (now.isBefore(expires)) {
+        return true;
+      } else {
+        validated.invalidate(key);
+      }
+    }
+
     try {
       final CertificateFactory cf = CertificateFactory.getInstance("X.509");
 
@@ -43,11 +89,14 @@ public class DefaultCertificateValidator implements CertificateValidator {
       // Check the chain
       final CertPath cp = cf.generateCertPath(certlist);
 
-      final PKIXParameters params = new PKIXParameters(truststore);
-      params.setRevocationEnabled(false);
+      final PKIXParameters params = (PKIXParameters) parameters.clone();
+      params.setDate(Date.from(now));
       final CertPathValidator cpv =
           CertPathValidator.getInstance(CertPathValidator.getDefaultType());
-      cpv.validate(cp, params);
+      final PKIXCertPathValidatorResult result =
+          (PKIXCertPathValidatorResult) cpv.validate(cp, params);
+
+      validated.put(key, notAfter(certlist, result.getTrustAnchor()));
       return true;
     } catch (final CertPathValidatorException e) {
       return false;
@@ -55,4 +104,38 @@ public class DefaultCertificateValidator implements CertificateValidator {
       throw new RuntimeException(e);
     }
   }
+
+  private static Instant notAfter(
+      final List<X509Certificate> certificates, final TrustAnchor anchor) {
+    // anchors without a certificate do not expire
+    Instant notAfter =
+        anchor.getTrustedCert() != null
+            ? anchor.getTrustedCert().getNotAfter().toInstant()
+            : Instant.MAX;
+    for (final X509Certificate certificate : certificates) {
+      final Instant certNotAfter = certificate.getNotAfter().toInstant();
+      if (certNotAfter.isBefore(notAfter)) {
+        notAfter = certNotAfter;
+      }
+    }
+    return notAfter;
+  }
+
+  private static ByteBuffer digest(final List<byte[]> certificates) {
+    try {
+      final MessageDigest md = MessageDigest.getInstance("SHA-256");
+      for (final byte[] certificate : certificates) {
+        // include the length so that the chain can not be split differently
+        md.update(ByteBuffer.allocate(4).putInt(certificate.length).array());
+        md.update(certificate);
+      }
+      return ByteBuffer.wrap(md.digest());
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  long cacheSize() {
+    return validated.size();
+  }
 }
@@ -2,6 +2,7 @@ package com.protocol7.quincy.tls;
 
 public enum EncryptionLevel {
   Initial,
+  ZeroRtt,
   Handshake,
   OneRtt;
 }
@@ -1,5 +1,10 @@
 package com.protocol7.quincy.tls;
 
+import static com.protocol7.quincy.tls.aead.Labels.DERIVED;
+import static com.protocol7.quincy.tls.aead.Labels.RESUMPTION;
+import static com.protocol7.quincy.tls.aead.Labels.RESUMPTION_BINDER;
+import static com.protocol7.quincy.tls.aead.Labels.RESUMPTION_MASTER;
+
 import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -22,7 +27,7 @@ public class HKDF {
   //                label = "derived",
   //                context = empty_hash,
   //                len = 32)
-  private static final byte[] DERIVED_SECRET = expandLabel(EARLY_SECRET, "derived", EMPTY_HASH, 32);
+  private static final byte[] DERIVED_SECRET = expandLabel(EARLY_SECRET, DERIVED, EMPTY_HASH, 32);
 
   public static byte[] calculateHandshakeSecret(final byte[] sharedSecret) {
     //         handshake_secret = hkdf-Extract(
@@ -31,6 +36,54 @@ public class HKDF {
     return hkdf.extract(DERIVED_SECRET, sharedSecret);
   }
 
+  public static byte[] calculateEarlySecret(final byte[] psk) {
+    //         early_secret = hkdf-Extract(
+    //                salt = 00,
+    //                key = psk)
+    return hkdf.extract(new byte[1], psk);
+  }
+
+  public static byte[] calculateHandshakeSecret(
+      final byte[] earlySecret, final byte[] sharedSecret) {
+    final byte[] derivedSecret = expandLabel(earlySecret, DERIVED, EMPTY_HASH, 32);
+    return hkdf.extract(derivedSecret, sharedSecret);
+  }
+
+  public static byte[] calculateBinderKey(final byte[] earlySecret) {
+    //         binder_key = hkdf-Expand-Label(
+    //                key = early_secret,
+    //                label = "res binder",
+    //                context = empty_hash,
+    //                len = 32)
+    return expandLabel(earlySecret, RESUMPTION_BINDER, EMPTY_HASH, 32);
+  }
+
+  public static byte[] calculateResumptionMasterSecret(
+      final byte[] handshakeSecret, final byte[] finishedHash) {
+    //         master_secret = hkdf-Extract(
+    //                salt = derived_secret,
+    //                key = 00...)
+    final byte[] derivedSecret = expandLabel(handshakeSecret, DERIVED, EMPTY_HASH, 32);
+    final byte[] masterSecret = hkdf.extract(derivedSecret, new byte[32]);
+
+    //         resumption_master_secret = hkdf-Expand-Label(
+    //                key = master_secret,
+    //                label = "res master",
+    //                context = client_hello...client_finished,
+    //                len = 32)
+    return expandLabel(masterSecret, RESUMPTION_MASTER, finishedHash, 32);
+  }
+
+  public static byte[] calculateResumptionPsk(
+      final byte[] resumptionMasterSecret, final byte[] ticketNonce) {
+    //         psk = hkdf-Expand-Label(
+    //                key = resumption_master_secret,
+    //                label = "resumption",
+    //                context = ticket_nonce,
+    //                len = 32)
+    return expandLabel(resumptionMasterSecret, RESUMPTION, ticketNonce, 32);
+  }
+
   public static byte[] extract(final byte[] salt, final byte[] inputKeyingMaterial) {
     return hkdf.extract(salt, inputKeyingMaterial);
   }
@@ -10,6 +10,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
 import javax.crypto.KeyAgreement;
 
 public class KeyExchange {
@@ -19,13 +21,56 @@ public class KeyExchange {
   private static final byte[] PKCS_PUBLIC_PREFIX_X25519 = Hex.dehex("302c300706032b656e0500032100");
   private static final byte[] PKCS_PUBLIC_PREFIX_X448 = Hex.dehex("3044300706032b656f0500033900");
 
+  // JCA lookups are costly, cache the instances per thread as they are not thread safe
+  private static final ThreadLocal<Map<Group, KeyPairGenerator>> keyPairGenerators =
+      ThreadLocal.withInitial(() -> new EnumMap<>(Group.class));
+  private static final ThreadLocal<Map<Group, KeyFactory>> keyFactories =
+      ThreadLocal.withInitial(() -> new EnumMap<>(Group.class));
+  private static final ThreadLocal<Map<Group, KeyAgreement>> keyAgreements =
+      ThreadLocal.withInitial(() -> new EnumMap<>(Group.class));
+
   public static KeyExchange generate(final Group group) {
-    try {
-      final KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance(group.name());
-      return new KeyExchange(group, keyPairGen.generateKeyPair());
-    } catch (final NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
+    final KeyPairGenerator keyPairGen =
+        keyPairGenerators
+            .get()
+            .computeIfAbsent(
+                group,
+                g -> {
+                  try {
+                    return KeyPairGenerator.getInstance(g.name());
+                  } catch (final NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e);
+                  }
+                });
+    return new KeyExchange(group, keyPairGen.generateKeyPair());
+  }
+
+  private static KeyFactory keyFactory(final Group group) {
+    return keyFactories
+        .get()
+        .computeIfAbsent(
+            group,
+            g -> {
+              try {
+                return KeyFactory.getInstance(g.name());
+              } catch (final NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+              }
+            });
+  }
+
+  private static KeyAgreement keyAgreement(final Group group) {
+    return keyAgreements
+        .get()
+        .computeIfAbsent(
+            group,
+            g -> {
+              try {
+                return KeyAgreement.getInstance(g.name());
+              } catch (final NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+              }
+            });
   }
 
   private final Group group;
@@ -52,12 +97,11 @@ public class KeyExchange {
 
   public byte[] generateSharedSecret(final byte[] otherPublicKey) {
     try {
-      final KeyFactory keyFactory = KeyFactory.getInstance(group.name());
       final X509EncodedKeySpec x509KeySpec =
           new X509EncodedKeySpec(Bytes.concat(pkcsPublicPrefix(group), otherPublicKey));
-      final PublicKey pubKey = keyFactory.generatePublic(x509KeySpec);
+      final PublicKey pubKey = keyFactory(group).generatePublic(x509KeySpec);
 
-      final KeyAgreement keyAgree = KeyAgreement.getInstance(group.name());
+      final KeyAgreement keyAgree = keyAgreement(group);
       keyAgree.init(keyPair.getPrivate());
       keyAgree.doPhase(pubKey, true);
       return keyAgree.generateSecret();
@@ -0,0 +1,101 @@
+package com.protocol7.quincy.tls;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class KeyExchangePool {
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private static final Supplier<KeyExchangePool> shared =
+      Suppliers.memoize(() -> new KeyExchangePool(Group.X25519, DEFAULT_CAPACITY));
+
+  public static KeyExchangePool shared() {
+    return shared.get();
+  }
+
+  private final Group group;
+  private final BlockingQueue<KeyExchange> pool;
+  private final ExecutorService refiller;
+  private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+  public KeyExchangePool(final Group group, final int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+
+    this.group = requireNonNull(group);
+    this.pool = new ArrayBlockingQueue<>(capacity);
+    this.refiller =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("quincy-key-exchange-" + group + "-%d")
+                .build());
+
+    refill();
+  }
+
+  public KeyExchange take() {
+    final KeyExchange kek = pool.poll();
+
+    refill();
+
+    if (kek != null) {
+      return kek;
+    } else {
+      // drained faster than refilled, generate inline rather than waiting
+      return KeyExchange.generate(group);
+    }
+  }
+
+  private void refill() {
+    if (refiller.isShutdown() || !refilling.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      refiller.execute(
+          () -> {
+            try {
+              while (pool.remainingCapacity() > 0 && !refiller.isShutdown()) {
+                pool.offer(KeyExchange.generate(group));
+              }
+            } finally {
+              refilling.set(false);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      // closed concurrently
+      refilling.set(false);
+    }
+  }
+
+  public Group getGroup() {
+    return group;
+  }
+
+  public int size() {
+    return pool.size();
+  }
+
+  public void close() {
+    refiller.shutdownNow();
+    try {
+      // let any ongoing refill finish so that no keys are added after clearing
+      refiller.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    pool.clear();
+  }
+}
@@ -1,62 +1,107 @@
 package com.protocol7.quincy.tls;
 
-import static com.protocol7.quincy.utils.Bytes.peekToArray;
 import static java.util.Objects.requireNonNull;
 
-import com.google.common.base.Preconditions;
 import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.AEADProvider;
 import com.protocol7.quincy.tls.aead.AEADs;
 import com.protocol7.quincy.tls.aead.HandshakeAEAD;
+import com.protocol7.quincy.tls.aead.KeyPhase;
+import com.protocol7.quincy.tls.aead.KeyPhases;
 import com.protocol7.quincy.tls.aead.OneRttAEAD;
+import com.protocol7.quincy.tls.aead.ZeroRttAEAD;
+import com.protocol7.quincy.tls.extensions.CompressCertificate;
+import com.protocol7.quincy.tls.extensions.EarlyData;
+import com.protocol7.quincy.tls.extensions.Extension;
 import com.protocol7.quincy.tls.extensions.ExtensionType;
 import com.protocol7.quincy.tls.extensions.KeyShare;
+import com.protocol7.quincy.tls.extensions.PreSharedKey;
+import com.protocol7.quincy.tls.extensions.PskKeyExchangeModes;
+import com.protocol7.quincy.tls.extensions.SignatureAlgorithms;
 import com.protocol7.quincy.tls.extensions.SupportedVersion;
 import com.protocol7.quincy.tls.extensions.SupportedVersions;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import com.protocol7.quincy.tls.messages.ClientFinished;
 import com.protocol7.quincy.tls.messages.ClientHello;
+import com.protocol7.quincy.tls.messages.NewSessionTicket;
 import com.protocol7.quincy.tls.messages.ServerHandshake.EncryptedExtensions;
-import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificate;
 import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificateVerify;
 import com.protocol7.quincy.tls.messages.ServerHandshake.ServerHandshakeFinished;
 import com.protocol7.quincy.tls.messages.ServerHello;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.SessionTicket;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
 import com.protocol7.quincy.utils.Bytes;
+import com.protocol7.quincy.utils.Rnd;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.security.PrivateKey;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 public class ServerTlsSession {
 
+  private static final int MAX_TICKET_LIFETIME = 7 * 24 * 60 * 60;
+
   private final TransportParameters transportParameters;
 
   private final AEADs aeads;
   private final KeyExchange kek;
 
   private final PrivateKey privateKey;
-  private final List<byte[]> certificates;
-  private byte[] clientHello;
-  private byte[] serverHello;
-  private byte[] handshake;
+  private final SignatureScheme signatureScheme;
+  private final CertificateChain certificates;
+  private final TicketKeys ticketKeys;
+  private final AntiReplayFilter antiReplayFilter;
+  private final List<CipherSuite> cipherSuites;
+
+  // the handshake state is set once the client hello has been handled
+  private TranscriptHash transcript;
+  private CipherSuite cipherSuite;
+  private boolean resumed;
+  private boolean earlyDataAccepted;
+  private byte[] helloHash;
+  private byte[] handshakeHash;
   private byte[] handshakeSecret;
+  private byte[] resumptionMasterSecret;
 
+  // cipher suites in order of preference
   public ServerTlsSession(
       final AEAD initialAEAD,
       final TransportParameters transportParameters,
-      final List<byte[]> certificates,
-      final PrivateKey privateKey) {
+      final CertificateChain certificates,
+      final PrivateKey privateKey,
+      final KeyExchangePool keyExchangePool,
+      final TicketKeys ticketKeys,
+      final AntiReplayFilter antiReplayFilter,
+      final List<CipherSuite> cipherSuites) {
     this.transportParameters = transportParameters;
-    Preconditions.checkArgument(!certificates.isEmpty());
+    this.ticketKeys = requireNonNull(ticketKeys);
+    this.antiReplayFilter = requireNonNull(antiReplayFilter);
+    this.cipherSuites = CipherSuite.validateSupported(cipherSuites);
 
     aeads = new AEADs(initialAEAD);
     this.privateKey = privateKey;
+    this.signatureScheme = SignatureScheme.forKey(privateKey);
     this.certificates = requireNonNull(certificates);
-    this.kek = KeyExchange.generate(Group.X25519);
+    this.kek = keyExchangePool.take();
   }
 
   public ServerHelloAndHandshake handleClientHello(final byte[] msg) {
-    clientHello = msg;
+    if (helloHash != null) {
+      throw new IllegalStateException("Already handled client hello");
+    }
 
+    final ServerHelloAndHandshake shah = calculateHandshake(msg);
+    onHandshake(shah);
+    return shah;
+  }
+
+  // calculates the response to a client hello using only its own state, so that the costly
+  // calculations can run on another thread than the session. The result is applied to the session
+  // with onHandshake
+  public ServerHelloAndHandshake calculateHandshake(final byte[] msg) {
     final ClientHello ch = ClientHello.parse(msg, false);
 
     // verify expected extensions
@@ -72,71 +117,216 @@ public class ServerTlsSession {
         (KeyShare)
             ch.getExtension(ExtensionType.KEY_SHARE).orElseThrow(IllegalArgumentException::new);
 
+    final SignatureAlgorithms signatureAlgorithms =
+        (SignatureAlgorithms)
+            ch.getExtension(ExtensionType.SIGNATURE_ALGORITHMS)
+                .orElseThrow(IllegalArgumentException::new);
+    if (!signatureAlgorithms.contains(signatureScheme)) {
+      throw new IllegalArgumentException("Signature scheme not supported by client");
+    }
+
+    final CipherSuite cipherSuite =
+        CipherSuite.select(cipherSuites, ch.getCipherSuites())
+            .orElseThrow(() -> new IllegalArgumentException("No common cipher suite"));
+
+    final Optional<SessionTicket> ticket = findTicket(ch, msg);
+    final boolean resumed = ticket.isPresent();
+    final boolean earlyDataAccepted = resumed && acceptsEarlyData(ch, ticket.get(), cipherSuite);
+    final Optional<byte[]> earlySecret = ticket.map(t -> HKDF.calculateEarlySecret(t.getPsk()));
+
     // create ServerHello
-    serverHello = Bytes.write(ServerHello.defaults(kek, transportParameters));
+    final ServerHello sh;
+    if (resumed) {
+      sh = ServerHello.defaults(kek, cipherSuite, transportParameters, new PreSharedKey(0));
+    } else {
+      sh = ServerHello.defaults(kek, cipherSuite, transportParameters);
+    }
+    final byte[] serverHello = Bytes.write(sh);
+
+    final TranscriptHash transcript = new TranscriptHash();
+    transcript.update(msg);
+
+    // early data is protected by keys derived from the client hello only
+    final Optional<AEAD> zeroRttAEAD;
+    if (earlyDataAccepted) {
+      zeroRttAEAD =
+          Optional.of(ZeroRttAEAD.create(earlySecret.get(), transcript.snapshot(), cipherSuite));
+    } else {
+      zeroRttAEAD = Optional.empty();
+    }
+
+    transcript.update(serverHello);
+    final byte[] helloHash = transcript.snapshot();
 
     final ByteBuf handshakeBB = Unpooled.buffer();
 
     // TODO decide on what parameters to send where
-    final EncryptedExtensions ee = EncryptedExtensions.defaults(transportParameters);
+    final EncryptedExtensions ee;
+    if (earlyDataAccepted) {
+      ee = EncryptedExtensions.defaults(transportParameters, new EarlyData());
+    } else {
+      ee = EncryptedExtensions.defaults(transportParameters);
+    }
     ee.write(handshakeBB);
 
-    final ServerCertificate sc = new ServerCertificate(new byte[0], certificates);
-    sc.write(handshakeBB);
+    if (resumed) {
+      // the client already authenticated the server when the ticket was issued
+      transcript.update(handshakeBB, 0, handshakeBB.writerIndex());
+    } else {
+      certificates.write(handshakeBB, acceptsCompressedCertificate(ch));
 
-    // create server cert verification
-    final byte[] toVerify = peekToArray(handshakeBB);
+      // create server cert verification
+      transcript.update(handshakeBB, 0, handshakeBB.writerIndex());
 
-    final byte[] verificationSig =
-        CertificateVerify.sign(Hash.sha256(clientHello, serverHello, toVerify), privateKey, false);
+      final byte[] verificationSig =
+          CertificateVerify.sign(transcript.snapshot(), signatureScheme, privateKey, false);
 
-    final ServerCertificateVerify scv = new ServerCertificateVerify(2052, verificationSig);
-    scv.write(handshakeBB);
+      final int scvIndex = handshakeBB.writerIndex();
+      final ServerCertificateVerify scv =
+          new ServerCertificateVerify(signatureScheme.getValue(), verificationSig);
+      scv.write(handshakeBB);
+
+      transcript.update(handshakeBB, scvIndex, handshakeBB.writerIndex() - scvIndex);
+    }
 
     // create server finished
     final byte[] peerPublicKey = keyShareExtension.getKey(Group.X25519).get();
     final byte[] sharedSecret = kek.generateSharedSecret(peerPublicKey);
-    handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
-    final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+    final byte[] handshakeSecret;
+    if (resumed) {
+      handshakeSecret = HKDF.calculateHandshakeSecret(earlySecret.get(), sharedSecret);
+    } else {
+      handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
+    }
 
     // create handshake AEAD
-    final AEAD handshakeAEAD = HandshakeAEAD.create(handshakeSecret, helloHash, false);
+    final AEAD handshakeAEAD = HandshakeAEAD.create(handshakeSecret, helloHash, false, cipherSuite);
 
     final byte[] serverHandshakeTrafficSecret =
         HKDF.expandLabel(handshakeSecret, "s hs traffic", helloHash, 32);
 
     // finished_hash = SHA256(Client Hello ... Server Cert Verify)
-    final byte[] finishedHash = Hash.sha256(clientHello, serverHello, peekToArray(handshakeBB));
+    final byte[] finishedHash = transcript.snapshot();
 
     final byte[] verifyData = VerifyData.create(serverHandshakeTrafficSecret, finishedHash);
 
+    final int finIndex = handshakeBB.writerIndex();
     final ServerHandshakeFinished fin = new ServerHandshakeFinished(verifyData);
     fin.write(handshakeBB);
 
+    transcript.update(handshakeBB, finIndex, handshakeBB.writerIndex() - finIndex);
+
     // create 1-RTT AEAD
-    handshake = Bytes.drainToArray(handshakeBB);
+    final byte[] handshake = Bytes.drainToArray(handshakeBB);
+
+    final byte[] handshakeHash = transcript.snapshot();
+    final KeyPhase oneRttKeys =
+        OneRttAEAD.createKeyPhase(handshakeSecret, handshakeHash, false, cipherSuite);
+
+    return new ServerHelloAndHandshake(
+        serverHello,
+        handshake,
+        zeroRttAEAD,
+        handshakeAEAD,
+        oneRttKeys,
+        new HandshakeState(
+            transcript,
+            cipherSuite,
+            resumed,
+            earlyDataAccepted,
+            helloHash,
+            handshakeHash,
+            handshakeSecret));
+  }
+
+  // applies a calculated handshake to the session
+  public void onHandshake(final ServerHelloAndHandshake shah) {
+    if (helloHash != null) {
+      throw new IllegalStateException("Already handled client hello");
+    }
+    final HandshakeState state = shah.state;
+    if (state == null) {
+      throw new IllegalArgumentException("Handshake not calculated by a session");
+    }
+
+    transcript = state.transcript;
+    cipherSuite = state.cipherSuite;
+    resumed = state.resumed;
+    earlyDataAccepted = state.earlyDataAccepted;
+    helloHash = state.helloHash;
+    handshakeHash = state.handshakeHash;
+    handshakeSecret = state.handshakeSecret;
+  }
+
+  private Optional<SessionTicket> findTicket(final ClientHello ch, final byte[] msg) {
+    final Optional<Extension> pskExtension = ch.getExtension(ExtensionType.PRE_SHARED_KEY);
+    final Optional<Extension> modes = ch.getExtension(ExtensionType.PSK_KEY_EXCHANGE_MODES);
+    if (pskExtension.isEmpty()
+        || modes.isEmpty()
+        || !((PskKeyExchangeModes) modes.get())
+            .getExchangeModes()
+            .contains(PskKeyExchangeModes.PSK_DHE_KE)) {
+      return Optional.empty();
+    }
+
+    // only the first identity is considered, unknown or expired tickets fall back to a full
+    // handshake
+    final PreSharedKey psk = (PreSharedKey) pskExtension.get();
+    final Optional<SessionTicket> ticket =
+        SessionTicket.open(ticketKeys, psk.getIdentities().get(0).getIdentity())
+            .filter(t -> !t.isExpired(ticketKeys.getClock().instant()));
+    if (ticket.isEmpty()) {
+      return Optional.empty();
+    }
+
+    // the binder covers the client hello up to, but not including, the binders
+    final byte[] earlySecret = HKDF.calculateEarlySecret(ticket.get().getPsk());
+    final byte[] truncated = Arrays.copyOf(msg, msg.length - psk.getBindersLength());
+    final byte[] binder =
+        VerifyData.create(HKDF.calculateBinderKey(earlySecret), Hash.sha256(truncated));
+    if (!CryptoEquals.isEqual(binder, psk.getBinders().get(0))) {
+      throw new IllegalArgumentException("Invalid PSK binder");
+    }
+
+    return ticket;
+  }
+
+  private boolean acceptsEarlyData(
+      final ClientHello ch, final SessionTicket ticket, final CipherSuite cipherSuite) {
+    // the client protects early data with the cipher suite of the original connection
+    if (ch.getExtension(ExtensionType.EARLY_DATA).isEmpty()
+        || ticket.getCipherSuite() != cipherSuite) {
+      return false;
+    }
+
+    final PreSharedKey psk = (PreSharedKey) ch.getExtension(ExtensionType.PRE_SHARED_KEY).get();
 
-    final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, handshake);
-    final AEAD oneRttAEAD = OneRttAEAD.create(handshakeSecret, handshakeHash, false);
+    // modulo 2^32 as per RFC 8446
+    final long clientTicketAge =
+        (psk.getIdentities().get(0).getObfuscatedTicketAge() - ticket.getAgeAdd()) & 0xFFFFFFFFL;
 
-    return new ServerHelloAndHandshake(serverHello, handshake, handshakeAEAD, oneRttAEAD);
+    return antiReplayFilter.accept(psk.getBinders().get(0), ticket.getIssued(), clientTicketAge);
   }
 
-  public synchronized void handleClientFinished(final byte[] msg) {
-    if (clientHello == null || serverHello == null || handshake == null) {
+  private boolean acceptsCompressedCertificate(final ClientHello ch) {
+    return ch.getExtension(ExtensionType.COMPRESS_CERTIFICATE)
+        .map(
+            ext ->
+                ((CompressCertificate) ext).getAlgorithms().contains(CertificateCompression.ZLIB))
+        .orElse(false);
+  }
+
+  public void handleClientFinished(final byte[] msg) {
+    if (helloHash == null || handshakeHash == null) {
       throw new IllegalStateException("Got handshake in unexpected state");
     }
 
     final ByteBuf bb = Unpooled.wrappedBuffer(msg);
     final ClientFinished fin = ClientFinished.parse(bb);
 
-    final byte[] helloHash = Hash.sha256(clientHello, serverHello);
-
     final byte[] clientHandshakeTrafficSecret =
         HKDF.expandLabel(handshakeSecret, "c hs traffic", helloHash, 32);
 
-    final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, handshake);
-
     final boolean valid =
         VerifyData.verify(
             fin.getVerificationData(), clientHandshakeTrafficSecret, handshakeHash, false);
@@ -144,18 +334,71 @@ public class ServerTlsSession {
     if (!valid) {
       throw new RuntimeException("Invalid client verification");
     }
+
+    transcript.update(msg);
+    resumptionMasterSecret =
+        HKDF.calculateResumptionMasterSecret(handshakeSecret, transcript.snapshot());
+  }
+
+  public byte[] createNewSessionTicket() {
+    if (resumptionMasterSecret == null) {
+      throw new IllegalStateException("Handshake not completed");
+    }
+
+    final byte[] nonce = Rnd.rndBytes(8);
+    final byte[] psk = HKDF.calculateResumptionPsk(resumptionMasterSecret, nonce);
+
+    // tickets can be opened for at least one key rotation interval, RFC 8446 caps it at 7 days
+    final int lifetime =
+        (int) Math.min(ticketKeys.getRotationInterval().getSeconds(), MAX_TICKET_LIFETIME);
+    final int ageAdd = Rnd.rndInt();
+
+    final SessionTicket ticket =
+        new SessionTicket(psk, ticketKeys.getClock().instant(), lifetime, ageAdd, cipherSuite);
+
+    return Bytes.write(
+        new NewSessionTicket(
+            lifetime,
+            ageAdd,
+            nonce,
+            ticket.seal(ticketKeys),
+            List.of(new EarlyData(EarlyData.QUIC_MAX_EARLY_DATA_SIZE))));
+  }
+
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
+  }
+
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  public boolean isEarlyDataAccepted() {
+    return earlyDataAccepted;
   }
 
   public AEAD getAEAD(final EncryptionLevel level) {
     return aeads.get(level);
   }
 
+  public void setZeroRttAead(final AEAD zeroRttAEAD) {
+    aeads.setZeroRttAead(zeroRttAEAD);
+  }
+
   public void setHandshakeAead(final AEAD handshakeAEAD) {
     aeads.setHandshakeAead(handshakeAEAD);
   }
 
-  public void setOneRttAead(final AEAD oneRttAEAD) {
-    aeads.setOneRttAead(oneRttAEAD);
+  public void setOneRttKeys(final KeyPhases oneRttKeys) {
+    aeads.setOneRttKeys(oneRttKeys);
+  }
+
+  public KeyPhases getOneRttKeys() {
+    return aeads.getOneRttKeys();
+  }
+
+  public AEADProvider getAEADProvider() {
+    return aeads;
   }
 
   public boolean available(final EncryptionLevel level) {
@@ -166,6 +409,10 @@ public class ServerTlsSession {
     aeads.unsetInitialAead();
   }
 
+  public void unsetZeroRttAead() {
+    aeads.unsetZeroRttAead();
+  }
+
   public void unsetHandshakeAead() {
     aeads.unsetHandshakeAead();
   }
@@ -175,18 +422,24 @@ public class ServerTlsSession {
     private final byte[] serverHello;
     private final byte[] serverHandshake;
 
+    private final Optional<AEAD> zeroRttAEAD;
     private final AEAD handshakeAEAD;
-    private final AEAD oneRttAEAD;
+    private final KeyPhase oneRttKeys;
+    private final HandshakeState state;
 
-    public ServerHelloAndHandshake(
+    private ServerHelloAndHandshake(
         final byte[] serverHello,
         final byte[] serverHandshake,
+        final Optional<AEAD> zeroRttAEAD,
         final AEAD handshakeAEAD,
-        final AEAD oneRttAEAD) {
+        final KeyPhase oneRttKeys,
+        final HandshakeState state) {
       this.serverHello = serverHello;
       this.serverHandshake = serverHandshake;
+      this.zeroRttAEAD = zeroRttAEAD;
       this.handshakeAEAD = handshakeAEAD;
-      this.oneRttAEAD = oneRttAEAD;
+      this.oneRttKeys = oneRttKeys;
+      this.state = state;
     }
 
     public byte[] getServerHello() {
@@ -197,12 +450,48 @@ public class ServerTlsSession {
       return serverHandshake;
     }
 
+    // present if early data was accepted
+    public Optional<AEAD> getZeroRttAEAD() {
+      return zeroRttAEAD;
+    }
+
     public AEAD getHandshakeAEAD() {
       return handshakeAEAD;
     }
 
     public AEAD getOneRttAEAD() {
-      return oneRttAEAD;
+      return oneRttKeys.getAEAD();
+    }
+
+    public KeyPhase getOneRttKeys() {
+      return oneRttKeys;
+    }
+  }
+
+  private static class HandshakeState {
+    private final TranscriptHash transcript;
+    private final CipherSuite cipherSuite;
+    private final boolean resumed;
+    private final boolean earlyDataAccepted;
+    private final byte[] helloHash;
+    private final byte[] handshakeHash;
+    private final byte[] handshakeSecret;
+
+    private HandshakeState(
+        final TranscriptHash transcript,
+        final CipherSuite cipherSuite,
+        final boolean resumed,
+        final boolean earlyDataAccepted,
+        final byte[] helloHash,
+        final byte[] handshakeHash,
+        final byte[] handshakeSecret) {
+      this.transcript = transcript;
+      this.cipherSuite = cipherSuite;
+      this.resumed = resumed;
+      this.earlyDataAccepted = earlyDataAccepted;
+      this.helloHash = helloHash;
+      this.handshakeHash = handshakeHash;
+      this.handshakeSecret = handshakeSecret;
     }
   }
 }
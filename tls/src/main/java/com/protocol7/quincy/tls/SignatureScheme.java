@@ -0,0 +1,117 @@
+package com.protocol7.quincy.tls;
+
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public enum SignatureScheme {
+  ECDSA_SECP256R1_SHA256(0x0403, "SHA256withECDSA", null),
+  ED25519(0x0807, "Ed25519", null),
+  RSA_PSS_RSAE_SHA256(
+      0x0804,
+      "RSASSA-PSS",
+      new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+
+  public static Optional<SignatureScheme> fromValue(final int value) {
+    for (final SignatureScheme scheme : values()) {
+      if (scheme.value == value) {
+        return Optional.of(scheme);
+      }
+    }
+    return Optional.empty();
+  }
+
+  // the schemes available in this JVM, in order of preference. Ed25519 requires Java 15 or later
+  public static final List<SignatureScheme> SUPPORTED = supported();
+
+  private static List<SignatureScheme> supported() {
+    final List<SignatureScheme> supported = new ArrayList<>();
+    for (final SignatureScheme scheme : values()) {
+      try {
+        Signature.getInstance(scheme.algorithm);
+        supported.add(scheme);
+      } catch (final NoSuchAlgorithmException e) {
+        // not available, skip
+      }
+    }
+    return List.copyOf(supported);
+  }
+
+  private static final ECParameterSpec SECP256R1 = curve("secp256r1");
+
+  private static ECParameterSpec curve(final String name) {
+    try {
+      final AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+      parameters.init(new ECGenParameterSpec(name));
+      return parameters.getParameterSpec(ECParameterSpec.class);
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // other curves share the field size, the parameters must match
+  private static boolean isCurve(final ECParameterSpec params, final ECParameterSpec curve) {
+    return params.getCurve().equals(curve.getCurve())
+        && params.getGenerator().equals(curve.getGenerator())
+        && params.getOrder().equals(curve.getOrder())
+        && params.getCofactor() == curve.getCofactor();
+  }
+
+  public static SignatureScheme forKey(final Key key) {
+    for (final SignatureScheme scheme : SUPPORTED) {
+      if (scheme.matches(key)) {
+        return scheme;
+      }
+    }
+    throw new IllegalArgumentException(
+        "No supported signature scheme for key: " + key.getAlgorithm());
+  }
+
+  private final int value;
+  private final String algorithm;
+  private final AlgorithmParameterSpec parameterSpec;
+
+  SignatureScheme(
+      final int value, final String algorithm, final AlgorithmParameterSpec parameterSpec) {
+    this.value = value;
+    this.algorithm = algorithm;
+    this.parameterSpec = parameterSpec;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  public boolean matches(final Key key) {
+    switch (this) {
+      case ECDSA_SECP256R1_SHA256:
+        return key instanceof ECKey && isCurve(((ECKey) key).getParams(), SECP256R1);
+      case ED25519:
+        return "Ed25519".equals(key.getAlgorithm()) || "EdDSA".equals(key.getAlgorithm());
+      case RSA_PSS_RSAE_SHA256:
+        return key instanceof RSAKey;
+      default:
+        return false;
+    }
+  }
+
+  public Signature newSignature() throws GeneralSecurityException {
+    final Signature signature = Signature.getInstance(algorithm);
+    if (parameterSpec != null) {
+      signature.setParameter(parameterSpec);
+    }
+    return signature;
+  }
+}
@@ -0,0 +1,42 @@
+package com.protocol7.quincy.tls;
+
+import io.netty.buffer.ByteBuf;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// running hash over the handshake messages, updated once per message
+public class TranscriptHash {
+
+  private final MessageDigest digest;
+
+  public TranscriptHash() {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void update(final byte[] msg) {
+    digest.update(msg);
+  }
+
+  public void update(final ByteBuf bb, final int index, final int length) {
+    if (bb.nioBufferCount() == 1) {
+      digest.update(bb.nioBuffer(index, length));
+    } else {
+      final byte[] b = new byte[length];
+      bb.getBytes(index, b);
+      digest.update(b);
+    }
+  }
+
+  // hash of the messages so far, the transcript can continue to be updated
+  public byte[] snapshot() {
+    try {
+      return ((MessageDigest) digest.clone()).digest();
+    } catch (final CloneNotSupportedException e) {
+      throw new RuntimeException("Transcript hash can not be cloned", e);
+    }
+  }
+}
@@ -1,33 +1,43 @@
 package com.protocol7.quincy.tls.aead;
 
-import com.google.common.primitives.Longs;
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.utils.Hex;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
+import java.util.function.Function;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.ChaCha20ParameterSpec;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 public class AEAD {
 
   public static final int OVERHEAD = 16;
 
-  private static byte[] makeNonce(final byte[] iv, final long packetNumber) {
-    final byte[] nonce = new byte[iv.length];
+  private static final byte[] ZEROS = new byte[5];
 
-    System.arraycopy(Longs.toByteArray(packetNumber), 0, nonce, nonce.length - 8, 8);
-    for (int i = 0; i < iv.length; i++) {
-      nonce[i] ^= iv[i];
+  private static void makeNonce(final byte[] iv, final long packetNumber, final byte[] nonce) {
+    System.arraycopy(iv, 0, nonce, 0, iv.length);
+    for (int i = 0; i < 8; i++) {
+      nonce[nonce.length - 1 - i] ^= (byte) (packetNumber >>> (8 * i));
     }
-    return nonce;
   }
 
-  private static byte[] prepareKey(final byte[] key) {
+  private static byte[] prepareKey(final byte[] key, final int length) {
     if (key == null) {
       throw new IllegalArgumentException("key must not be null");
-    } else if (key.length != 16) {
-      throw new IllegalArgumentException("key must be 16 bytes");
+    } else if (key.length != length) {
+      throw new IllegalArgumentException("key must be " + length + " bytes");
     }
     return Arrays.copyOf(key, key.length);
   }
@@ -41,6 +51,8 @@ public class AEAD {
     return Arrays.copyOf(iv, iv.length);
   }
 
+  private final CipherSuite cipherSuite;
+  private final boolean chaCha;
   private final byte[] myKey;
   private final byte[] otherKey;
   private final byte[] myIV;
@@ -48,29 +60,88 @@ public class AEAD {
   private final byte[] myPnKey;
   private final byte[] otherPnKey;
 
+  // prepared once rather than per packet
+  private final SecretKey mySecretKey;
+  private final SecretKey otherSecretKey;
+  private final SecretKey myPnSecretKey;
+  private final SecretKey otherPnSecretKey;
+
+  // created on first use. Not thread safe, an AEAD is only used from the event loop of its
+  // connection. For AES, the header protection ciphers are initialized with the key once, doFinal
+  // leaves the cipher ready for the next block. ChaCha20 must be initialized with the sample for
+  // each packet
+  private Cipher myPnCipher;
+  private Cipher otherPnCipher;
+  private Cipher aeadCipher;
+
   public AEAD(
+      final CipherSuite cipherSuite,
       final byte[] myKey,
       final byte[] otherKey,
       final byte[] myIV,
       final byte[] otherIV,
       final byte[] myPnKey,
       final byte[] otherPnKey) {
-    this.myKey = prepareKey(myKey);
-    this.otherKey = prepareKey(otherKey);
+    if (!CipherSuite.SUPPORTED.contains(requireNonNull(cipherSuite))) {
+      throw new IllegalArgumentException("Unsupported cipher suite: " + cipherSuite);
+    }
+    this.cipherSuite = cipherSuite;
+    this.chaCha = cipherSuite == CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
+
+    final int keyLength = cipherSuite.getKeyLength();
+    this.myKey = prepareKey(myKey, keyLength);
+    this.otherKey = prepareKey(otherKey, keyLength);
     this.myIV = prepareIV(myIV);
     this.otherIV = prepareIV(otherIV);
-    this.myPnKey = prepareKey(myPnKey);
-    this.otherPnKey = prepareKey(otherPnKey);
+    this.myPnKey = prepareKey(myPnKey, keyLength);
+    this.otherPnKey = prepareKey(otherPnKey, keyLength);
+
+    final String algorithm = chaCha ? "ChaCha20" : "AES";
+    this.mySecretKey = new SecretKeySpec(this.myKey, algorithm);
+    this.otherSecretKey = new SecretKeySpec(this.otherKey, algorithm);
+    this.myPnSecretKey = new SecretKeySpec(this.myPnKey, algorithm);
+    this.otherPnSecretKey = new SecretKeySpec(this.otherPnKey, algorithm);
   }
 
   public byte[] open(final byte[] src, final long packetNumber, final byte[] aad)
       throws GeneralSecurityException {
-    return process(src, packetNumber, aad, otherKey, otherIV, Cipher.DECRYPT_MODE);
+    final Cipher cipher = init(Cipher.DECRYPT_MODE, otherSecretKey, otherIV, packetNumber);
+    cipher.updateAAD(aad);
+    return cipher.doFinal(src);
   }
 
   public byte[] seal(final byte[] src, final long packetNumber, final byte[] aad)
       throws GeneralSecurityException {
-    return process(src, packetNumber, aad, myKey, myIV, Cipher.ENCRYPT_MODE);
+    final Cipher cipher = init(Cipher.ENCRYPT_MODE, mySecretKey, myIV, packetNumber);
+    cipher.updateAAD(aad);
+    return cipher.doFinal(src);
+  }
+
+  // decrypts the length bytes at offset in place, the AAD being the bytes between aadOffset and
+  // offset. Returns the length of the plaintext
+  public int open(
+      final ByteBuf bb,
+      final int aadOffset,
+      final int offset,
+      final int length,
+      final long packetNumber)
+      throws GeneralSecurityException {
+    final Cipher cipher = init(Cipher.DECRYPT_MODE, otherSecretKey, otherIV, packetNumber);
+    return process(cipher, bb, aadOffset, offset, length, length - OVERHEAD);
+  }
+
+  // encrypts the length bytes at offset in place, the AAD being the bytes between aadOffset and
+  // offset. The tag is written directly after the plaintext, so the buffer must have room for
+  // OVERHEAD more bytes. Returns the length of the ciphertext
+  public int seal(
+      final ByteBuf bb,
+      final int aadOffset,
+      final int offset,
+      final int length,
+      final long packetNumber)
+      throws GeneralSecurityException {
+    final Cipher cipher = init(Cipher.ENCRYPT_MODE, mySecretKey, myIV, packetNumber);
+    return process(cipher, bb, aadOffset, offset, length, length + OVERHEAD);
   }
 
   public int getSampleLength() {
@@ -79,43 +150,142 @@ public class AEAD {
 
   public byte[] decryptHeader(final byte[] sample, final byte[] bs, final boolean shortHeader)
       throws GeneralSecurityException {
-    return processHeader(sample, bs, shortHeader, otherPnKey);
+    return processHeader(sample, bs, shortHeader, false);
   }
 
   public byte[] encryptHeader(final byte[] sample, final byte[] bs, final boolean shortHeader)
       throws GeneralSecurityException {
-    return processHeader(sample, bs, shortHeader, myPnKey);
+    return processHeader(sample, bs, shortHeader, true);
   }
 
-  private final ThreadLocal<Cipher> pnCiphers =
-      ThreadLocal.withInitial(
-          () -> {
-            try {
-              return Cipher.getInstance("AES/ECB/NoPadding", "SunJCE");
-            } catch (final GeneralSecurityException shouldNeverHappen) {
-              throw new RuntimeException(shouldNeverHappen);
-            }
-          });
-
-  private byte[] processHeader(
-      final byte[] sample, final byte[] bs, final boolean shortHeader, final byte[] key)
+  // removes the header protection in place for the header starting at headerOffset, with the
+  // protected packet number at pnOffset. Returns the length of the packet number
+  public int decryptHeader(
+      final ByteBuf bb, final int headerOffset, final int pnOffset, final boolean shortHeader)
       throws GeneralSecurityException {
-    final byte[] out = Arrays.copyOf(bs, bs.length);
+    final byte[] mask = mask(bb, pnOffset, false);
 
-    final Cipher cipher = pnCiphers.get();
-    final SecretKey secretKey = new SecretKeySpec(key, 0, key.length, "AES");
+    final byte firstByte = (byte) (bb.getByte(headerOffset) ^ (mask[0] & maskMask(shortHeader)));
+    bb.setByte(headerOffset, firstByte);
 
-    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    final int pnLength = (firstByte & 0x3) + 1;
+    maskPacketNumber(bb, pnOffset, pnLength, mask);
+    return pnLength;
+  }
 
-    final byte[] mask = cipher.doFinal(sample);
+  // applies header protection in place for the header starting at headerOffset, with the packet
+  // number at pnOffset. The payload must already be written, as it is sampled for the mask
+  public void encryptHeader(
+      final ByteBuf bb, final int headerOffset, final int pnOffset, final boolean shortHeader)
+      throws GeneralSecurityException {
+    final byte[] mask = mask(bb, pnOffset, true);
+
+    final byte firstByte = bb.getByte(headerOffset);
+    final int pnLength = (firstByte & 0x3) + 1;
 
-    final byte maskMask;
+    bb.setByte(headerOffset, firstByte ^ (mask[0] & maskMask(shortHeader)));
+    maskPacketNumber(bb, pnOffset, pnLength, mask);
+  }
+
+  private static int maskMask(final boolean shortHeader) {
     if (shortHeader) {
-      maskMask = 0x1f;
+      return 0x1f;
     } else {
-      maskMask = 0xf;
+      return 0xf;
+    }
+  }
+
+  private static void maskPacketNumber(
+      final ByteBuf bb, final int pnOffset, final int pnLength, final byte[] mask) {
+    for (int i = 0; i < pnLength; i++) {
+      bb.setByte(pnOffset + i, bb.getByte(pnOffset + i) ^ mask[1 + i]);
+    }
+  }
+
+  private static Cipher cipher(final String transformation) {
+    try {
+      return Cipher.getInstance(transformation, "SunJCE");
+    } catch (final GeneralSecurityException shouldNeverHappen) {
+      throw new RuntimeException(shouldNeverHappen);
     }
-    out[0] ^= mask[0] & maskMask;
+  }
+
+  private Cipher pnCipher(final SecretKey key) {
+    if (chaCha) {
+      return cipher("ChaCha20");
+    }
+
+    final Cipher cipher = cipher("AES/ECB/NoPadding");
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, key);
+    } catch (final GeneralSecurityException shouldNeverHappen) {
+      throw new RuntimeException(shouldNeverHappen);
+    }
+    return cipher;
+  }
+
+  // scratch space for the sample and the mask
+  private static final ThreadLocal<byte[]> samples = ThreadLocal.withInitial(() -> new byte[16]);
+  private static final ThreadLocal<byte[]> masks = ThreadLocal.withInitial(() -> new byte[16]);
+  private static final ThreadLocal<byte[]> chaChaNonces =
+      ThreadLocal.withInitial(() -> new byte[12]);
+
+  private byte[] mask(final ByteBuf bb, final int pnOffset, final boolean mine)
+      throws GeneralSecurityException {
+    // the sample is taken as if the packet number is 4 bytes long
+    final byte[] sample = samples.get();
+    bb.getBytes(pnOffset + 4, sample);
+
+    return mask(sample, mine);
+  }
+
+  private byte[] mask(final byte[] sample, final boolean mine) throws GeneralSecurityException {
+    final byte[] mask = masks.get();
+    final Cipher cipher;
+    if (mine) {
+      if (myPnCipher == null) {
+        myPnCipher = pnCipher(myPnSecretKey);
+      }
+      cipher = myPnCipher;
+    } else {
+      if (otherPnCipher == null) {
+        otherPnCipher = pnCipher(otherPnSecretKey);
+      }
+      cipher = otherPnCipher;
+    }
+
+    if (chaCha) {
+      // the first four bytes of the sample are the block counter, the rest the nonce
+      final int counter =
+          (sample[0] & 0xFF)
+              | (sample[1] & 0xFF) << 8
+              | (sample[2] & 0xFF) << 16
+              | (sample[3] & 0xFF) << 24;
+      final byte[] nonce = chaChaNonces.get();
+      System.arraycopy(sample, 4, nonce, 0, nonce.length);
+
+      // the mask is the key stream, decrypt mode as there is nothing to protect
+      initChaCha(
+          cipher,
+          Cipher.DECRYPT_MODE,
+          mine ? myPnSecretKey : otherPnSecretKey,
+          nonce,
+          n -> new ChaCha20ParameterSpec(n, counter));
+      cipher.doFinal(ZEROS, 0, ZEROS.length, mask, 0);
+    } else {
+      cipher.doFinal(sample, 0, sample.length, mask, 0);
+    }
+    return mask;
+  }
+
+  private byte[] processHeader(
+      final byte[] sample, final byte[] bs, final boolean shortHeader, final boolean mine)
+      throws GeneralSecurityException {
+    final byte[] out = Arrays.copyOf(bs, bs.length);
+
+    final byte[] mask = mask(sample, mine);
+
+    out[0] ^= mask[0] & maskMask(shortHeader);
 
     for (int i = 1; i < out.length; i++) {
       out[i] ^= mask[i];
@@ -124,32 +294,77 @@ public class AEAD {
     return out;
   }
 
-  private final ThreadLocal<Cipher> aeadCiphers =
-      ThreadLocal.withInitial(
-          () -> {
-            try {
-              return Cipher.getInstance("AES/GCM/NoPadding", "SunJCE");
-            } catch (final GeneralSecurityException shouldNeverHappen) {
-              throw new RuntimeException(shouldNeverHappen);
-            }
-          });
-
-  private byte[] process(
-      final byte[] src,
-      final long packetNumber,
-      final byte[] aad,
-      final byte[] key,
-      final byte[] iv,
-      final int mode)
+  // the parameter specs copy the nonce, so the scratch space can be reused between packets
+  private static final ThreadLocal<byte[]> nonces = ThreadLocal.withInitial(() -> new byte[12]);
+
+  private Cipher init(final int mode, final SecretKey key, final byte[] iv, final long packetNumber)
       throws GeneralSecurityException {
-    final Cipher cipher = aeadCiphers.get();
-    final SecretKey secretKey = new SecretKeySpec(key, 0, key.length, "AES");
-    final byte[] nonce = makeNonce(iv, packetNumber);
-    final GCMParameterSpec spec = new GCMParameterSpec(128, nonce);
+    final byte[] nonce = nonces.get();
+    makeNonce(iv, packetNumber, nonce);
 
-    cipher.init(mode, secretKey, spec);
-    cipher.updateAAD(aad);
-    return cipher.doFinal(src);
+    if (aeadCipher == null) {
+      aeadCipher = cipher(chaCha ? "ChaCha20-Poly1305" : "AES/GCM/NoPadding");
+    }
+    final Cipher cipher = aeadCipher;
+    if (chaCha) {
+      initChaCha(cipher, mode, key, nonce, IvParameterSpec::new);
+    } else {
+      cipher.init(mode, key, new GCMParameterSpec(128, nonce));
+    }
+    return cipher;
+  }
+
+  // JCE refuses to initialize ChaCha20 with the same key and nonce as the previous initialization,
+  // which a duplicate packet triggers. Reusing them for decryption is harmless, so initialize with
+  // another nonce in between
+  private static void initChaCha(
+      final Cipher cipher,
+      final int mode,
+      final SecretKey key,
+      final byte[] nonce,
+      final Function<byte[], AlgorithmParameterSpec> spec)
+      throws GeneralSecurityException {
+    try {
+      cipher.init(mode, key, spec.apply(nonce));
+    } catch (final InvalidKeyException e) {
+      if (mode != Cipher.DECRYPT_MODE) {
+        throw e;
+      }
+      nonce[0] ^= 1;
+      cipher.init(mode, key, spec.apply(nonce));
+      nonce[0] ^= 1;
+      cipher.init(mode, key, spec.apply(nonce));
+    }
+  }
+
+  private int process(
+      final Cipher cipher,
+      final ByteBuf bb,
+      final int aadOffset,
+      final int offset,
+      final int length,
+      final int outLength)
+      throws GeneralSecurityException {
+    if (outLength < 0) {
+      throw new AEADBadTagException("Input too short");
+    }
+
+    cipher.updateAAD(bb.nioBuffer(aadOffset, offset - aadOffset));
+
+    if (bb.nioBufferCount() == 1) {
+      final ByteBuffer in = bb.nioBuffer(offset, length);
+      final ByteBuffer out = bb.nioBuffer(offset, Math.max(length, outLength));
+      return cipher.doFinal(in, out);
+    } else {
+      // composite buffers can not be processed in place
+      final byte[] out = cipher.doFinal(ByteBufUtil.getBytes(bb, offset, length, false));
+      bb.setBytes(offset, out);
+      return out.length;
+    }
+  }
+
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
   }
 
   public byte[] getMyKey() {
@@ -179,7 +394,9 @@ public class AEAD {
   @Override
   public String toString() {
     return "AEAD{"
-        + "myKey="
+        + "cipherSuite="
+        + cipherSuite
+        + ", myKey="
         + Hex.hex(myKey)
         + ", otherKey="
         + Hex.hex(otherKey)
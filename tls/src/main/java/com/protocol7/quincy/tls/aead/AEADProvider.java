@@ -5,4 +5,10 @@ import com.protocol7.quincy.tls.EncryptionLevel;
 public interface AEADProvider {
 
   AEAD get(EncryptionLevel level);
+
+  // the AEAD to open a 1-RTT packet received with the key phase, the current keys unless key
+  // updates are supported
+  default AEAD getOneRtt(final boolean keyPhase, final long packetNumber) {
+    return get(EncryptionLevel.OneRtt);
+  }
 }
@@ -7,13 +7,14 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class AEADs {
+public class AEADs implements AEADProvider {
 
   private final Logger log = LoggerFactory.getLogger(AEADs.class);
 
   private final AtomicReference<AEAD> initialAead;
+  private final AtomicReference<AEAD> zeroRttAead = new AtomicReference<>();
   private final AtomicReference<AEAD> handshakeAead = new AtomicReference<>();
-  private final AtomicReference<AEAD> oneRttAead = new AtomicReference<>();
+  private final AtomicReference<KeyPhases> oneRttKeys = new AtomicReference<>();
 
   public AEADs(final AEAD initialAead) {
     this.initialAead = new AtomicReference<>(requireNonNull(initialAead));
@@ -22,13 +23,16 @@ public class AEADs {
   public boolean available(final EncryptionLevel level) {
     if (level == EncryptionLevel.Initial) {
       return initialAead.get() != null;
+    } else if (level == EncryptionLevel.ZeroRtt) {
+      return zeroRttAead.get() != null;
     } else if (level == EncryptionLevel.Handshake) {
       return handshakeAead.get() != null;
     } else {
-      return oneRttAead.get() != null;
+      return oneRttKeys.get() != null;
     }
   }
 
+  @Override
   public AEAD get(final EncryptionLevel level) {
     requireNonNull(level);
 
@@ -40,6 +44,14 @@ public class AEADs {
 
       log.debug("Using initial AEAD: {}", aead);
       return aead;
+    } else if (level == EncryptionLevel.ZeroRtt) {
+      final AEAD aead = zeroRttAead.get();
+      if (aead == null) {
+        throw new IllegalStateException("0-RTT AEAD not set");
+      }
+
+      log.debug("Using 0-RTT AEAD: {}", aead);
+      return aead;
     } else if (level == EncryptionLevel.Handshake) {
       final AEAD aead = handshakeAead.get();
       if (aead == null) {
@@ -49,29 +61,50 @@ public class AEADs {
       log.debug("Using handshake AEAD: {}", aead);
       return aead;
     } else {
-      final AEAD aead = oneRttAead.get();
-      if (aead == null) {
-        throw new IllegalStateException("1-RTT AEAD not set");
-      }
+      final AEAD aead = getOneRttKeys().getCurrent();
 
       log.debug("Using 1-RTT AEAD: {}", aead);
       return aead;
     }
   }
 
+  @Override
+  public AEAD getOneRtt(final boolean keyPhase, final long packetNumber) {
+    final AEAD aead = getOneRttKeys().forReceiving(keyPhase, packetNumber);
+
+    log.debug("Using 1-RTT AEAD for key phase {}: {}", keyPhase, aead);
+    return aead;
+  }
+
+  public KeyPhases getOneRttKeys() {
+    final KeyPhases keys = oneRttKeys.get();
+    if (keys == null) {
+      throw new IllegalStateException("1-RTT AEAD not set");
+    }
+    return keys;
+  }
+
   public void unsetInitialAead() {
     this.initialAead.set(null);
   }
 
+  public void unsetZeroRttAead() {
+    this.zeroRttAead.set(null);
+  }
+
   public void unsetHandshakeAead() {
     this.handshakeAead.set(null);
   }
 
+  public void setZeroRttAead(final AEAD zeroRttAead) {
+    this.zeroRttAead.set(requireNonNull(zeroRttAead));
+  }
+
   public void setHandshakeAead(final AEAD handshakeAead) {
     this.handshakeAead.set(requireNonNull(handshakeAead));
   }
 
-  public void setOneRttAead(final AEAD oneRttAead) {
-    this.oneRttAead.set(requireNonNull(oneRttAead));
+  public void setOneRttKeys(final KeyPhases oneRttKeys) {
+    this.oneRttKeys.set(requireNonNull(oneRttKeys));
   }
 }
@@ -6,12 +6,22 @@ import static com.protocol7.quincy.tls.aead.Labels.IV;
 import static com.protocol7.quincy.tls.aead.Labels.KEY;
 import static com.protocol7.quincy.tls.aead.Labels.SERVER_HANDSHAKE_TRAFFIC_SECRET;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.HKDF;
 
 public class HandshakeAEAD {
 
   public static AEAD create(
       final byte[] handshakeSecret, final byte[] helloHash, final boolean isClient) {
+    return create(handshakeSecret, helloHash, isClient, CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+
+  public static AEAD create(
+      final byte[] handshakeSecret,
+      final byte[] helloHash,
+      final boolean isClient,
+      final CipherSuite cipherSuite) {
+    final int keyLength = cipherSuite.getKeyLength();
 
     // client_handshake_traffic_secret = hkdf-Expand-Label(
     //    key = handshake_secret,
@@ -33,17 +43,17 @@ public class HandshakeAEAD {
     //    key = client_handshake_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] clientHandshakeKey =
-        HKDF.expandLabel(clientHandshakeTrafficSecret, KEY, new byte[0], 16);
+        HKDF.expandLabel(clientHandshakeTrafficSecret, KEY, new byte[0], keyLength);
 
     // server_handshake_key = hkdf-Expand-Label(
     //    key = server_handshake_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] serverHandshakeKey =
-        HKDF.expandLabel(serverHandshakeTrafficSecret, KEY, new byte[0], 16);
+        HKDF.expandLabel(serverHandshakeTrafficSecret, KEY, new byte[0], keyLength);
 
     // client_handshake_iv = hkdf-Expand-Label(
     //    key = client_handshake_traffic_secret,
@@ -62,12 +72,13 @@ public class HandshakeAEAD {
         HKDF.expandLabel(serverHandshakeTrafficSecret, IV, new byte[0], 12);
 
     final byte[] clientPnKey =
-        HKDF.expandLabel(clientHandshakeTrafficSecret, HP_KEY, new byte[0], 16);
+        HKDF.expandLabel(clientHandshakeTrafficSecret, HP_KEY, new byte[0], keyLength);
     final byte[] serverPnKey =
-        HKDF.expandLabel(serverHandshakeTrafficSecret, HP_KEY, new byte[0], 16);
+        HKDF.expandLabel(serverHandshakeTrafficSecret, HP_KEY, new byte[0], keyLength);
 
     if (isClient) {
       return new AEAD(
+          cipherSuite,
           clientHandshakeKey,
           serverHandshakeKey,
           clientHandshakeIV,
@@ -76,6 +87,7 @@ public class HandshakeAEAD {
           serverPnKey);
     } else {
       return new AEAD(
+          cipherSuite,
           serverHandshakeKey,
           clientHandshakeKey,
           serverHandshakeIV,
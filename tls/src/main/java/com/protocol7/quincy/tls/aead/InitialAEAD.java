@@ -6,6 +6,7 @@ import static com.protocol7.quincy.tls.aead.Labels.IV;
 import static com.protocol7.quincy.tls.aead.Labels.KEY;
 import static com.protocol7.quincy.tls.aead.Labels.SERVER_INITIAL;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.HKDF;
 import com.protocol7.quincy.utils.Hex;
 
@@ -41,7 +42,9 @@ public class InitialAEAD {
     final byte[] myPnKey = expand(mySecret, HP_KEY, 16);
     final byte[] otherPnKey = expand(otherSecret, HP_KEY, 16);
 
-    return new AEAD(myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
+    // initial packets are always protected with AES-128-GCM
+    return new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256, myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
   }
 
   private static byte[] expand(final byte[] secret, final String label, final int length) {
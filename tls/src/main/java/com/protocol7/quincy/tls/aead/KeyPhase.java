@@ -0,0 +1,72 @@
+package com.protocol7.quincy.tls.aead;
+
+import static com.protocol7.quincy.tls.aead.Labels.IV;
+import static com.protocol7.quincy.tls.aead.Labels.KEY;
+import static com.protocol7.quincy.tls.aead.Labels.KEY_UPDATE;
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.HKDF;
+
+// the 1-RTT keys of one key phase, along with the traffic secrets the keys of the next phase are
+// derived from
+public class KeyPhase {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final boolean phase;
+  private final AEAD aead;
+  private final byte[] mySecret;
+  private final byte[] otherSecret;
+
+  public KeyPhase(
+      final boolean phase, final AEAD aead, final byte[] mySecret, final byte[] otherSecret) {
+    this.phase = phase;
+    this.aead = requireNonNull(aead);
+    this.mySecret = requireNonNull(mySecret);
+    this.otherSecret = requireNonNull(otherSecret);
+  }
+
+  public KeyPhase next() {
+    // secret_<n+1> = HKDF-Expand-Label(
+    //    key = secret_<n>,
+    //    label = "quic ku",
+    //    context = "",
+    //    len = hash length)
+    final byte[] nextMySecret = HKDF.expandLabel(mySecret, KEY_UPDATE, EMPTY, mySecret.length);
+    final byte[] nextOtherSecret =
+        HKDF.expandLabel(otherSecret, KEY_UPDATE, EMPTY, otherSecret.length);
+
+    final CipherSuite cipherSuite = aead.getCipherSuite();
+    final int keyLength = cipherSuite.getKeyLength();
+
+    // the header protection keys are not updated
+    final AEAD nextAead =
+        new AEAD(
+            cipherSuite,
+            HKDF.expandLabel(nextMySecret, KEY, EMPTY, keyLength),
+            HKDF.expandLabel(nextOtherSecret, KEY, EMPTY, keyLength),
+            HKDF.expandLabel(nextMySecret, IV, EMPTY, 12),
+            HKDF.expandLabel(nextOtherSecret, IV, EMPTY, 12),
+            aead.getMyPnKey(),
+            aead.getOtherPnKey());
+
+    return new KeyPhase(!phase, nextAead, nextMySecret, nextOtherSecret);
+  }
+
+  public boolean getPhase() {
+    return phase;
+  }
+
+  public AEAD getAEAD() {
+    return aead;
+  }
+
+  byte[] getMySecret() {
+    return mySecret;
+  }
+
+  byte[] getOtherSecret() {
+    return otherSecret;
+  }
+}
@@ -0,0 +1,174 @@
+package com.protocol7.quincy.tls.aead;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Preconditions;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+// tracks the 1-RTT key phases of a connection. The keys of the next phase are derived ahead of
+// time, so that a key update initiated by the peer can be opened right away. The keys of the
+// previous phase are kept for a while to open reordered packets. Not thread safe, only used from
+// the event loop of the connection
+public class KeyPhases {
+
+  public static final long NO_LIMIT = Long.MAX_VALUE;
+
+  // in lack of a PTO, how long previous keys are kept once the peer has moved to the new keys
+  public static final Duration DEFAULT_RETAIN_PREVIOUS = Duration.ofSeconds(3);
+
+  // the limit at which key updates are initiated
+  private final long packetLimit;
+  // the confidentiality limit of the cipher suite, never exceeded using the same keys
+  private final long hardPacketLimit;
+  private final long byteLimit;
+  private final Duration retainPrevious;
+  private final Clock clock;
+
+  private KeyPhase current;
+  private KeyPhase next;
+  private KeyPhase previous;
+  private Instant previousExpiry;
+
+  // lowest packet number received using the current keys, packets with a lower number and the
+  // other phase are protected using the previous keys
+  private long firstReceived = Long.MAX_VALUE;
+  // whether the peer has sent packets using the current keys, until then no new update can be
+  // initiated
+  private boolean confirmed;
+
+  private long sentPackets;
+  private long sentBytes;
+
+  public KeyPhases(
+      final KeyPhase initial,
+      final long packetLimit,
+      final long byteLimit,
+      final Duration retainPrevious,
+      final Clock clock) {
+    Preconditions.checkArgument(packetLimit > 0, "Packet limit must be positive");
+    Preconditions.checkArgument(byteLimit > 0, "Byte limit must be positive");
+
+    this.current = requireNonNull(initial);
+    this.next = initial.next();
+    this.hardPacketLimit = initial.getAEAD().getCipherSuite().getConfidentialityLimit();
+    this.packetLimit = Math.min(packetLimit, hardPacketLimit);
+    this.byteLimit = byteLimit;
+    this.retainPrevious = requireNonNull(retainPrevious);
+    this.clock = requireNonNull(clock);
+  }
+
+  // the key phase to send new packets with
+  public boolean getKeyPhase() {
+    return current.getPhase();
+  }
+
+  public AEAD getCurrent() {
+    return current.getAEAD();
+  }
+
+  // the AEAD to seal a packet created with the key phase. Initiates a key update once the limits
+  // are reached
+  public AEAD forSending(final boolean keyPhase, final int length) {
+    expirePrevious();
+
+    if (keyPhase != current.getPhase()) {
+      if (previous == null) {
+        // sealing with the current keys would not match the key phase bit of the packet
+        throw new KeyPhaseExpiredException();
+      }
+      // the keys were updated after the packet was created
+      return previous.getAEAD();
+    }
+
+    if (sentPackets >= hardPacketLimit) {
+      // not yet able to update the keys, for example as the peer has not confirmed the last
+      // update
+      throw new KeysExhaustedException();
+    }
+
+    final AEAD aead = current.getAEAD();
+
+    sentPackets++;
+    sentBytes += length;
+
+    if ((sentPackets >= packetLimit || sentBytes >= byteLimit) && confirmed) {
+      update();
+    }
+
+    return aead;
+  }
+
+  // the AEAD to open a packet received with the key phase
+  public AEAD forReceiving(final boolean keyPhase, final long packetNumber) {
+    expirePrevious();
+
+    if (keyPhase == current.getPhase()) {
+      return current.getAEAD();
+    } else if (previous != null && packetNumber < firstReceived) {
+      return previous.getAEAD();
+    } else {
+      return next.getAEAD();
+    }
+  }
+
+  // a packet with the key phase was successfully opened
+  public void onReceived(final boolean keyPhase, final long packetNumber) {
+    if (keyPhase == current.getPhase()) {
+      if (firstReceived == Long.MAX_VALUE) {
+        // the peer has moved to the current keys
+        previousExpiry = clock.instant().plus(retainPrevious);
+      }
+      firstReceived = Math.min(firstReceived, packetNumber);
+      confirmed = true;
+    } else if (previous == null || packetNumber >= firstReceived) {
+      // key update initiated by the peer, respond by updating our keys
+      update();
+      firstReceived = packetNumber;
+      previousExpiry = clock.instant().plus(retainPrevious);
+      confirmed = true;
+    }
+  }
+
+  // initiate a key update
+  public void update() {
+    previous = current;
+    previousExpiry = null;
+    current = next;
+    next = current.next();
+
+    firstReceived = Long.MAX_VALUE;
+    confirmed = false;
+    sentPackets = 0;
+    sentBytes = 0;
+  }
+
+  public boolean hasPrevious() {
+    expirePrevious();
+    return previous != null;
+  }
+
+  private void expirePrevious() {
+    if (previousExpiry != null && !clock.instant().isBefore(previousExpiry)) {
+      previous = null;
+      previousExpiry = null;
+    }
+  }
+
+  // the packet was created with a key phase whose keys are no longer available. The packet must
+  // be dropped and its frames sent in a new packet
+  public static class KeyPhaseExpiredException extends IllegalStateException {
+    public KeyPhaseExpiredException() {
+      super("Keys of the packet key phase have expired");
+    }
+  }
+
+  // the confidentiality limit of the current keys has been reached without being able to update
+  // them. The connection must no longer be used
+  public static class KeysExhaustedException extends IllegalStateException {
+    public KeysExhaustedException() {
+      super("Confidentiality limit reached");
+    }
+  }
+}
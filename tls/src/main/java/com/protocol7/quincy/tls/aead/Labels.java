@@ -2,6 +2,8 @@ package com.protocol7.quincy.tls.aead;
 
 public class Labels {
 
+  public static final String CLIENT_EARLY_TRAFFIC_SECRET = "c e traffic";
+
   public static final String CLIENT_HANDSHAKE_TRAFFIC_SECRET = "c hs traffic";
   public static final String SERVER_HANDSHAKE_TRAFFIC_SECRET = "s hs traffic";
 
@@ -16,8 +18,13 @@ public class Labels {
   public static final String KEY = "quic key";
   public static final String IV = "quic iv";
   public static final String HP_KEY = "quic hp";
+  public static final String KEY_UPDATE = "quic ku";
 
   public static final String FINISHED = "finished";
 
+  public static final String RESUMPTION_BINDER = "res binder";
+  public static final String RESUMPTION_MASTER = "res master";
+  public static final String RESUMPTION = "resumption";
+
   private Labels() {}
 }
@@ -7,6 +7,7 @@ import static com.protocol7.quincy.tls.aead.Labels.IV;
 import static com.protocol7.quincy.tls.aead.Labels.KEY;
 import static com.protocol7.quincy.tls.aead.Labels.SERVER_APPLICATION_TRAFFIC_SECRET;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.HKDF;
 
 public class OneRttAEAD {
@@ -16,6 +17,24 @@ public class OneRttAEAD {
 
   public static AEAD create(
       final byte[] handshakeSecret, final byte[] handshakeHash, final boolean isClient) {
+    return create(handshakeSecret, handshakeHash, isClient, CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+
+  public static AEAD create(
+      final byte[] handshakeSecret,
+      final byte[] handshakeHash,
+      final boolean isClient,
+      final CipherSuite cipherSuite) {
+    return createKeyPhase(handshakeSecret, handshakeHash, isClient, cipherSuite).getAEAD();
+  }
+
+  // the keys of the first key phase, along with the secrets needed for key updates
+  public static KeyPhase createKeyPhase(
+      final byte[] handshakeSecret,
+      final byte[] handshakeHash,
+      final boolean isClient,
+      final CipherSuite cipherSuite) {
+    final int keyLength = cipherSuite.getKeyLength();
 
     // derived_secret = HKDF-Expand-Label(
     //                key = handshake_secret,
@@ -49,17 +68,17 @@ public class OneRttAEAD {
     //    key = client_application_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] clientApplicationKey =
-        HKDF.expandLabel(clientApplicationTrafficSecret, KEY, EMPTY, 16);
+        HKDF.expandLabel(clientApplicationTrafficSecret, KEY, EMPTY, keyLength);
 
     // server_application_key = HKDF-Expand-Label(
     //    key = server_application_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] serverApplicationKey =
-        HKDF.expandLabel(serverApplicationTrafficSecret, KEY, EMPTY, 16);
+        HKDF.expandLabel(serverApplicationTrafficSecret, KEY, EMPTY, keyLength);
 
     // client_application_iv = HKDF-Expand-Label(
     //    key = client_application_traffic_secret,
@@ -77,25 +96,37 @@ public class OneRttAEAD {
     final byte[] serverApplicationIV =
         HKDF.expandLabel(serverApplicationTrafficSecret, IV, EMPTY, 12);
 
-    final byte[] clientPnKey = HKDF.expandLabel(clientApplicationTrafficSecret, HP_KEY, EMPTY, 16);
-    final byte[] serverPnKey = HKDF.expandLabel(serverApplicationTrafficSecret, HP_KEY, EMPTY, 16);
+    final byte[] clientPnKey =
+        HKDF.expandLabel(clientApplicationTrafficSecret, HP_KEY, EMPTY, keyLength);
+    final byte[] serverPnKey =
+        HKDF.expandLabel(serverApplicationTrafficSecret, HP_KEY, EMPTY, keyLength);
 
     if (isClient) {
-      return new AEAD(
-          clientApplicationKey,
-          serverApplicationKey,
-          clientApplicationIV,
-          serverApplicationIV,
-          clientPnKey,
-          serverPnKey);
+      return new KeyPhase(
+          false,
+          new AEAD(
+              cipherSuite,
+              clientApplicationKey,
+              serverApplicationKey,
+              clientApplicationIV,
+              serverApplicationIV,
+              clientPnKey,
+              serverPnKey),
+          clientApplicationTrafficSecret,
+          serverApplicationTrafficSecret);
     } else {
-      return new AEAD(
-          serverApplicationKey,
-          clientApplicationKey,
-          serverApplicationIV,
-          clientApplicationIV,
-          serverPnKey,
-          clientPnKey);
+      return new KeyPhase(
+          false,
+          new AEAD(
+              cipherSuite,
+              serverApplicationKey,
+              clientApplicationKey,
+              serverApplicationIV,
+              clientApplicationIV,
+              serverPnKey,
+              clientPnKey),
+          serverApplicationTrafficSecret,
+          clientApplicationTrafficSecret);
     }
   }
 }
@@ -0,0 +1,38 @@
+package com.protocol7.quincy.tls.aead;
+
+import static com.protocol7.quincy.tls.aead.Labels.CLIENT_EARLY_TRAFFIC_SECRET;
+import static com.protocol7.quincy.tls.aead.Labels.HP_KEY;
+import static com.protocol7.quincy.tls.aead.Labels.IV;
+import static com.protocol7.quincy.tls.aead.Labels.KEY;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.HKDF;
+
+public class ZeroRttAEAD {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  public static AEAD create(final byte[] earlySecret, final byte[] clientHelloHash) {
+    return create(earlySecret, clientHelloHash, CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+
+  public static AEAD create(
+      final byte[] earlySecret, final byte[] clientHelloHash, final CipherSuite cipherSuite) {
+    final int keyLength = cipherSuite.getKeyLength();
+
+    // client_early_traffic_secret = HKDF-Expand-Label(
+    //    key = early_secret,
+    //    label = "c e traffic",
+    //    context = client_hello_hash,
+    //    len = 32)
+    final byte[] clientEarlyTrafficSecret =
+        HKDF.expandLabel(earlySecret, CLIENT_EARLY_TRAFFIC_SECRET, clientHelloHash, 32);
+
+    final byte[] key = HKDF.expandLabel(clientEarlyTrafficSecret, KEY, EMPTY, keyLength);
+    final byte[] iv = HKDF.expandLabel(clientEarlyTrafficSecret, IV, EMPTY, 12);
+    final byte[] pnKey = HKDF.expandLabel(clientEarlyTrafficSecret, HP_KEY, EMPTY, keyLength);
+
+    // early data is only sent by the client, so both directions use the same keys
+    return new AEAD(cipherSuite, key, key, iv, iv, pnKey, pnKey);
+  }
+}
@@ -0,0 +1,73 @@
+package com.protocol7.quincy.tls.extensions;
+
+import static java.util.Arrays.asList;
+
+import com.protocol7.quincy.tls.CertificateCompression;
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class CompressCertificate implements Extension {
+
+  public static CompressCertificate defaults() {
+    return new CompressCertificate(CertificateCompression.ZLIB);
+  }
+
+  public static CompressCertificate parse(final ByteBuf bb) {
+    final int len = bb.readByte() & 0xFF;
+
+    final List<Integer> algorithms = new ArrayList<>();
+    for (int i = 0; i < len / 2; i++) {
+      algorithms.add(bb.readShort() & 0xFFFF);
+    }
+
+    return new CompressCertificate(algorithms);
+  }
+
+  private final List<Integer> algorithms;
+
+  public CompressCertificate(final List<Integer> algorithms) {
+    this.algorithms = algorithms;
+  }
+
+  public CompressCertificate(final Integer... algorithms) {
+    this(asList(algorithms));
+  }
+
+  @Override
+  public ExtensionType getType() {
+    return ExtensionType.COMPRESS_CERTIFICATE;
+  }
+
+  public List<Integer> getAlgorithms() {
+    return algorithms;
+  }
+
+  @Override
+  public void write(final ByteBuf bb, final boolean ignored) {
+    bb.writeByte(algorithms.size() * 2);
+
+    for (final int algorithm : algorithms) {
+      bb.writeShort(algorithm);
+    }
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    final CompressCertificate that = (CompressCertificate) o;
+    return Objects.equals(algorithms, that.algorithms);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(algorithms);
+  }
+
+  @Override
+  public String toString() {
+    return "CompressCertificate{" + algorithms + '}';
+  }
+}
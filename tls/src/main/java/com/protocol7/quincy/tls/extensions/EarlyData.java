@@ -0,0 +1,62 @@
+package com.protocol7.quincy.tls.extensions;
+
+import io.netty.buffer.ByteBuf;
+import java.util.Objects;
+import java.util.Optional;
+
+public class EarlyData implements Extension {
+
+  // QUIC does not limit early data through TLS, tickets must always carry this value
+  public static final long QUIC_MAX_EARLY_DATA_SIZE = 0xFFFFFFFFL;
+
+  public static EarlyData parse(final ByteBuf bb) {
+    // empty in client hello and encrypted extensions, has the max size in session tickets
+    if (bb.isReadable()) {
+      return new EarlyData(bb.readUnsignedInt());
+    } else {
+      return new EarlyData();
+    }
+  }
+
+  private final Optional<Long> maxEarlyDataSize;
+
+  public EarlyData() {
+    this.maxEarlyDataSize = Optional.empty();
+  }
+
+  public EarlyData(final long maxEarlyDataSize) {
+    this.maxEarlyDataSize = Optional.of(maxEarlyDataSize);
+  }
+
+  @Override
+  public ExtensionType getType() {
+    return ExtensionType.EARLY_DATA;
+  }
+
+  public Optional<Long> getMaxEarlyDataSize() {
+    return maxEarlyDataSize;
+  }
+
+  @Override
+  public void write(final ByteBuf bb, final boolean ignored) {
+    maxEarlyDataSize.ifPresent(size -> bb.writeInt((int) (long) size));
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    final EarlyData that = (EarlyData) o;
+    return Objects.equals(maxEarlyDataSize, that.maxEarlyDataSize);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(maxEarlyDataSize);
+  }
+
+  @Override
+  public String toString() {
+    return "EarlyData{maxEarlyDataSize=" + maxEarlyDataSize + '}';
+  }
+}
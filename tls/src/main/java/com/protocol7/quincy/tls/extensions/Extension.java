@@ -39,6 +39,12 @@ public interface Extension {
         return PskKeyExchangeModes.parse(b);
       } else if (type == ExtensionType.SERVER_NAME) {
         return ServerName.parse(b);
+      } else if (type == ExtensionType.COMPRESS_CERTIFICATE) {
+        return CompressCertificate.parse(b);
+      } else if (type == ExtensionType.PRE_SHARED_KEY) {
+        return PreSharedKey.parse(b, isClient);
+      } else if (type == ExtensionType.EARLY_DATA) {
+        return EarlyData.parse(b);
       } else {
         return RawExtension.parse(type, b);
       }
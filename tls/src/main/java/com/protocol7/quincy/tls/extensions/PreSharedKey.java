@@ -0,0 +1,179 @@
+package com.protocol7.quincy.tls.extensions;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.utils.Hex;
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+public class PreSharedKey implements Extension {
+
+  public static class Identity {
+
+    private final byte[] identity;
+    private final int obfuscatedTicketAge;
+
+    public Identity(final byte[] identity, final int obfuscatedTicketAge) {
+      this.identity = requireNonNull(identity);
+      this.obfuscatedTicketAge = obfuscatedTicketAge;
+    }
+
+    public byte[] getIdentity() {
+      return identity;
+    }
+
+    public int getObfuscatedTicketAge() {
+      return obfuscatedTicketAge;
+    }
+  }
+
+  public static PreSharedKey parse(final ByteBuf bb, final boolean isClient) {
+    if (isClient) {
+      // sent by the server
+      return new PreSharedKey(bb.readShort() & 0xFFFF);
+    }
+
+    final List<Identity> identities = new ArrayList<>();
+    final ByteBuf identitiesBB = bb.readSlice(bb.readShort() & 0xFFFF);
+    while (identitiesBB.isReadable()) {
+      final byte[] identity = new byte[identitiesBB.readShort() & 0xFFFF];
+      identitiesBB.readBytes(identity);
+      identities.add(new Identity(identity, identitiesBB.readInt()));
+    }
+
+    final List<byte[]> binders = new ArrayList<>();
+    final ByteBuf bindersBB = bb.readSlice(bb.readShort() & 0xFFFF);
+    while (bindersBB.isReadable()) {
+      final byte[] binder = new byte[bindersBB.readByte() & 0xFF];
+      bindersBB.readBytes(binder);
+      binders.add(binder);
+    }
+
+    return new PreSharedKey(identities, binders);
+  }
+
+  private final List<Identity> identities;
+  private final List<byte[]> binders;
+  private final int selectedIdentity;
+
+  public PreSharedKey(final List<Identity> identities, final List<byte[]> binders) {
+    if (identities.isEmpty() || identities.size() != binders.size()) {
+      throw new IllegalArgumentException("Each identity must have a binder");
+    }
+
+    this.identities = identities;
+    this.binders = binders;
+    this.selectedIdentity = -1;
+  }
+
+  public PreSharedKey(final int selectedIdentity) {
+    this.identities = List.of();
+    this.binders = List.of();
+    this.selectedIdentity = selectedIdentity;
+  }
+
+  @Override
+  public ExtensionType getType() {
+    return ExtensionType.PRE_SHARED_KEY;
+  }
+
+  public List<Identity> getIdentities() {
+    return identities;
+  }
+
+  public List<byte[]> getBinders() {
+    return binders;
+  }
+
+  public int getSelectedIdentity() {
+    return selectedIdentity;
+  }
+
+  // length of the binders list at the end of the client hello, excluded when calculating binders
+  public int getBindersLength() {
+    int len = 2;
+    for (final byte[] binder : binders) {
+      len += 1 + binder.length;
+    }
+    return len;
+  }
+
+  @Override
+  public void write(final ByteBuf bb, final boolean isClient) {
+    if (!isClient) {
+      bb.writeShort(selectedIdentity);
+      return;
+    }
+
+    final int identitiesLenPos = bb.writerIndex();
+    bb.writeShort(0);
+    for (final Identity identity : identities) {
+      bb.writeShort(identity.getIdentity().length);
+      bb.writeBytes(identity.getIdentity());
+      bb.writeInt(identity.getObfuscatedTicketAge());
+    }
+    bb.setShort(identitiesLenPos, bb.writerIndex() - identitiesLenPos - 2);
+
+    final int bindersLenPos = bb.writerIndex();
+    bb.writeShort(0);
+    for (final byte[] binder : binders) {
+      bb.writeByte(binder.length);
+      bb.writeBytes(binder);
+    }
+    bb.setShort(bindersLenPos, bb.writerIndex() - bindersLenPos - 2);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    final PreSharedKey that = (PreSharedKey) o;
+    if (selectedIdentity != that.selectedIdentity
+        || identities.size() != that.identities.size()
+        || !binderEquals(binders, that.binders)) {
+      return false;
+    }
+    for (int i = 0; i < identities.size(); i++) {
+      final Identity a = identities.get(i);
+      final Identity b = that.identities.get(i);
+      if (!Arrays.equals(a.identity, b.identity)
+          || a.obfuscatedTicketAge != b.obfuscatedTicketAge) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean binderEquals(final List<byte[]> a, final List<byte[]> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!Arrays.equals(a.get(i), b.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(identities.size(), binders.size(), selectedIdentity);
+  }
+
+  @Override
+  public String toString() {
+    if (selectedIdentity >= 0) {
+      return "PreSharedKey{selectedIdentity=" + selectedIdentity + '}';
+    }
+
+    final List<String> hexIdentities = new ArrayList<>();
+    for (final Identity identity : identities) {
+      hexIdentities.add(Hex.hex(identity.getIdentity()));
+    }
+    return "PreSharedKey{identities=" + hexIdentities + '}';
+  }
+}
@@ -9,8 +9,10 @@ import java.util.Objects;
 
 public class PskKeyExchangeModes implements Extension {
 
+  public static final int PSK_DHE_KE = 0x01; // PSK with (EC)DHE key establishment
+
   public static PskKeyExchangeModes defaults() {
-    return new PskKeyExchangeModes(0x01); // PSK with (EC)DHE key establishment
+    return new PskKeyExchangeModes(PSK_DHE_KE);
   }
 
   public static PskKeyExchangeModes parse(final ByteBuf bb) {
@@ -2,6 +2,7 @@ package com.protocol7.quincy.tls.extensions;
 
 import static java.util.Arrays.asList;
 
+import com.protocol7.quincy.tls.SignatureScheme;
 import io.netty.buffer.ByteBuf;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,7 +11,11 @@ import java.util.Objects;
 public class SignatureAlgorithms implements Extension {
 
   public static SignatureAlgorithms defaults() {
-    return new SignatureAlgorithms(0x0804); // RSA-PSS-RSAE-SHA256
+    final List<Integer> algorithms = new ArrayList<>();
+    for (final SignatureScheme scheme : SignatureScheme.SUPPORTED) {
+      algorithms.add(scheme.getValue());
+    }
+    return new SignatureAlgorithms(algorithms);
   }
 
   public static SignatureAlgorithms parse(final ByteBuf bb) {
@@ -18,7 +23,7 @@ public class SignatureAlgorithms implements Extension {
 
     final List<Integer> algorithms = new ArrayList<>();
     while (bb.isReadable()) {
-      algorithms.add((int) bb.readShort());
+      algorithms.add(bb.readShort() & 0xFFFF);
     }
 
     return new SignatureAlgorithms(algorithms);
@@ -43,6 +48,10 @@ public class SignatureAlgorithms implements Extension {
     return algorithms;
   }
 
+  public boolean contains(final SignatureScheme scheme) {
+    return algorithms.contains(scheme.getValue());
+  }
+
   @Override
   public void write(final ByteBuf bb, final boolean ignored) {
     bb.writeShort(algorithms.size() * 2);
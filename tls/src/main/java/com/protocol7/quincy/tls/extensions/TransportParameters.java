@@ -124,6 +124,23 @@ public class TransportParameters implements Extension {
     return new Builder();
   }
 
+  public static Builder newBuilder(final TransportParameters tps) {
+    return new Builder()
+        .withInitialMaxStreamDataBidiLocal(tps.initialMaxStreamDataBidiLocal)
+        .withInitialMaxData(tps.initialMaxData)
+        .withInitialMaxBidiStreams(tps.initialMaxBidiStreams)
+        .withIdleTimeout(tps.idleTimeout)
+        .withMaxPacketSize(tps.maxPacketSize)
+        .withStatelessResetToken(tps.statelessResetToken)
+        .withAckDelayExponent(tps.ackDelayExponent)
+        .withInitialMaxUniStreams(tps.initialMaxUniStreams)
+        .withDisableMigration(tps.disableMigration)
+        .withInitialMaxStreamDataBidiRemote(tps.initialMaxStreamDataBidiRemote)
+        .withInitialMaxStreamDataUni(tps.initialMaxStreamDataUni)
+        .withMaxAckDelay(tps.maxAckDelay)
+        .withOriginalConnectionId(tps.originalConnectionId);
+  }
+
   public static TransportParameters parse(final ByteBuf bb) {
     final int bufLen = bb.readShort();
     final ByteBuf tpBB = bb.readBytes(bufLen);
@@ -8,6 +8,7 @@ import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.Group;
 import com.protocol7.quincy.tls.KeyExchange;
 import com.protocol7.quincy.tls.extensions.ALPN;
+import com.protocol7.quincy.tls.extensions.CompressCertificate;
 import com.protocol7.quincy.tls.extensions.Extension;
 import com.protocol7.quincy.tls.extensions.ExtensionType;
 import com.protocol7.quincy.tls.extensions.KeyShare;
@@ -27,9 +28,13 @@ import java.util.Optional;
 public class ClientHello {
 
   public static ClientHello defaults(final KeyExchange ke, final Extension... exts) {
+    return defaults(ke, CipherSuite.SUPPORTED, exts);
+  }
+
+  public static ClientHello defaults(
+      final KeyExchange ke, final List<CipherSuite> cipherSuites, final Extension... exts) {
     final byte[] clientRandom = Rnd.rndBytes(32);
     final byte[] sessionId = new byte[0];
-    final List<CipherSuite> cipherSuites = CipherSuite.SUPPORTED;
     final List<Extension> extensions =
         ImmutableList.<Extension>builder()
             .add(
@@ -38,6 +43,7 @@ public class ClientHello {
                 new SupportedGroups(Group.X25519),
                 SupportedVersions.TLS13,
                 PskKeyExchangeModes.defaults(),
+                CompressCertificate.defaults(),
                 new ALPN(List.of("h3-20")))
             .add(exts)
             .build();
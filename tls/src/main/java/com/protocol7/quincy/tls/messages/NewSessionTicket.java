@@ -0,0 +1,113 @@
+package com.protocol7.quincy.tls.messages;
+
+import com.protocol7.quincy.Writeable;
+import com.protocol7.quincy.tls.extensions.Extension;
+import com.protocol7.quincy.tls.extensions.ExtensionType;
+import com.protocol7.quincy.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import java.util.List;
+import java.util.Optional;
+
+public class NewSessionTicket implements Writeable {
+
+  public static NewSessionTicket parse(final ByteBuf bb) {
+    final int type = bb.readByte();
+    if (type != 0x04) {
+      throw new IllegalArgumentException("Invalid type: " + type);
+    }
+
+    Bytes.read24(bb); // length
+
+    final int lifetime = bb.readInt();
+    final int ageAdd = bb.readInt();
+
+    final byte[] nonce = new byte[bb.readByte() & 0xFF];
+    bb.readBytes(nonce);
+
+    final byte[] ticket = new byte[bb.readShort() & 0xFFFF];
+    bb.readBytes(ticket);
+
+    final ByteBuf extBB = bb.readSlice(bb.readShort() & 0xFFFF);
+    final List<Extension> extensions = Extension.parseAll(extBB, true);
+
+    return new NewSessionTicket(lifetime, ageAdd, nonce, ticket, extensions);
+  }
+
+  private final int lifetime;
+  private final int ageAdd;
+  private final byte[] nonce;
+  private final byte[] ticket;
+  private final List<Extension> extensions;
+
+  public NewSessionTicket(
+      final int lifetime,
+      final int ageAdd,
+      final byte[] nonce,
+      final byte[] ticket,
+      final List<Extension> extensions) {
+    if (lifetime < 0) {
+      throw new IllegalArgumentException("Invalid lifetime: " + lifetime);
+    }
+    if (ticket.length == 0) {
+      throw new IllegalArgumentException("Empty ticket");
+    }
+
+    this.lifetime = lifetime;
+    this.ageAdd = ageAdd;
+    this.nonce = nonce;
+    this.ticket = ticket;
+    this.extensions = extensions;
+  }
+
+  // lifetime in seconds
+  public int getLifetime() {
+    return lifetime;
+  }
+
+  public int getAgeAdd() {
+    return ageAdd;
+  }
+
+  public byte[] getNonce() {
+    return nonce;
+  }
+
+  public byte[] getTicket() {
+    return ticket;
+  }
+
+  public List<Extension> getExtensions() {
+    return extensions;
+  }
+
+  public Optional<Extension> getExtension(final ExtensionType type) {
+    for (final Extension ext : extensions) {
+      if (ext.getType().equals(type)) {
+        return Optional.of(ext);
+      }
+    }
+    return Optional.empty();
+  }
+
+  public void write(final ByteBuf bb) {
+    bb.writeByte(0x04);
+    final int lenPos = bb.writerIndex();
+    Bytes.write24(bb, 0);
+
+    bb.writeInt(lifetime);
+    bb.writeInt(ageAdd);
+
+    bb.writeByte(nonce.length);
+    bb.writeBytes(nonce);
+
+    bb.writeShort(ticket.length);
+    bb.writeBytes(ticket);
+
+    final int extLenPos = bb.writerIndex();
+    bb.writeShort(0);
+    Extension.writeAll(extensions, bb, false);
+    bb.setShort(extLenPos, bb.writerIndex() - extLenPos - 2);
+
+    Bytes.set24(bb, lenPos, bb.writerIndex() - lenPos - 3);
+  }
+}
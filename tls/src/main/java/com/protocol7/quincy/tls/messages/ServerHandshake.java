@@ -1,9 +1,11 @@
 package com.protocol7.quincy.tls.messages;
 
 import com.protocol7.quincy.Writeable;
+import com.protocol7.quincy.tls.CertificateCompression;
 import com.protocol7.quincy.tls.extensions.Extension;
 import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.ByteArrayInputStream;
 import java.security.GeneralSecurityException;
 import java.security.cert.Certificate;
@@ -117,11 +119,41 @@ public class ServerHandshake {
     public static ServerCertificate parse(final ByteBuf bb) {
       // server cert
       final int serverCertType = bb.readByte();
-      if (serverCertType != 0x0b) {
+      if (serverCertType == 0x19) {
+        return parseCompressed(bb);
+      } else if (serverCertType != 0x0b) {
         throw new IllegalArgumentException("Invalid server cert type: " + serverCertType);
       }
 
       final int scMsgLen = Bytes.read24(bb);
+      return parseBody(bb);
+    }
+
+    private static ServerCertificate parseCompressed(final ByteBuf bb) {
+      // compressed server cert, RFC 8879
+      final int ccMsgLen = Bytes.read24(bb);
+      final int algorithm = bb.readShort() & 0xFFFF;
+      if (algorithm != CertificateCompression.ZLIB) {
+        throw new IllegalArgumentException("Unsupported compression algorithm: " + algorithm);
+      }
+      final int uncompressedLen = Bytes.read24(bb);
+      final byte[] compressed = new byte[Bytes.read24(bb)];
+      bb.readBytes(compressed);
+
+      final ByteBuf body =
+          Unpooled.wrappedBuffer(CertificateCompression.decompress(compressed, uncompressedLen));
+      try {
+        final ServerCertificate sc = parseBody(body);
+        if (body.isReadable()) {
+          throw new IllegalArgumentException("Trailing data in compressed certificate");
+        }
+        return sc;
+      } finally {
+        body.release();
+      }
+    }
+
+    private static ServerCertificate parseBody(final ByteBuf bb) {
       final int requestContextLen = bb.readByte();
 
       final byte[] requestContext = new byte[requestContextLen];
@@ -209,6 +241,20 @@ public class ServerHandshake {
       Bytes.set24(bb, scMsgLenPos, bb.writerIndex() - scMsgLenPos - 3);
       Bytes.set24(bb, certsLenPos, bb.writerIndex() - certsLenPos - 3);
     }
+
+    public void writeCompressed(final ByteBuf bb) {
+      final byte[] msg = Bytes.write(this);
+      // compress the message body, excluding the type and length
+      final byte[] uncompressed = Arrays.copyOfRange(msg, 4, msg.length);
+      final byte[] compressed = CertificateCompression.compress(uncompressed);
+
+      bb.writeByte(0x19);
+      Bytes.write24(bb, 2 + 3 + 3 + compressed.length);
+      bb.writeShort(CertificateCompression.ZLIB);
+      Bytes.write24(bb, uncompressed.length);
+      Bytes.write24(bb, compressed.length);
+      bb.writeBytes(compressed);
+    }
   }
 
   public static class ServerCertificateVerify implements Writeable {
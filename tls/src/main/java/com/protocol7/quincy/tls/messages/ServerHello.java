@@ -25,10 +25,10 @@ public class ServerHello implements Writeable {
 
   private static final byte[] VERSION = new byte[] {0x03, 0x03};
 
-  public static ServerHello defaults(final KeyExchange ke, final Extension... exts) {
+  public static ServerHello defaults(
+      final KeyExchange ke, final CipherSuite cipherSuite, final Extension... exts) {
     final byte[] clientRandom = Rnd.rndBytes(32);
     final byte[] sessionId = new byte[0];
-    final CipherSuite cipherSuites = CipherSuite.TLS_AES_128_GCM_SHA256;
     final List<Extension> extensions =
         ImmutableList.<Extension>builder()
             .add(
@@ -40,7 +40,7 @@ public class ServerHello implements Writeable {
             .add(exts)
             .build();
 
-    return new ServerHello(clientRandom, sessionId, cipherSuites, extensions);
+    return new ServerHello(clientRandom, sessionId, cipherSuite, extensions);
   }
 
   public static ServerHello parse(final ByteBuf bb, final boolean isClient) {
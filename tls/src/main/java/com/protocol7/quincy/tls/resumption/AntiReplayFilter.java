@@ -0,0 +1,70 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// decides whether early data may be accepted, as per RFC 8446 section 8. Client hellos are only
+// accepted if the ticket age reported by the client is within a window of what the server
+// expects, and a client hello is recorded so that it is only accepted once within that window
+public class AntiReplayFilter {
+
+  private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+  private static final int DEFAULT_SIZE = 100_000;
+
+  private static final Supplier<AntiReplayFilter> shared =
+      Suppliers.memoize(
+          () -> new AntiReplayFilter(DEFAULT_WINDOW, DEFAULT_SIZE, Clock.systemUTC()));
+
+  public static AntiReplayFilter shared() {
+    return shared.get();
+  }
+
+  private final Duration window;
+  private final int size;
+  private final Clock clock;
+  private final Cache<ByteBuffer, Boolean> seen;
+
+  public AntiReplayFilter(final Duration window, final int size, final Clock clock) {
+    Preconditions.checkArgument(!window.isNegative() && !window.isZero());
+    Preconditions.checkArgument(size > 0);
+
+    this.window = window;
+    this.size = size;
+    this.clock = requireNonNull(clock);
+
+    // a replayed hello passes the freshness check for at most twice the window
+    this.seen =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(window.toMillis() * 2, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  public boolean accept(final byte[] binder, final Instant issued, final long clientTicketAge) {
+    requireNonNull(binder);
+    requireNonNull(issued);
+
+    final Instant expectedArrival = issued.plusMillis(clientTicketAge);
+    final Instant now = clock.instant();
+    if (expectedArrival.isBefore(now.minus(window)) || expectedArrival.isAfter(now.plus(window))) {
+      return false;
+    }
+
+    // evicting entries would open up for replays, so stop accepting early data when full
+    seen.cleanUp();
+    if (seen.size() >= size) {
+      return false;
+    }
+
+    return seen.asMap().putIfAbsent(ByteBuffer.wrap(binder.clone()), Boolean.TRUE) == null;
+  }
+}
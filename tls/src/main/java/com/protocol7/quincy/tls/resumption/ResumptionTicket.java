@@ -0,0 +1,68 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import java.time.Duration;
+import java.time.Instant;
+
+// a ticket received by the client, together with the PSK it gives access to
+public class ResumptionTicket {
+
+  private final byte[] ticket;
+  private final byte[] psk;
+  private final int ageAdd;
+  private final Instant received;
+  private final int lifetime;
+  private final boolean earlyData;
+  private final CipherSuite cipherSuite;
+
+  public ResumptionTicket(
+      final byte[] ticket,
+      final byte[] psk,
+      final int ageAdd,
+      final Instant received,
+      final int lifetime,
+      final boolean earlyData,
+      final CipherSuite cipherSuite) {
+    this.ticket = requireNonNull(ticket);
+    this.psk = requireNonNull(psk);
+    this.ageAdd = ageAdd;
+    this.received = requireNonNull(received);
+    this.lifetime = lifetime;
+    this.earlyData = earlyData;
+    this.cipherSuite = requireNonNull(cipherSuite);
+  }
+
+  public byte[] getTicket() {
+    return ticket;
+  }
+
+  public byte[] getPsk() {
+    return psk;
+  }
+
+  public Instant getReceived() {
+    return received;
+  }
+
+  // if the server accepts early data when resuming with this ticket
+  public boolean allowsEarlyData() {
+    return earlyData;
+  }
+
+  // early data is protected using the cipher suite of the connection the ticket was received on
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
+  }
+
+  public boolean isExpired(final Instant now) {
+    return !now.isBefore(received.plusSeconds(lifetime));
+  }
+
+  public int getObfuscatedAge(final Instant now) {
+    final long age = Duration.between(received, now).toMillis();
+    // modulo 2^32 as per RFC 8446
+    return (int) (age + ageAdd);
+  }
+}
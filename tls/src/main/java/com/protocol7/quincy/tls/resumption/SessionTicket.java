@@ -0,0 +1,96 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.time.Instant;
+import java.util.Optional;
+
+// the resumption state the server seals into a ticket and gets back from the client
+public class SessionTicket {
+
+  private static final int PSK_LENGTH = 32;
+  private static final int LENGTH = PSK_LENGTH + 8 + 4 + 4 + 2;
+
+  public static Optional<SessionTicket> open(final TicketKeys keys, final byte[] sealed) {
+    final Optional<byte[]> opened = keys.open(sealed);
+    if (opened.isEmpty() || opened.get().length != LENGTH) {
+      return Optional.empty();
+    }
+
+    final ByteBuf bb = Unpooled.wrappedBuffer(opened.get());
+    final byte[] psk = new byte[PSK_LENGTH];
+    bb.readBytes(psk);
+    final Instant issued = Instant.ofEpochMilli(bb.readLong());
+    final int lifetime = bb.readInt();
+    final int ageAdd = bb.readInt();
+    final Optional<CipherSuite> cipherSuite = CipherSuite.parseOne(bb);
+    if (cipherSuite.isEmpty()) {
+      return Optional.empty();
+    }
+
+    return Optional.of(new SessionTicket(psk, issued, lifetime, ageAdd, cipherSuite.get()));
+  }
+
+  private final byte[] psk;
+  private final Instant issued;
+  private final int lifetime;
+  private final int ageAdd;
+  private final CipherSuite cipherSuite;
+
+  public SessionTicket(
+      final byte[] psk,
+      final Instant issued,
+      final int lifetime,
+      final int ageAdd,
+      final CipherSuite cipherSuite) {
+    if (psk.length != PSK_LENGTH) {
+      throw new IllegalArgumentException("Invalid PSK length: " + psk.length);
+    }
+
+    this.psk = psk;
+    this.issued = requireNonNull(issued);
+    this.lifetime = lifetime;
+    this.ageAdd = ageAdd;
+    this.cipherSuite = requireNonNull(cipherSuite);
+  }
+
+  public byte[] getPsk() {
+    return psk;
+  }
+
+  public Instant getIssued() {
+    return issued;
+  }
+
+  // lifetime in seconds
+  public int getLifetime() {
+    return lifetime;
+  }
+
+  public int getAgeAdd() {
+    return ageAdd;
+  }
+
+  // the cipher suite of the connection the ticket was issued on, early data must use the same
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
+  }
+
+  public boolean isExpired(final Instant now) {
+    return !now.isBefore(issued.plusSeconds(lifetime));
+  }
+
+  public byte[] seal(final TicketKeys keys) {
+    final ByteBuf bb = Unpooled.buffer(LENGTH);
+    bb.writeBytes(psk);
+    bb.writeLong(issued.toEpochMilli());
+    bb.writeInt(lifetime);
+    bb.writeInt(ageAdd);
+    bb.writeShort(cipherSuite.getValue());
+
+    return keys.seal(bb.array());
+  }
+}
@@ -0,0 +1,54 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
+import java.util.Optional;
+
+// the latest ticket per origin. Tickets are only used once to avoid linking connections
+public class SessionTicketCache {
+
+  private static final int DEFAULT_SIZE = 1000;
+
+  private static final Supplier<SessionTicketCache> shared =
+      Suppliers.memoize(() -> new SessionTicketCache(DEFAULT_SIZE, Clock.systemUTC()));
+
+  public static SessionTicketCache shared() {
+    return shared.get();
+  }
+
+  private final Cache<String, ResumptionTicket> tickets;
+  private final Clock clock;
+
+  public SessionTicketCache(final int size, final Clock clock) {
+    this.tickets = CacheBuilder.newBuilder().maximumSize(size).build();
+    this.clock = requireNonNull(clock);
+  }
+
+  public Clock getClock() {
+    return clock;
+  }
+
+  public void put(final String origin, final ResumptionTicket ticket) {
+    requireNonNull(origin);
+    requireNonNull(ticket);
+
+    tickets.put(origin, ticket);
+  }
+
+  public Optional<ResumptionTicket> take(final String origin) {
+    final ResumptionTicket ticket = tickets.asMap().remove(origin);
+    if (ticket == null || ticket.isExpired(clock.instant())) {
+      return Optional.empty();
+    }
+    return Optional.of(ticket);
+  }
+
+  public long size() {
+    return tickets.size();
+  }
+}
@@ -0,0 +1,141 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.protocol7.quincy.tls.CryptoEquals;
+import com.protocol7.quincy.utils.Rnd;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// rotating keys used by the server to seal session tickets. Tickets sealed with the previous key
+// can still be opened, so a ticket is valid for at least one rotation interval
+public class TicketKeys {
+
+  private static final Duration DEFAULT_ROTATION_INTERVAL = Duration.ofHours(12);
+
+  private static final Supplier<TicketKeys> shared =
+      Suppliers.memoize(() -> new TicketKeys(DEFAULT_ROTATION_INTERVAL, Clock.systemUTC()));
+
+  public static TicketKeys shared() {
+    return shared.get();
+  }
+
+  private static final int KEY_NAME_LENGTH = 16;
+  private static final int KEY_LENGTH = 16;
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_LENGTH = 16;
+
+  private static class Key {
+    private final byte[] name = Rnd.rndBytes(KEY_NAME_LENGTH);
+    private final SecretKey key = new SecretKeySpec(Rnd.rndBytes(KEY_LENGTH), "AES");
+    private final Instant created;
+
+    private Key(final Instant created) {
+      this.created = created;
+    }
+  }
+
+  private final Duration rotationInterval;
+  private final Clock clock;
+
+  private Key current;
+  private Optional<Key> previous = Optional.empty();
+
+  public TicketKeys(final Duration rotationInterval, final Clock clock) {
+    Preconditions.checkArgument(!rotationInterval.isNegative() && !rotationInterval.isZero());
+
+    this.rotationInterval = rotationInterval;
+    this.clock = requireNonNull(clock);
+    this.current = new Key(clock.instant());
+  }
+
+  public Clock getClock() {
+    return clock;
+  }
+
+  public Duration getRotationInterval() {
+    return rotationInterval;
+  }
+
+  public byte[] seal(final byte[] plaintext) {
+    final Key key = rotate();
+
+    final byte[] iv = Rnd.rndBytes(IV_LENGTH);
+    try {
+      final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, key.key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+      cipher.updateAAD(key.name);
+      final byte[] ciphertext = cipher.doFinal(plaintext);
+
+      final byte[] sealed = new byte[KEY_NAME_LENGTH + IV_LENGTH + ciphertext.length];
+      System.arraycopy(key.name, 0, sealed, 0, KEY_NAME_LENGTH);
+      System.arraycopy(iv, 0, sealed, KEY_NAME_LENGTH, IV_LENGTH);
+      System.arraycopy(ciphertext, 0, sealed, KEY_NAME_LENGTH + IV_LENGTH, ciphertext.length);
+      return sealed;
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException("Failed to seal ticket", e);
+    }
+  }
+
+  public Optional<byte[]> open(final byte[] sealed) {
+    if (sealed.length < KEY_NAME_LENGTH + IV_LENGTH + TAG_LENGTH) {
+      return Optional.empty();
+    }
+
+    final byte[] name = Arrays.copyOf(sealed, KEY_NAME_LENGTH);
+    final Optional<Key> key = find(name);
+    if (key.isEmpty()) {
+      // unknown or rotated out
+      return Optional.empty();
+    }
+
+    try {
+      final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(
+          Cipher.DECRYPT_MODE,
+          key.get().key,
+          new GCMParameterSpec(TAG_LENGTH * 8, sealed, KEY_NAME_LENGTH, IV_LENGTH));
+      cipher.updateAAD(name);
+      return Optional.of(
+          cipher.doFinal(
+              sealed, KEY_NAME_LENGTH + IV_LENGTH, sealed.length - KEY_NAME_LENGTH - IV_LENGTH));
+    } catch (final AEADBadTagException e) {
+      return Optional.empty();
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException("Failed to open ticket", e);
+    }
+  }
+
+  private synchronized Key rotate() {
+    final Instant now = clock.instant();
+    if (!now.isBefore(current.created.plus(rotationInterval))) {
+      previous = Optional.of(current);
+      current = new Key(now);
+    }
+    return current;
+  }
+
+  private synchronized Optional<Key> find(final byte[] name) {
+    final Key current = rotate();
+    if (CryptoEquals.isEqual(current.name, name)) {
+      return Optional.of(current);
+    }
+
+    // the previous key is only accepted for one rotation interval after it was replaced
+    return previous
+        .filter(p -> CryptoEquals.isEqual(p.name, name))
+        .filter(p -> clock.instant().isBefore(p.created.plus(rotationInterval.multipliedBy(2))));
+  }
+}
@@ -0,0 +1,56 @@
+package com.protocol7.quincy.tls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.tls.messages.ServerHandshake.ServerCertificate;
+import com.protocol7.quincy.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import org.junit.Test;
+
+public class CertificateChainTest {
+
+  private final List<byte[]> certificates =
+      KeyUtil.getCertsFromCrt("src/test/resources/server.crt");
+
+  @Test
+  public void write() {
+    final CertificateChain chain = new CertificateChain(certificates, false);
+    assertFalse(chain.isCompressed());
+
+    final ByteBuf bb = Unpooled.buffer();
+    // compression requested, but not enabled
+    chain.write(bb, true);
+
+    assertArrayEquals(
+        Bytes.write(new ServerCertificate(new byte[0], certificates)), Bytes.drainToArray(bb));
+  }
+
+  @Test
+  public void writeCompressed() {
+    final CertificateChain chain = new CertificateChain(certificates, true);
+    assertTrue(chain.isCompressed());
+
+    final ByteBuf plain = Unpooled.buffer();
+    chain.write(plain, false);
+    final ByteBuf compressed = Unpooled.buffer();
+    chain.write(compressed, true);
+
+    assertEquals(0x19, compressed.getByte(0));
+    assertTrue(compressed.readableBytes() < plain.readableBytes());
+
+    final ServerCertificate sc = ServerCertificate.parse(compressed);
+    assertEquals(1, sc.getServerCertificates().size());
+    assertArrayEquals(certificates.get(0), sc.getServerCertificates().get(0));
+    assertFalse(compressed.isReadable());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void empty() {
+    new CertificateChain(List.of(), false);
+  }
+}
@@ -0,0 +1,58 @@
+package com.protocol7.quincy.tls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.utils.Rnd;
+import org.junit.Test;
+
+public class CertificateCompressionTest {
+
+  private final byte[] data = KeyUtil.getCertsFromCrt("src/test/resources/server.crt").get(0);
+
+  @Test
+  public void roundtrip() {
+    final byte[] compressed = CertificateCompression.compress(data);
+
+    assertTrue(compressed.length < data.length);
+    assertArrayEquals(data, CertificateCompression.decompress(compressed, data.length));
+  }
+
+  @Test
+  public void roundtripLarge() {
+    final byte[] large = new byte[data.length * 20];
+    for (int i = 0; i < 20; i++) {
+      System.arraycopy(data, 0, large, i * data.length, data.length);
+    }
+
+    assertArrayEquals(
+        large,
+        CertificateCompression.decompress(CertificateCompression.compress(large), large.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void lengthMuchTooLong() {
+    CertificateCompression.decompress(
+        CertificateCompression.compress(data), CertificateCompression.MAX_UNCOMPRESSED_LENGTH);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void lengthTooShort() {
+    CertificateCompression.decompress(CertificateCompression.compress(data), data.length - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void lengthTooLong() {
+    CertificateCompression.decompress(CertificateCompression.compress(data), data.length + 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidLength() {
+    CertificateCompression.decompress(CertificateCompression.compress(data), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidData() {
+    CertificateCompression.decompress(Rnd.rndBytes(100), data.length);
+  }
+}
@@ -1,9 +1,14 @@
 package com.protocol7.quincy.tls;
 
 import com.protocol7.quincy.utils.Hex;
+import com.protocol7.quincy.utils.Rnd;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 public class CertificateVerifyTest {
@@ -14,12 +19,58 @@ public class CertificateVerifyTest {
         Hex.dehex("3e66361ada42c7cb97f9a62b00cae1d8b584174c745f9a338cf9f7cdd51d15f8");
 
     final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
-    final byte[] actual = CertificateVerify.sign(hash, privateKey, false);
+    final byte[] actual =
+        CertificateVerify.sign(hash, SignatureScheme.RSA_PSS_RSAE_SHA256, privateKey, false);
 
     final PublicKey publicKey =
         KeyUtil.getCertFromCrt("src/test/resources/server.crt").getPublicKey();
 
-    Assert.assertTrue(CertificateVerify.verify(actual, hash, publicKey, false));
+    Assert.assertTrue(
+        CertificateVerify.verify(
+            actual, hash, SignatureScheme.RSA_PSS_RSAE_SHA256, publicKey, false));
+  }
+
+  @Test
+  public void roundtripEcdsa() {
+    final byte[] hash = Rnd.rndBytes(32);
+
+    final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server-ec.der", "EC");
+    final byte[] actual =
+        CertificateVerify.sign(hash, SignatureScheme.ECDSA_SECP256R1_SHA256, privateKey, false);
+
+    final PublicKey publicKey =
+        KeyUtil.getCertFromCrt("src/test/resources/server-ec.crt").getPublicKey();
+
+    Assert.assertTrue(
+        CertificateVerify.verify(
+            actual, hash, SignatureScheme.ECDSA_SECP256R1_SHA256, publicKey, false));
+    Assert.assertFalse(
+        CertificateVerify.verify(
+            actual, hash, SignatureScheme.ECDSA_SECP256R1_SHA256, publicKey, true));
+  }
+
+  @Test
+  public void roundtripEd25519() throws GeneralSecurityException {
+    Assume.assumeTrue(SignatureScheme.SUPPORTED.contains(SignatureScheme.ED25519));
+
+    final byte[] hash = Rnd.rndBytes(32);
+
+    final KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    final byte[] actual =
+        CertificateVerify.sign(hash, SignatureScheme.ED25519, keyPair.getPrivate(), false);
+
+    Assert.assertTrue(
+        CertificateVerify.verify(
+            actual, hash, SignatureScheme.ED25519, keyPair.getPublic(), false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void verifyMismatchedScheme() {
+    final PublicKey publicKey =
+        KeyUtil.getCertFromCrt("src/test/resources/server.crt").getPublicKey();
+
+    CertificateVerify.verify(
+        new byte[64], new byte[32], SignatureScheme.ECDSA_SECP256R1_SHA256, publicKey, false);
   }
 
   @Test
@@ -33,6 +84,8 @@ public class CertificateVerifyTest {
 
     final PublicKey publicKey = KeyUtil.getPublicKey("src/test/resources/quic-go.der");
 
-    Assert.assertTrue(CertificateVerify.verify(sign, hash, publicKey, false));
+    Assert.assertTrue(
+        CertificateVerify.verify(
+            sign, hash, SignatureScheme.RSA_PSS_RSAE_SHA256, publicKey, false));
   }
 }
@@ -2,6 +2,7 @@ package com.protocol7.quincy.tls;
 
 import static com.protocol7.quincy.tls.CipherSuite.TLS_AES_128_GCM_SHA256;
 import static com.protocol7.quincy.tls.CipherSuite.TLS_AES_256_GCM_SHA384;
+import static com.protocol7.quincy.tls.CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
 import static com.protocol7.quincy.tls.TestUtil.assertHex;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -51,4 +52,31 @@ public class CipherSuiteTest {
   public void fromValueUnknown() {
     assertFalse(CipherSuite.fromValue(0x9999).isPresent());
   }
+
+  @Test
+  public void selectPreferred() {
+    assertEquals(
+        TLS_CHACHA20_POLY1305_SHA256,
+        CipherSuite.select(
+                List.of(TLS_CHACHA20_POLY1305_SHA256, TLS_AES_128_GCM_SHA256),
+                List.of(TLS_AES_128_GCM_SHA256, TLS_CHACHA20_POLY1305_SHA256))
+            .get());
+  }
+
+  @Test
+  public void selectNoCommon() {
+    assertFalse(
+        CipherSuite.select(List.of(TLS_CHACHA20_POLY1305_SHA256), List.of(TLS_AES_128_GCM_SHA256))
+            .isPresent());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validateSupportedEmpty() {
+    CipherSuite.validateSupported(List.of());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validateSupportedUnsupported() {
+    CipherSuite.validateSupported(List.of(TLS_AES_256_GCM_SHA384));
+  }
 }
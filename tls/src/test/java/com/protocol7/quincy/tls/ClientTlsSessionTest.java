@@ -1,6 +1,7 @@
 package com.protocol7.quincy.tls;
 
 import static com.protocol7.quincy.tls.CipherSuite.TLS_AES_128_GCM_SHA256;
+import static com.protocol7.quincy.tls.CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
 import static com.protocol7.quincy.utils.Hex.dehex;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -17,10 +18,12 @@ import com.protocol7.quincy.tls.extensions.SupportedVersions;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import com.protocol7.quincy.tls.messages.ClientHello;
 import com.protocol7.quincy.tls.messages.ServerHello;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
 import com.protocol7.quincy.utils.Bytes;
 import com.protocol7.quincy.utils.Rnd;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.time.Clock;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.Before;
@@ -32,12 +35,18 @@ public class ClientTlsSessionTest {
       new ClientTlsSession(
           InitialAEAD.create(Rnd.rndBytes(4), true),
           TestUtil.tps(),
-          new NoopCertificateValidator());
+          new NoopCertificateValidator(),
+          new SessionTicketCache(100, Clock.systemUTC()),
+          "",
+          CipherSuite.SUPPORTED);
   private final ClientTlsSession started =
       new ClientTlsSession(
           InitialAEAD.create(Rnd.rndBytes(4), true),
           TestUtil.tps(),
-          new NoopCertificateValidator());
+          new NoopCertificateValidator(),
+          new SessionTicketCache(100, Clock.systemUTC()),
+          "",
+          CipherSuite.SUPPORTED);
 
   @Before
   public void setUp() {
@@ -52,7 +61,8 @@ public class ClientTlsSessionTest {
 
     assertEquals(32, hello.getClientRandom().length);
     assertEquals(0, hello.getSessionId().length);
-    assertEquals(List.of(TLS_AES_128_GCM_SHA256), hello.getCipherSuites());
+    assertEquals(
+        List.of(TLS_AES_128_GCM_SHA256, TLS_CHACHA20_POLY1305_SHA256), hello.getCipherSuites());
 
     assertEquals(
         32,
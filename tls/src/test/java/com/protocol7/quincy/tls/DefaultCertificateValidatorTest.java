@@ -1,5 +1,6 @@
 package com.protocol7.quincy.tls;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -9,6 +10,7 @@ import java.nio.file.Files;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
+import java.time.Clock;
 import java.util.List;
 import org.junit.Test;
 
@@ -55,4 +57,42 @@ public class DefaultCertificateValidatorTest {
 
     assertFalse(validator.validate(List.of(certBytes)));
   }
+
+  @Test
+  public void cachedValidation() throws GeneralSecurityException, IOException {
+    final X509Certificate cert = KeyUtil.getCertFromCrt("src/test/resources/server-ec.crt");
+    final MutableClock clock = new MutableClock(cert.getNotBefore().toInstant().plusSeconds(60));
+    final DefaultCertificateValidator validator =
+        new DefaultCertificateValidator(truststore(cert), 10, clock);
+
+    assertTrue(validator.validate(List.of(cert.getEncoded())));
+    assertEquals(1, validator.cacheSize());
+
+    assertTrue(validator.validate(List.of(cert.getEncoded())));
+    assertEquals(1, validator.cacheSize());
+
+    // cached validations expire with the certificate
+    clock.set(cert.getNotAfter().toInstant().plusSeconds(1));
+    assertFalse(validator.validate(List.of(cert.getEncoded())));
+    assertEquals(0, validator.cacheSize());
+  }
+
+  @Test
+  public void failedValidationNotCached() throws GeneralSecurityException, IOException {
+    final X509Certificate cert = KeyUtil.getCertFromCrt("src/test/resources/server-ec.crt");
+    final X509Certificate other = KeyUtil.getCertFromCrt("src/test/resources/server.crt");
+    final DefaultCertificateValidator validator =
+        new DefaultCertificateValidator(truststore(other), 10, Clock.systemUTC());
+
+    assertFalse(validator.validate(List.of(cert.getEncoded())));
+    assertEquals(0, validator.cacheSize());
+  }
+
+  private KeyStore truststore(final X509Certificate cert)
+      throws GeneralSecurityException, IOException {
+    final KeyStore truststore = KeyStore.getInstance("JKS");
+    truststore.load(() -> new KeyStore.PasswordProtection("hello".toCharArray()));
+    truststore.setCertificateEntry("pwn", cert);
+    return truststore;
+  }
 }
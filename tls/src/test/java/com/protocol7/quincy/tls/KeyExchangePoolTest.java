@@ -0,0 +1,77 @@
+package com.protocol7.quincy.tls;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Test;
+
+public class KeyExchangePoolTest {
+
+  private final KeyExchangePool pool = new KeyExchangePool(Group.X25519, 4);
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void take() {
+    final KeyExchange kek = pool.take();
+
+    assertEquals(Group.X25519, kek.getGroup());
+    assertEquals(32, kek.getPublicKey().length);
+  }
+
+  @Test
+  public void takeUnique() {
+    final KeyExchange kek1 = pool.take();
+    final KeyExchange kek2 = pool.take();
+
+    assertFalse(Arrays.equals(kek1.getPublicKey(), kek2.getPublicKey()));
+  }
+
+  @Test
+  public void refill() throws InterruptedException {
+    awaitSize(4);
+
+    pool.take();
+    pool.take();
+
+    awaitSize(4);
+  }
+
+  @Test
+  public void takeFromClosed() {
+    pool.close();
+
+    // falls back on generating inline
+    final KeyExchange kek = pool.take();
+    assertEquals(Group.X25519, kek.getGroup());
+    assertEquals(0, pool.size());
+  }
+
+  @Test
+  public void keyAgreement() {
+    final KeyExchange alice = pool.take();
+    final KeyExchange bob = KeyExchange.generate(Group.X25519);
+
+    assertArrayEquals(
+        alice.generateSharedSecret(bob.getPublicKey()),
+        bob.generateSharedSecret(alice.getPublicKey()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCapacity() {
+    new KeyExchangePool(Group.X25519, 0);
+  }
+
+  private void awaitSize(final int size) throws InterruptedException {
+    for (int i = 0; i < 100 && pool.size() < size; i++) {
+      Thread.sleep(50);
+    }
+    assertEquals(size, pool.size());
+  }
+}
@@ -36,4 +36,19 @@ public class KeyExchangeTest {
 
     assertArrayEquals(aliceShared, bobShared);
   }
+
+  @Test
+  public void keyAgreementRepeated() {
+    final KeyExchange alice = KeyExchange.generate(Group.X25519);
+    final KeyExchange bob = KeyExchange.generate(Group.X25519);
+    final KeyExchange carol = KeyExchange.generate(Group.X25519);
+
+    // cached key agreements must be reinitialized for every use
+    assertArrayEquals(
+        alice.generateSharedSecret(bob.getPublicKey()),
+        bob.generateSharedSecret(alice.getPublicKey()));
+    assertArrayEquals(
+        alice.generateSharedSecret(carol.getPublicKey()),
+        carol.generateSharedSecret(alice.getPublicKey()));
+  }
 }
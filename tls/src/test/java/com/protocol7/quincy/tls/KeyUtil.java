@@ -49,11 +49,15 @@ public class KeyUtil {
   }
 
   public static PrivateKey getPrivateKey(final String path) {
+    return getPrivateKey(path, "RSA");
+  }
+
+  public static PrivateKey getPrivateKey(final String path, final String algorithm) {
     try {
       final byte[] b = Files.readAllBytes(Path.of(path));
       final PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(b);
 
-      final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+      final KeyFactory keyFactory = KeyFactory.getInstance(algorithm);
 
       return keyFactory.generatePrivate(keySpec);
     } catch (final GeneralSecurityException | IOException e) {
@@ -0,0 +1,39 @@
+package com.protocol7.quincy.tls;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class MutableClock extends Clock {
+
+  private Instant now;
+
+  public MutableClock(final Instant now) {
+    this.now = now;
+  }
+
+  public void set(final Instant now) {
+    this.now = now;
+  }
+
+  public void advance(final Duration duration) {
+    this.now = now.plus(duration);
+  }
+
+  @Override
+  public ZoneId getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  @Override
+  public Clock withZone(final ZoneId zone) {
+    return this;
+  }
+
+  @Override
+  public Instant instant() {
+    return now;
+  }
+}
@@ -0,0 +1,78 @@
+package com.protocol7.quincy.tls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+import java.util.Optional;
+import org.junit.Test;
+
+public class SignatureSchemeTest {
+
+  private final PrivateKey rsaKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
+  private final PrivateKey ecKey = KeyUtil.getPrivateKey("src/test/resources/server-ec.der", "EC");
+
+  @Test
+  public void fromValue() {
+    assertEquals(
+        Optional.of(SignatureScheme.ECDSA_SECP256R1_SHA256), SignatureScheme.fromValue(0x0403));
+    assertEquals(Optional.of(SignatureScheme.ED25519), SignatureScheme.fromValue(0x0807));
+    assertEquals(
+        Optional.of(SignatureScheme.RSA_PSS_RSAE_SHA256), SignatureScheme.fromValue(0x0804));
+    assertEquals(Optional.empty(), SignatureScheme.fromValue(0x0401));
+  }
+
+  @Test
+  public void supported() {
+    assertTrue(SignatureScheme.SUPPORTED.contains(SignatureScheme.ECDSA_SECP256R1_SHA256));
+    assertTrue(SignatureScheme.SUPPORTED.contains(SignatureScheme.RSA_PSS_RSAE_SHA256));
+  }
+
+  @Test
+  public void forKey() {
+    assertEquals(SignatureScheme.RSA_PSS_RSAE_SHA256, SignatureScheme.forKey(rsaKey));
+    assertEquals(SignatureScheme.ECDSA_SECP256R1_SHA256, SignatureScheme.forKey(ecKey));
+  }
+
+  @Test
+  public void matches() {
+    assertTrue(SignatureScheme.RSA_PSS_RSAE_SHA256.matches(rsaKey));
+    assertFalse(SignatureScheme.RSA_PSS_RSAE_SHA256.matches(ecKey));
+    assertTrue(SignatureScheme.ECDSA_SECP256R1_SHA256.matches(ecKey));
+    assertFalse(SignatureScheme.ECDSA_SECP256R1_SHA256.matches(rsaKey));
+    assertFalse(SignatureScheme.ED25519.matches(rsaKey));
+  }
+
+  @Test
+  public void doesNotMatchOtherCurveOfSameSize() {
+    // secp256k1, not available from all providers
+    final ECParameterSpec secp256k1 =
+        new ECParameterSpec(
+            new EllipticCurve(
+                new ECFieldFp(
+                    new BigInteger(
+                        "fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16)),
+                BigInteger.ZERO,
+                BigInteger.valueOf(7)),
+            new ECPoint(
+                new BigInteger(
+                    "79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798", 16),
+                new BigInteger(
+                    "483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b8", 16)),
+            new BigInteger("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141", 16),
+            1);
+    final ECPrivateKey key = mock(ECPrivateKey.class);
+    when(key.getParams()).thenReturn(secp256k1);
+
+    assertFalse(SignatureScheme.ECDSA_SECP256R1_SHA256.matches(key));
+  }
+}
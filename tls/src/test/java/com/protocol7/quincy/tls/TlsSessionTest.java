@@ -1,14 +1,35 @@
 package com.protocol7.quincy.tls;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
+import com.protocol7.quincy.tls.ClientTlsSession.HandshakeResult;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
+import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.extensions.Extension;
+import com.protocol7.quincy.tls.extensions.ExtensionType;
+import com.protocol7.quincy.tls.extensions.SignatureAlgorithms;
+import com.protocol7.quincy.tls.messages.ClientHello;
 import com.protocol7.quincy.tls.messages.ServerHandshake;
+import com.protocol7.quincy.tls.resumption.AntiReplayFilter;
+import com.protocol7.quincy.tls.resumption.ResumptionTicket;
+import com.protocol7.quincy.tls.resumption.SessionTicket;
+import com.protocol7.quincy.tls.resumption.SessionTicketCache;
+import com.protocol7.quincy.tls.resumption.TicketKeys;
 import com.protocol7.quincy.utils.Bytes;
 import com.protocol7.quincy.utils.Rnd;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.security.PrivateKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,10 +38,7 @@ public class TlsSessionTest {
 
   private PrivateKey privateKey;
   private final ClientTlsSession client =
-      new ClientTlsSession(
-          InitialAEAD.create(Rnd.rndBytes(4), true),
-          TestUtil.tps(),
-          new NoopCertificateValidator());
+      resumingClient(new SessionTicketCache(100, Clock.systemUTC()));
   private ServerTlsSession server;
 
   @Before
@@ -28,12 +46,7 @@ public class TlsSessionTest {
     privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
     final byte[] serverCert = KeyUtil.getCertFromCrt("src/test/resources/server.crt").getEncoded();
 
-    server =
-        new ServerTlsSession(
-            InitialAEAD.create(Rnd.rndBytes(4), false),
-            TestUtil.tps(),
-            List.of(serverCert),
-            privateKey);
+    server = server(new CertificateChain(List.of(serverCert), false), privateKey);
   }
 
   @Test
@@ -48,6 +61,344 @@ public class TlsSessionTest {
     server.handleClientFinished(clientFin);
   }
 
+  @Test
+  public void calculateHandshakeWithoutChangingSession() throws CertificateInvalidException {
+    final ServerHelloAndHandshake shah = server.calculateHandshake(client.startHandshake());
+
+    // applied separately, e.g. on the connection thread
+    assertNull(server.getCipherSuite());
+    server.onHandshake(shah);
+    assertEquals(CipherSuite.TLS_AES_128_GCM_SHA256, server.getCipherSuite());
+
+    client.handleServerHello(shah.getServerHello());
+    final byte[] clientFin = client.handleHandshake(shah.getServerHandshake()).get().getFin();
+
+    server.handleClientFinished(clientFin);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void onHandshakeTwice() {
+    final ServerHelloAndHandshake shah = server.calculateHandshake(client.startHandshake());
+    server.onHandshake(shah);
+    server.onHandshake(shah);
+  }
+
+  @Test
+  public void handshakeEcdsa() throws CertificateInvalidException {
+    final ServerTlsSession ecServer = ecServer();
+
+    final byte[] clientHello = client.startHandshake();
+
+    final ServerHelloAndHandshake shah = ecServer.handleClientHello(clientHello);
+
+    final ServerHandshake handshake =
+        ServerHandshake.parse(Unpooled.wrappedBuffer(shah.getServerHandshake()), true);
+    assertEquals(
+        SignatureScheme.ECDSA_SECP256R1_SHA256.getValue(),
+        handshake.getServerCertificateVerify().getType());
+
+    client.handleServerHello(shah.getServerHello());
+    final byte[] clientFin = client.handleHandshake(shah.getServerHandshake()).get().getFin();
+
+    ecServer.handleClientFinished(clientFin);
+  }
+
+  @Test
+  public void handshakeCompressedCertificate() throws CertificateInvalidException {
+    final ServerTlsSession compressingServer =
+        server(
+            new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"), true),
+            privateKey);
+
+    final byte[] clientHello = client.startHandshake();
+
+    final ServerHelloAndHandshake shah = compressingServer.handleClientHello(clientHello);
+
+    final ByteBuf bb = Unpooled.wrappedBuffer(shah.getServerHandshake());
+    ServerHandshake.EncryptedExtensions.parse(bb, true);
+    assertEquals(0x19, bb.getByte(bb.readerIndex()));
+
+    client.handleServerHello(shah.getServerHello());
+    final byte[] clientFin = client.handleHandshake(shah.getServerHandshake()).get().getFin();
+
+    compressingServer.handleClientFinished(clientFin);
+  }
+
+  @Test
+  public void handshakeResumed() throws CertificateInvalidException {
+    final TicketKeys ticketKeys = new TicketKeys(Duration.ofHours(1), Clock.systemUTC());
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+
+    // full handshake, receiving a ticket
+    final ClientTlsSession first = resumingClient(cache);
+    final ServerTlsSession firstServer = ticketServer(ticketKeys);
+    handshake(first, firstServer);
+    assertFalse(first.isResumed());
+
+    first.handleNewSessionTicket(firstServer.createNewSessionTicket());
+    assertEquals(1, cache.size());
+
+    // resumed handshake, no certificate or signature sent
+    final ClientTlsSession second = resumingClient(cache);
+    final ServerTlsSession secondServer = ticketServer(ticketKeys);
+
+    final ServerHelloAndHandshake shah = secondServer.handleClientHello(second.startHandshake());
+    assertTrue(secondServer.isResumed());
+    assertEquals(0, cache.size());
+
+    final ByteBuf bb = Unpooled.wrappedBuffer(shah.getServerHandshake());
+    ServerHandshake.EncryptedExtensions.parse(bb, true);
+    ServerHandshake.ServerHandshakeFinished.parse(bb);
+    assertFalse(bb.isReadable());
+
+    second.handleServerHello(shah.getServerHello());
+    final byte[] clientFin = second.handleHandshake(shah.getServerHandshake()).get().getFin();
+    secondServer.handleClientFinished(clientFin);
+
+    assertTrue(second.isResumed());
+
+    // resumed sessions can issue new tickets
+    second.handleNewSessionTicket(secondServer.createNewSessionTicket());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void handshakeEarlyData() throws CertificateInvalidException {
+    final TicketKeys ticketKeys = new TicketKeys(Duration.ofHours(1), Clock.systemUTC());
+    final AntiReplayFilter filter =
+        new AntiReplayFilter(Duration.ofSeconds(10), 100, Clock.systemUTC());
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+
+    final ClientTlsSession first = resumingClient(cache);
+    final ServerTlsSession firstServer = ticketServer(ticketKeys, filter);
+    handshake(first, firstServer);
+    assertFalse(first.isEarlyDataOffered());
+
+    first.handleNewSessionTicket(firstServer.createNewSessionTicket());
+
+    final ClientTlsSession second = resumingClient(cache);
+    final ServerTlsSession secondServer = ticketServer(ticketKeys, filter);
+
+    final byte[] clientHello = second.startHandshake();
+    assertTrue(second.isEarlyDataOffered());
+    assertTrue(second.available(EncryptionLevel.ZeroRtt));
+
+    final ServerHelloAndHandshake shah = secondServer.handleClientHello(clientHello);
+    assertTrue(secondServer.isEarlyDataAccepted());
+    assertArrayEquals(
+        second.getAEAD(EncryptionLevel.ZeroRtt).getMyKey(),
+        shah.getZeroRttAEAD().get().getOtherKey());
+
+    second.handleServerHello(shah.getServerHello());
+    second.handleHandshake(shah.getServerHandshake());
+    assertTrue(second.isEarlyDataAccepted());
+
+    // a replayed client hello still resumes, but without early data
+    final ServerTlsSession replayServer = ticketServer(ticketKeys, filter);
+    final ServerHelloAndHandshake replayed = replayServer.handleClientHello(clientHello);
+    assertTrue(replayServer.isResumed());
+    assertFalse(replayServer.isEarlyDataAccepted());
+    assertFalse(replayed.getZeroRttAEAD().isPresent());
+  }
+
+  @Test
+  public void handshakeUnknownTicket() throws CertificateInvalidException {
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+
+    final ClientTlsSession first = resumingClient(cache);
+    final ServerTlsSession firstServer =
+        ticketServer(new TicketKeys(Duration.ofHours(1), Clock.systemUTC()));
+    handshake(first, firstServer);
+    first.handleNewSessionTicket(firstServer.createNewSessionTicket());
+
+    // a server with other ticket keys falls back to a full handshake
+    final ClientTlsSession second = resumingClient(cache);
+    final ServerTlsSession secondServer =
+        ticketServer(new TicketKeys(Duration.ofHours(1), Clock.systemUTC()));
+    handshake(second, secondServer);
+
+    assertFalse(secondServer.isResumed());
+    assertFalse(second.isResumed());
+  }
+
+  @Test
+  public void handshakeChaCha() throws CertificateInvalidException {
+    final ServerTlsSession chaChaServer =
+        ticketServer(
+            new TicketKeys(Duration.ofHours(1), Clock.systemUTC()),
+            AntiReplayFilter.shared(),
+            List.of(CipherSuite.TLS_CHACHA20_POLY1305_SHA256));
+
+    final ServerHelloAndHandshake shah = chaChaServer.handleClientHello(client.startHandshake());
+    assertEquals(CipherSuite.TLS_CHACHA20_POLY1305_SHA256, chaChaServer.getCipherSuite());
+
+    final AEAD handshakeAead = client.handleServerHello(shah.getServerHello());
+    assertEquals(CipherSuite.TLS_CHACHA20_POLY1305_SHA256, client.getCipherSuite());
+    assertEquals(CipherSuite.TLS_CHACHA20_POLY1305_SHA256, handshakeAead.getCipherSuite());
+    assertArrayEquals(shah.getHandshakeAEAD().getMyKey(), handshakeAead.getOtherKey());
+
+    final HandshakeResult result = client.handleHandshake(shah.getServerHandshake()).get();
+    chaChaServer.handleClientFinished(result.getFin());
+
+    assertArrayEquals(shah.getOneRttAEAD().getMyKey(), result.getOneRttAead().getOtherKey());
+    assertEquals(32, result.getOneRttAead().getMyKey().length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void handshakeNoCommonCipherSuite() {
+    final ClientTlsSession aesClient =
+        new ClientTlsSession(
+            InitialAEAD.create(Rnd.rndBytes(4), true),
+            TestUtil.tps(),
+            new NoopCertificateValidator(),
+            new SessionTicketCache(100, Clock.systemUTC()),
+            "example.com:443",
+            List.of(CipherSuite.TLS_AES_128_GCM_SHA256));
+    final ServerTlsSession chaChaServer =
+        ticketServer(
+            new TicketKeys(Duration.ofHours(1), Clock.systemUTC()),
+            AntiReplayFilter.shared(),
+            List.of(CipherSuite.TLS_CHACHA20_POLY1305_SHA256));
+
+    chaChaServer.handleClientHello(aesClient.startHandshake());
+  }
+
+  @Test
+  public void earlyDataRejectedForOtherCipherSuite() throws CertificateInvalidException {
+    final TicketKeys ticketKeys = new TicketKeys(Duration.ofHours(1), Clock.systemUTC());
+    final AntiReplayFilter filter =
+        new AntiReplayFilter(Duration.ofSeconds(10), 100, Clock.systemUTC());
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+
+    final ClientTlsSession first = resumingClient(cache);
+    final ServerTlsSession firstServer = ticketServer(ticketKeys, filter);
+    handshake(first, firstServer);
+    first.handleNewSessionTicket(firstServer.createNewSessionTicket());
+
+    // the ticket was issued for AES-128-GCM, early data can not be accepted using ChaCha20
+    final ClientTlsSession second = resumingClient(cache);
+    final ServerTlsSession chaChaServer =
+        ticketServer(ticketKeys, filter, List.of(CipherSuite.TLS_CHACHA20_POLY1305_SHA256));
+
+    final ServerHelloAndHandshake shah = chaChaServer.handleClientHello(second.startHandshake());
+    assertTrue(second.isEarlyDataOffered());
+    assertTrue(chaChaServer.isResumed());
+    assertFalse(chaChaServer.isEarlyDataAccepted());
+    assertFalse(shah.getZeroRttAEAD().isPresent());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void handshakeInvalidBinder() {
+    final TicketKeys ticketKeys = new TicketKeys(Duration.ofHours(1), Clock.systemUTC());
+    final SessionTicket ticket =
+        new SessionTicket(
+            Rnd.rndBytes(32),
+            Instant.now(),
+            3600,
+            Rnd.rndInt(),
+            CipherSuite.TLS_AES_128_GCM_SHA256);
+
+    // a valid ticket, but with a binder calculated from another PSK
+    final SessionTicketCache cache = new SessionTicketCache(100, Clock.systemUTC());
+    cache.put(
+        "example.com:443",
+        new ResumptionTicket(
+            ticket.seal(ticketKeys),
+            Rnd.rndBytes(32),
+            ticket.getAgeAdd(),
+            Instant.now(),
+            3600,
+            false,
+            CipherSuite.TLS_AES_128_GCM_SHA256));
+
+    ticketServer(ticketKeys).handleClientHello(resumingClient(cache).startHandshake());
+  }
+
+  private void handshake(final ClientTlsSession client, final ServerTlsSession server)
+      throws CertificateInvalidException {
+    final ServerHelloAndHandshake shah = server.handleClientHello(client.startHandshake());
+
+    client.handleServerHello(shah.getServerHello());
+    final byte[] clientFin = client.handleHandshake(shah.getServerHandshake()).get().getFin();
+
+    server.handleClientFinished(clientFin);
+  }
+
+  private ClientTlsSession resumingClient(final SessionTicketCache cache) {
+    return new ClientTlsSession(
+        InitialAEAD.create(Rnd.rndBytes(4), true),
+        TestUtil.tps(),
+        new NoopCertificateValidator(),
+        cache,
+        "example.com:443",
+        CipherSuite.SUPPORTED);
+  }
+
+  private ServerTlsSession ticketServer(final TicketKeys ticketKeys) {
+    return ticketServer(ticketKeys, AntiReplayFilter.shared());
+  }
+
+  private ServerTlsSession ticketServer(
+      final TicketKeys ticketKeys, final AntiReplayFilter antiReplayFilter) {
+    return ticketServer(ticketKeys, antiReplayFilter, CipherSuite.SUPPORTED);
+  }
+
+  private ServerTlsSession ticketServer(
+      final TicketKeys ticketKeys,
+      final AntiReplayFilter antiReplayFilter,
+      final List<CipherSuite> cipherSuites) {
+    return new ServerTlsSession(
+        InitialAEAD.create(Rnd.rndBytes(4), false),
+        TestUtil.tps(),
+        new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"), false),
+        privateKey,
+        KeyExchangePool.shared(),
+        ticketKeys,
+        antiReplayFilter,
+        cipherSuites);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void handshakeSignatureSchemeNotOffered() {
+    final ClientHello ch = ClientHello.parse(client.startHandshake(), false);
+
+    // only offer RSA-PSS to an ECDSA server
+    final List<Extension> extensions = new ArrayList<>();
+    for (final Extension ext : ch.getExtensions()) {
+      if (ext.getType().equals(ExtensionType.SIGNATURE_ALGORITHMS)) {
+        extensions.add(new SignatureAlgorithms(SignatureScheme.RSA_PSS_RSAE_SHA256.getValue()));
+      } else {
+        extensions.add(ext);
+      }
+    }
+    final ClientHello rsaOnly =
+        new ClientHello(ch.getClientRandom(), ch.getSessionId(), ch.getCipherSuites(), extensions);
+
+    final ByteBuf bb = Unpooled.buffer();
+    rsaOnly.write(bb, true);
+
+    ecServer().handleClientHello(Bytes.drainToArray(bb));
+  }
+
+  private ServerTlsSession ecServer() {
+    return server(
+        new CertificateChain(KeyUtil.getCertsFromCrt("src/test/resources/server-ec.crt"), false),
+        KeyUtil.getPrivateKey("src/test/resources/server-ec.der", "EC"));
+  }
+
+  private ServerTlsSession server(
+      final CertificateChain certificates, final PrivateKey privateKey) {
+    return new ServerTlsSession(
+        InitialAEAD.create(Rnd.rndBytes(4), false),
+        TestUtil.tps(),
+        certificates,
+        privateKey,
+        KeyExchangePool.shared(),
+        TicketKeys.shared(),
+        AntiReplayFilter.shared(),
+        CipherSuite.SUPPORTED);
+  }
+
   @Test(expected = RuntimeException.class)
   public void handshakeWithInvalidServerCertVerification() throws CertificateInvalidException {
     final byte[] clientHello = client.startHandshake();
@@ -0,0 +1,57 @@
+package com.protocol7.quincy.tls;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class TranscriptHashTest {
+
+  private final byte[] hello = "hello".getBytes();
+  private final byte[] world = "world".getBytes();
+
+  @Test
+  public void empty() {
+    assertArrayEquals(Hash.sha256(), new TranscriptHash().snapshot());
+  }
+
+  @Test
+  public void snapshots() {
+    final TranscriptHash transcript = new TranscriptHash();
+
+    transcript.update(hello);
+    assertArrayEquals(Hash.sha256(hello), transcript.snapshot());
+    // snapshots do not affect the running hash
+    assertArrayEquals(Hash.sha256(hello), transcript.snapshot());
+
+    transcript.update(world);
+    assertArrayEquals(Hash.sha256(hello, world), transcript.snapshot());
+  }
+
+  @Test
+  public void updateFromByteBuf() {
+    final ByteBuf bb = Unpooled.wrappedBuffer(new byte[] {1, 2}, hello, world);
+
+    final TranscriptHash transcript = new TranscriptHash();
+    transcript.update(bb, 2, hello.length);
+    transcript.update(bb, 2 + hello.length, world.length);
+
+    assertArrayEquals(Hash.sha256(hello, world), transcript.snapshot());
+    // reader index untouched
+    assertArrayEquals(new byte[] {1, 2}, new byte[] {bb.readByte(), bb.readByte()});
+  }
+
+  @Test
+  public void updateFromDirectByteBuf() {
+    final ByteBuf bb = Unpooled.directBuffer();
+    bb.writeBytes(hello);
+    bb.writeBytes(world);
+
+    final TranscriptHash transcript = new TranscriptHash();
+    transcript.update(bb, 0, bb.writerIndex());
+
+    assertArrayEquals(Hash.sha256(hello, world), transcript.snapshot());
+    bb.release();
+  }
+}
@@ -4,7 +4,12 @@ import static com.protocol7.quincy.tls.TestUtil.assertHex;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.utils.Hex;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import java.security.GeneralSecurityException;
 import javax.crypto.AEADBadTagException;
 import org.junit.Test;
@@ -40,46 +45,78 @@ public class AEADTest {
   private byte[] sample = Hex.dehex("9cd0989bf61cccdff8d6e9f97ac2ceb2");
   private byte[] header = Hex.dehex("e300000002");
 
-  private final AEAD aead = new AEAD(myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
+  private final AEAD aead =
+      new AEAD(
+          CipherSuite.TLS_AES_128_GCM_SHA256, myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
 
   @Test(expected = IllegalArgumentException.class)
   public void myKeyInvalidLength() {
-    new AEAD(new byte[11], otherKey, myIV, otherIV, myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256,
+        new byte[11],
+        otherKey,
+        myIV,
+        otherIV,
+        myPnKey,
+        otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void myKeyNull() {
-    new AEAD(null, otherKey, myIV, otherIV, myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256, null, otherKey, myIV, otherIV, myPnKey, otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void otherKeyInvalidLength() {
-    new AEAD(myKey, new byte[11], myIV, otherIV, myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256,
+        myKey,
+        new byte[11],
+        myIV,
+        otherIV,
+        myPnKey,
+        otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void otherKeyNull() {
-    new AEAD(myKey, null, myIV, otherIV, myPnKey, otherPnKey);
+    new AEAD(CipherSuite.TLS_AES_128_GCM_SHA256, myKey, null, myIV, otherIV, myPnKey, otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void myIVInvalidLength() {
-    new AEAD(myKey, otherKey, new byte[11], otherIV, myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256,
+        myKey,
+        otherKey,
+        new byte[11],
+        otherIV,
+        myPnKey,
+        otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void myIVNull() {
-    new AEAD(myKey, otherKey, null, otherIV, myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256, myKey, otherKey, null, otherIV, myPnKey, otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void otherIVInvalidLength() {
-    new AEAD(myKey, otherKey, myIV, new byte[11], myPnKey, otherPnKey);
+    new AEAD(
+        CipherSuite.TLS_AES_128_GCM_SHA256,
+        myKey,
+        otherKey,
+        myIV,
+        new byte[11],
+        myPnKey,
+        otherPnKey);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void otherIVNull() {
-    new AEAD(myKey, otherKey, myIV, null, myPnKey, otherPnKey);
+    new AEAD(CipherSuite.TLS_AES_128_GCM_SHA256, myKey, otherKey, myIV, null, myPnKey, otherPnKey);
   }
 
   @Test
@@ -110,6 +147,80 @@ public class AEADTest {
     assertArrayEquals(plainText, actual);
   }
 
+  @Test
+  public void sealInPlace() throws GeneralSecurityException {
+    assertSealInPlace(Unpooled.buffer());
+  }
+
+  @Test
+  public void sealInPlaceDirect() throws GeneralSecurityException {
+    assertSealInPlace(Unpooled.directBuffer());
+  }
+
+  private void assertSealInPlace(final ByteBuf bb) throws GeneralSecurityException {
+    bb.writeBytes(aad);
+    bb.writeBytes(plainText);
+    bb.ensureWritable(AEAD.OVERHEAD);
+
+    final int length = aead.seal(bb, 0, aad.length, plainText.length, packetNumber);
+    bb.writerIndex(aad.length + length);
+
+    assertEquals(myCipherText.length, length);
+    assertArrayEquals(myCipherText, ByteBufUtil.getBytes(bb, aad.length, length));
+    assertArrayEquals(aad, ByteBufUtil.getBytes(bb, 0, aad.length));
+  }
+
+  @Test
+  public void openInPlace() throws GeneralSecurityException {
+    assertOpenInPlace(Unpooled.buffer());
+  }
+
+  @Test
+  public void openInPlaceDirect() throws GeneralSecurityException {
+    assertOpenInPlace(Unpooled.directBuffer());
+  }
+
+  private void assertOpenInPlace(final ByteBuf bb) throws GeneralSecurityException {
+    bb.writeBytes(aad);
+    bb.writeBytes(otherCipherText);
+
+    final int length = aead.open(bb, 0, aad.length, otherCipherText.length, packetNumber);
+
+    assertEquals(plainText.length, length);
+    assertArrayEquals(plainText, ByteBufUtil.getBytes(bb, aad.length, length));
+  }
+
+  @Test
+  public void openInPlaceComposite() throws GeneralSecurityException {
+    final CompositeByteBuf bb = Unpooled.compositeBuffer();
+    bb.addComponent(true, Unpooled.wrappedBuffer(aad));
+    bb.addComponent(true, Unpooled.copiedBuffer(otherCipherText, 0, 100));
+    bb.addComponent(
+        true, Unpooled.copiedBuffer(otherCipherText, 100, otherCipherText.length - 100));
+
+    final int length = aead.open(bb, 0, aad.length, otherCipherText.length, packetNumber);
+
+    assertArrayEquals(plainText, ByteBufUtil.getBytes(bb, aad.length, length));
+  }
+
+  @Test(expected = AEADBadTagException.class)
+  public void openInPlaceBadAad() throws GeneralSecurityException {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(new byte[aad.length]);
+    bb.writeBytes(otherCipherText);
+
+    aead.open(bb, 0, aad.length, otherCipherText.length, packetNumber);
+  }
+
+  @Test(expected = AEADBadTagException.class)
+  public void openInPlaceTooShort() throws GeneralSecurityException {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(aad);
+    bb.writeBytes(new byte[AEAD.OVERHEAD - 1]);
+
+    aead.open(bb, 0, aad.length, AEAD.OVERHEAD - 1, packetNumber);
+  }
+
   @Test
   public void testAEAD() throws GeneralSecurityException {
     final AEAD testAEAD = TestAEAD.create();
@@ -141,4 +252,136 @@ public class AEADTest {
 
     assertHex(header, decrypted);
   }
+
+  @Test
+  public void headerInPlaceRoundtrip() throws GeneralSecurityException {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(header);
+    bb.writeBytes(sample);
+
+    aead.encryptHeader(bb, 0, 1, true);
+
+    final byte[] expected = aead.encryptHeader(sample, header, true);
+    assertArrayEquals(expected, ByteBufUtil.getBytes(bb, 0, header.length));
+
+    final int pnLength = aead.decryptHeader(bb, 0, 1, true);
+
+    assertEquals(4, pnLength);
+    assertArrayEquals(header, ByteBufUtil.getBytes(bb, 0, header.length));
+  }
+
+  @Test
+  public void headerInPlaceShortPacketNumber() throws GeneralSecurityException {
+    // one byte packet number, followed by the sample at 4 bytes from the packet number offset
+    final byte[] shortPn = Hex.dehex("c07b");
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeBytes(shortPn);
+    bb.writeBytes(new byte[3]);
+    bb.writeBytes(sample);
+    final byte trailing = bb.getByte(2);
+
+    aead.encryptHeader(bb, 0, 1, false);
+
+    // only the packet number bytes are masked
+    assertEquals(trailing, bb.getByte(2));
+
+    assertEquals(1, aead.decryptHeader(bb, 0, 1, false));
+    assertArrayEquals(shortPn, ByteBufUtil.getBytes(bb, 0, shortPn.length));
+  }
+
+  // RFC 9001, appendix A.5
+  private final byte[] chaChaKey =
+      Hex.dehex("c6d98ff3441c3fe1b2182094f69caa2ed4b716b65488960a7a984979fb23e1c8");
+  private final byte[] chaChaIV = Hex.dehex("e0459b3474bdd0e44a41c144");
+  private final byte[] chaChaPnKey =
+      Hex.dehex("25a282b9e82f06f21f488917a4fc8f1b73573685608597d0efcb076b0ab7a7a4");
+  private final long chaChaPacketNumber = 654360564;
+  private final byte[] chaChaHeader = Hex.dehex("4200bff4");
+
+  private final AEAD chaCha =
+      new AEAD(
+          CipherSuite.TLS_CHACHA20_POLY1305_SHA256,
+          chaChaKey,
+          chaChaKey,
+          chaChaIV,
+          chaChaIV,
+          chaChaPnKey,
+          chaChaPnKey);
+
+  @Test(expected = IllegalArgumentException.class)
+  public void chaChaInvalidKeyLength() {
+    new AEAD(
+        CipherSuite.TLS_CHACHA20_POLY1305_SHA256,
+        myKey,
+        otherKey,
+        myIV,
+        otherIV,
+        myPnKey,
+        otherPnKey);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedCipherSuite() {
+    new AEAD(
+        CipherSuite.TLS_AES_256_GCM_SHA384,
+        chaChaKey,
+        chaChaKey,
+        chaChaIV,
+        chaChaIV,
+        chaChaPnKey,
+        chaChaPnKey);
+  }
+
+  @Test
+  public void chaChaSeal() throws GeneralSecurityException {
+    final byte[] actual = chaCha.seal(Hex.dehex("01"), chaChaPacketNumber, chaChaHeader);
+    assertHex("655e5cd55c41f69080575d7999c25a5bfb", actual);
+  }
+
+  @Test
+  public void chaChaOpen() throws GeneralSecurityException {
+    final byte[] actual =
+        chaCha.open(
+            Hex.dehex("655e5cd55c41f69080575d7999c25a5bfb"), chaChaPacketNumber, chaChaHeader);
+    assertHex("01", actual);
+  }
+
+  @Test
+  public void chaChaEncryptHeader() throws GeneralSecurityException {
+    final byte[] sample = Hex.dehex("5e5cd55c41f69080575d7999c25a5bfb");
+
+    final byte[] encrypted = chaCha.encryptHeader(sample, chaChaHeader, true);
+    assertHex("4cfe4189", encrypted);
+
+    assertHex(chaChaHeader, chaCha.decryptHeader(sample, encrypted, true));
+  }
+
+  @Test
+  public void chaChaInPlace() throws GeneralSecurityException {
+    assertChaChaInPlace(Unpooled.buffer());
+  }
+
+  @Test
+  public void chaChaInPlaceDirect() throws GeneralSecurityException {
+    assertChaChaInPlace(Unpooled.directBuffer());
+  }
+
+  private void assertChaChaInPlace(final ByteBuf bb) throws GeneralSecurityException {
+    bb.writeBytes(chaChaHeader);
+    bb.writeByte(1);
+    bb.writeZero(AEAD.OVERHEAD);
+
+    final int sealed = chaCha.seal(bb, 0, chaChaHeader.length, 1, chaChaPacketNumber);
+    assertEquals(1 + AEAD.OVERHEAD, sealed);
+
+    // the packet number is three bytes, sample is taken from four bytes in
+    chaCha.encryptHeader(bb, 0, 1, true);
+    assertHex("4cfe4189655e5cd55c41f69080575d7999c25a5bfb", ByteBufUtil.getBytes(bb));
+
+    assertEquals(3, chaCha.decryptHeader(bb, 0, 1, true));
+    final int opened = chaCha.open(bb, 0, chaChaHeader.length, sealed, chaChaPacketNumber);
+
+    assertEquals(1, opened);
+    assertHex("4200bff401", ByteBufUtil.getBytes(bb, 0, 5));
+  }
 }
@@ -6,11 +6,14 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Clock;
 import org.junit.Test;
 
 public class AEADsTest {
 
   private final AEAD initial = TestAEAD.create();
+  private final AEAD zeroRtt = TestAEAD.create();
   private final AEAD handshake = TestAEAD.create();
   private final AEAD oneRtt = TestAEAD.create();
 
@@ -22,6 +25,14 @@ public class AEADsTest {
     assertAEAD(initial, aeads.get(EncryptionLevel.Initial));
   }
 
+  @Test
+  public void getZeroRtt() {
+    assertFalse(aeads.available(EncryptionLevel.ZeroRtt));
+    aeads.setZeroRttAead(zeroRtt);
+    assertTrue(aeads.available(EncryptionLevel.ZeroRtt));
+    assertAEAD(zeroRtt, aeads.get(EncryptionLevel.ZeroRtt));
+  }
+
   @Test
   public void getHandshake() {
     assertFalse(aeads.available(EncryptionLevel.Handshake));
@@ -33,11 +44,21 @@ public class AEADsTest {
   @Test
   public void getOneRtt() {
     assertFalse(aeads.available(EncryptionLevel.OneRtt));
-    aeads.setOneRttAead(oneRtt);
+    aeads.setOneRttKeys(keys(oneRtt));
     assertTrue(aeads.available(EncryptionLevel.OneRtt));
     assertAEAD(oneRtt, aeads.get(EncryptionLevel.OneRtt));
   }
 
+  @Test
+  public void getOneRttKeyPhase() {
+    final KeyPhases keys = keys(oneRtt);
+    aeads.setOneRttKeys(keys);
+
+    assertAEAD(oneRtt, aeads.getOneRtt(false, 1));
+    keys.update();
+    assertAEAD(keys.getCurrent(), aeads.getOneRtt(true, 1));
+  }
+
   @Test
   public void unsetInitial() {
     aeads.unsetInitialAead();
@@ -69,6 +90,21 @@ public class AEADsTest {
     }
   }
 
+  @Test
+  public void unsetZeroRtt() {
+    aeads.setZeroRttAead(zeroRtt);
+    aeads.unsetZeroRttAead();
+
+    assertFalse(aeads.available(EncryptionLevel.ZeroRtt));
+
+    try {
+      aeads.get(EncryptionLevel.ZeroRtt);
+      fail();
+    } catch (final IllegalStateException e) {
+      // ignore
+    }
+  }
+
   @Test(expected = IllegalStateException.class)
   public void getHandshakeNotSet() {
     aeads.get(EncryptionLevel.Handshake);
@@ -96,7 +132,16 @@ public class AEADsTest {
 
   @Test(expected = NullPointerException.class)
   public void setNullOneRtt() {
-    aeads.setOneRttAead(null);
+    aeads.setOneRttKeys(null);
+  }
+
+  private KeyPhases keys(final AEAD aead) {
+    return new KeyPhases(
+        new KeyPhase(false, aead, Rnd.rndBytes(32), Rnd.rndBytes(32)),
+        KeyPhases.NO_LIMIT,
+        KeyPhases.NO_LIMIT,
+        KeyPhases.DEFAULT_RETAIN_PREVIOUS,
+        Clock.systemUTC());
   }
 
   private void assertAEAD(final AEAD expected, final AEAD actual) {
@@ -0,0 +1,73 @@
+package com.protocol7.quincy.tls.aead;
+
+import static com.protocol7.quincy.tls.TestUtil.assertHex;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.utils.Hex;
+import com.protocol7.quincy.utils.Rnd;
+import java.security.GeneralSecurityException;
+import org.junit.Test;
+
+public class KeyPhaseTest {
+
+  private final byte[] handshakeSecret =
+      Hex.dehex("fb9fc80689b3a5d02c33243bf69a1b1b20705588a794304a6e7120155edf149a");
+  private final byte[] handshakeHash =
+      Hex.dehex("22844b930e5e0a59a09d5ac35fc032fc91163b193874a265236e568077378d8b");
+
+  @Test
+  public void nextSecret() {
+    // RFC 9001, appendix A.5
+    final byte[] secret =
+        Hex.dehex("9ac312a7f877468ebe69422748ad00a15443f18203a07d6060f688f30f21632b");
+    final AEAD aead = TestAEAD.create();
+
+    final KeyPhase next = new KeyPhase(false, aead, secret, secret).next();
+
+    assertHex(
+        "1223504755036d556342ee9361d253421a826c9ecdf3c7148684b36b714881f9", next.getMySecret());
+    assertHex(
+        "1223504755036d556342ee9361d253421a826c9ecdf3c7148684b36b714881f9", next.getOtherSecret());
+  }
+
+  @Test
+  public void next() {
+    final KeyPhase keys =
+        OneRttAEAD.createKeyPhase(
+            handshakeSecret, handshakeHash, true, CipherSuite.TLS_AES_128_GCM_SHA256);
+    assertFalse(keys.getPhase());
+
+    final KeyPhase next = keys.next();
+
+    assertTrue(next.getPhase());
+    assertFalse(next.next().getPhase());
+
+    // packet protection keys are updated, header protection keys are not
+    assertFalse(Hex.hex(keys.getAEAD().getMyKey()).equals(Hex.hex(next.getAEAD().getMyKey())));
+    assertFalse(Hex.hex(keys.getAEAD().getMyIV()).equals(Hex.hex(next.getAEAD().getMyIV())));
+    assertArrayEquals(keys.getAEAD().getMyPnKey(), next.getAEAD().getMyPnKey());
+    assertArrayEquals(keys.getAEAD().getOtherPnKey(), next.getAEAD().getOtherPnKey());
+    assertEquals(CipherSuite.TLS_AES_128_GCM_SHA256, next.getAEAD().getCipherSuite());
+  }
+
+  @Test
+  public void nextMatchesPeer() throws GeneralSecurityException {
+    final KeyPhase client =
+        OneRttAEAD.createKeyPhase(
+                handshakeSecret, handshakeHash, true, CipherSuite.TLS_CHACHA20_POLY1305_SHA256)
+            .next();
+    final KeyPhase server =
+        OneRttAEAD.createKeyPhase(
+                handshakeSecret, handshakeHash, false, CipherSuite.TLS_CHACHA20_POLY1305_SHA256)
+            .next();
+
+    final byte[] aad = Rnd.rndBytes(10);
+    final byte[] sealed = client.getAEAD().seal(Hex.dehex("010203"), 7, aad);
+
+    assertHex("010203", server.getAEAD().open(sealed, 7, aad));
+  }
+}
@@ -0,0 +1,169 @@
+package com.protocol7.quincy.tls.aead;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.tls.MutableClock;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class KeyPhasesTest {
+
+  private final MutableClock clock = new MutableClock(Instant.ofEpochMilli(1_000_000));
+  private final KeyPhase initial =
+      new KeyPhase(false, TestAEAD.create(), Rnd.rndBytes(32), Rnd.rndBytes(32));
+
+  private KeyPhases keys(final long packetLimit, final long byteLimit) {
+    return new KeyPhases(initial, packetLimit, byteLimit, Duration.ofSeconds(3), clock);
+  }
+
+  @Test
+  public void notUpdatedBeforeConfirmed() {
+    final KeyPhases keys = keys(2, KeyPhases.NO_LIMIT);
+
+    keys.forSending(false, 100);
+    keys.forSending(false, 100);
+    keys.forSending(false, 100);
+
+    // no packet received from the peer yet
+    assertFalse(keys.getKeyPhase());
+  }
+
+  @Test
+  public void updateOnPacketLimit() {
+    final KeyPhases keys = keys(2, KeyPhases.NO_LIMIT);
+    final AEAD current = keys.getCurrent();
+    keys.onReceived(false, 1);
+
+    assertSame(current, keys.forSending(false, 100));
+    assertFalse(keys.getKeyPhase());
+
+    // the packet reaching the limit is still sent using the current keys
+    assertSame(current, keys.forSending(false, 100));
+    assertTrue(keys.getKeyPhase());
+
+    assertNotSame(current, keys.getCurrent());
+    assertTrue(keys.hasPrevious());
+  }
+
+  @Test
+  public void updateOnByteLimit() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, 1000);
+    keys.onReceived(false, 1);
+
+    keys.forSending(false, 600);
+    assertFalse(keys.getKeyPhase());
+    keys.forSending(false, 600);
+    assertTrue(keys.getKeyPhase());
+  }
+
+  @Test
+  public void packetLimitCappedByCipherSuite() {
+    final KeyPhases keys = keys(Long.MAX_VALUE, KeyPhases.NO_LIMIT);
+    keys.onReceived(false, 1);
+
+    for (long i = 0; i < (1L << 23); i++) {
+      keys.forSending(false, 0);
+    }
+    assertTrue(keys.getKeyPhase());
+  }
+
+  @Test(expected = KeyPhases.KeysExhaustedException.class)
+  public void stopAtCipherSuiteLimit() {
+    final KeyPhases keys = keys(Long.MAX_VALUE, KeyPhases.NO_LIMIT);
+
+    // never confirmed by the peer, so the keys can not be updated
+    for (long i = 0; i < (1L << 23); i++) {
+      keys.forSending(false, 0);
+    }
+    keys.forSending(false, 0);
+  }
+
+  @Test(expected = KeyPhases.KeyPhaseExpiredException.class)
+  public void packetCreatedBeforeExpiredUpdate() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, KeyPhases.NO_LIMIT);
+    keys.onReceived(false, 1);
+    keys.update();
+    keys.onReceived(true, 10);
+    clock.advance(Duration.ofSeconds(3));
+
+    keys.forSending(false, 100);
+  }
+
+  @Test
+  public void packetCreatedBeforeUpdate() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, KeyPhases.NO_LIMIT);
+    final AEAD previous = keys.getCurrent();
+    keys.update();
+
+    // sent using the keys of the phase the packet was created with
+    assertSame(previous, keys.forSending(false, 100));
+  }
+
+  @Test
+  public void peerInitiatedUpdate() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, KeyPhases.NO_LIMIT);
+    final AEAD previous = keys.getCurrent();
+    keys.onReceived(false, 1);
+
+    // the next keys are available before the update
+    final AEAD next = keys.forReceiving(true, 10);
+    keys.onReceived(true, 10);
+
+    assertTrue(keys.getKeyPhase());
+    assertSame(next, keys.getCurrent());
+
+    // reordered packets from before the update use the previous keys
+    assertSame(previous, keys.forReceiving(false, 5));
+    assertSame(next, keys.forReceiving(true, 11));
+
+    // a later update by the peer
+    final AEAD following = keys.forReceiving(false, 20);
+    keys.onReceived(false, 20);
+    assertFalse(keys.getKeyPhase());
+    assertSame(following, keys.getCurrent());
+  }
+
+  @Test
+  public void reorderedAfterLocalUpdate() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, KeyPhases.NO_LIMIT);
+    final AEAD previous = keys.getCurrent();
+    keys.onReceived(false, 1);
+    keys.update();
+
+    // until the peer responds, packets in the old phase use the previous keys
+    assertSame(previous, keys.forReceiving(false, 100));
+    keys.onReceived(false, 100);
+    assertTrue(keys.getKeyPhase());
+
+    keys.onReceived(true, 101);
+    assertSame(previous, keys.forReceiving(false, 99));
+  }
+
+  @Test
+  public void previousExpires() {
+    final KeyPhases keys = keys(KeyPhases.NO_LIMIT, KeyPhases.NO_LIMIT);
+    keys.onReceived(false, 1);
+    keys.update();
+
+    // kept until the peer has moved to the new keys
+    clock.advance(Duration.ofSeconds(10));
+    assertTrue(keys.hasPrevious());
+
+    keys.onReceived(true, 10);
+    clock.advance(Duration.ofSeconds(2));
+    assertTrue(keys.hasPrevious());
+
+    clock.advance(Duration.ofSeconds(1));
+    assertFalse(keys.hasPrevious());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPacketLimit() {
+    keys(0, KeyPhases.NO_LIMIT);
+  }
+}
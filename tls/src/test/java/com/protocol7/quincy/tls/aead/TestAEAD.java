@@ -1,5 +1,6 @@
 package com.protocol7.quincy.tls.aead;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.utils.Hex;
 
 public class TestAEAD {
@@ -8,6 +9,6 @@ public class TestAEAD {
     final byte[] key = Hex.dehex("f2b91f8858998f9a4866f9738cfd2392");
     final byte[] iv = Hex.dehex("b060c60e9b71df30636211c7");
 
-    return new AEAD(key, key, iv, iv, key, key);
+    return new AEAD(CipherSuite.TLS_AES_128_GCM_SHA256, key, key, iv, iv, key, key);
   }
 }
@@ -0,0 +1,32 @@
+package com.protocol7.quincy.tls.aead;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.protocol7.quincy.utils.Rnd;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ZeroRttAEADTest {
+
+  private final byte[] earlySecret = Rnd.rndBytes(32);
+  private final byte[] clientHelloHash = Rnd.rndBytes(32);
+
+  @Test
+  public void sameKeysOnBothSides() {
+    final AEAD client = ZeroRttAEAD.create(earlySecret, clientHelloHash);
+    final AEAD server = ZeroRttAEAD.create(earlySecret, clientHelloHash);
+
+    assertArrayEquals(client.getMyKey(), server.getOtherKey());
+    assertArrayEquals(client.getMyIV(), server.getOtherIV());
+    assertArrayEquals(client.getMyKey(), client.getOtherKey());
+  }
+
+  @Test
+  public void boundToClientHello() {
+    final AEAD aead1 = ZeroRttAEAD.create(earlySecret, clientHelloHash);
+    final AEAD aead2 = ZeroRttAEAD.create(earlySecret, Rnd.rndBytes(32));
+
+    assertFalse(Arrays.equals(aead1.getMyKey(), aead2.getMyKey()));
+  }
+}
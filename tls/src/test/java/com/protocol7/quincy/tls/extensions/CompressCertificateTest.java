@@ -0,0 +1,23 @@
+package com.protocol7.quincy.tls.extensions;
+
+import static org.junit.Assert.assertEquals;
+
+import com.protocol7.quincy.tls.CertificateCompression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class CompressCertificateTest {
+
+  @Test
+  public void roundtrip() {
+    final CompressCertificate ext = new CompressCertificate(CertificateCompression.ZLIB, 0x0002);
+
+    final ByteBuf bb = Unpooled.buffer();
+    ext.write(bb, true);
+
+    final CompressCertificate parsed = CompressCertificate.parse(bb);
+
+    assertEquals(ext, parsed);
+  }
+}
@@ -0,0 +1,38 @@
+package com.protocol7.quincy.tls.extensions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class EarlyDataTest {
+
+  @Test
+  public void roundtripEmpty() {
+    final EarlyData ext = new EarlyData();
+
+    final ByteBuf bb = Unpooled.buffer();
+    ext.write(bb, true);
+
+    assertFalse(bb.isReadable());
+
+    final EarlyData parsed = EarlyData.parse(bb);
+
+    assertEquals(ext, parsed);
+  }
+
+  @Test
+  public void roundtripMaxEarlyDataSize() {
+    final EarlyData ext = new EarlyData(EarlyData.QUIC_MAX_EARLY_DATA_SIZE);
+
+    final ByteBuf bb = Unpooled.buffer();
+    ext.write(bb, false);
+
+    final EarlyData parsed = EarlyData.parse(bb);
+
+    assertEquals(ext, parsed);
+    assertEquals(EarlyData.QUIC_MAX_EARLY_DATA_SIZE, (long) parsed.getMaxEarlyDataSize().get());
+  }
+}
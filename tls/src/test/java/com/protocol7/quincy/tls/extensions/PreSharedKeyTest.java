@@ -0,0 +1,46 @@
+package com.protocol7.quincy.tls.extensions;
+
+import static org.junit.Assert.assertEquals;
+
+import com.protocol7.quincy.tls.extensions.PreSharedKey.Identity;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import org.junit.Test;
+
+public class PreSharedKeyTest {
+
+  @Test
+  public void roundtripClient() {
+    final PreSharedKey ext =
+        new PreSharedKey(List.of(new Identity(Rnd.rndBytes(40), 123)), List.of(Rnd.rndBytes(32)));
+
+    final ByteBuf bb = Unpooled.buffer();
+    ext.write(bb, true);
+
+    assertEquals(2 + 1 + 32, ext.getBindersLength());
+
+    final PreSharedKey parsed = PreSharedKey.parse(bb, false);
+
+    assertEquals(ext, parsed);
+  }
+
+  @Test
+  public void roundtripServer() {
+    final PreSharedKey ext = new PreSharedKey(0);
+
+    final ByteBuf bb = Unpooled.buffer();
+    ext.write(bb, false);
+
+    final PreSharedKey parsed = PreSharedKey.parse(bb, true);
+
+    assertEquals(ext, parsed);
+    assertEquals(0, parsed.getSelectedIdentity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingBinder() {
+    new PreSharedKey(List.of(new Identity(Rnd.rndBytes(40), 123)), List.of());
+  }
+}
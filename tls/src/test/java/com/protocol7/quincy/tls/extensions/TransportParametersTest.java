@@ -51,6 +51,26 @@ public class TransportParametersTest {
     assertArrayEquals(tps.getOriginalConnectionId(), parsed.getOriginalConnectionId());
   }
 
+  @Test
+  public void copy() {
+    final TransportParameters tps =
+        TransportParameters.newBuilder()
+            .withAckDelayExponent(130)
+            .withDisableMigration(true)
+            .withIdleTimeout(234)
+            .withInitialMaxData(456)
+            .withStatelessResetToken("srt".getBytes())
+            .build();
+
+    assertEquals(tps, TransportParameters.newBuilder(tps).build());
+
+    final TransportParameters withToken =
+        TransportParameters.newBuilder(tps).withStatelessResetToken("other".getBytes()).build();
+
+    assertArrayEquals("other".getBytes(), withToken.getStatelessResetToken());
+    assertEquals(tps.getIdleTimeout(), withToken.getIdleTimeout());
+  }
+
   @Test
   public void parseKnown() {
     final byte[] data =
@@ -1,6 +1,7 @@
 package com.protocol7.quincy.tls.messages;
 
 import static com.protocol7.quincy.tls.CipherSuite.TLS_AES_128_GCM_SHA256;
+import static com.protocol7.quincy.tls.CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
 import static com.protocol7.quincy.tls.TestUtil.assertHex;
 import static com.protocol7.quincy.utils.Hex.dehex;
 import static org.junit.Assert.assertEquals;
@@ -63,7 +64,8 @@ public class ClientHelloTest {
 
     assertEquals(32, ch.getClientRandom().length);
     assertEquals(0, ch.getSessionId().length);
-    assertEquals(List.of(TLS_AES_128_GCM_SHA256), ch.getCipherSuites());
+    assertEquals(
+        List.of(TLS_AES_128_GCM_SHA256, TLS_CHACHA20_POLY1305_SHA256), ch.getCipherSuites());
 
     final KeyShare keyShare = (KeyShare) ch.getExtension(ExtensionType.KEY_SHARE).get();
     assertEquals(1, keyShare.getKeys().size());
@@ -0,0 +1,42 @@
+package com.protocol7.quincy.tls.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import org.junit.Test;
+
+public class NewSessionTicketTest {
+
+  @Test
+  public void roundtrip() {
+    final byte[] nonce = Rnd.rndBytes(8);
+    final byte[] ticket = Rnd.rndBytes(100);
+    final NewSessionTicket nst = new NewSessionTicket(3600, 456, nonce, ticket, List.of());
+
+    final ByteBuf bb = Unpooled.buffer();
+    nst.write(bb);
+
+    final NewSessionTicket parsed = NewSessionTicket.parse(bb);
+
+    assertEquals(3600, parsed.getLifetime());
+    assertEquals(456, parsed.getAgeAdd());
+    assertArrayEquals(nonce, parsed.getNonce());
+    assertArrayEquals(ticket, parsed.getTicket());
+    assertEquals(List.of(), parsed.getExtensions());
+    assertEquals(0, bb.readableBytes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseInvalidType() {
+    NewSessionTicket.parse(Unpooled.wrappedBuffer(new byte[] {1, 0, 0, 0}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyTicket() {
+    new NewSessionTicket(3600, 456, Rnd.rndBytes(8), new byte[0], List.of());
+  }
+}
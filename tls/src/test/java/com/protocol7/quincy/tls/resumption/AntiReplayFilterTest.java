@@ -0,0 +1,58 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.tls.MutableClock;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class AntiReplayFilterTest {
+
+  private final MutableClock clock = new MutableClock(Instant.now());
+  private final AntiReplayFilter filter = new AntiReplayFilter(Duration.ofSeconds(10), 2, clock);
+
+  @Test
+  public void acceptOnce() {
+    final byte[] binder = Rnd.rndBytes(32);
+    final Instant issued = clock.instant().minusSeconds(60);
+
+    assertTrue(filter.accept(binder, issued, 60_000));
+
+    // replayed
+    assertFalse(filter.accept(binder, issued, 60_000));
+  }
+
+  @Test
+  public void staleTicketAge() {
+    final Instant issued = clock.instant().minusSeconds(60);
+
+    // client claims the ticket is much younger than it is
+    assertFalse(filter.accept(Rnd.rndBytes(32), issued, 30_000));
+  }
+
+  @Test
+  public void futureTicketAge() {
+    final Instant issued = clock.instant().minusSeconds(60);
+
+    assertFalse(filter.accept(Rnd.rndBytes(32), issued, 90_000));
+  }
+
+  @Test
+  public void withinWindow() {
+    final Instant issued = clock.instant().minusSeconds(60);
+
+    assertTrue(filter.accept(Rnd.rndBytes(32), issued, 55_000));
+  }
+
+  @Test
+  public void full() {
+    final Instant issued = clock.instant();
+
+    assertTrue(filter.accept(Rnd.rndBytes(32), issued, 0));
+    assertTrue(filter.accept(Rnd.rndBytes(32), issued, 0));
+    assertFalse(filter.accept(Rnd.rndBytes(32), issued, 0));
+  }
+}
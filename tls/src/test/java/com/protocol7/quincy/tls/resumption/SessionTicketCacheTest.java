@@ -0,0 +1,76 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.MutableClock;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class SessionTicketCacheTest {
+
+  private final MutableClock clock = new MutableClock(Instant.now());
+  private final SessionTicketCache cache = new SessionTicketCache(2, clock);
+
+  @Test
+  public void putTake() {
+    final ResumptionTicket ticket = ticket();
+    cache.put("example.com:443", ticket);
+
+    assertSame(ticket, cache.take("example.com:443").get());
+
+    // single use
+    assertFalse(cache.take("example.com:443").isPresent());
+  }
+
+  @Test
+  public void latestTicket() {
+    cache.put("example.com:443", ticket());
+    final ResumptionTicket ticket = ticket();
+    cache.put("example.com:443", ticket);
+
+    assertEquals(1, cache.size());
+    assertSame(ticket, cache.take("example.com:443").get());
+  }
+
+  @Test
+  public void perOrigin() {
+    cache.put("example.com:443", ticket());
+
+    assertFalse(cache.take("example.org:443").isPresent());
+  }
+
+  @Test
+  public void expired() {
+    cache.put("example.com:443", ticket());
+
+    clock.advance(Duration.ofSeconds(3600));
+
+    assertFalse(cache.take("example.com:443").isPresent());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void bounded() {
+    cache.put("a:443", ticket());
+    cache.put("b:443", ticket());
+    cache.put("c:443", ticket());
+
+    assertEquals(2, cache.size());
+  }
+
+  private ResumptionTicket ticket() {
+    return new ResumptionTicket(
+        Rnd.rndBytes(100),
+        Rnd.rndBytes(32),
+        123,
+        clock.instant(),
+        3600,
+        false,
+        CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+}
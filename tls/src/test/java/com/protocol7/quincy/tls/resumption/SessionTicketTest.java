@@ -0,0 +1,63 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class SessionTicketTest {
+
+  private final TicketKeys keys = new TicketKeys(Duration.ofHours(1), Clock.systemUTC());
+  private final Instant issued = Instant.ofEpochMilli(1_000_000);
+
+  @Test
+  public void sealOpen() {
+    final SessionTicket ticket =
+        new SessionTicket(Rnd.rndBytes(32), issued, 3600, 123, CipherSuite.TLS_AES_128_GCM_SHA256);
+
+    final SessionTicket opened = SessionTicket.open(keys, ticket.seal(keys)).get();
+
+    assertArrayEquals(ticket.getPsk(), opened.getPsk());
+    assertEquals(issued, opened.getIssued());
+    assertEquals(3600, opened.getLifetime());
+    assertEquals(123, opened.getAgeAdd());
+    assertEquals(CipherSuite.TLS_AES_128_GCM_SHA256, opened.getCipherSuite());
+  }
+
+  @Test
+  public void sealOpenCipherSuite() {
+    final SessionTicket ticket =
+        new SessionTicket(
+            Rnd.rndBytes(32), issued, 3600, 123, CipherSuite.TLS_CHACHA20_POLY1305_SHA256);
+
+    final SessionTicket opened = SessionTicket.open(keys, ticket.seal(keys)).get();
+
+    assertEquals(CipherSuite.TLS_CHACHA20_POLY1305_SHA256, opened.getCipherSuite());
+  }
+
+  @Test
+  public void openInvalid() {
+    assertFalse(SessionTicket.open(keys, Rnd.rndBytes(100)).isPresent());
+  }
+
+  @Test
+  public void expired() {
+    final SessionTicket ticket =
+        new SessionTicket(Rnd.rndBytes(32), issued, 3600, 123, CipherSuite.TLS_AES_128_GCM_SHA256);
+
+    assertFalse(ticket.isExpired(issued.plusSeconds(3599)));
+    assertTrue(ticket.isExpired(issued.plusSeconds(3600)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPskLength() {
+    new SessionTicket(Rnd.rndBytes(16), issued, 3600, 123, CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+}
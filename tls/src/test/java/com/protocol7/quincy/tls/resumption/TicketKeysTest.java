@@ -0,0 +1,60 @@
+package com.protocol7.quincy.tls.resumption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.protocol7.quincy.tls.MutableClock;
+import com.protocol7.quincy.utils.Rnd;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class TicketKeysTest {
+
+  private final MutableClock clock = new MutableClock(Instant.now());
+  private final TicketKeys keys = new TicketKeys(Duration.ofHours(1), clock);
+
+  @Test
+  public void sealOpen() {
+    final byte[] plaintext = Rnd.rndBytes(48);
+
+    final byte[] sealed = keys.seal(plaintext);
+
+    assertArrayEquals(plaintext, keys.open(sealed).get());
+  }
+
+  @Test
+  public void openModified() {
+    final byte[] sealed = keys.seal(Rnd.rndBytes(48));
+    sealed[sealed.length - 1]++;
+
+    assertFalse(keys.open(sealed).isPresent());
+  }
+
+  @Test
+  public void openOtherKeys() {
+    final byte[] sealed = keys.seal(Rnd.rndBytes(48));
+
+    assertFalse(new TicketKeys(Duration.ofHours(1), clock).open(sealed).isPresent());
+  }
+
+  @Test
+  public void openTooShort() {
+    assertFalse(keys.open(Rnd.rndBytes(20)).isPresent());
+  }
+
+  @Test
+  public void openAfterRotation() {
+    final byte[] plaintext = Rnd.rndBytes(48);
+    final byte[] sealed = keys.seal(plaintext);
+
+    // rotated, the previous key is still accepted
+    clock.advance(Duration.ofMinutes(90));
+    keys.seal(Rnd.rndBytes(48));
+    assertArrayEquals(plaintext, keys.open(sealed).get());
+
+    // but not after two rotation intervals
+    clock.advance(Duration.ofMinutes(31));
+    assertFalse(keys.open(sealed).isPresent());
+  }
+}